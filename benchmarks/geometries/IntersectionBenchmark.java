@@ -0,0 +1,121 @@
+package geometries;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmarks of the ray intersection of the basic geometries and of the bounding box test.
+ * Every geometry is tested with a ray which hits it and with a ray which misses it,
+ * since the two paths have very different costs.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectionBenchmark {
+    /** A ray hitting all the geometries */
+    private final Ray hit = new Ray(new Point(0.2, 0.1, 10), new Vector(0, 0, -1));
+    /** A ray missing all the bounded geometries */
+    private final Ray miss = new Ray(new Point(50, 50, 10), new Vector(0, 0.1, -1));
+
+    /** Sphere around the origin */
+    private final Sphere sphere = new Sphere(2, Point.ZERO);
+    /** Triangle in the XY plane */
+    private final Triangle triangle = new Triangle(new Point(-2, -2, 0), new Point(2, -2, 0), new Point(0, 2, 0));
+    /** Square polygon in the XY plane */
+    private final Polygon polygon = new Polygon(new Point(-2, -2, 0), new Point(2, -2, 0),
+            new Point(2, 2, 0), new Point(-2, 2, 0));
+    /** The XY plane */
+    private final Plane plane = new Plane(Point.ZERO, new Vector(0, 0, 1));
+    /** Tube along the Y axis */
+    private final Tube tube = new Tube(1, new Ray(Point.ZERO, new Vector(0, 1, 0)));
+    /** Cylinder along the Y axis */
+    private final Cylinder cylinder = new Cylinder(1, new Ray(new Point(0, -2, 0), new Vector(0, 1, 0)), 4);
+    /** Bounding box around the origin */
+    private final AABB box = new AABB(new Point(-2, -2, -2), new Point(2, 2, 2));
+
+    /**
+     * Default constructor for the benchmark state
+     */
+    public IntersectionBenchmark() {
+    }
+
+    /**
+     * Sphere intersections
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void sphere(Blackhole blackhole) {
+        blackhole.consume(sphere.calculateIntersections(hit));
+        blackhole.consume(sphere.calculateIntersections(miss));
+    }
+
+    /**
+     * Triangle intersections
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void triangle(Blackhole blackhole) {
+        blackhole.consume(triangle.calculateIntersections(hit));
+        blackhole.consume(triangle.calculateIntersections(miss));
+    }
+
+    /**
+     * Polygon intersections
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void polygon(Blackhole blackhole) {
+        blackhole.consume(polygon.calculateIntersections(hit));
+        blackhole.consume(polygon.calculateIntersections(miss));
+    }
+
+    /**
+     * Plane intersections
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void plane(Blackhole blackhole) {
+        blackhole.consume(plane.calculateIntersections(hit));
+        blackhole.consume(plane.calculateIntersections(miss));
+    }
+
+    /**
+     * Tube intersections
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void tube(Blackhole blackhole) {
+        blackhole.consume(tube.calculateIntersections(hit));
+        blackhole.consume(tube.calculateIntersections(miss));
+    }
+
+    /**
+     * Cylinder intersections
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void cylinder(Blackhole blackhole) {
+        blackhole.consume(cylinder.calculateIntersections(hit));
+        blackhole.consume(cylinder.calculateIntersections(miss));
+    }
+
+    /**
+     * Bounding box tests
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void aabbIntersects(Blackhole blackhole) {
+        blackhole.consume(box.intersects(hit));
+        blackhole.consume(box.intersects(miss));
+    }
+}
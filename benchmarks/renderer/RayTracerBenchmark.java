@@ -0,0 +1,123 @@
+package renderer;
+
+import static java.awt.Color.*;
+
+import geometries.*;
+import lighting.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import primitives.*;
+import scene.Scene;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of tracing the primary rays of the reflection and refraction scenes
+ * (the scenes of {@code ReflectionRefractionTests}), including the secondary rays
+ * and the shadow rays they spawn.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RayTracerBenchmark {
+    /** Resolution of the side of the grid of the traced rays */
+    private static final int RAYS_SIDE = 32;
+
+    /** The traced scene */
+    @Param({"twoSpheres", "twoSpheresOnMirrors", "trianglesTransparentSphere"})
+    public String sceneName;
+
+    /** The ray tracer of the scene */
+    private RayTracerBase rayTracer;
+    /** The traced primary rays */
+    private final Ray[] rays = new Ray[RAYS_SIDE * RAYS_SIDE];
+
+    /**
+     * Default constructor for the benchmark state
+     */
+    public RayTracerBenchmark() {
+    }
+
+    /**
+     * Prepares the scene and its primary rays
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        Scene scene = new Scene(sceneName);
+        Camera.Builder builder = Camera.getBuilder().setRayTracer(scene, RayTracerType.SIMPLE);
+        switch (sceneName) {
+            case "twoSpheres" -> {
+                scene.geometries.add(
+                        new Sphere(50d, new Point(0, 0, -50)).setEmission(new Color(BLUE))
+                                .setMaterial(new Material().setKd(0.4).setKs(0.3).setShininess(100).setKt(0.3)),
+                        new Sphere(25d, new Point(0, 0, -50)).setEmission(new Color(RED))
+                                .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(100)));
+                scene.lights.add(
+                        new SpotLight(new Color(1000, 600, 0), new Point(-100, -100, 500), new Vector(-1, -1, -2))
+                                .setKl(0.0004).setKq(0.0000006));
+                builder.setLocation(new Point(0, 0, 1000)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                        .setVpDistance(1000).setVpSize(150, 150);
+            }
+            case "twoSpheresOnMirrors" -> {
+                scene.geometries.add(
+                        new Sphere(400d, new Point(-950, -900, -1000)).setEmission(new Color(0, 50, 100))
+                                .setMaterial(new Material().setKd(0.25).setKs(0.25).setShininess(20)
+                                        .setKt(new Double3(0.5, 0, 0))),
+                        new Sphere(200d, new Point(-950, -900, -1000)).setEmission(new Color(100, 50, 20))
+                                .setMaterial(new Material().setKd(0.25).setKs(0.25).setShininess(20)),
+                        new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500),
+                                new Point(670, 670, 3000))
+                                .setEmission(new Color(20, 20, 20))
+                                .setMaterial(new Material().setKr(1)),
+                        new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500),
+                                new Point(-1500, -1500, -2000))
+                                .setEmission(new Color(20, 20, 20))
+                                .setMaterial(new Material().setKr(new Double3(0.5, 0, 0.4))));
+                scene.setAmbientLight(new AmbientLight(new Color(26, 26, 26)));
+                scene.lights.add(
+                        new SpotLight(new Color(1020, 400, 400), new Point(-750, -750, -150), new Vector(-1, -1, -4))
+                                .setKl(0.00001).setKq(0.000005));
+                builder.setLocation(new Point(0, 0, 10000)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                        .setVpDistance(10000).setVpSize(2500, 2500);
+            }
+            case "trianglesTransparentSphere" -> {
+                scene.geometries.add(
+                        new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135),
+                                new Point(75, 75, -150))
+                                .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(60)),
+                        new Triangle(new Point(-150, -150, -115), new Point(-70, 70, -140), new Point(75, 75, -150))
+                                .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(60)),
+                        new Sphere(30d, new Point(60, 50, -50)).setEmission(new Color(BLUE))
+                                .setMaterial(new Material().setKd(0.2).setKs(0.2).setShininess(30).setKt(0.6)));
+                scene.setAmbientLight(new AmbientLight(new Color(38, 38, 38)));
+                scene.lights.add(
+                        new SpotLight(new Color(700, 400, 400), new Point(60, 50, 0), new Vector(0, 0, -1))
+                                .setKl(4E-5).setKq(2E-7));
+                builder.setLocation(new Point(0, 0, 1000)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                        .setVpDistance(1000).setVpSize(200, 200);
+            }
+            default -> throw new IllegalArgumentException("Unknown scene " + sceneName);
+        }
+
+        Camera camera = builder.setResolution(RAYS_SIDE, RAYS_SIDE).build();
+        rayTracer = new SimpleRayTracer(scene);
+        for (int i = 0; i < RAYS_SIDE; i++)
+            for (int j = 0; j < RAYS_SIDE; j++)
+                rays[i * RAYS_SIDE + j] = camera.constructRay(RAYS_SIDE, RAYS_SIDE, j, i);
+    }
+
+    /**
+     * Traces all the primary rays
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(RAYS_SIDE * RAYS_SIDE)
+    public void traceRay(Blackhole blackhole) {
+        for (Ray ray : rays) blackhole.consume(rayTracer.traceRay(ray));
+    }
+}
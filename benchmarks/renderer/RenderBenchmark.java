@@ -0,0 +1,72 @@
+package renderer;
+
+import geometries.BVHBuildType;
+import lighting.PointLight;
+import org.openjdk.jmh.annotations.*;
+import primitives.*;
+import scene.Scene;
+import special.TeapotBVHBenchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of rendering a whole image of the teapot in each threading mode
+ * (see {@link Camera.Builder#setMultithreading(int)} and {@link Camera.Builder#setTiles(int, TileOrder)}).
+ * These are the measurements that used to be kept as comments next to the
+ * {@code setMultithreading} values in {@code TeapotTest}.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+    /**
+     * The rendering mode: the parameter of {@link Camera.Builder#setMultithreading(int)}, followed by
+     * the size of the rendering tiles for the modes which use tiles (the modes 0 and -1 ignore tiles)
+     */
+    @Param({"0", "-1", "-2", "-2/16", "-3", "-3/16"})
+    public String mode;
+
+    /** The camera rendering the image */
+    private Camera camera;
+
+    /**
+     * Default constructor for the benchmark state
+     */
+    public RenderBenchmark() {
+    }
+
+    /**
+     * Prepares the teapot scene and the camera
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] parts = mode.split("/");
+        int threads = Integer.parseInt(parts[0]);
+        int tileSize = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        Scene scene = TeapotBVHBenchmark.teapotScene();
+        scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(100, 0, -100)).setKq(0.000001));
+        camera = Camera.getBuilder()
+                .setResolution(200, 200)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setLocation(new Point(0, 0, -1000)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                .setVpDistance(1000).setVpSize(200, 200)
+                .enableBVH(BVHBuildType.SAH)
+                .setMultithreading(threads)
+                .setTiles(tileSize, TileOrder.MORTON)
+                .build();
+    }
+
+    /**
+     * Renders the whole image
+     * @return the camera, so the render is not optimized away
+     */
+    @Benchmark
+    public Camera renderImage() {
+        return camera.renderImage();
+    }
+}
@@ -0,0 +1,105 @@
+package special;
+
+import geometries.BVHBuildType;
+import geometries.Geometries;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import scene.Scene;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of building and traversing the BVH of the teapot mesh.
+ * The traversal casts the primary rays of a small camera looking at the teapot,
+ * so both the hitting and the missing rays are measured.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TeapotBVHBenchmark {
+    /** Resolution of the side of the grid of the traversal rays */
+    private static final int RAYS_SIDE = 32;
+
+    /** The strategy of building the tree */
+    @Param({"MEDIAN", "SAH"})
+    public BVHBuildType buildType;
+    /** Whether the tree is compiled into the linear array form */
+    @Param({"false", "true"})
+    public boolean flat;
+
+    /** The geometries of the teapot mesh */
+    private Geometries geometries;
+    /** The traversal rays */
+    private final Ray[] rays = new Ray[RAYS_SIDE * RAYS_SIDE];
+
+    /**
+     * Default constructor for the benchmark state
+     */
+    public TeapotBVHBenchmark() {
+    }
+
+    /**
+     * Creates a scene with the teapot mesh of {@link TeapotTest} (without the random bubbles and the lights)
+     * @return the scene
+     */
+    public static Scene teapotScene() {
+        Scene scene = new Scene("Teapot benchmark");
+        new TeapotTest().addTeapotToScene(scene);
+        return scene;
+    }
+
+    /**
+     * Loads the teapot mesh, builds its tree and prepares the traversal rays
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        geometries = teapotScene().geometries.setFlatBVH(flat).setBVHBuildType(buildType).setUseBVH(true);
+
+        // the camera of the teapot test: looking from (0,0,-1000) at a 200x200 view plane 1000 away
+        Point camera = new Point(0, 0, -1000);
+        for (int i = 0; i < RAYS_SIDE; i++)
+            for (int j = 0; j < RAYS_SIDE; j++) {
+                double x = (j + 0.5) * 200 / RAYS_SIDE - 100;
+                double y = 100 - (i + 0.5) * 200 / RAYS_SIDE;
+                rays[i * RAYS_SIDE + j] = new Ray(camera, new Vector(x, y, 1000).normalize());
+            }
+    }
+
+    /**
+     * Builds the tree from scratch
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void build(Blackhole blackhole) {
+        geometries.buildBVH();
+        blackhole.consume(geometries);
+    }
+
+    /**
+     * Finds the closest intersections of all the traversal rays
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(RAYS_SIDE * RAYS_SIDE)
+    public void closestHit(Blackhole blackhole) {
+        for (Ray ray : rays) blackhole.consume(geometries.calculateClosestIntersection(ray));
+    }
+
+    /**
+     * Finds all the intersections of all the traversal rays
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(RAYS_SIDE * RAYS_SIDE)
+    public void allHits(Blackhole blackhole) {
+        for (Ray ray : rays) blackhole.consume(geometries.calculateIntersections(ray));
+    }
+}
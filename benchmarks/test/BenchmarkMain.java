@@ -0,0 +1,39 @@
+package test;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the project with the GC profiler, so every benchmark reports
+ * its time per operation together with its allocation rate ({@code gc.alloc.rate.norm} -
+ * bytes allocated per operation).
+ * <p>
+ * The benchmarks are in the {@code benchmarks} source folder and need the {@code jmh} library
+ * (jmh-core and jmh-generator-annprocess) with annotation processing enabled.
+ * Usage: {@code BenchmarkMain [regexp ...]} - the regular expressions select benchmarks by name,
+ * e.g. {@code BenchmarkMain IntersectionBenchmark RenderBenchmark.renderImage}; all of them run by default.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public final class BenchmarkMain {
+    /**
+     * Private constructor - the class is a program entry point only
+     */
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Runs the selected benchmarks
+     * @param args regular expressions of the benchmarks to run
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (args.length == 0) options.include(".*Benchmark.*");
+        for (String regexp : args) options.include(regexp);
+        new Runner(options.build()).run();
+    }
+}
@@ -13,10 +13,14 @@ import primitives.*;
  * @author Tehila Shraga and Tova Tretiak
  */
 public class AABB {
+    /** Coordinates with an absolute value from this limit up are considered infinite */
+    public static final double UNBOUNDED_LIMIT = 1e100;
     /** The minimum corner of the bounding box */
     public final Point min;
     /** The maximum corner of the bounding box */
     public final Point max;
+    /** The coordinates of the corners, read by the slab test without going through the points */
+    private final double minX, minY, minZ, maxX, maxY, maxZ;
 
     /**
      * Constructs an AABB with the specified minimum and maximum points.
@@ -29,6 +33,12 @@ public class AABB {
     public AABB(Point min, Point max) {
         this.min = min;
         this.max = max;
+        minX = min.getX();
+        minY = min.getY();
+        minZ = min.getZ();
+        maxX = max.getX();
+        maxY = max.getY();
+        maxZ = max.getZ();
     }
 
     /**
@@ -40,46 +50,96 @@ public class AABB {
      * @return true if the ray intersects the AABB, false otherwise
      */
     public boolean intersects(Ray ray) {
-        // Get the origin and direction of the ray
-        Point origin = ray.getHead();
-        Vector dir = ray.getDirection();
-
-        // Initialize the tMin and tMax values for the intersection test
-        double tMin = Double.NEGATIVE_INFINITY;
-        double tMax = Double.POSITIVE_INFINITY;
-
-        // Convert the points to arrays for easier manipulation
-        double[] originCoords = {origin.getX(), origin.getY(), origin.getZ()};
-        double[] dirCoords = {dir.getX(), dir.getY(), dir.getZ()};
-        double[] minCoords = {min.getX(), min.getY(), min.getZ()};
-        double[] maxCoords = {max.getX(), max.getY(), max.getZ()};
+        return intersect(ray, Double.POSITIVE_INFINITY) != Double.POSITIVE_INFINITY;
+    }
 
-        for (int i = 0; i < 3; i++) {
-            if (Math.abs(dirCoords[i]) < 1e-9) { // Check if the direction component is nearly zero
-                if (originCoords[i] < minCoords[i] || originCoords[i] > maxCoords[i])
-                    return false;
-            } else {
-                double invDir = 1.0 / dirCoords[i]; // Inverse of the direction component
-                double t1 = (minCoords[i] - originCoords[i]) * invDir;
-                double t2 = (maxCoords[i] - originCoords[i]) * invDir;
+    /**
+     * Slab test of the box against a ray segment.
+     *
+     * @param ray  the ray
+     * @param tMax the distance beyond which the box is ignored (e.g. the closest intersection found so far)
+     * @return the distance of entering the box (0 if the head of the ray is inside it),
+     * or positive infinity if the ray misses the box or enters it beyond the given distance
+     */
+    public double intersect(Ray ray, double tMax) {
+        Point head = ray.getHead();
+        return slab(minX, minY, minZ, maxX, maxY, maxZ, head.getX(), head.getY(), head.getZ(),
+                ray.getInverseX(), ray.getInverseY(), ray.getInverseZ(), tMax);
+    }
 
-                // Ensure t1 is the smaller value and t2 is the larger value
-                if (t1 > t2) {
-                    double tmp = t1; t1 = t2; t2 = tmp;
-                }
+    /**
+     * Slab test of a box, given by its coordinates, against a ray segment, given by its origin and the inverse
+     * of its direction (see {@link Ray#getInverseX()}). It is shared by the boxes and by the node arrays of the
+     * linear hierarchies. The signs of the inverse direction choose the entering and the exiting plane
+     * of every slab without comparing the slab distances, so the test has no data dependent branches
+     * but the final ones.
+     *
+     * @param minX minimal x coordinate of the box
+     * @param minY minimal y coordinate of the box
+     * @param minZ minimal z coordinate of the box
+     * @param maxX maximal x coordinate of the box
+     * @param maxY maximal y coordinate of the box
+     * @param maxZ maximal z coordinate of the box
+     * @param ox   x coordinate of the ray origin
+     * @param oy   y coordinate of the ray origin
+     * @param oz   z coordinate of the ray origin
+     * @param ix   inverse of the x component of the ray direction
+     * @param iy   inverse of the y component of the ray direction
+     * @param iz   inverse of the z component of the ray direction
+     * @param tMax the distance beyond which the box is ignored
+     * @return the distance of entering the box (0 if the origin is inside it),
+     * or positive infinity if the ray misses the box or enters it beyond the given distance
+     */
+    static double slab(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                       double ox, double oy, double oz, double ix, double iy, double iz, double tMax) {
+        // entering and exiting distances of every slab
+        double tNear = ((ix < 0 ? maxX : minX) - ox) * ix;
+        double tFar = ((ix < 0 ? minX : maxX) - ox) * ix;
+        tNear = Math.max(tNear, ((iy < 0 ? maxY : minY) - oy) * iy);
+        tFar = Math.min(tFar, ((iy < 0 ? minY : maxY) - oy) * iy);
+        tNear = Math.max(tNear, ((iz < 0 ? maxZ : minZ) - oz) * iz);
+        tFar = Math.min(tFar, ((iz < 0 ? minZ : maxZ) - oz) * iz);
+        if (tNear < 0) tNear = 0;
+        return tNear <= tFar && tNear <= tMax ? tNear : Double.POSITIVE_INFINITY;
+    }
 
-                // Update tMin and tMax based on the intersection with this slab
-                tMin = Math.max(tMin, t1);
-                tMax = Math.min(tMax, t2);
+    /**
+     * Checks whether the box is bounded.
+     * Infinite geometries (e.g. planes and tubes) report boxes with huge coordinates,
+     * which are useless for spatial subdivision.
+     *
+     * @return true if all the coordinates of the box are within {@link #UNBOUNDED_LIMIT}
+     */
+    public boolean isBounded() {
+        return Math.abs(min.getX()) < UNBOUNDED_LIMIT && Math.abs(max.getX()) < UNBOUNDED_LIMIT
+                && Math.abs(min.getY()) < UNBOUNDED_LIMIT && Math.abs(max.getY()) < UNBOUNDED_LIMIT
+                && Math.abs(min.getZ()) < UNBOUNDED_LIMIT && Math.abs(max.getZ()) < UNBOUNDED_LIMIT;
+    }
 
-                // If tMin exceeds tMax, there is no intersection
-                if (tMin > tMax) return false;
-            }
-        }
-        // Check if the ray intersects the AABB in the positive direction
-        return tMax >= 0;
+    /**
+     * Computes the center of the box
+     *
+     * @return the point in the middle of the box
+     */
+    public Point getCenter() {
+        return new Point(0.5 * min.getX() + 0.5 * max.getX(),
+                0.5 * min.getY() + 0.5 * max.getY(),
+                0.5 * min.getZ() + 0.5 * max.getZ());
     }
 
+    /**
+     * Computes the surface area of the box.
+     * The surface area is used by the Surface Area Heuristic (SAH) as the
+     * probability measure of a random ray hitting the box.
+     *
+     * @return the surface area of the box
+     */
+    public double surfaceArea() {
+        double dx = max.getX() - min.getX();
+        double dy = max.getY() - min.getY();
+        double dz = max.getZ() - min.getZ();
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
 
     /**
      * Computes the union of two AABBs.
@@ -0,0 +1,13 @@
+package geometries;
+
+/**
+ * Strategies for building a Bounding Volume Hierarchy over the geometries
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public enum BVHBuildType {
+    /** Binary split at the median along the largest extent, one primitive per leaf */
+    MEDIAN,
+    /** Surface Area Heuristic with binned centroid partitioning and multi-primitive leaves */
+    SAH
+}
@@ -1,5 +1,6 @@
 package geometries;
 
+import primitives.Double3;
 import primitives.Ray;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -8,7 +9,8 @@ import java.util.List;
 /**
  * The BVHNode class represents a node in a Bounding Volume Hierarchy (BVH).
  * It is used for spatial acceleration of ray intersection tests.
- * Each node contains a bounding box and references to left and right child nodes.
+ * Each node contains a bounding box and references to left and right child nodes,
+ * or - for a leaf built by the {@link SAHBVHBuilder} - an array of primitives.
  * The BVH is built from a list of intersectable geometries.
  *
  * @author Tehila Shraga and Tova Tretiak
@@ -20,16 +22,47 @@ public class BVHNode extends Intersectable {
     private final Intersectable left;
     /** The right child node, which may be another BVHNode or an intersectable geometry */
     private final Intersectable right;
+    /** The primitives of a multi-primitive leaf node, or {@code null} for other nodes */
+    private final Intersectable[] primitives;
+
+    /**
+     * Constructs an inner BVHNode from already built child nodes.
+     *
+     * @param box   the bounding box enclosing both children
+     * @param left  the left child node
+     * @param right the right child node
+     */
+    BVHNode(AABB box, Intersectable left, Intersectable right) {
+        this.box = box;
+        this.left = left;
+        this.right = right;
+        this.primitives = null;
+    }
+
+    /**
+     * Constructs a leaf BVHNode holding several primitives.
+     *
+     * @param box        the bounding box enclosing all the primitives
+     * @param primitives the primitives of the leaf
+     */
+    BVHNode(AABB box, Intersectable[] primitives) {
+        this.box = box;
+        this.left = null;
+        this.right = null;
+        this.primitives = primitives;
+    }
 
     /**
      * Constructs a BVHNode from a list of intersectable geometries.
      * If the list contains one geometry, it becomes a leaf node.
      * If it contains two geometries, they become the left and right children.
      * For more than two geometries, the list is split into two halves recursively.
+     * The list is sorted in place, so callers should pass a copy of their own list.
      *
      * @param geometries the list of intersectable geometries to build the BVH from
      */
     public BVHNode(List<Intersectable> geometries) {
+        primitives = null;
         // Ensure the list is not empty
         if (geometries.size() == 1) {
             // If there's only one geometry, it becomes a leaf node
@@ -76,7 +109,7 @@ public class BVHNode extends Intersectable {
 
     /**
      * Finds the intersection points of a ray with the BVH node.
-     * This method checks if the ray intersects the bounding box of this node.
+     * This method checks if the ray intersects the bounding box of this node before the maximal distance.
      * If it does, it recursively checks the left and right child nodes for intersections.
      *
      * @param ray the ray to check for intersections
@@ -85,12 +118,26 @@ public class BVHNode extends Intersectable {
      */
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        if (!box.intersects(ray)) return null;
+        if (box.intersect(ray, maxDistance) == Double.POSITIVE_INFINITY) return null;
 
         // Check if the ray intersects the bounding box of this node
         List<Intersection> intersections = new ArrayList<>();
         double currentMaxDistance = maxDistance;
 
+        // Check intersections with all the primitives of a leaf node
+        if (primitives != null) {
+            for (Intersectable primitive : primitives) {
+                List<Intersection> hits = primitive.calculateIntersections(ray, currentMaxDistance);
+                if (hits != null) {
+                    intersections.addAll(hits);
+                    for (Intersection hit : hits) {
+                        currentMaxDistance = Math.min(currentMaxDistance, hit.point.distance(ray.getHead()));
+                    }
+                }
+            }
+            return intersections.isEmpty() ? null : intersections;
+        }
+
         // Check intersections in the left child node
         if (left != null) {
             List<Intersection> leftHits = left.calculateIntersections(ray, currentMaxDistance);
@@ -115,6 +162,110 @@ public class BVHNode extends Intersectable {
         return intersections.isEmpty() ? null : intersections;
     }
 
+    /**
+     * Finds the closest intersection of a ray with the BVH node.
+     * The children are searched only up to the closest intersection found so far,
+     * and no intermediate lists are built.
+     *
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        return box.intersect(ray, maxDistance) == Double.POSITIVE_INFINITY ? null : closest(ray, maxDistance);
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the geometries of the node, whose box the ray enters.
+     * The child the ray enters first is searched first, and the other one is skipped
+     * if the ray enters it beyond the closest intersection found in the first one.
+     *
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    private Intersection closest(Ray ray, double maxDistance) {
+        Intersection closest = null;
+        double currentMaxDistance = maxDistance;
+
+        // Check all the primitives of a leaf node
+        if (primitives != null) {
+            for (Intersectable primitive : primitives) {
+                Intersection hit = primitive.calculateClosestIntersection(ray, currentMaxDistance);
+                if (hit != null) {
+                    closest = hit;
+                    currentMaxDistance = hit.point.distance(ray.getHead());
+                }
+            }
+            return closest;
+        }
+        if (right == null) return left.calculateClosestIntersection(ray, maxDistance);
+
+        // Order the children by the distances where the ray enters them
+        double tLeft = left.getBoundingBox().intersect(ray, maxDistance);
+        double tRight = right.getBoundingBox().intersect(ray, maxDistance);
+        Intersectable near = tLeft <= tRight ? left : right;
+        Intersectable far = near == left ? right : left;
+        double tNear = Math.min(tLeft, tRight);
+        double tFar = Math.max(tLeft, tRight);
+        if (tNear == Double.POSITIVE_INFINITY) return null;
+
+        closest = search(near, ray, currentMaxDistance);
+        if (closest != null) currentMaxDistance = closest.point.distance(ray.getHead());
+        if (tFar < currentMaxDistance) {
+            Intersection hit = search(far, ray, currentMaxDistance);
+            if (hit != null) closest = hit;
+        }
+        return closest;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with a child whose box the ray enters
+     *
+     * @param child the child node or geometry
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    private static Intersection search(Intersectable child, Ray ray, double maxDistance) {
+        // the box of a child node was tested already
+        return child instanceof BVHNode node
+                ? node.closest(ray, maxDistance)
+                : child.calculateClosestIntersection(ray, maxDistance);
+    }
+
+    /**
+     * Accumulates the transparency of the geometries of the BVH node along a ray segment.
+     * The calculation stops at the first geometry that blocks the ray.
+     *
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr the transparency accumulated so far
+     * @param minK the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        if (box.intersect(ray, maxDistance) == Double.POSITIVE_INFINITY) return ktr;
+
+        // Check all the primitives of a leaf node
+        if (primitives != null) {
+            for (Intersectable primitive : primitives) {
+                ktr = primitive.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+                if (ktr.lowerThan(minK)) return Double3.ZERO;
+            }
+            return ktr;
+        }
+
+        // Check the left child node, then the right one unless the ray is already blocked
+        if (left != null) {
+            ktr = left.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+            if (ktr.lowerThan(minK)) return Double3.ZERO;
+        }
+        return right == null ? ktr : right.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+    }
+
     /**
      * Returns the axis-aligned bounding box (AABB) of this BVH node.
      * The bounding box is defined by the minimum and maximum coordinates
@@ -123,8 +274,128 @@ public class BVHNode extends Intersectable {
      * @return the bounding box of this BVH node
      */
     @Override
-    public AABB getBoundingBox() {
+    protected AABB computeBoundingBox() {
         return box;
     }
-}
 
+    /**
+     * Returns the left child of an inner node, or the single geometry of a wrapping node.
+     *
+     * @return the left child, or {@code null} for a multi-primitive leaf
+     */
+    Intersectable getLeft() {
+        return left;
+    }
+
+    /**
+     * Returns the right child of an inner node.
+     *
+     * @return the right child, or {@code null} for a leaf
+     */
+    Intersectable getRight() {
+        return right;
+    }
+
+    /**
+     * Returns the primitives of a multi-primitive leaf.
+     *
+     * @return the primitives, or {@code null} if the node is not a multi-primitive leaf
+     */
+    Intersectable[] getPrimitives() {
+        return primitives;
+    }
+
+    /**
+     * Creates a copy of the tree in which a geometry is replaced by another one, refitting the bounds
+     * of the nodes on the path to it. Only the nodes on the path are copied, the rest are shared.
+     *
+     * @param geometry    the geometry to replace
+     * @param replacement the new geometry
+     * @return the root of the new tree, or {@code null} if the geometry is not referenced by the tree
+     */
+    BVHNode replace(Intersectable geometry, Intersectable replacement) {
+        if (primitives != null) {
+            for (int i = 0; i < primitives.length; i++) {
+                if (primitives[i] != geometry) continue;
+                Intersectable[] copy = primitives.clone();
+                copy[i] = replacement;
+                AABB leafBox = copy[0].getBoundingBox();
+                for (int k = 1; k < copy.length; k++) leafBox = AABB.union(leafBox, copy[k].getBoundingBox());
+                return new BVHNode(leafBox, copy);
+            }
+            return null;
+        }
+        Intersectable newLeft = replaceChild(left, geometry, replacement);
+        Intersectable newRight = newLeft == null ? replaceChild(right, geometry, replacement) : right;
+        if (newLeft == null) {
+            if (newRight == null) return null;
+            newLeft = left;
+        }
+        AABB newBox = newRight == null
+                ? newLeft.getBoundingBox()
+                : AABB.union(newLeft.getBoundingBox(), newRight.getBoundingBox());
+        return new BVHNode(newBox, newLeft, newRight);
+    }
+
+    /**
+     * Replaces a geometry in the sub-tree of a child
+     *
+     * @param child       the child, may be {@code null}
+     * @param geometry    the geometry to replace
+     * @param replacement the new geometry
+     * @return the new child, or {@code null} if the geometry is not referenced by the sub-tree
+     */
+    private static Intersectable replaceChild(Intersectable child, Intersectable geometry, Intersectable replacement) {
+        if (child == geometry) return replacement;
+        return child instanceof BVHNode node ? node.replace(geometry, replacement) : null;
+    }
+
+    /**
+     * Collects statistics of the tree rooted at this node.
+     * A child which is not a BVHNode (a geometry referenced directly by the median builder)
+     * is counted as a leaf with a single primitive.
+     *
+     * @return the statistics of the tree
+     */
+    public BVHStats getStats() {
+        // counters: nodes, leaves, primitives, depth; costs: sum of area weighted costs
+        int[] counters = new int[4];
+        double[] cost = new double[1];
+        collectStats(this, 1, counters, cost);
+        double rootArea = box.surfaceArea();
+        double sahCost = Double.isFinite(rootArea) && rootArea > 0 ? cost[0] / rootArea : Double.POSITIVE_INFINITY;
+        return new BVHStats(counters[0], counters[1], counters[2], counters[3], sahCost);
+    }
+
+    /**
+     * Recursively accumulates the statistics of a sub-tree
+     *
+     * @param node     the root of the sub-tree
+     * @param depth    the level of the node (the root is level 1)
+     * @param counters the accumulated counters: nodes, leaves, primitives and maximal depth
+     * @param cost     the accumulated sum of the node costs weighted by their surface areas
+     */
+    private static void collectStats(Intersectable node, int depth, int[] counters, double[] cost) {
+        counters[0]++;
+        counters[3] = Math.max(counters[3], depth);
+        double area = node.getBoundingBox().surfaceArea();
+        if (!(node instanceof BVHNode bvhNode)) {
+            counters[1]++;
+            counters[2]++;
+            cost[0] += area * BVHStats.INTERSECTION_COST;
+        } else if (bvhNode.primitives != null) {
+            counters[1]++;
+            counters[2] += bvhNode.primitives.length;
+            cost[0] += area * BVHStats.INTERSECTION_COST * bvhNode.primitives.length;
+        } else if (bvhNode.right == null) {
+            // a node wrapping a single geometry
+            counters[1]++;
+            counters[2]++;
+            cost[0] += area * BVHStats.INTERSECTION_COST;
+        } else {
+            cost[0] += area * BVHStats.TRAVERSAL_COST;
+            collectStats(bvhNode.left, depth + 1, counters, cost);
+            collectStats(bvhNode.right, depth + 1, counters, cost);
+        }
+    }
+}
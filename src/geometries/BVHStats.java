@@ -0,0 +1,28 @@
+package geometries;
+
+/**
+ * Statistics of a built BVH tree, used for comparing the quality of different builders.
+ * The SAH cost is the expected cost of tracing a random ray through the tree,
+ * relative to the surface area of the root box: every inner node contributes
+ * its traversal cost and every leaf contributes the cost of intersecting its primitives.
+ *
+ * @param nodeCount      total amount of nodes (inner nodes and leaves)
+ * @param leafCount      amount of leaves
+ * @param primitiveCount amount of primitives referenced by the leaves
+ * @param maxDepth       amount of levels in the deepest branch (the root is level 1)
+ * @param sahCost        the Surface Area Heuristic cost of the tree
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public record BVHStats(int nodeCount, int leafCount, int primitiveCount, int maxDepth, double sahCost) {
+
+    /** The cost of traversing one inner node relatively to one primitive intersection */
+    public static final double TRAVERSAL_COST = 1;
+    /** The cost of intersecting one primitive */
+    public static final double INTERSECTION_COST = 1;
+
+    @Override
+    public String toString() {
+        return String.format("BVH: %d nodes (%d leaves), %d primitives, depth %d, SAH cost %.3f",
+                nodeCount, leafCount, primitiveCount, maxDepth, sahCost);
+    }
+}
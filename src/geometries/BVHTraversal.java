@@ -0,0 +1,201 @@
+package geometries;
+
+import primitives.*;
+
+/**
+ * Front-to-back traversal of a hierarchy in the linear form shared by {@link FlatBVH} and {@link TriangleMesh}:
+ * the bounds of every node (6 numbers), the index of its right child (the left child always follows
+ * its parent) or the offset of its primitives, and the amount of the primitives of a leaf.
+ * The traversal hands out the leaves the ray reaches one by one, nearer child first, skipping the nodes
+ * beyond the closest intersection found so far, so the caller intersects the primitives of the leaves
+ * in its own loop, without any visitor:
+ * <pre>
+ * BVHTraversal traversal = BVHTraversal.start(bounds, offsets, counts, depth, ray, maxDistance);
+ * try {
+ *     for (int leaf; (leaf = traversal.nextLeaf(closest)) &gt;= 0; )
+ *         ... intersect the primitives of the leaf and shrink closest ...
+ * } finally {
+ *     traversal.end();
+ * }
+ * </pre>
+ * The traversals, with their stacks, are reused by the queries of a thread. A primitive of a leaf
+ * may be a hierarchy itself, so a query started during another one gets a nested traversal of the thread.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+final class BVHTraversal {
+    /** The first traversal of every thread */
+    private static final ThreadLocal<BVHTraversal> TRAVERSALS = ThreadLocal.withInitial(BVHTraversal::new);
+
+    /** The traversal of the queries started while this one is running, created on demand */
+    private BVHTraversal nested;
+    /** Whether the traversal is running */
+    private boolean running = false;
+    /** Bounds of the nodes - 6 numbers (min x,y,z and max x,y,z) per node */
+    private double[] bounds;
+    /** Index of the right child for inner nodes, offset of the first primitive for leaves */
+    private int[] offsets;
+    /** Amount of primitives of a leaf, 0 for inner nodes */
+    private int[] counts;
+    /** The postponed farther children, grown to the deepest hierarchy traversed */
+    private int[] stack = new int[64];
+    /** Amount of the postponed children */
+    private int top;
+    /** The next node to visit, or -1 to continue with a postponed one */
+    private int node;
+    /** Coordinates of the ray origin, or of the point of a point query */
+    private double ox, oy, oz;
+    /** Inverse of the components of the ray direction */
+    private double ix, iy, iz;
+    /** The tolerance of a point query, negative for a ray query */
+    private double tolerance;
+
+    /**
+     * Private constructor - the traversals are obtained by the start methods
+     */
+    private BVHTraversal() {
+    }
+
+    /**
+     * Takes a free traversal of the current thread and sets the hierarchy to traverse
+     *
+     * @param bounds  bounds of the nodes
+     * @param offsets indices of the right children or offsets of the primitives
+     * @param counts  amounts of primitives of the leaves
+     * @param depth   amount of levels in the deepest branch
+     * @return the traversal
+     */
+    private static BVHTraversal acquire(double[] bounds, int[] offsets, int[] counts, int depth) {
+        BVHTraversal traversal = TRAVERSALS.get();
+        while (traversal.running) {
+            if (traversal.nested == null) traversal.nested = new BVHTraversal();
+            traversal = traversal.nested;
+        }
+        traversal.running = true;
+        if (traversal.stack.length < depth) traversal.stack = new int[depth];
+        traversal.bounds = bounds;
+        traversal.offsets = offsets;
+        traversal.counts = counts;
+        traversal.top = 0;
+        return traversal;
+    }
+
+    /**
+     * Starts a traversal of a hierarchy by a ray
+     *
+     * @param bounds      bounds of the nodes
+     * @param offsets     indices of the right children or offsets of the primitives
+     * @param counts      amounts of primitives of the leaves
+     * @param depth       amount of levels in the deepest branch
+     * @param ray         the ray
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the traversal, to be ended by {@link #end()}
+     */
+    static BVHTraversal start(double[] bounds, int[] offsets, int[] counts, int depth, Ray ray,
+                              double maxDistance) {
+        BVHTraversal traversal = acquire(bounds, offsets, counts, depth);
+        Point head = ray.getHead();
+        traversal.ox = head.getX();
+        traversal.oy = head.getY();
+        traversal.oz = head.getZ();
+        traversal.ix = ray.getInverseX();
+        traversal.iy = ray.getInverseY();
+        traversal.iz = ray.getInverseZ();
+        traversal.tolerance = -1;
+        traversal.node = traversal.entry(0, maxDistance) == Double.POSITIVE_INFINITY ? -1 : 0;
+        return traversal;
+    }
+
+    /**
+     * Starts a traversal of the leaves of a hierarchy whose boxes contain a point
+     *
+     * @param bounds    bounds of the nodes
+     * @param offsets   indices of the right children or offsets of the primitives
+     * @param counts    amounts of primitives of the leaves
+     * @param depth     amount of levels in the deepest branch
+     * @param point     the point
+     * @param tolerance the distance outside a box at which the point is still considered inside it
+     * @return the traversal, to be ended by {@link #end()}
+     */
+    static BVHTraversal start(double[] bounds, int[] offsets, int[] counts, int depth, Point point,
+                              double tolerance) {
+        BVHTraversal traversal = acquire(bounds, offsets, counts, depth);
+        traversal.ox = point.getX();
+        traversal.oy = point.getY();
+        traversal.oz = point.getZ();
+        traversal.tolerance = tolerance;
+        traversal.node = traversal.entry(0, 0) == Double.POSITIVE_INFINITY ? -1 : 0;
+        return traversal;
+    }
+
+    /**
+     * Ends the traversal, so the thread reuses it for its next query
+     */
+    void end() {
+        running = false;
+        bounds = null;
+        offsets = null;
+        counts = null;
+    }
+
+    /**
+     * Slab test of a node box against the ray, or the containment test of the point of a point query
+     *
+     * @param node        the index of the node
+     * @param maxDistance the distance beyond which the box is ignored
+     * @return the distance of entering the box (0 if the origin is inside it, or for a box containing the point),
+     * or positive infinity if the ray misses the box before the maximal distance (or the box does not contain
+     * the point)
+     */
+    private double entry(int node, double maxDistance) {
+        int b = 6 * node;
+        if (tolerance >= 0)
+            return ox >= bounds[b] - tolerance && ox <= bounds[b + 3] + tolerance
+                    && oy >= bounds[b + 1] - tolerance && oy <= bounds[b + 4] + tolerance
+                    && oz >= bounds[b + 2] - tolerance && oz <= bounds[b + 5] + tolerance
+                    ? 0 : Double.POSITIVE_INFINITY;
+        return AABB.slab(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5],
+                ox, oy, oz, ix, iy, iz, maxDistance);
+    }
+
+    /**
+     * Descends to the next leaf the ray reaches before the closest intersection found so far
+     *
+     * @param closest the distance of the closest intersection found so far (ignored by a point query)
+     * @return the index of the leaf node, or -1 if the traversal is completed
+     */
+    int nextLeaf(double closest) {
+        while (true) {
+            if (node < 0) {
+                // Pop the next postponed node which is still nearer than the closest intersection
+                do {
+                    if (top == 0) return -1;
+                    node = stack[--top];
+                } while (entry(node, closest) == Double.POSITIVE_INFINITY);
+            }
+            if (counts[node] > 0) {
+                int leaf = node;
+                node = -1;
+                return leaf;
+            }
+            // Inner node - descend into the nearer child and postpone the farther one
+            int left = node + 1;
+            int right = offsets[node];
+            double tLeft = entry(left, closest);
+            double tRight = entry(right, closest);
+            boolean hitLeft = tLeft != Double.POSITIVE_INFINITY;
+            boolean hitRight = tRight != Double.POSITIVE_INFINITY;
+            if (hitLeft && hitRight) {
+                if (tLeft <= tRight) {
+                    stack[top++] = right;
+                    node = left;
+                } else {
+                    stack[top++] = left;
+                    node = right;
+                }
+            } else {
+                node = hitLeft ? left : hitRight ? right : -1;
+            }
+        }
+    }
+}
@@ -101,4 +101,31 @@ public class Cylinder extends Tube {
     public List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
         return null; // The Cylinder class does not implement intersection logic
     }
+
+    /**
+     * Returns the axis-aligned bounding box (AABB) of the cylinder.
+     * Unlike the infinite tube, the cylinder is bounded by its two caps - discs of the cylinder's radius
+     * around the ends of the axis. Along each coordinate axis a cap spans the radius scaled by
+     * the sine of the angle between the cylinder's axis and the coordinate axis, so the box is tight
+     * for any orientation of the cylinder.
+     *
+     * @return the axis-aligned bounding box (AABB) of the cylinder
+     */
+    @Override
+    protected AABB computeBoundingBox() {
+        Point bottom = axis.getHead();
+        Point top = axis.getPoint(height);
+        Vector dir = axis.getDirection();
+        // the extent of a cap along each coordinate axis
+        double ex = radius * Math.sqrt(Math.max(0, 1 - dir.getX() * dir.getX()));
+        double ey = radius * Math.sqrt(Math.max(0, 1 - dir.getY() * dir.getY()));
+        double ez = radius * Math.sqrt(Math.max(0, 1 - dir.getZ() * dir.getZ()));
+        return new AABB(
+                new Point(Math.min(bottom.getX(), top.getX()) - ex,
+                        Math.min(bottom.getY(), top.getY()) - ey,
+                        Math.min(bottom.getZ(), top.getZ()) - ez),
+                new Point(Math.max(bottom.getX(), top.getX()) + ex,
+                        Math.max(bottom.getY(), top.getY()) + ey,
+                        Math.max(bottom.getZ(), top.getZ()) + ez));
+    }
 }
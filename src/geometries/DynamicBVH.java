@@ -0,0 +1,575 @@
+package geometries;
+
+import primitives.Double3;
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The DynamicBVH class is a BVH tree which is updated in place when its geometries change,
+ * for scenes rendered as a sequence of frames in which only some of the geometries move.
+ * Every leaf holds a single geometry and every node knows its parent, so after a geometry changes
+ * only the bounds of its leaf and of the ancestors of the leaf are refitted (a geometry which jumped
+ * away from its place is removed and inserted again instead). On the way up, every ancestor
+ * tries the tree rotations which swap one of its children with a grandchild, keeping the rotation which
+ * reduces the surface area of the changed child the most. A subtree whose children came to overlap
+ * much more than when it was built is rebuilt by the {@link SAHBVHBuilder}. New geometries are inserted
+ * next to the node where they enlarge the tree the least. So the cost of an update depends on the amount
+ * of the changed geometries and the depth of the tree, and not on the size of the scene.
+ * The tree must not be updated while it is being traversed.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public class DynamicBVH extends Intersectable {
+    /**
+     * Ratio of the overlap of the children of a node (the sum of their surface areas relative to
+     * the surface area of the node) to the overlap when the node was built, from which the subtree is rebuilt
+     */
+    private static final double REBUILD_RATIO = 1.5;
+
+    /**
+     * A node of the tree - a leaf of a single geometry, or an inner node of two children
+     */
+    private static final class Node {
+        /** The bounds of the node */
+        AABB box;
+        /** The parent of the node, {@code null} for the root */
+        Node parent;
+        /** The left child of an inner node, {@code null} for a leaf */
+        Node left;
+        /** The right child of an inner node, {@code null} for a leaf */
+        Node right;
+        /** The geometry of a leaf, {@code null} for an inner node */
+        Intersectable geometry;
+        /** The overlap of the children of an inner node when the node was built */
+        double builtOverlap;
+
+        /**
+         * Constructs a leaf
+         *
+         * @param geometry the geometry of the leaf
+         */
+        Node(Intersectable geometry) {
+            this.geometry = geometry;
+            box = geometry.getBoundingBox();
+        }
+
+        /**
+         * Constructs an inner node over two children
+         *
+         * @param left  the left child
+         * @param right the right child
+         */
+        Node(Node left, Node right) {
+            setChildren(left, right);
+            builtOverlap = overlap();
+        }
+
+        /**
+         * Checks whether the node is a leaf
+         *
+         * @return true for a leaf
+         */
+        boolean isLeaf() {
+            return geometry != null;
+        }
+
+        /**
+         * Sets the children of an inner node and refits its bounds
+         *
+         * @param left  the left child
+         * @param right the right child
+         */
+        void setChildren(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+            left.parent = this;
+            right.parent = this;
+            box = AABB.union(left.box, right.box);
+        }
+
+        /**
+         * Computes the overlap of the children of an inner node:
+         * the sum of their surface areas relative to the surface area of the node
+         *
+         * @return the overlap, 1 if it cannot be computed (flat or unbounded boxes)
+         */
+        double overlap() {
+            double area = box.surfaceArea();
+            double overlap = (left.box.surfaceArea() + right.box.surfaceArea()) / area;
+            return Double.isFinite(overlap) && area > 0 ? overlap : 1;
+        }
+    }
+
+    /** The root of the tree, {@code null} if the tree is empty */
+    private Node root;
+    /** The leaves of the geometries */
+    private final Map<Intersectable, Node> leaves = new IdentityHashMap<>();
+
+    /**
+     * Builds a tree over the given geometries by the Surface Area Heuristic
+     *
+     * @param geometries the geometries (the list is not modified)
+     */
+    public DynamicBVH(List<Intersectable> geometries) {
+        if (!geometries.isEmpty())
+            root = build(geometries);
+    }
+
+    /**
+     * Builds a subtree over the given geometries
+     *
+     * @param geometries the geometries (not empty)
+     * @return the root of the subtree
+     */
+    private Node build(List<Intersectable> geometries) {
+        Node node = convert(new SAHBVHBuilder(geometries, 1).build());
+        node.parent = null;
+        return node;
+    }
+
+    /**
+     * Converts a subtree built by the SAH builder into dynamic nodes
+     *
+     * @param intersectable the root of the built subtree
+     * @return the root of the dynamic subtree
+     */
+    private Node convert(Intersectable intersectable) {
+        if (!(intersectable instanceof BVHNode node)) return leaf(intersectable);
+        if (node.getPrimitives() != null) return convert(node.getPrimitives(), 0, node.getPrimitives().length);
+        if (node.getRight() == null) return convert(node.getLeft());
+        return new Node(convert(node.getLeft()), convert(node.getRight()));
+    }
+
+    /**
+     * Converts the geometries of a multi-primitive leaf into a balanced subtree
+     *
+     * @param geometries the geometries of the leaf
+     * @param start      first index of the range (inclusive)
+     * @param end        last index of the range (exclusive)
+     * @return the root of the subtree
+     */
+    private Node convert(Intersectable[] geometries, int start, int end) {
+        if (end - start == 1) return leaf(geometries[start]);
+        int mid = (start + end) / 2;
+        return new Node(convert(geometries, start, mid), convert(geometries, mid, end));
+    }
+
+    /**
+     * Creates the leaf of a geometry and registers it
+     *
+     * @param geometry the geometry
+     * @return the leaf
+     */
+    private Node leaf(Intersectable geometry) {
+        Node leaf = new Node(geometry);
+        leaves.put(geometry, leaf);
+        return leaf;
+    }
+
+    /**
+     * Inserts a geometry into the tree, next to the node where it enlarges the tree the least
+     *
+     * @param geometry the geometry
+     */
+    public void insert(Intersectable geometry) {
+        Node degraded = insert(leaf(geometry));
+        if (degraded != null) rebuild(degraded);
+        invalidateBounds();
+    }
+
+    /**
+     * Inserts a leaf into the tree, next to the node where it enlarges the tree the least
+     *
+     * @param leaf the leaf
+     * @return the highest ancestor of the leaf whose quality dropped, or {@code null} if there is none
+     */
+    private Node insert(Node leaf) {
+        if (root == null) {
+            root = leaf;
+            leaf.parent = null;
+            return null;
+        }
+        // descend while pairing the geometry with a child is cheaper than pairing it with the current node
+        Node sibling = root;
+        while (!sibling.isLeaf()) {
+            double area = sibling.box.surfaceArea();
+            double combined = AABB.union(sibling.box, leaf.box).surfaceArea();
+            double cost = 2 * combined;
+            double inherited = 2 * (combined - area);
+            double leftCost = descentCost(sibling.left, leaf) + inherited;
+            double rightCost = descentCost(sibling.right, leaf) + inherited;
+            if (!(cost > leftCost || cost > rightCost)) break;
+            sibling = leftCost <= rightCost ? sibling.left : sibling.right;
+        }
+        Node parent = sibling.parent;
+        Node pair = new Node(sibling, leaf);
+        pair.parent = parent;
+        if (parent == null) {
+            root = pair;
+            return null;
+        }
+        if (parent.left == sibling) parent.left = pair;
+        else parent.right = pair;
+        return refit(parent);
+    }
+
+    /**
+     * Removes a leaf from the tree - its sibling takes the place of their parent
+     *
+     * @param leaf the leaf
+     */
+    private void remove(Node leaf) {
+        Node parent = leaf.parent;
+        if (parent == null) {
+            root = null;
+            return;
+        }
+        Node sibling = parent.left == leaf ? parent.right : parent.left;
+        Node grandparent = parent.parent;
+        sibling.parent = grandparent;
+        leaf.parent = null;
+        if (grandparent == null) {
+            root = sibling;
+            return;
+        }
+        if (grandparent.left == parent) grandparent.left = sibling;
+        else grandparent.right = sibling;
+        for (Node node = grandparent; node != null; node = node.parent)
+            node.box = AABB.union(node.left.box, node.right.box);
+    }
+
+    /**
+     * Computes the cost of descending into a child while inserting a leaf
+     *
+     * @param child the child
+     * @param leaf  the inserted leaf
+     * @return the increase of the surface area of the tree caused by inserting the leaf under the child
+     */
+    private static double descentCost(Node child, Node leaf) {
+        double combined = AABB.union(child.box, leaf.box).surfaceArea();
+        return child.isLeaf() ? combined : combined - child.box.surfaceArea();
+    }
+
+    /**
+     * Replaces the geometry of a leaf by another one (typically the same geometry moved) and refits the tree
+     *
+     * @param geometry    the geometry to replace
+     * @param replacement the new geometry
+     * @return true if the geometry was replaced, false if it is not in the tree
+     */
+    public boolean replace(Intersectable geometry, Intersectable replacement) {
+        Node leaf = leaves.remove(geometry);
+        if (leaf == null) return false;
+        leaf.geometry = replacement;
+        leaves.put(replacement, leaf);
+        update(List.of(replacement));
+        return true;
+    }
+
+    /**
+     * Refits the tree after the bounds of some of its geometries changed.
+     * The leaves of the geometries which moved a little (their new bounds overlap the old ones)
+     * and their ancestors are refitted and rotated, the leaves of the geometries which jumped away
+     * are removed and inserted again at their new places.
+     * The subtrees on the paths of the leaves whose quality dropped are rebuilt.
+     *
+     * @param geometries the changed geometries
+     * @throws IllegalArgumentException if a geometry is not in the tree
+     */
+    public void update(List<Intersectable> geometries) {
+        List<Node> degraded = new ArrayList<>();
+        for (Intersectable geometry : geometries) {
+            Node leaf = leaves.get(geometry);
+            if (leaf == null)
+                throw new IllegalArgumentException("The geometry is not in the tree");
+            AABB box = geometry.getBoundingBox();
+            Node worst;
+            if (overlaps(box, leaf.box)) {
+                leaf.box = box;
+                worst = refit(leaf.parent);
+            } else {
+                remove(leaf);
+                leaf.box = box;
+                worst = insert(leaf);
+            }
+            if (worst != null) degraded.add(worst);
+        }
+        for (Node node : degraded)
+            if (isAttached(node)) rebuild(node);
+        invalidateBounds();
+    }
+
+    /**
+     * Checks whether two boxes overlap
+     *
+     * @param a the first box
+     * @param b the second box
+     * @return true if the boxes have a common point
+     */
+    private static boolean overlaps(AABB a, AABB b) {
+        return a.min.getX() <= b.max.getX() && b.min.getX() <= a.max.getX()
+                && a.min.getY() <= b.max.getY() && b.min.getY() <= a.max.getY()
+                && a.min.getZ() <= b.max.getZ() && b.min.getZ() <= a.max.getZ();
+    }
+
+    /**
+     * Refits and rotates the ancestors of a changed node, from the given one up to the root
+     *
+     * @param node the first ancestor, may be {@code null}
+     * @return the highest ancestor whose quality dropped, or {@code null} if there is none
+     */
+    private Node refit(Node node) {
+        Node degraded = null;
+        for (; node != null; node = node.parent) {
+            node.box = AABB.union(node.left.box, node.right.box);
+            rotate(node);
+            if (node.overlap() > REBUILD_RATIO * node.builtOverlap) degraded = node;
+        }
+        return degraded;
+    }
+
+    /**
+     * Applies the best of the rotations swapping a child of a node with a grandchild,
+     * if it reduces the surface area of the child whose bounds change
+     *
+     * @param node the inner node
+     */
+    private void rotate(Node node) {
+        Node left = node.left, right = node.right;
+        double bestGain = 0;
+        Node child = null, grandchild = null;
+        // swap the left child with a child of the right one, which then keeps the other grandchild only
+        if (!right.isLeaf()) {
+            double area = right.box.surfaceArea();
+            double gain = area - AABB.union(left.box, right.right.box).surfaceArea();
+            if (gain > bestGain) { bestGain = gain; child = left; grandchild = right.left; }
+            gain = area - AABB.union(left.box, right.left.box).surfaceArea();
+            if (gain > bestGain) { bestGain = gain; child = left; grandchild = right.right; }
+        }
+        if (!left.isLeaf()) {
+            double area = left.box.surfaceArea();
+            double gain = area - AABB.union(right.box, left.right.box).surfaceArea();
+            if (gain > bestGain) { bestGain = gain; child = right; grandchild = left.left; }
+            gain = area - AABB.union(right.box, left.left.box).surfaceArea();
+            if (gain > bestGain) { child = right; grandchild = left.right; }
+        }
+        if (child == null) return;
+        Node uncle = grandchild.parent;
+        if (uncle.left == grandchild) uncle.setChildren(child, uncle.right);
+        else uncle.setChildren(uncle.left, child);
+        if (child == left) node.setChildren(grandchild, uncle);
+        else node.setChildren(uncle, grandchild);
+    }
+
+    /**
+     * Checks whether a node is still in the tree (a rebuild of an ancestor may have detached it)
+     *
+     * @param node the node
+     * @return true if the root is an ancestor of the node
+     */
+    private boolean isAttached(Node node) {
+        while (node.parent != null) {
+            Node parent = node.parent;
+            if (parent.left != node && parent.right != node) return false;
+            node = parent;
+        }
+        return node == root;
+    }
+
+    /**
+     * Rebuilds a subtree by the Surface Area Heuristic and refits its ancestors
+     *
+     * @param node the root of the subtree
+     */
+    private void rebuild(Node node) {
+        List<Intersectable> geometries = new ArrayList<>();
+        collect(node, geometries);
+        Node rebuilt = build(geometries);
+        Node parent = node.parent;
+        rebuilt.parent = parent;
+        if (parent == null) {
+            root = rebuilt;
+            return;
+        }
+        if (parent.left == node) parent.left = rebuilt;
+        else parent.right = rebuilt;
+        node.parent = null;
+        for (; parent != null; parent = parent.parent)
+            parent.box = AABB.union(parent.left.box, parent.right.box);
+    }
+
+    /**
+     * Collects the geometries of a subtree
+     *
+     * @param node   the root of the subtree
+     * @param target the list to add the geometries to
+     */
+    private static void collect(Node node, List<Intersectable> target) {
+        if (node.isLeaf()) target.add(node.geometry);
+        else {
+            collect(node.left, target);
+            collect(node.right, target);
+        }
+    }
+
+    /**
+     * Finds the intersection points of a ray with the geometries of the tree
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return a list of Intersection objects, or {@code null} if there are no intersections
+     */
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        if (root == null) return null;
+        List<Intersection> intersections = new ArrayList<>();
+        collectIntersections(root, ray, maxDistance, intersections);
+        return intersections.isEmpty() ? null : intersections;
+    }
+
+    /**
+     * Collects the intersections of a ray with the geometries of a subtree,
+     * searching every subtree up to the closest intersection found before it, as {@link BVHNode} does
+     *
+     * @param node          the root of the subtree
+     * @param ray           the ray
+     * @param maxDistance   the maximum distance
+     * @param intersections the list to add the intersections to
+     * @return the maximum distance for the following subtrees
+     */
+    private static double collectIntersections(Node node, Ray ray, double maxDistance, List<Intersection> intersections) {
+        if (node.box.intersect(ray, maxDistance) == Double.POSITIVE_INFINITY) return maxDistance;
+        if (node.isLeaf()) {
+            List<Intersection> hits = node.geometry.calculateIntersections(ray, maxDistance);
+            if (hits == null) return maxDistance;
+            intersections.addAll(hits);
+            for (Intersection hit : hits)
+                maxDistance = Math.min(maxDistance, hit.point.distance(ray.getHead()));
+            return maxDistance;
+        }
+        maxDistance = collectIntersections(node.left, ray, maxDistance, intersections);
+        return collectIntersections(node.right, ray, maxDistance, intersections);
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the geometries of the tree
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        return root == null || root.box.intersect(ray, maxDistance) == Double.POSITIVE_INFINITY
+                ? null : closest(root, ray, maxDistance);
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the geometries of a subtree whose box the ray enters,
+     * searching the child the ray enters first before the other one, as {@link BVHNode} does
+     *
+     * @param node        the root of the subtree
+     * @param ray         the ray
+     * @param maxDistance the maximum distance
+     * @return the closest intersection, or {@code null} if there is none
+     */
+    private static Intersection closest(Node node, Ray ray, double maxDistance) {
+        if (node.isLeaf()) return node.geometry.calculateClosestIntersection(ray, maxDistance);
+        double tLeft = node.left.box.intersect(ray, maxDistance);
+        double tRight = node.right.box.intersect(ray, maxDistance);
+        Node near = tLeft <= tRight ? node.left : node.right;
+        Node far = near == node.left ? node.right : node.left;
+        double tFar = Math.max(tLeft, tRight);
+        if (Math.min(tLeft, tRight) == Double.POSITIVE_INFINITY) return null;
+        Intersection closest = closest(near, ray, maxDistance);
+        if (closest != null) maxDistance = closest.point.distance(ray.getHead());
+        if (!(tFar < maxDistance)) return closest;
+        Intersection hit = closest(far, ray, maxDistance);
+        return hit != null ? hit : closest;
+    }
+
+    /**
+     * Accumulates the transparency of the geometries of the tree along a ray segment.
+     * The calculation stops at the first geometry that blocks the ray.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr         the transparency accumulated so far
+     * @param minK        the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        return root == null ? ktr : transparency(root, ray, maxDistance, ktr, minK);
+    }
+
+    /**
+     * Accumulates the transparency of the geometries of a subtree along a ray segment
+     *
+     * @param node        the root of the subtree
+     * @param ray         the ray
+     * @param maxDistance the maximum distance
+     * @param ktr         the transparency accumulated so far
+     * @param minK        the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    private static Double3 transparency(Node node, Ray ray, double maxDistance, Double3 ktr, double minK) {
+        if (node.box.intersect(ray, maxDistance) == Double.POSITIVE_INFINITY) return ktr;
+        if (node.isLeaf()) return node.geometry.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+        ktr = transparency(node.left, ray, maxDistance, ktr, minK);
+        if (ktr.lowerThan(minK)) return Double3.ZERO;
+        return transparency(node.right, ray, maxDistance, ktr, minK);
+    }
+
+    /**
+     * Returns the bounding box of the whole tree.
+     *
+     * @return the bounding box of the root, or {@code null} if the tree is empty
+     */
+    @Override
+    protected AABB computeBoundingBox() {
+        return root == null ? null : root.box;
+    }
+
+    /**
+     * Collects statistics of the tree, in the same way as {@link BVHNode#getStats()}.
+     *
+     * @return the statistics of the tree, or {@code null} if the tree is empty
+     */
+    public BVHStats getStats() {
+        if (root == null) return null;
+        // counters: nodes, leaves, depth; costs: sum of area weighted costs
+        int[] counters = new int[3];
+        double[] cost = new double[1];
+        collectStats(root, 1, counters, cost);
+        double rootArea = root.box.surfaceArea();
+        double sahCost = Double.isFinite(rootArea) && rootArea > 0 ? cost[0] / rootArea : Double.POSITIVE_INFINITY;
+        return new BVHStats(counters[0], counters[1], counters[1], counters[2], sahCost);
+    }
+
+    /**
+     * Recursively accumulates the statistics of a subtree
+     *
+     * @param node     the root of the subtree
+     * @param depth    the level of the node (the root is level 1)
+     * @param counters the accumulated counters: nodes, leaves and maximal depth
+     * @param cost     the accumulated sum of the node costs weighted by their surface areas
+     */
+    private static void collectStats(Node node, int depth, int[] counters, double[] cost) {
+        counters[0]++;
+        counters[2] = Math.max(counters[2], depth);
+        double area = node.box.surfaceArea();
+        if (node.isLeaf()) {
+            counters[1]++;
+            cost[0] += area * BVHStats.INTERSECTION_COST;
+        } else {
+            cost[0] += area * BVHStats.TRAVERSAL_COST;
+            collectStats(node.left, depth + 1, counters, cost);
+            collectStats(node.right, depth + 1, counters, cost);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The FlatBVH class is a compiled, linear form of a BVH tree.
+ * The nodes are stored in depth-first order in parallel primitive arrays:
+ * the bounds of every node, the index of its right child (the left child always follows its parent)
+ * or the offset of its primitives, and the amount of the primitives of a leaf.
+ * The traversal (see {@link BVHTraversal}) is iterative with an explicit stack of node indices,
+ * visits the nearer child first and skips nodes beyond the closest intersection found so far,
+ * without allocating anything per query.
+ * It is a drop-in replacement of the {@link BVHNode} tree in {@link Geometries}.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public class FlatBVH extends Intersectable {
+    /** Bounds of the nodes - 6 numbers (min x,y,z and max x,y,z) per node */
+    final double[] bounds;
+    /** Index of the right child for inner nodes, offset of the first primitive for leaves */
+    final int[] offsets;
+    /** Amount of primitives of a leaf, 0 for inner nodes */
+    final int[] counts;
+    /** The primitives in the order of the leaves referencing them */
+    final Intersectable[] primitives;
+    /** Amount of levels in the deepest branch, which bounds the traversal stack */
+    final int depth;
+    /** The bounding box of the whole hierarchy */
+    private final AABB box;
+
+    /**
+     * Compiles a BVH tree into the linear form
+     *
+     * @param root the root node of the tree
+     */
+    public FlatBVH(BVHNode root) {
+        Compiler compiler = new Compiler();
+        compiler.compile(root, 1);
+        int size = compiler.size;
+        bounds = Arrays.copyOf(compiler.bounds, 6 * size);
+        offsets = Arrays.copyOf(compiler.offsets, size);
+        counts = Arrays.copyOf(compiler.counts, size);
+        primitives = compiler.primitives.toArray(new Intersectable[0]);
+        depth = compiler.depth;
+        box = root.getBoundingBox();
+    }
+
+    /**
+     * Restores a compiled hierarchy from its arrays (e.g. loaded from a scene cache), without any building
+     *
+     * @param bounds     bounds of the nodes
+     * @param offsets    indices of the right children or offsets of the primitives
+     * @param counts     amounts of primitives of the leaves
+     * @param primitives the primitives in the order of the leaves
+     * @param depth      amount of levels in the deepest branch
+     */
+    FlatBVH(double[] bounds, int[] offsets, int[] counts, Intersectable[] primitives, int depth) {
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.counts = counts;
+        this.primitives = primitives;
+        this.depth = depth;
+        box = new AABB(new Point(bounds[0], bounds[1], bounds[2]), new Point(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Helper accumulating the arrays while walking the pointer tree in depth-first order
+     */
+    private static class Compiler {
+        /** Bounds of the compiled nodes */
+        double[] bounds = new double[6 * 64];
+        /** Offsets of the compiled nodes */
+        int[] offsets = new int[64];
+        /** Primitive counts of the compiled nodes */
+        int[] counts = new int[64];
+        /** The primitives in the order of the leaves */
+        final List<Intersectable> primitives = new ArrayList<>();
+        /** Amount of compiled nodes */
+        int size = 0;
+        /** Maximal depth reached */
+        int depth = 0;
+
+        /**
+         * Compiles a sub-tree
+         *
+         * @param node  the root of the sub-tree - a BVHNode or a geometry referenced directly by its parent
+         * @param level the level of the node
+         */
+        void compile(Intersectable node, int level) {
+            depth = Math.max(depth, level);
+            int index = allocate(node.getBoundingBox());
+            if (node instanceof BVHNode bvhNode && bvhNode.getPrimitives() == null) {
+                if (bvhNode.getRight() == null) {
+                    // a node wrapping a single geometry is compiled as a leaf of that geometry
+                    offsets[index] = primitives.size();
+                    counts[index] = 1;
+                    primitives.add(bvhNode.getLeft());
+                    return;
+                }
+                compile(bvhNode.getLeft(), level + 1);
+                offsets[index] = size;
+                compile(bvhNode.getRight(), level + 1);
+            } else {
+                offsets[index] = primitives.size();
+                if (node instanceof BVHNode leaf) {
+                    counts[index] = leaf.getPrimitives().length;
+                    primitives.addAll(List.of(leaf.getPrimitives()));
+                } else {
+                    counts[index] = 1;
+                    primitives.add(node);
+                }
+            }
+        }
+
+        /**
+         * Allocates the next node and stores its bounds
+         *
+         * @param box the bounds of the node
+         * @return the index of the node
+         */
+        private int allocate(AABB box) {
+            if (size == counts.length) {
+                bounds = Arrays.copyOf(bounds, 12 * size);
+                offsets = Arrays.copyOf(offsets, 2 * size);
+                counts = Arrays.copyOf(counts, 2 * size);
+            }
+            int b = 6 * size;
+            bounds[b] = box.min.getX();
+            bounds[b + 1] = box.min.getY();
+            bounds[b + 2] = box.min.getZ();
+            bounds[b + 3] = box.max.getX();
+            bounds[b + 4] = box.max.getY();
+            bounds[b + 5] = box.max.getZ();
+            return size++;
+        }
+    }
+
+    /**
+     * Finds the intersections of a ray with the hierarchy.
+     * Like the pointer tree, the search distance shrinks to the closest intersection found so far,
+     * so farther intersections may be omitted.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return a list of Intersection objects, or {@code null} if there are no intersections
+     */
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Point head = ray.getHead();
+        List<Intersection> intersections = new ArrayList<>();
+        double closest = maxDistance;
+        BVHTraversal traversal = BVHTraversal.start(bounds, offsets, counts, depth, ray, maxDistance);
+        try {
+            for (int leaf; (leaf = traversal.nextLeaf(closest)) >= 0; )
+                for (int i = offsets[leaf]; i < offsets[leaf] + counts[leaf]; i++) {
+                    List<Intersection> hits = primitives[i].calculateIntersections(ray, closest);
+                    if (hits == null) continue;
+                    intersections.addAll(hits);
+                    for (Intersection hit : hits)
+                        closest = Math.min(closest, hit.point.distance(head));
+                }
+        } finally {
+            traversal.end();
+        }
+        return intersections.isEmpty() ? null : intersections;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the hierarchy without building any lists.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Point head = ray.getHead();
+        Intersection closestHit = null;
+        double closest = maxDistance;
+        BVHTraversal traversal = BVHTraversal.start(bounds, offsets, counts, depth, ray, maxDistance);
+        try {
+            for (int leaf; (leaf = traversal.nextLeaf(closest)) >= 0; )
+                for (int i = offsets[leaf]; i < offsets[leaf] + counts[leaf]; i++) {
+                    Intersection hit = primitives[i].calculateClosestIntersection(ray, closest);
+                    if (hit == null) continue;
+                    closestHit = hit;
+                    closest = hit.point.distance(head);
+                }
+        } finally {
+            traversal.end();
+        }
+        return closestHit;
+    }
+
+    /**
+     * Accumulates the transparency of the primitives of the hierarchy along a ray segment.
+     * Every primitive is tested once, and the traversal stops at the first primitive that blocks the ray.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr         the transparency accumulated so far
+     * @param minK        the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        BVHTraversal traversal = BVHTraversal.start(bounds, offsets, counts, depth, ray, maxDistance);
+        try {
+            for (int leaf; (leaf = traversal.nextLeaf(maxDistance)) >= 0; )
+                for (int i = offsets[leaf]; i < offsets[leaf] + counts[leaf]; i++) {
+                    ktr = primitives[i].calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+                    if (ktr.lowerThan(minK)) return Double3.ZERO;
+                }
+        } finally {
+            traversal.end();
+        }
+        return ktr;
+    }
+
+    /**
+     * Creates a copy of the hierarchy in which a geometry is replaced by another one, refitting the bounds
+     * of the leaf referencing it and of the ancestors of the leaf. The topology arrays are shared with the copy.
+     *
+     * @param geometry    the geometry to replace
+     * @param replacement the new geometry
+     * @return the new hierarchy, or {@code null} if the geometry is not referenced by the hierarchy
+     */
+    FlatBVH replace(Intersectable geometry, Intersectable replacement) {
+        int slot = 0;
+        while (slot < primitives.length && primitives[slot] != geometry) slot++;
+        if (slot == primitives.length) return null;
+        Intersectable[] newPrimitives = primitives.clone();
+        newPrimitives[slot] = replacement;
+        // the parents of the nodes - the left child follows its parent, the right child is at the parent's offset
+        int size = offsets.length;
+        int[] parents = new int[size];
+        int leaf = -1;
+        for (int node = 0; node < size; node++) {
+            if (counts[node] == 0) {
+                parents[node + 1] = node;
+                parents[offsets[node]] = node;
+            } else if (slot >= offsets[node] && slot < offsets[node] + counts[node]) {
+                leaf = node;
+            }
+        }
+        double[] newBounds = bounds.clone();
+        AABB leafBox = newPrimitives[offsets[leaf]].getBoundingBox();
+        for (int i = offsets[leaf] + 1; i < offsets[leaf] + counts[leaf]; i++)
+            leafBox = AABB.union(leafBox, newPrimitives[i].getBoundingBox());
+        int b = 6 * leaf;
+        newBounds[b] = leafBox.min.getX();
+        newBounds[b + 1] = leafBox.min.getY();
+        newBounds[b + 2] = leafBox.min.getZ();
+        newBounds[b + 3] = leafBox.max.getX();
+        newBounds[b + 4] = leafBox.max.getY();
+        newBounds[b + 5] = leafBox.max.getZ();
+        for (int node = leaf; node != 0; ) {
+            node = parents[node];
+            int p = 6 * node, l = 6 * (node + 1), r = 6 * offsets[node];
+            for (int k = 0; k < 3; k++) {
+                newBounds[p + k] = Math.min(newBounds[l + k], newBounds[r + k]);
+                newBounds[p + 3 + k] = Math.max(newBounds[l + 3 + k], newBounds[r + 3 + k]);
+            }
+        }
+        return new FlatBVH(newBounds, offsets, counts, newPrimitives, depth);
+    }
+
+    /**
+     * Returns the bounding box of the whole hierarchy.
+     *
+     * @return the bounding box of the root node
+     */
+    @Override
+    protected AABB computeBoundingBox() {
+        return box;
+    }
+
+    /**
+     * Collects statistics of the compiled hierarchy, in the same way as {@link BVHNode#getStats()}.
+     *
+     * @return the statistics of the hierarchy
+     */
+    public BVHStats getStats() {
+        int leaves = 0;
+        double cost = 0;
+        for (int node = 0; node < counts.length; node++) {
+            double area = SAHBVHBuilder.area(bounds, 6 * node);
+            if (counts[node] > 0) {
+                leaves++;
+                cost += area * BVHStats.INTERSECTION_COST * counts[node];
+            } else {
+                cost += area * BVHStats.TRAVERSAL_COST;
+            }
+        }
+        double rootArea = SAHBVHBuilder.area(bounds, 0);
+        double sahCost = Double.isFinite(rootArea) && rootArea > 0 ? cost / rootArea : Double.POSITIVE_INFINITY;
+        return new BVHStats(counts.length, leaves, primitives.length, depth, sahCost);
+    }
+}
@@ -1,8 +1,11 @@
 package geometries;
 
 import primitives.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 
 /**
  * The Geometries class represents a collection of geometric shapes.
@@ -10,17 +13,62 @@ import java.util.List;
  *This class uses the BVH (Bounding Volume Hierarchy) design pattern
  * to optimize ray intersection calculations.
  * This class uses the design pattern of the Composite Pattern
+ * <p>
+ * The BVH is built lazily: adding geometries or changing the BVH settings only marks the tree as stale,
+ * and it is rebuilt once, on the first query after the changes (or by an explicit {@link #buildBVH()}).
+ * So adding any number of geometries one at a time costs a single build. The lazy build is thread-safe,
+ * so concurrent rendering threads build the tree once. A moved geometry may be swapped in by
+ * {@link #replace(Intersectable, Intersectable)}, which refits the bounds of the tree instead of rebuilding it.
+ * With {@link #setDynamicBVH(boolean)} the tree is a {@link DynamicBVH}, which is updated in place
+ * instead: added geometries are inserted into it, and after geometries change (e.g. between the frames
+ * of an animation) {@link #markDirty(Intersectable...)} refits the tree around them only.
+ * A tree built by the SAH strategy over the primitives of nested collections remembers the modification
+ * counts of the nested collections, and is rebuilt on the next query after any of them changes.
+ * The geometries themselves must not be changed while the collection is being rendered.
  *
  * @author Tehila Shraga and Tova Tretiak
  */
 public class Geometries extends Intersectable {
 
+    /** An empty array of geometries */
+    private static final Intersectable[] NO_GEOMETRIES = new Intersectable[0];
+    /** An empty array of flattened nested collections */
+    private static final Flattened[] NO_FLATTENED = new Flattened[0];
     /** A list of intersectable geometries */
     private final List<Intersectable> geometries = new LinkedList();
     /** The acceleration structure for ray intersection, if BVH is used */
-    private Intersectable accelerationStructure = null;
+    volatile Intersectable accelerationStructure = null;
+    /** Whether the geometries or the BVH settings changed since the acceleration structure was built */
+    private volatile boolean bvhStale = false;
+    /**
+     * The unbounded geometries (planes, tubes...), kept out of the acceleration structure and tested
+     * separately, so their huge boxes do not enclose the whole tree
+     */
+    private volatile Intersectable[] unbounded = NO_GEOMETRIES;
     /** Whether to use BVH for acceleration */
-    private boolean useBVH;
+    boolean useBVH;
+    /** The strategy used for building the BVH */
+    BVHBuildType bvhBuildType = BVHBuildType.MEDIAN;
+    /** Whether the built BVH tree is compiled into the linear array form */
+    boolean flatBVH = false;
+    /** Whether the BVH is a dynamic tree updated in place (instead of the tree of the build strategy) */
+    boolean dynamicBVH = false;
+    /** The time the last build of the acceleration structure took, in milliseconds */
+    private volatile double bvhBuildTime = 0;
+    /** The amount of the changes of the geometries of the collection - additions, replacements and marks */
+    private volatile int modifications = 0;
+    /** The nested collections whose primitives the acceleration structure is built over */
+    private volatile Flattened[] flattened = NO_FLATTENED;
+
+    /**
+     * A nested collection flattened into the acceleration structure, with its modification count
+     * at the time of the build
+     *
+     * @param collection    the nested collection
+     * @param modifications the modification count of the collection when the structure was built
+     */
+    private record Flattened(Geometries collection, int modifications) {
+    }
 
     /**
      * Default constructor without BVH.
@@ -35,6 +83,7 @@ public class Geometries extends Intersectable {
      */
     public Geometries(boolean useBVH) {
         this.useBVH = useBVH;
+        bvhStale = useBVH;
     }
 
     /**
@@ -43,7 +92,7 @@ public class Geometries extends Intersectable {
      * @param geometries geometries to add
      */
     public Geometries(boolean useBVH, Intersectable... geometries) {
-        this.useBVH = useBVH;
+        this(useBVH);
         add(geometries);
     }
 
@@ -57,37 +106,341 @@ public class Geometries extends Intersectable {
 
     /**
      * Adds one or more intersectable geometries to the collection.
+     * The BVH is not rebuilt here, but on the first query after the additions.
+     * A built dynamic BVH is not rebuilt at all - the geometries are inserted into it.
      * @param geometries the geometries to be added
      */
-    public void add(Intersectable... geometries) {
+    public synchronized void add(Intersectable... geometries) {
+        ++modifications;
         this.geometries.addAll(List.of(geometries));
-        if (useBVH) {
-            // Rebuild the BVH structure whenever geometries are added
-            buildBVH();
+        super.invalidateBounds();
+        if (!useBVH) return;
+        if (!bvhStale && accelerationStructure instanceof DynamicBVH dynamic) {
+            for (Intersectable geometry : geometries) {
+                if (isUnbounded(geometry)) {
+                    unbounded = Arrays.copyOf(unbounded, unbounded.length + 1);
+                    unbounded[unbounded.length - 1] = geometry;
+                } else {
+                    dynamic.insert(geometry);
+                }
+            }
+        } else {
+            bvhStale = true;
+        }
+    }
+
+    /**
+     * Notifies the collection that some of its geometries changed their bounds
+     * (e.g. nested collections whose geometries were added or replaced between frames).
+     * The cached bounds of the collection and of the changed geometries are dropped.
+     * A dynamic BVH is refitted around these geometries only, any other tree is rebuilt on the next query.
+     *
+     * @param geometries the changed geometries, which must be direct children of the collection
+     * @return this Geometries instance for method chaining
+     * @throws IllegalArgumentException if a geometry is not in the dynamic BVH
+     */
+    public synchronized Geometries markDirty(Intersectable... geometries) {
+        ++modifications;
+        super.invalidateBounds();
+        for (Intersectable geometry : geometries) geometry.invalidateBounds();
+        if (!useBVH || bvhStale) return this;
+        if (accelerationStructure instanceof DynamicBVH dynamic && !changesBoundedness(geometries))
+            dynamic.update(List.of(geometries));
+        else
+            bvhStale = true;
+        return this;
+    }
+
+    /**
+     * Replaces a geometry of the collection by another one - typically the same geometry moved.
+     * If the BVH is built, the new geometry takes the place of the old one in the tree and the bounds
+     * of its ancestors are refitted, which is much cheaper than rebuilding the tree. The quality of the tree
+     * degrades as more geometries move away from their places, so after large changes {@link #buildBVH()}
+     * should be called. If the old geometry is not referenced by the tree directly
+     * (a nested collection flattened by the SAH strategy), or one of the geometries is bounded
+     * and the other is not, the tree is rebuilt on the next query.
+     *
+     * @param geometry    the geometry to replace
+     * @param replacement the new geometry
+     * @return this Geometries instance for method chaining
+     * @throws IllegalArgumentException if the geometry is not in the collection
+     */
+    public synchronized Geometries replace(Intersectable geometry, Intersectable replacement) {
+        ListIterator<Intersectable> iterator = geometries.listIterator();
+        while (true) {
+            if (!iterator.hasNext())
+                throw new IllegalArgumentException("The geometry is not in the collection");
+            if (iterator.next() == geometry) break;
+        }
+        iterator.set(replacement);
+        ++modifications;
+        super.invalidateBounds();
+        if (!useBVH || bvhStale) return this;
+        int infinite = indexOfUnbounded(geometry);
+        if (infinite >= 0 && isUnbounded(replacement)) {
+            Intersectable[] copy = unbounded.clone();
+            copy[infinite] = replacement;
+            unbounded = copy;
+            return this;
+        }
+        Intersectable refitted = infinite >= 0 || isUnbounded(replacement) ? null : switch (accelerationStructure) {
+            case BVHNode root -> root.replace(geometry, replacement);
+            case FlatBVH flat -> flat.replace(geometry, replacement);
+            case DynamicBVH dynamic -> dynamic.replace(geometry, replacement) ? dynamic : null;
+            case null, default -> null;
+        };
+        if (refitted != null)
+            accelerationStructure = refitted;
+        else
+            bvhStale = true;
+        return this;
+    }
+
+    /**
+     * Returns the acceleration structure, rebuilding it first if it is stale
+     * or if a nested collection flattened into it has changed since it was built.
+     * Concurrent callers wait for a single rebuild.
+     *
+     * @return the acceleration structure, or {@code null} if BVH is not used or the collection is empty
+     */
+    Intersectable getAccelerationStructure() {
+        if (bvhStale || flattenedChanged()) {
+            synchronized (this) {
+                if (flattenedChanged()) super.invalidateBounds();
+                if (bvhStale || flattenedChanged()) buildBVH();
+            }
+        }
+        return accelerationStructure;
+    }
+
+    /**
+     * Checks whether a nested collection flattened into the acceleration structure has changed since the build
+     *
+     * @return true if the modification count of a flattened collection has changed
+     */
+    private boolean flattenedChanged() {
+        for (Flattened nested : flattened)
+            if (nested.collection.modifications != nested.modifications) return true;
+        return false;
+    }
+
+    /**
+     * Builds the BVH tree from current geometries using the current build strategy.
+     * The median strategy builds the tree over the direct children of the collection,
+     * the SAH strategy flattens nested collections and builds over all their primitives.
+     * A dynamic BVH is built by the SAH strategy over the direct children of the collection,
+     * so changed nested collections can be refitted.
+     * Unbounded geometries (see {@link AABB#isBounded()}) are kept out of the tree and tested separately.
+     * Large trees are built in parallel (see {@link MedianBVHBuilder} and {@link SAHBVHBuilder}),
+     * the time of the build is reported by {@link #getBVHBuildTime()}.
+     */
+    public synchronized void buildBVH() {
+        long start = System.nanoTime();
+        List<Intersectable> bounded = separateUnbounded(treeGeometries());
+        if (dynamicBVH)
+            this.accelerationStructure = geometries.isEmpty() ? null : new DynamicBVH(bounded);
+        else if (bounded.isEmpty())
+            this.accelerationStructure = null;
+        else {
+            BVHNode root = switch (bvhBuildType) {
+                case MEDIAN -> new MedianBVHBuilder(bounded).build();
+                case SAH -> new SAHBVHBuilder(bounded, SAHBVHBuilder.MAX_LEAF_SIZE).build();
+            };
+            this.accelerationStructure = flatBVH ? new FlatBVH(root) : root;
         }
+        bvhBuildTime = (System.nanoTime() - start) / 1e6;
+        bvhStale = false;
+    }
+
+    /**
+     * Lists the geometries the tree is built over - the primitives of the nested collections
+     * for the SAH strategy, the direct children of the collection otherwise
+     *
+     * @return the geometries of the tree, including the unbounded ones
+     */
+    private List<Intersectable> treeGeometries() {
+        List<Intersectable> primitives = new ArrayList<>();
+        List<Flattened> nested = new ArrayList<>();
+        if (bvhBuildType == BVHBuildType.SAH && !dynamicBVH)
+            collectPrimitives(primitives, nested);
+        else
+            primitives.addAll(geometries);
+        flattened = nested.isEmpty() ? NO_FLATTENED : nested.toArray(NO_FLATTENED);
+        return primitives;
+    }
+
+    /**
+     * Keeps the unbounded geometries out of the acceleration structure - they are stored
+     * to be tested separately, and the rest of the geometries are returned
+     *
+     * @param candidates the geometries of the acceleration structure
+     * @return the bounded geometries
+     */
+    private List<Intersectable> separateUnbounded(List<Intersectable> candidates) {
+        List<Intersectable> bounded = new ArrayList<>(candidates.size());
+        List<Intersectable> infinite = new ArrayList<>();
+        for (Intersectable geometry : candidates)
+            (isUnbounded(geometry) ? infinite : bounded).add(geometry);
+        unbounded = infinite.isEmpty() ? NO_GEOMETRIES : infinite.toArray(NO_GEOMETRIES);
+        return bounded;
+    }
+
+    /**
+     * Checks whether a geometry cannot be placed in the acceleration structure
+     *
+     * @param geometry the geometry
+     * @return true if the geometry has no bounding box or its box is not bounded
+     */
+    private static boolean isUnbounded(Intersectable geometry) {
+        AABB box = geometry.getBoundingBox();
+        return box == null || !box.isBounded();
+    }
+
+    /**
+     * Finds a geometry among the unbounded geometries
+     *
+     * @param geometry the geometry
+     * @return the index of the geometry in the unbounded geometries, or -1 if it is not there
+     */
+    private int indexOfUnbounded(Intersectable geometry) {
+        for (int i = 0; i < unbounded.length; i++)
+            if (unbounded[i] == geometry) return i;
+        return -1;
     }
 
     /**
-     * Builds the BVH tree from current geometries.
+     * Checks whether some of the changed geometries moved between the acceleration structure
+     * and the unbounded geometries
+     *
+     * @param geometries the changed geometries
+     * @return true if a geometry is unbounded now or was unbounded before
+     */
+    private boolean changesBoundedness(Intersectable... geometries) {
+        for (Intersectable geometry : geometries)
+            if (isUnbounded(geometry) || indexOfUnbounded(geometry) >= 0) return true;
+        return false;
+    }
+
+    /**
+     * Returns the time the last build of the acceleration structure took.
+     * Restoring a prebuilt structure or updating a dynamic tree in place is not a build.
+     *
+     * @return the time in milliseconds, 0 if the structure has not been built
+     */
+    public double getBVHBuildTime() {
+        return bvhBuildTime;
+    }
+
+    /**
+     * Builds the BVH tree from current geometries using the given build strategy.
+     * The strategy is kept for the following rebuilds.
+     *
+     * @param bvhBuildType the strategy for building the tree
+     */
+    public synchronized void buildBVH(BVHBuildType bvhBuildType) {
+        this.bvhBuildType = bvhBuildType;
+        buildBVH();
+    }
+
+    /**
+     * Restores the BVH settings and a prebuilt acceleration structure (e.g. loaded from a scene cache)
+     * over the current geometries, without building anything
+     *
+     * @param useBVH                whether to use BVH for acceleration
+     * @param bvhBuildType          the strategy for building the tree in the following rebuilds
+     * @param flatBVH               whether the tree is compiled into the linear array form in the following rebuilds
+     * @param dynamicBVH            whether the tree is a dynamic tree in the following rebuilds
+     * @param accelerationStructure the prebuilt structure, or {@code null} to build the tree on the next query
+     *                              (the unbounded geometries left out of the structure are found again)
+     */
+    synchronized void restoreBVH(boolean useBVH, BVHBuildType bvhBuildType, boolean flatBVH, boolean dynamicBVH,
+                                 Intersectable accelerationStructure) {
+        this.useBVH = useBVH;
+        this.bvhBuildType = bvhBuildType;
+        this.flatBVH = flatBVH;
+        this.dynamicBVH = dynamicBVH;
+        this.accelerationStructure = accelerationStructure;
+        bvhStale = useBVH && accelerationStructure == null;
+        if (accelerationStructure != null) separateUnbounded(treeGeometries());
+    }
+
+    /**
+     * Collects the primitives of this collection, expanding nested collections recursively.
+     *
+     * @param target the list to add the primitives to
      */
-    public void buildBVH() {
-        this.accelerationStructure = new BVHNode(geometries);
+    void collectPrimitives(List<Intersectable> target) {
+        collectPrimitives(target, new ArrayList<>());
+    }
+
+    /**
+     * Collects the primitives of this collection, expanding nested collections recursively,
+     * and the expanded nested collections with their modification counts
+     *
+     * @param target the list to add the primitives to
+     * @param nested the list to add the expanded nested collections to
+     */
+    private void collectPrimitives(List<Intersectable> target, List<Flattened> nested) {
+        for (Intersectable geometry : geometries) {
+            if (geometry instanceof Geometries collection) {
+                nested.add(new Flattened(collection, collection.modifications));
+                collection.collectPrimitives(target, nested);
+            } else {
+                target.add(geometry);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the current BVH tree.
+     *
+     * @return the statistics, or {@code null} if there is no BVH
+     */
+    public BVHStats getBVHStats() {
+        return switch (getAccelerationStructure()) {
+            case BVHNode root -> root.getStats();
+            case FlatBVH flat -> flat.getStats();
+            case DynamicBVH dynamic -> dynamic.getStats();
+            case null, default -> null;
+        };
     }
 
     /**
      * Calculates ray intersections with all geometries using BVH if enabled.
+     * The unbounded geometries kept out of the BVH are tested first,
+     * so the tree is searched only up to their closest intersection.
      * @param ray the ray to test
      * @param maxDistance maximum allowed distance
      * @return list of intersections or null
      */
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        // If BVH is used, delegate to the acceleration structure
-        if (useBVH && accelerationStructure != null) {
-            return accelerationStructure.calculateIntersections(ray, maxDistance);
-        }
-
         // If BVH is not used, iterate through all geometries directly
+        Intersectable structure = useBVH ? getAccelerationStructure() : null;
+        if (structure == null) return intersections(geometries, ray, maxDistance);
+
+        // If BVH is used, delegate to the acceleration structure after the unbounded geometries
+        Intersectable[] infinite = unbounded;
+        if (infinite.length == 0) return structure.calculateIntersections(ray, maxDistance);
+        List<Intersection> intersections = intersections(Arrays.asList(infinite), ray, maxDistance);
+        double distance = maxDistance;
+        if (intersections != null)
+            for (Intersection hit : intersections) distance = Math.min(distance, hit.point.distance(ray.getHead()));
+        List<Intersection> treeIntersections = structure.calculateIntersections(ray, distance);
+        if (intersections == null) return treeIntersections;
+        if (treeIntersections != null) intersections.addAll(treeIntersections);
+        return intersections;
+    }
+
+    /**
+     * Calculates ray intersections with the given geometries one after another.
+     * Every geometry is searched only up to the closest intersection found so far.
+     * @param geometries the geometries
+     * @param ray the ray to test
+     * @param maxDistance maximum allowed distance
+     * @return list of intersections or null
+     */
+    private static List<Intersection> intersections(Iterable<Intersectable> geometries, Ray ray, double maxDistance) {
         List<Intersection> intersections = null;
         double currentMaxDistance = maxDistance;
 
@@ -110,8 +463,92 @@ public class Geometries extends Intersectable {
         return intersections;
     }
 
+    /**
+     * Finds the closest intersection of a ray with the geometries in the collection.
+     * Every geometry is searched only up to the closest intersection found so far,
+     * and no intermediate lists are built.
+     *
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Intersectable structure = useBVH ? getAccelerationStructure() : null;
+        if (structure == null) return closestIntersection(geometries, ray, maxDistance);
+
+        // If BVH is used, delegate to the acceleration structure after the unbounded geometries
+        Intersectable[] infinite = unbounded;
+        if (infinite.length == 0) return structure.calculateClosestIntersection(ray, maxDistance);
+        Intersection closest = closestIntersection(Arrays.asList(infinite), ray, maxDistance);
+        Intersection hit = structure.calculateClosestIntersection(ray,
+                closest == null ? maxDistance : closest.point.distance(ray.getHead()));
+        return hit == null ? closest : hit;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the given geometries one after another
+     *
+     * @param geometries the geometries
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    private static Intersection closestIntersection(Iterable<Intersectable> geometries, Ray ray, double maxDistance) {
+        Intersection closest = null;
+        double currentMaxDistance = maxDistance;
+        for (Intersectable geometry : geometries) {
+            Intersection hit = geometry.calculateClosestIntersection(ray, currentMaxDistance);
+            if (hit != null) {
+                closest = hit;
+                currentMaxDistance = hit.point.distance(ray.getHead());
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Accumulates the transparency of the geometries in the collection along a ray segment.
+     * The calculation stops at the first geometry that blocks the ray.
+     *
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr the transparency accumulated so far
+     * @param minK the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Intersectable structure = useBVH ? getAccelerationStructure() : null;
+        if (structure == null) return transparency(geometries, ray, maxDistance, ktr, minK);
+
+        // If BVH is used, delegate to the acceleration structure after the unbounded geometries
+        ktr = transparency(Arrays.asList(unbounded), ray, maxDistance, ktr, minK);
+        return ktr.lowerThan(minK) ? Double3.ZERO : structure.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+    }
+
+    /**
+     * Accumulates the transparency of the given geometries along a ray segment one after another
+     *
+     * @param geometries the geometries
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr the transparency accumulated so far
+     * @param minK the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    private static Double3 transparency(Iterable<Intersectable> geometries, Ray ray, double maxDistance,
+                                        Double3 ktr, double minK) {
+        for (Intersectable geometry : geometries) {
+            ktr = geometry.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+            if (ktr.lowerThan(minK)) return Double3.ZERO;
+        }
+        return ktr;
+    }
+
     /**
      * Returns the internal list of geometries.
+     * The list must not be modified directly - neither the BVH nor the cached bounding box would follow.
      * @return list of geometries
      */
     public List<Intersectable> getGeometries() {
@@ -120,17 +557,36 @@ public class Geometries extends Intersectable {
 
     /**
      * Computes a bounding box that encloses all geometries.
+     * The box is cached until geometries are added, replaced or marked as changed by {@link #markDirty}.
      * @return combined AABB
      */
     @Override
-    public AABB getBoundingBox() {
+    protected AABB computeBoundingBox() {
         if (geometries.isEmpty()) return null;
 
-        AABB bbox = geometries.getFirst().getBoundingBox();
-        for (int i = 1; i < geometries.size(); i++) {
-            bbox = AABB.union(bbox, geometries.get(i).getBoundingBox());
+        double[] bounds = new double[6];
+        SAHBVHBuilder.setEmpty(bounds, 0);
+        for (Intersectable geometry : geometries) {
+            AABB box = geometry.getBoundingBox();
+            bounds[0] = Math.min(bounds[0], box.min.getX());
+            bounds[1] = Math.min(bounds[1], box.min.getY());
+            bounds[2] = Math.min(bounds[2], box.min.getZ());
+            bounds[3] = Math.max(bounds[3], box.max.getX());
+            bounds[4] = Math.max(bounds[4], box.max.getY());
+            bounds[5] = Math.max(bounds[5], box.max.getZ());
         }
-        return bbox;
+        return new AABB(new Point(bounds[0], bounds[1], bounds[2]), new Point(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Drops the cached bounds of the collection and of its nested collections,
+     * whose geometries may have changed as well
+     */
+    @Override
+    protected void invalidateBounds() {
+        super.invalidateBounds();
+        for (Intersectable geometry : geometries)
+            if (geometry instanceof Geometries nested) nested.invalidateBounds();
     }
 
     /**
@@ -139,15 +595,64 @@ public class Geometries extends Intersectable {
      * @param useBVH true to enable BVH, false to disable
      * @return this Geometries instance for method chaining
      */
-    public Geometries setUseBVH(boolean useBVH) {
+    public synchronized Geometries setUseBVH(boolean useBVH) {
         this.useBVH = useBVH;
 
         if (useBVH) {
             if (accelerationStructure == null) {
-                buildBVH();
+                bvhStale = true;
             }
         } else {
             this.accelerationStructure = null;
+            bvhStale = false;
+            flattened = NO_FLATTENED;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the strategy used for building the BVH.
+     * If BVH is in use, the tree is rebuilt with the new strategy on the next query.
+     *
+     * @param bvhBuildType the strategy for building the tree
+     * @return this Geometries instance for method chaining
+     */
+    public synchronized Geometries setBVHBuildType(BVHBuildType bvhBuildType) {
+        this.bvhBuildType = bvhBuildType;
+        if (useBVH) {
+            bvhStale = true;
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the BVH tree is compiled into the linear array form ({@link FlatBVH}),
+     * which is traversed iteratively without allocations per node.
+     * If BVH is in use, the tree is rebuilt on the next query.
+     *
+     * @param flatBVH true to use the linear form, false to use the pointer tree
+     * @return this Geometries instance for method chaining
+     */
+    public synchronized Geometries setFlatBVH(boolean flatBVH) {
+        this.flatBVH = flatBVH;
+        if (useBVH) {
+            bvhStale = true;
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the BVH is a {@link DynamicBVH}, which is updated in place when geometries are added,
+     * replaced or marked as changed, instead of being rebuilt.
+     * If BVH is in use, the tree is rebuilt on the next query.
+     *
+     * @param dynamicBVH true to use the dynamic tree, false to use the tree of the build strategy
+     * @return this Geometries instance for method chaining
+     */
+    public synchronized Geometries setDynamicBVH(boolean dynamicBVH) {
+        this.dynamicBVH = dynamicBVH;
+        if (useBVH) {
+            bvhStale = true;
         }
         return this;
     }
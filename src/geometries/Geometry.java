@@ -71,4 +71,34 @@ public abstract class Geometry extends Intersectable {
      */
     public abstract Vector getNormal(Point point);
 
+    /**
+     * Computes the normal vector to the geometric shape at an intersection point.
+     * By default, the normal depends on the point only; geometries made of several parts
+     * (e.g. a {@link TriangleMesh}) use the intersected part of the intersection.
+     *
+     * @param intersection the intersection at which the normal is calculated
+     * @return the normal vector at the intersection point
+     */
+    public Vector getNormal(Intersection intersection) {
+        return getNormal(intersection.point);
+    }
+
+    /**
+     * Accumulates the transparency of the geometry along a ray segment.
+     * For an opaque geometry any intersection blocks the ray, so only the closest intersection is searched;
+     * otherwise the transparency coefficient is applied once per intersection.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr         the transparency accumulated so far
+     * @param minK        the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        if (ktr.product(material.kt).lowerThan(minK))
+            return calculateClosestIntersectionHelper(ray, maxDistance) == null ? ktr : Double3.ZERO;
+        return super.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+    }
+
 }
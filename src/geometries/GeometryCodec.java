@@ -0,0 +1,491 @@
+package geometries;
+
+import primitives.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The GeometryCodec class writes a tree of geometries into a compact binary form and reads it back.
+ * The binary form holds the geometries with their emission and materials (every material is written once
+ * however many geometries share it), and the built acceleration structures of the collections
+ * and of the triangle meshes, so reading the geometries back does not build anything.
+ * A BVH is always written in the linear form of {@link FlatBVH}, referencing its primitives
+ * by their position in the tree, so a pointer tree ({@link BVHNode}) is read back in the linear form.
+ * A {@link DynamicBVH} is not written - it is rebuilt on the first query after reading.
+ * All the numbers are big endian, as written by {@link DataOutputStream}.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public final class GeometryCodec {
+    /** Type code of a collection of geometries */
+    private static final byte GEOMETRIES = 1;
+    /** Type code of a sphere */
+    private static final byte SPHERE = 2;
+    /** Type code of a plane */
+    private static final byte PLANE = 3;
+    /** Type code of a triangle */
+    private static final byte TRIANGLE = 4;
+    /** Type code of a polygon */
+    private static final byte POLYGON = 5;
+    /** Type code of a tube */
+    private static final byte TUBE = 6;
+    /** Type code of a cylinder */
+    private static final byte CYLINDER = 7;
+    /** Type code of a triangle mesh */
+    private static final byte TRIANGLE_MESH = 8;
+
+    /** Private constructor - the class has static methods only */
+    private GeometryCodec() {
+    }
+
+    /**
+     * Writes a tree of geometries with the built acceleration structures
+     *
+     * @param geometries the root collection of the tree
+     * @param out        the stream to write to
+     * @throws IOException              if writing fails
+     * @throws IllegalArgumentException if the tree contains a geometry which cannot be written
+     */
+    public static void write(Geometries geometries, DataOutputStream out) throws IOException {
+        write(geometries, out, true);
+    }
+
+    /**
+     * Writes a tree of geometries, with or without the built acceleration structures of the collections.
+     * Without the structures, the output depends on the geometries only and not on whether (or how)
+     * the BVH has been built yet, so it may identify the content of the tree.
+     *
+     * @param geometries the root collection of the tree
+     * @param out        the stream to write to
+     * @param structures whether to write the built acceleration structures
+     * @throws IOException              if writing fails
+     * @throws IllegalArgumentException if the tree contains a geometry which cannot be written
+     */
+    public static void write(Geometries geometries, DataOutputStream out, boolean structures) throws IOException {
+        Map<Material, Integer> materials = new IdentityHashMap<>();
+        collectMaterials(geometries, materials);
+        Material[] table = new Material[materials.size()];
+        materials.forEach((material, index) -> table[index] = material);
+        out.writeInt(table.length);
+        for (Material material : table) {
+            writeDouble3(material.ka, out);
+            writeDouble3(material.kd, out);
+            writeDouble3(material.ks, out);
+            writeDouble3(material.kr, out);
+            writeDouble3(material.kt, out);
+            out.writeInt(material.nShininess);
+        }
+        new Writer(out, materials, structures).write(geometries);
+    }
+
+    /**
+     * Reads a tree of geometries written by {@link #write(Geometries, DataOutputStream)}.
+     * The buffer is left positioned after the tree.
+     *
+     * @param buffer the buffer to read from
+     * @return the root collection of the tree
+     * @throws IllegalArgumentException if the buffer does not hold a valid tree
+     */
+    public static Geometries read(ByteBuffer buffer) {
+        Material[] materials = new Material[buffer.getInt()];
+        for (int i = 0; i < materials.length; i++)
+            materials[i] = new Material()
+                    .setKa(readDouble3(buffer)).setKd(readDouble3(buffer)).setKs(readDouble3(buffer))
+                    .setKr(readDouble3(buffer)).setKt(readDouble3(buffer)).setShininess(buffer.getInt());
+        if (!(new Reader(buffer, materials).read() instanceof Geometries geometries))
+            throw new IllegalArgumentException("The root of the geometries is not a collection");
+        return geometries;
+    }
+
+    /**
+     * Assigns indices to the materials of the geometries of a tree, in the order of their first appearance
+     *
+     * @param intersectable the root of the tree
+     * @param materials     the indices of the materials found so far
+     */
+    private static void collectMaterials(Intersectable intersectable, Map<Material, Integer> materials) {
+        if (intersectable instanceof Geometries collection)
+            for (Intersectable geometry : collection.getGeometries())
+                collectMaterials(geometry, materials);
+        else if (intersectable instanceof Geometry geometry)
+            materials.putIfAbsent(geometry.getMaterial(), materials.size());
+    }
+
+    /**
+     * Writes a triad of numbers
+     *
+     * @param triad the numbers
+     * @param out   the stream to write to
+     * @throws IOException if writing fails
+     */
+    private static void writeDouble3(Double3 triad, DataOutputStream out) throws IOException {
+        out.writeDouble(triad.d1());
+        out.writeDouble(triad.d2());
+        out.writeDouble(triad.d3());
+    }
+
+    /**
+     * Reads a triad of numbers
+     *
+     * @param buffer the buffer to read from
+     * @return the numbers
+     */
+    private static Double3 readDouble3(ByteBuffer buffer) {
+        return new Double3(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Writes a point (or a vector)
+     *
+     * @param point the point
+     * @param out   the stream to write to
+     * @throws IOException if writing fails
+     */
+    private static void writePoint(Point point, DataOutputStream out) throws IOException {
+        out.writeDouble(point.getX());
+        out.writeDouble(point.getY());
+        out.writeDouble(point.getZ());
+    }
+
+    /**
+     * Reads a point
+     *
+     * @param buffer the buffer to read from
+     * @return the point
+     */
+    private static Point readPoint(ByteBuffer buffer) {
+        return new Point(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Reads a vector
+     *
+     * @param buffer the buffer to read from
+     * @return the vector
+     */
+    private static Vector readVector(ByteBuffer buffer) {
+        return new Vector(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Writes an array of numbers preceded by its length
+     *
+     * @param array the numbers
+     * @param out   the stream to write to
+     * @throws IOException if writing fails
+     */
+    private static void writeArray(double[] array, DataOutputStream out) throws IOException {
+        out.writeInt(array.length);
+        for (double value : array) out.writeDouble(value);
+    }
+
+    /**
+     * Writes an array of integers preceded by its length
+     *
+     * @param array the integers
+     * @param out   the stream to write to
+     * @throws IOException if writing fails
+     */
+    private static void writeArray(int[] array, DataOutputStream out) throws IOException {
+        out.writeInt(array.length);
+        for (int value : array) out.writeInt(value);
+    }
+
+    /**
+     * Reads an array of numbers preceded by its length, in bulk
+     *
+     * @param buffer the buffer to read from
+     * @return the numbers
+     */
+    private static double[] readDoubles(ByteBuffer buffer) {
+        double[] array = new double[readLength(buffer, Double.BYTES)];
+        buffer.asDoubleBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Double.BYTES);
+        return array;
+    }
+
+    /**
+     * Reads an array of integers preceded by its length, in bulk
+     *
+     * @param buffer the buffer to read from
+     * @return the integers
+     */
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] array = new int[readLength(buffer, Integer.BYTES)];
+        buffer.asIntBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Integer.BYTES);
+        return array;
+    }
+
+    /**
+     * Reads the length of an array and checks that the buffer holds the whole array
+     *
+     * @param buffer the buffer to read from
+     * @param bytes  size of an element of the array
+     * @return the length of the array
+     * @throws IllegalArgumentException if the length is negative or the array is truncated
+     */
+    private static int readLength(ByteBuffer buffer, int bytes) {
+        int length = buffer.getInt();
+        if (length < 0 || (long) length * bytes > buffer.remaining())
+            throw new IllegalArgumentException("Truncated array of " + length + " elements");
+        return length;
+    }
+
+    /**
+     * Helper writing the nodes of a tree in pre-order, numbering them for the references of the BVH leaves
+     *
+     * @param out        the stream to write to
+     * @param materials  the indices of the materials
+     * @param structures whether to write the built acceleration structures
+     * @param ids        the numbers of the nodes written so far
+     */
+    private record Writer(DataOutputStream out, Map<Material, Integer> materials, boolean structures,
+                          Map<Intersectable, Integer> ids) {
+        /**
+         * Constructs a writer of a tree
+         *
+         * @param out        the stream to write to
+         * @param materials  the indices of the materials
+         * @param structures whether to write the built acceleration structures
+         */
+        Writer(DataOutputStream out, Map<Material, Integer> materials, boolean structures) {
+            this(out, materials, structures, new IdentityHashMap<>());
+        }
+
+        /**
+         * Writes a node with its subtree
+         *
+         * @param intersectable the node
+         * @throws IOException if writing fails
+         */
+        void write(Intersectable intersectable) throws IOException {
+            ids.put(intersectable, ids.size());
+            if (intersectable instanceof Geometries geometries) {
+                writeCollection(geometries);
+                return;
+            }
+            if (!(intersectable instanceof Geometry geometry))
+                throw new IllegalArgumentException("Cannot write " + intersectable.getClass().getSimpleName());
+            switch (geometry) {
+                case Sphere sphere -> {
+                    writeGeometry(SPHERE, sphere);
+                    out.writeDouble(sphere.getRadius());
+                    writePoint(sphere.getCenter(), out);
+                }
+                case Plane plane -> {
+                    writeGeometry(PLANE, plane);
+                    writePoint(plane.getPoint(), out);
+                    writePoint(plane.getNormal(plane.getPoint()), out);
+                }
+                case Triangle triangle -> writePolygon(TRIANGLE, triangle);
+                case Polygon polygon -> writePolygon(POLYGON, polygon);
+                case Cylinder cylinder -> {
+                    writeTube(CYLINDER, cylinder);
+                    out.writeDouble(cylinder.getHeight());
+                }
+                case Tube tube -> writeTube(TUBE, tube);
+                case TriangleMesh mesh -> {
+                    writeGeometry(TRIANGLE_MESH, mesh);
+                    writeArray(mesh.positions, out);
+                    writeArray(mesh.indices, out);
+                    writeArray(mesh.edges, out);
+                    writeArray(mesh.triangles, out);
+                    writeArray(mesh.bounds, out);
+                    writeArray(mesh.offsets, out);
+                    writeArray(mesh.counts, out);
+                    out.writeInt(mesh.depth);
+                }
+                default -> throw new IllegalArgumentException("Cannot write " + geometry.getClass().getSimpleName());
+            }
+        }
+
+        /**
+         * Writes the type, the emission and the material of a geometry
+         *
+         * @param type     the type code of the geometry
+         * @param geometry the geometry
+         * @throws IOException if writing fails
+         */
+        private void writeGeometry(byte type, Geometry geometry) throws IOException {
+            out.writeByte(type);
+            writeDouble3(geometry.getEmission().getComponents(), out);
+            out.writeInt(materials.get(geometry.getMaterial()));
+        }
+
+        /**
+         * Writes a polygon (or a triangle) by its vertices
+         *
+         * @param type    the type code of the polygon
+         * @param polygon the polygon
+         * @throws IOException if writing fails
+         */
+        private void writePolygon(byte type, Polygon polygon) throws IOException {
+            writeGeometry(type, polygon);
+            out.writeInt(polygon.vertices.size());
+            for (Point vertex : polygon.vertices) writePoint(vertex, out);
+        }
+
+        /**
+         * Writes the radius and the axis of a tube (or a cylinder)
+         *
+         * @param type the type code of the tube
+         * @param tube the tube
+         * @throws IOException if writing fails
+         */
+        private void writeTube(byte type, Tube tube) throws IOException {
+            writeGeometry(type, tube);
+            out.writeDouble(tube.getRadius());
+            writePoint(tube.getAxis().getHead(), out);
+            writePoint(tube.getAxis().getDirection(), out);
+        }
+
+        /**
+         * Writes a collection: its BVH settings, its children and its built BVH in the linear form
+         *
+         * @param geometries the collection
+         * @throws IOException if writing fails
+         */
+        private void writeCollection(Geometries geometries) throws IOException {
+            out.writeByte(GEOMETRIES);
+            out.writeBoolean(geometries.useBVH);
+            out.writeByte(geometries.bvhBuildType.ordinal());
+            out.writeBoolean(geometries.flatBVH);
+            out.writeBoolean(geometries.dynamicBVH);
+            out.writeInt(geometries.getGeometries().size());
+            for (Intersectable child : geometries.getGeometries()) write(child);
+            FlatBVH bvh = !structures ? null : switch (geometries.getAccelerationStructure()) {
+                case FlatBVH flat -> flat;
+                case BVHNode root -> new FlatBVH(root);
+                case null, default -> null;
+            };
+            out.writeBoolean(bvh != null);
+            if (bvh == null) return;
+            writeArray(bvh.bounds, out);
+            writeArray(bvh.offsets, out);
+            writeArray(bvh.counts, out);
+            out.writeInt(bvh.depth);
+            out.writeInt(bvh.primitives.length);
+            for (Intersectable primitive : bvh.primitives) {
+                Integer id = ids.get(primitive);
+                if (id == null)
+                    throw new IllegalArgumentException("The BVH references a geometry outside of its collection");
+                out.writeInt(id);
+            }
+        }
+    }
+
+    /**
+     * Helper reading the nodes of a tree in pre-order, keeping them by their numbers
+     * for the references of the BVH leaves
+     *
+     * @param buffer    the buffer to read from
+     * @param materials the materials by their indices
+     * @param nodes     the nodes read so far, by their numbers
+     */
+    private record Reader(ByteBuffer buffer, Material[] materials, List<Intersectable> nodes) {
+        /**
+         * Constructs a reader of a tree
+         *
+         * @param buffer    the buffer to read from
+         * @param materials the materials by their indices
+         */
+        Reader(ByteBuffer buffer, Material[] materials) {
+            this(buffer, materials, new ArrayList<>());
+        }
+
+        /**
+         * Reads a node with its subtree
+         *
+         * @return the node
+         */
+        Intersectable read() {
+            byte type = buffer.get();
+            if (type == GEOMETRIES) return readCollection();
+            Color emission = new Color(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+            int material = buffer.getInt();
+            if (material < 0 || material >= materials.length)
+                throw new IllegalArgumentException("Bad material index " + material);
+            int id = nodes.size();
+            nodes.add(null);
+            Geometry geometry = switch (type) {
+                case SPHERE -> new Sphere(buffer.getDouble(), readPoint(buffer));
+                case PLANE -> new Plane(readPoint(buffer), readVector(buffer));
+                case TRIANGLE -> {
+                    readVertexCount(3);
+                    yield new Triangle(readPoint(buffer), readPoint(buffer), readPoint(buffer));
+                }
+                case POLYGON -> {
+                    Point[] vertices = new Point[readVertexCount(-1)];
+                    for (int i = 0; i < vertices.length; i++) vertices[i] = readPoint(buffer);
+                    yield new Polygon(vertices);
+                }
+                case TUBE -> new Tube(buffer.getDouble(), new Ray(readPoint(buffer), readVector(buffer)));
+                case CYLINDER -> new Cylinder(buffer.getDouble(), new Ray(readPoint(buffer), readVector(buffer)),
+                        buffer.getDouble());
+                case TRIANGLE_MESH -> new TriangleMesh(readDoubles(buffer), readInts(buffer), readDoubles(buffer),
+                        readInts(buffer), readDoubles(buffer), readInts(buffer), readInts(buffer), buffer.getInt());
+                default -> throw new IllegalArgumentException("Unknown geometry type " + type);
+            };
+            geometry.setEmission(emission).setMaterial(materials[material]);
+            nodes.set(id, geometry);
+            return geometry;
+        }
+
+        /**
+         * Reads the amount of the vertices of a polygon
+         *
+         * @param expected the expected amount, or -1 for any amount
+         * @return the amount of the vertices
+         * @throws IllegalArgumentException if the amount is not the expected one
+         */
+        private int readVertexCount(int expected) {
+            int count = buffer.getInt();
+            if (expected >= 0 ? count != expected : count < 3 || (long) count * 3 * Double.BYTES > buffer.remaining())
+                throw new IllegalArgumentException("Bad amount of polygon vertices " + count);
+            return count;
+        }
+
+        /**
+         * Reads a collection with its children and installs its built BVH
+         *
+         * @return the collection
+         */
+        private Geometries readCollection() {
+            Geometries geometries = new Geometries();
+            nodes.add(geometries);
+            boolean useBVH = buffer.get() != 0;
+            BVHBuildType[] types = BVHBuildType.values();
+            int type = buffer.get();
+            if (type < 0 || type >= types.length)
+                throw new IllegalArgumentException("Unknown BVH build type " + type);
+            boolean flat = buffer.get() != 0;
+            boolean dynamic = buffer.get() != 0;
+            int size = readLength(buffer, 1);
+            for (int i = 0; i < size; i++) geometries.add(read());
+            FlatBVH bvh = null;
+            if (buffer.get() != 0) {
+                double[] bounds = readDoubles(buffer);
+                int[] offsets = readInts(buffer);
+                int[] counts = readInts(buffer);
+                int depth = buffer.getInt();
+                Intersectable[] primitives = new Intersectable[readLength(buffer, Integer.BYTES)];
+                for (int i = 0; i < primitives.length; i++) {
+                    int id = buffer.getInt();
+                    if (id < 0 || id >= nodes.size())
+                        throw new IllegalArgumentException("Bad BVH primitive reference " + id);
+                    primitives[i] = nodes.get(id);
+                }
+                bvh = new FlatBVH(bounds, offsets, counts, primitives, depth);
+            }
+            geometries.restoreBVH(useBVH, types[type], flat, dynamic, bvh);
+            return geometries;
+        }
+    }
+}
@@ -12,6 +12,10 @@ import java.util.List;
  * @author Tehila Shraga and Tova Tretiak
  */
 public abstract class Intersectable {
+    /** The cached bounding box, {@code null} until it is computed (or after it was invalidated) */
+    private volatile AABB boundingBox = null;
+    /** The cached centroid of the bounding box, {@code null} until it is computed (or after it was invalidated) */
+    private volatile Point centroid = null;
 
     /**
      * Default constructor for the Intersectable class.
@@ -22,10 +26,48 @@ public abstract class Intersectable {
     /**
      * Returns the axis-aligned bounding box (AABB) of the geometry.
      * This is used for spatial acceleration structures like BVH.
+     * The box is computed once by {@link #computeBoundingBox()} and cached - geometries whose
+     * bounds change must call {@link #invalidateBounds()}.
+     * Concurrent first calls may compute the box more than once, but always get an equal box.
      *
      * @return the bounding box of the geometry
      */
-    public abstract AABB getBoundingBox();
+    public final AABB getBoundingBox() {
+        AABB box = boundingBox;
+        if (box == null) boundingBox = box = computeBoundingBox();
+        return box;
+    }
+
+    /**
+     * Returns the centroid of the bounding box of the geometry, cached as the bounding box
+     *
+     * @return the center of the bounding box, or {@code null} if the geometry has no bounding box
+     */
+    public final Point getCentroid() {
+        Point center = centroid;
+        if (center == null) {
+            AABB box = getBoundingBox();
+            if (box != null) centroid = center = box.getCenter();
+        }
+        return center;
+    }
+
+    /**
+     * Computes the axis-aligned bounding box (AABB) of the geometry.
+     * Called by {@link #getBoundingBox()} only when there is no cached box.
+     *
+     * @return the bounding box of the geometry
+     */
+    protected abstract AABB computeBoundingBox();
+
+    /**
+     * Drops the cached bounding box and centroid, so they are computed again on the next call.
+     * Called by geometries whose bounds change.
+     */
+    protected void invalidateBounds() {
+        boundingBox = null;
+        centroid = null;
+    }
 
     /**
      * Finds the intersection points of a ray with the geometric object.
@@ -76,6 +118,81 @@ public abstract class Intersectable {
         return calculateIntersections(ray, Double.POSITIVE_INFINITY);
     }
 
+    /**
+     * Finds the closest intersection of a ray with the geometric object.
+     * The default implementation picks the closest intersection of the full list;
+     * geometries and acceleration structures override it to find the closest intersection
+     * directly, shrinking the search distance as they go, without building intermediate lists.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        return ray.findClosestIntersection(calculateIntersectionsHelper(ray, maxDistance));
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the geometric object.
+     * This method is a wrapper around the calculateClosestIntersectionHelper method.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    public final Intersection calculateClosestIntersection(Ray ray, double maxDistance) {
+        return calculateClosestIntersectionHelper(ray, maxDistance);
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the geometric object,
+     * providing a default maximum distance of positive infinity.
+     *
+     * @param ray the ray to check for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    public final Intersection calculateClosestIntersection(Ray ray) {
+        return calculateClosestIntersection(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Accumulates the transparency of the object along a ray segment into a given transparency.
+     * The transparency coefficients (kt) of all the intersections before the maximal distance are multiplied,
+     * and the calculation stops as soon as the accumulated transparency falls below the minimal coefficient.
+     * The default implementation uses the full list of intersections;
+     * geometries and acceleration structures override it to stop at the first opaque blocker.
+     *
+     * @param ray         the ray to check for intersections (e.g. a shadow ray)
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr         the transparency accumulated so far
+     * @param minK        the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray, maxDistance);
+        if (intersections == null) return ktr;
+        for (Intersection intersection : intersections) {
+            ktr = ktr.product(intersection.material.kt);
+            if (ktr.lowerThan(minK)) return Double3.ZERO;
+        }
+        return ktr;
+    }
+
+    /**
+     * Calculates the transparency of the object along a ray segment - the occlusion query of shadow rays.
+     * Unlike the intersections calculation, all the intersections before the maximal distance are considered,
+     * and the calculation stops as soon as the ray is blocked.
+     *
+     * @param ray         the ray to check for intersections (e.g. a shadow ray)
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param minK        the minimal transparency which is still considered not blocked
+     * @return the product of the transparency coefficients of the intersections,
+     * or {@link Double3#ZERO} if it falls below the minimal transparency
+     */
+    public final Double3 calculateTransparency(Ray ray, double maxDistance, double minK) {
+        return calculateTransparencyHelper(ray, maxDistance, Double3.ONE, minK);
+    }
+
     /**
      * An inner class representing an intersection between a ray and a geometric object.
      * It contains the geometry of the object and the intersection point.
@@ -88,6 +205,9 @@ public abstract class Intersectable {
         public final Point point;
         /** The material of the intersected object */
         public final Material material;
+        /** The index of the intersected part of the geometry (e.g. the triangle of a {@link TriangleMesh}),
+         * or -1 for a geometry made of a single part */
+        public final int index;
         /** The normal vector at the intersection point */
         public Vector normal;
         /** The direction vector of the ray from the camera */
@@ -108,8 +228,19 @@ public abstract class Intersectable {
          * @param point The intersection point of the ray with the geometry.
          */
         public Intersection(Geometry geometry, Point point) {
+            this(geometry, point, -1);
+        }
+
+        /**
+         * Constructor to create an intersection object with a part of a geometry made of several parts.
+         * @param geometry The geometry of the intersected object.
+         * @param point The intersection point of the ray with the geometry.
+         * @param index The index of the intersected part of the geometry.
+         */
+        public Intersection(Geometry geometry, Point point, int index) {
             this.geometry = geometry;
             this.point = point;
+            this.index = index;
             // Initialize the material of the intersected object, if the geometry is not null
             if (geometry!=null)
                 this.material = geometry.getMaterial();
@@ -0,0 +1,174 @@
+package geometries;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builder of the median split BVH tree - the same tree as built by {@link BVHNode#BVHNode(List)}.
+ * Every node sorts its primitives by the minimum of their bounding boxes along the axis of the largest
+ * extent (keeping the order of equal values) and splits them into two halves.
+ * Unlike the recursive constructor, the bounding boxes of the primitives are computed once into
+ * a primitive array, the primitives are sorted as indices by a merge sort instead of comparing
+ * bounding boxes computed again for every comparison, and the sub-trees and the sorts of large ranges
+ * are processed in parallel as fork/join tasks.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+final class MedianBVHBuilder {
+    /** The primitives the tree is built from */
+    private final Intersectable[] primitives;
+    /** Bounding boxes of the primitives - 6 numbers (min x,y,z and max x,y,z) per primitive */
+    private final double[] bounds;
+    /** Permutation of the primitive indices, sorted and split in place while building */
+    private final int[] order;
+    /** The keys of the sorted ranges of the order array */
+    private final double[] keys;
+    /** Scratch buffer of the indices of the sorts */
+    private final int[] orderBuffer;
+    /** Scratch buffer of the keys of the sorts */
+    private final double[] keyBuffer;
+
+    /**
+     * Prepares the builder for the given primitives.
+     * The given list is not modified.
+     *
+     * @param geometries the primitives to build the tree from (must not be empty)
+     */
+    MedianBVHBuilder(List<Intersectable> geometries) {
+        if (geometries.isEmpty())
+            throw new IllegalArgumentException("Cannot build a BVH without geometries");
+        primitives = geometries.toArray(new Intersectable[0]);
+        int n = primitives.length;
+        bounds = new double[6 * n];
+        order = new int[n];
+        keys = new double[n];
+        orderBuffer = new int[n];
+        keyBuffer = new double[n];
+        SAHBVHBuilder.indices(n).forEach(i -> {
+            AABB box = primitives[i].getBoundingBox();
+            int b = 6 * i;
+            bounds[b] = box.min.getX();
+            bounds[b + 1] = box.min.getY();
+            bounds[b + 2] = box.min.getZ();
+            bounds[b + 3] = box.max.getX();
+            bounds[b + 4] = box.max.getY();
+            bounds[b + 5] = box.max.getZ();
+            order[i] = i;
+        });
+    }
+
+    /**
+     * Builds the tree
+     *
+     * @return the root node of the tree
+     */
+    BVHNode build() {
+        return new BuildTask(0, order.length).invoke();
+    }
+
+    /**
+     * Fork/join task building the sub-tree of a range of the order array.
+     * Small ranges are built recursively in the current thread.
+     */
+    @SuppressWarnings("serial")
+    private class BuildTask extends RecursiveTask<BVHNode> {
+        /** First index of the range (inclusive) */
+        private final int start;
+        /** Last index of the range (exclusive) */
+        private final int end;
+
+        /**
+         * Constructs the task of a range
+         *
+         * @param start first index of the range (inclusive)
+         * @param end   last index of the range (exclusive)
+         */
+        BuildTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Builds the sub-tree of the range
+         *
+         * @return the root node of the sub-tree
+         */
+        @Override
+        protected BVHNode compute() {
+            return build(start, end, end - start >= SAHBVHBuilder.PARALLEL_THRESHOLD);
+        }
+    }
+
+    /**
+     * Builds the sub-tree of the primitives in the given range of the order array
+     *
+     * @param start    first index of the range (inclusive)
+     * @param end      last index of the range (exclusive)
+     * @param parallel whether to sort the range and to build its sub-trees in parallel
+     * @return the root node of the sub-tree
+     */
+    private BVHNode build(int start, int end, boolean parallel) {
+        AABB box = SAHBVHBuilder.rangeBox(bounds, order, start, end);
+        int count = end - start;
+        // a single geometry is wrapped by a node, two geometries are the children of a node
+        if (count == 1) return new BVHNode(box, primitives[order[start]], null);
+        if (count == 2) return new BVHNode(box, primitives[order[start]], primitives[order[start + 1]]);
+
+        double xExtent = box.max.getX() - box.min.getX();
+        double yExtent = box.max.getY() - box.min.getY();
+        double zExtent = box.max.getZ() - box.min.getZ();
+        int axis = xExtent >= yExtent && xExtent >= zExtent ? 0 : yExtent >= zExtent ? 1 : 2;
+        for (int i = start; i < end; i++) keys[i] = bounds[6 * order[i] + axis];
+        if (parallel)
+            new SortTask(start, end).invoke();
+        else
+            SAHBVHBuilder.mergeSort(order, keys, 0, start, end, orderBuffer, keyBuffer);
+
+        int mid = count / 2 + start;
+        if (!parallel)
+            return new BVHNode(box, build(start, mid, false), build(mid, end, false));
+        BuildTask left = new BuildTask(start, mid);
+        left.fork();
+        BVHNode right = new BuildTask(mid, end).compute();
+        return new BVHNode(box, left.join(), right);
+    }
+
+    /**
+     * Fork/join task of the stable merge sort of a large range of the order array by the keys,
+     * sorting the halves in parallel
+     */
+    @SuppressWarnings("serial")
+    private class SortTask extends RecursiveAction {
+        /** First index of the range (inclusive) */
+        private final int from;
+        /** Last index of the range (exclusive) */
+        private final int to;
+
+        /**
+         * Constructs the task of a range
+         *
+         * @param from first index of the range (inclusive)
+         * @param to   last index of the range (exclusive)
+         */
+        SortTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Sorts the range
+         */
+        @Override
+        protected void compute() {
+            if (to - from < SAHBVHBuilder.PARALLEL_THRESHOLD) {
+                SAHBVHBuilder.mergeSort(order, keys, 0, from, to, orderBuffer, keyBuffer);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            ForkJoinTask.invokeAll(new SortTask(from, mid), new SortTask(mid, to));
+            SAHBVHBuilder.merge(order, keys, 0, from, mid, to, orderBuffer, keyBuffer);
+        }
+    }
+}
@@ -57,6 +57,15 @@ public class Plane extends Geometry {
         }
     }
 
+    /**
+     * Returns the reference point of the plane.
+     *
+     * @return the point on the plane
+     */
+    public Point getPoint() {
+        return q;
+    }
+
     /**
      * Returns the normal vector to the plane.
      * Since the plane is flat, the normal vector is constant and does not depend on the point.
@@ -78,6 +87,19 @@ public class Plane extends Geometry {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Intersection intersection = calculateClosestIntersectionHelper(ray, maxDistance);
+        return intersection == null ? null : List.of(intersection);
+    }
+
+    /**
+     * Finds the intersection of a ray with the plane - a ray intersects a plane at most once.
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     *
+     * @return the intersection, or {@code null} if there is no intersection
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
         Point p0 = ray.getHead(); // Ray's origin
         Vector v = ray.getDirection(); // Ray's direction
         Vector n = normal; // Plane's normal vector
@@ -95,8 +117,10 @@ public class Plane extends Geometry {
             return null; // No intersection
         }
 
-        // Calculate the parameter t for the ray equation
-        double t = alignZero(n.dotProduct(q.subtract(p0)) / nv);
+        // Calculate the parameter t for the ray equation (on the components, without the vector from p0 to q)
+        double t = alignZero((n.getX() * (q.getX() - p0.getX())
+                + n.getY() * (q.getY() - p0.getY())
+                + n.getZ() * (q.getZ() - p0.getZ())) / nv);
 
         // If t is zero, the ray starts on the plane
         if (isZero(t)) {
@@ -114,7 +138,7 @@ public class Plane extends Geometry {
         }
 
         // Calculate the intersection point using the ray equation
-        return List.of(new Intersection(this,ray.getPoint(t)));
+        return new Intersection(this,ray.getPoint(t));
     }
 
     /**
@@ -128,7 +152,7 @@ public class Plane extends Geometry {
      * @return the bounding box of the plane
      */
     @Override
-    public AABB getBoundingBox() {
+    protected AABB computeBoundingBox() {
         // Calculate the axis-aligned bounding box (AABB) of the plane
         double min = -Double.MAX_VALUE;
         double max = Double.MAX_VALUE;
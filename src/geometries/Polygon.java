@@ -53,7 +53,7 @@ public class Polygon extends Geometry {
       plane         = new Plane(vertices[0], vertices[1], vertices[2]);
       if (size == 3) return; // no need for more tests for a Triangle
 
-      Vector  n        = plane.getNormal(null);
+      Vector  n        = plane.getNormal(vertices[0]);
       // Subtracting any subsequent points will throw an IllegalArgumentException
       // because of Zero Vector if they are in the same point
       Vector  edge1    = vertices[size - 1].subtract(vertices[size - 2]);
@@ -80,17 +80,30 @@ public class Polygon extends Geometry {
    }
 
    @Override
-   public Vector getNormal(Point point) { return plane.getNormal(null); }
+   public Vector getNormal(Point point) { return plane.getNormal(point); }
 
    @Override
    public List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+      Intersection intersection = calculateClosestIntersectionHelper(ray, maxDistance);
+      return intersection == null ? null : List.of(intersection);
+   }
+
+   /**
+    * Finds the intersection of a ray with the polygon - a ray intersects a polygon at most once.
+    *
+    * @param ray         the ray to check for intersections
+    * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+    * @return the intersection, or {@code null} if there is no intersection
+    */
+   @Override
+   protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
       // Step 1: Intersect the ray with the polygon's plane
-      List<Intersection> planeIntersections = plane.calculateIntersections(ray, maxDistance);
-      if (planeIntersections == null) {
+      Intersection planeIntersection = plane.calculateClosestIntersection(ray, maxDistance);
+      if (planeIntersection == null) {
          return null; // No intersection with the plane
       }
 
-      Point intersectionPoint = planeIntersections.getFirst().point;
+      Point intersectionPoint = planeIntersection.point;
       Point p0 = ray.getHead();
 
       // Exclude the ray's origin point (head) if it's exactly on the polygon
@@ -98,7 +111,10 @@ public class Polygon extends Geometry {
          return null;
       }
 
-      Vector v = intersectionPoint.subtract(p0);
+      // The vector from the ray's origin to the intersection point (on the components)
+      double vx = intersectionPoint.getX() - p0.getX();
+      double vy = intersectionPoint.getY() - p0.getY();
+      double vz = intersectionPoint.getZ() - p0.getZ();
 
       // Step 2: Check if the intersection point is inside the polygon
       int size = vertices.size();
@@ -108,11 +124,18 @@ public class Polygon extends Geometry {
          Point vi = vertices.get(i);
          Point vi1 = vertices.get((i + 1) % size);
 
-         Vector edge1 = vi.subtract(p0);
-         Vector edge2 = vi1.subtract(p0);
+         // The edges from the ray's origin to the two vertices
+         double e1x = vi.getX() - p0.getX();
+         double e1y = vi.getY() - p0.getY();
+         double e1z = vi.getZ() - p0.getZ();
+         double e2x = vi1.getX() - p0.getX();
+         double e2y = vi1.getY() - p0.getY();
+         double e2z = vi1.getZ() - p0.getZ();
 
-         Vector cross = edge1.crossProduct(edge2);
-         double dot = alignZero(cross.dotProduct(v));
+         // The triple product of the edges and the vector to the intersection point
+         double dot = alignZero((e1y * e2z - e1z * e2y) * vx
+                 + (e1z * e2x - e1x * e2z) * vy
+                 + (e1x * e2y - e1y * e2x) * vz);
 
          // On the first iteration, determine the direction (positive/negative)
          if (i == 0) {
@@ -125,7 +148,7 @@ public class Polygon extends Geometry {
       }
 
       // If the point is inside, return it
-      return List.of(new Intersection(this,intersectionPoint));
+      return new Intersection(this,intersectionPoint);
    }
 
    /**
@@ -140,7 +163,7 @@ public class Polygon extends Geometry {
     * @return the axis-aligned bounding box (AABB) of the polygon,
     */
    @Override
-   public AABB getBoundingBox() {
+   protected AABB computeBoundingBox() {
       // Calculate the axis-aligned bounding box (AABB) of the polygon
       if (vertices == null || vertices.isEmpty())
          return null;
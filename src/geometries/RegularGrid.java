@@ -0,0 +1,453 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The RegularGrid class is a uniform 3D grid acceleration structure.
+ * The bounding boxes of the primitives are voxelized into equal cells, and every cell
+ * references the primitives overlapping it. The resolution is chosen automatically,
+ * so that there are about {@link #DENSITY} cells per primitive with roughly cubic cells.
+ * A ray walks through the cells in its order using the 3D-DDA (digital differential analyzer)
+ * algorithm and stops at the first cell containing an intersection, which is confirmed to be
+ * inside that cell and therefore is the closest one.
+ * Unbounded geometries (e.g. planes and tubes) are kept in a separate list and tested directly.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public class RegularGrid extends Intersectable {
+    /** Desired amount of cells per primitive */
+    private static final double DENSITY = 4;
+    /** Maximal amount of cells along a single axis */
+    private static final int MAX_RESOLUTION = 128;
+
+    /** Minimal corner of the grid: x, y, z */
+    private final double[] min = new double[3];
+    /** Size of a cell along every axis */
+    private final double[] cellSize = new double[3];
+    /** Amount of cells along every axis */
+    private final int[] resolution = new int[3];
+    /** Index of the first primitive reference of every cell in {@link #cellItems} (one extra at the end) */
+    private final int[] cellStart;
+    /** Primitive references of all the cells, cell after cell */
+    private final int[] cellItems;
+    /** The bounded primitives, referenced by the cells */
+    private final Intersectable[] primitives;
+    /** The unbounded geometries, tested outside the grid */
+    private final Intersectable[] unbounded;
+    /** The bounding box of the bounded primitives */
+    private final AABB box;
+    /**
+     * The idle mailboxes of the transparency walks - a walk takes one and returns it when done,
+     * so there are only as many mailboxes as concurrent walks, however many (virtual) threads render
+     */
+    private final Queue<Mailbox> mailboxes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Builds a grid over the geometries of a collection, including the geometries of nested collections
+     *
+     * @param geometries the geometries collection
+     */
+    public RegularGrid(Geometries geometries) {
+        List<Intersectable> all = new ArrayList<>();
+        geometries.collectPrimitives(all);
+
+        // Separate the unbounded geometries and compute the bounds of the rest
+        List<Intersectable> bounded = new ArrayList<>();
+        List<AABB> boxes = new ArrayList<>();
+        List<Intersectable> infinite = new ArrayList<>();
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        min[0] = min[1] = min[2] = Double.POSITIVE_INFINITY;
+        for (Intersectable geometry : all) {
+            AABB geometryBox = geometry.getBoundingBox();
+            if (geometryBox == null || !geometryBox.isBounded()) {
+                infinite.add(geometry);
+                continue;
+            }
+            bounded.add(geometry);
+            boxes.add(geometryBox);
+            min[0] = Math.min(min[0], geometryBox.min.getX());
+            min[1] = Math.min(min[1], geometryBox.min.getY());
+            min[2] = Math.min(min[2], geometryBox.min.getZ());
+            max[0] = Math.max(max[0], geometryBox.max.getX());
+            max[1] = Math.max(max[1], geometryBox.max.getY());
+            max[2] = Math.max(max[2], geometryBox.max.getZ());
+        }
+        primitives = bounded.toArray(new Intersectable[0]);
+        unbounded = infinite.toArray(new Intersectable[0]);
+
+        int n = primitives.length;
+        if (n == 0) {
+            box = null;
+            cellStart = new int[]{0};
+            cellItems = new int[0];
+            return;
+        }
+
+        // Pad the bounds, so flat scenes still have a volume and boundary points fall inside
+        double largest = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+        double pad = 1e-6 * largest + 1e-9;
+        double[] extent = new double[3];
+        for (int axis = 0; axis < 3; axis++) {
+            min[axis] -= pad;
+            max[axis] += pad;
+            extent[axis] = max[axis] - min[axis];
+        }
+        box = new AABB(new Point(min[0], min[1], min[2]), new Point(max[0], max[1], max[2]));
+
+        // Choose the resolution for about DENSITY cells per primitive with cubic cells
+        double volume = extent[0] * extent[1] * extent[2];
+        double cubeSide = Math.cbrt(volume / (DENSITY * n));
+        int cells = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            int res = (int) Math.round(extent[axis] / cubeSide);
+            resolution[axis] = Math.max(1, Math.min(MAX_RESOLUTION, res));
+            cellSize[axis] = extent[axis] / resolution[axis];
+            cells *= resolution[axis];
+        }
+
+        // Count the references of every cell, then fill them
+        int[][] ranges = new int[n][];
+        cellStart = new int[cells + 1];
+        for (int i = 0; i < n; i++) {
+            ranges[i] = cellRange(boxes.get(i));
+            int[] r = ranges[i];
+            for (int z = r[2]; z <= r[5]; z++)
+                for (int y = r[1]; y <= r[4]; y++)
+                    for (int x = r[0]; x <= r[3]; x++)
+                        cellStart[cellIndex(x, y, z) + 1]++;
+        }
+        for (int c = 0; c < cells; c++)
+            cellStart[c + 1] += cellStart[c];
+        cellItems = new int[cellStart[cells]];
+        int[] fill = new int[cells];
+        for (int i = 0; i < n; i++) {
+            int[] r = ranges[i];
+            for (int z = r[2]; z <= r[5]; z++)
+                for (int y = r[1]; y <= r[4]; y++)
+                    for (int x = r[0]; x <= r[3]; x++) {
+                        int c = cellIndex(x, y, z);
+                        cellItems[cellStart[c] + fill[c]++] = i;
+                    }
+        }
+    }
+
+    /**
+     * Computes the range of the cells overlapped by a box
+     *
+     * @param geometryBox the box
+     * @return minimal and maximal cell coordinates: x, y, z, x, y, z
+     */
+    private int[] cellRange(AABB geometryBox) {
+        return new int[]{
+                cellCoordinate(geometryBox.min.getX(), 0), cellCoordinate(geometryBox.min.getY(), 1),
+                cellCoordinate(geometryBox.min.getZ(), 2), cellCoordinate(geometryBox.max.getX(), 0),
+                cellCoordinate(geometryBox.max.getY(), 1), cellCoordinate(geometryBox.max.getZ(), 2)};
+    }
+
+    /**
+     * Computes the cell coordinate of a point coordinate, clamped into the grid
+     *
+     * @param value the point coordinate
+     * @param axis  the axis
+     * @return the cell coordinate
+     */
+    private int cellCoordinate(double value, int axis) {
+        int c = (int) ((value - min[axis]) / cellSize[axis]);
+        return c < 0 ? 0 : Math.min(c, resolution[axis] - 1);
+    }
+
+    /**
+     * Computes the linear index of a cell
+     *
+     * @param x the cell coordinate along the X axis
+     * @param y the cell coordinate along the Y axis
+     * @param z the cell coordinate along the Z axis
+     * @return the index of the cell
+     */
+    private int cellIndex(int x, int y, int z) {
+        return (z * resolution[1] + y) * resolution[0] + x;
+    }
+
+    /**
+     * Returns the amount of cells along every axis
+     *
+     * @return the resolution of the grid: x, y, z
+     */
+    public int[] getResolution() {
+        return resolution.clone();
+    }
+
+    /**
+     * Visitor of the geometries reached by a walk through the grid
+     */
+    @FunctionalInterface
+    private interface GeometryVisitor {
+        /**
+         * Intersects a geometry
+         *
+         * @param index    the index of the primitive in {@link #primitives}, -1 for an unbounded geometry
+         * @param geometry the geometry
+         * @param limit    the distance up to which the intersections are searched
+         * @return the distance of the closest intersection found, or the limit if there are none,
+         * or a negative number to stop the walk
+         */
+        double visit(int index, Intersectable geometry, double limit);
+    }
+
+    /**
+     * Mailbox of the primitives tested by a walk: every primitive stores the number of the last walk
+     * which tested it, so a primitive referenced by several cells is tested once per walk
+     * without clearing any marks between the walks
+     */
+    private class Mailbox {
+        /** The number of the last walk which tested every primitive */
+        private final int[] walks = new int[primitives.length];
+        /** The number of the current walk */
+        private int walk = 0;
+
+        /**
+         * Starts a new walk, with no primitives tested
+         *
+         * @return the mailbox itself
+         */
+        Mailbox start() {
+            if (++walk == 0) {
+                // the walk numbers wrapped around - the old marks may match the new numbers
+                Arrays.fill(walks, 0);
+                walk = 1;
+            }
+            return this;
+        }
+
+        /**
+         * Marks a primitive as tested by the current walk
+         *
+         * @param index the index of the primitive
+         * @return true if the primitive has not been tested by the current walk before
+         */
+        boolean mark(int index) {
+            if (walks[index] == walk) return false;
+            walks[index] = walk;
+            return true;
+        }
+    }
+
+    /**
+     * Finds the intersections of a ray with the geometries of the grid.
+     * The unbounded geometries are tested first, then the ray walks through the cells
+     * up to the closest intersection found, and the walk stops at the first cell with an intersection.
+     * Only the intersections inside that cell are returned, so farther intersections are omitted.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return a list of Intersection objects, or {@code null} if there are no intersections
+     */
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Point head = ray.getHead();
+        List<Intersection> intersections = new ArrayList<>();
+        walk(ray, maxDistance, (index, geometry, limit) -> {
+            List<Intersection> hits = geometry.calculateIntersections(ray, limit);
+            if (hits != null) {
+                intersections.addAll(hits);
+                for (Intersection hit : hits)
+                    limit = Math.min(limit, hit.point.distance(head));
+            }
+            return limit;
+        });
+        return intersections.isEmpty() ? null : intersections;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the geometries of the grid without building any lists.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Point head = ray.getHead();
+        Intersection closestHit = null;
+        double closest = maxDistance;
+        for (Intersectable geometry : unbounded) {
+            Intersection hit = geometry.calculateClosestIntersection(ray, closest);
+            if (hit != null) {
+                closestHit = hit;
+                closest = hit.point.distance(head);
+            }
+        }
+        if (box == null) return closestHit;
+        double tEnter = box.intersect(ray, closest);
+        if (tEnter == Double.POSITIVE_INFINITY) return closestHit;
+
+        // The same 3D-DDA walk as in walk(), specialized for the closest intersection
+        Vector direction = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+        int x = cellCoordinate(ox + direction.getX() * tEnter, 0);
+        int y = cellCoordinate(oy + direction.getY() * tEnter, 1);
+        int z = cellCoordinate(oz + direction.getZ() * tEnter, 2);
+        double tNextX = (min[0] + (ix > 0 ? x + 1 : x) * cellSize[0] - ox) * ix;
+        double tNextY = (min[1] + (iy > 0 ? y + 1 : y) * cellSize[1] - oy) * iy;
+        double tNextZ = (min[2] + (iz > 0 ? z + 1 : z) * cellSize[2] - oz) * iz;
+        double tDeltaX = cellSize[0] * Math.abs(ix);
+        double tDeltaY = cellSize[1] * Math.abs(iy);
+        double tDeltaZ = cellSize[2] * Math.abs(iz);
+
+        while (true) {
+            int axis = tNextX < tNextY ? (tNextX < tNextZ ? 0 : 2) : (tNextY < tNextZ ? 1 : 2);
+            double tNext = axis == 0 ? tNextX : axis == 1 ? tNextY : tNextZ;
+            double cellExit = Math.min(tNext, closest);
+
+            double cellClosest = cellExit;
+            int c = cellIndex(x, y, z);
+            for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                Intersection hit = primitives[cellItems[i]].calculateClosestIntersection(ray, cellClosest);
+                if (hit != null) {
+                    closestHit = hit;
+                    cellClosest = hit.point.distance(head);
+                }
+            }
+            if (cellClosest < cellExit || tNext >= closest) return closestHit;
+
+            if (axis == 0) {
+                x += ix > 0 ? 1 : -1;
+                if (x < 0 || x >= resolution[0]) return closestHit;
+                tNextX += tDeltaX;
+            } else if (axis == 1) {
+                y += iy > 0 ? 1 : -1;
+                if (y < 0 || y >= resolution[1]) return closestHit;
+                tNextY += tDeltaY;
+            } else {
+                z += iz > 0 ? 1 : -1;
+                if (z < 0 || z >= resolution[2]) return closestHit;
+                tNextZ += tDeltaZ;
+            }
+        }
+    }
+
+    /**
+     * Accumulates the transparency of the geometries of the grid along a ray segment.
+     * The walk goes through all the cells up to the maximal distance and stops at the first blocker.
+     * A primitive may be referenced by several cells, so every primitive is intersected once, over the whole
+     * segment, when the walk first reaches it (mailboxing), and every intersection contributes exactly once.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param ktr         the transparency accumulated so far
+     * @param minK        the minimal transparency which is still considered not blocked
+     * @return the accumulated transparency, or {@link Double3#ZERO} if the ray is blocked
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Mailbox polled = mailboxes.poll();
+        Mailbox mailbox = (polled == null ? new Mailbox() : polled).start();
+        Double3[] transparency = {ktr};
+        try {
+            walk(ray, maxDistance, (index, geometry, limit) -> {
+                if (index >= 0 && !mailbox.mark(index)) return limit;
+                List<Intersection> hits = geometry.calculateIntersections(ray, maxDistance);
+                if (hits == null) return limit;
+                for (Intersection hit : hits) {
+                    transparency[0] = transparency[0].product(hit.material.kt);
+                    if (transparency[0].lowerThan(minK)) {
+                        transparency[0] = Double3.ZERO;
+                        return -1;
+                    }
+                }
+                return limit;
+            });
+        } finally {
+            mailboxes.offer(mailbox);
+        }
+        return transparency[0];
+    }
+
+    /**
+     * Visits the unbounded geometries, then walks the ray through the cells of the grid and visits
+     * the geometries of every cell, up to the first cell containing an intersection
+     * or until the visitor stops the walk
+     *
+     * @param ray         the ray
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @param visitor     the visitor intersecting the geometries
+     */
+    private void walk(Ray ray, double maxDistance, GeometryVisitor visitor) {
+        // Unbounded geometries are tested directly
+        double closest = maxDistance;
+        for (Intersectable geometry : unbounded) {
+            closest = Math.min(closest, visitor.visit(-1, geometry, closest));
+            if (closest < 0) return;
+        }
+        if (box == null) return;
+
+        double tEnter = box.intersect(ray, closest);
+        if (tEnter == Double.POSITIVE_INFINITY) return;
+
+        // Initialize the 3D-DDA walk from the entry point - the inverse direction of the ray gives
+        // the distances between the cell boundaries, and huge distances for (nearly) parallel axes
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+        int x = cellCoordinate(ox + direction.getX() * tEnter, 0);
+        int y = cellCoordinate(oy + direction.getY() * tEnter, 1);
+        int z = cellCoordinate(oz + direction.getZ() * tEnter, 2);
+        double tNextX = (min[0] + (ix > 0 ? x + 1 : x) * cellSize[0] - ox) * ix;
+        double tNextY = (min[1] + (iy > 0 ? y + 1 : y) * cellSize[1] - oy) * iy;
+        double tNextZ = (min[2] + (iz > 0 ? z + 1 : z) * cellSize[2] - oz) * iz;
+        double tDeltaX = cellSize[0] * Math.abs(ix);
+        double tDeltaY = cellSize[1] * Math.abs(iy);
+        double tDeltaZ = cellSize[2] * Math.abs(iz);
+
+        while (true) {
+            // The distance of leaving the current cell
+            int axis = tNextX < tNextY ? (tNextX < tNextZ ? 0 : 2) : (tNextY < tNextZ ? 1 : 2);
+            double tNext = axis == 0 ? tNextX : axis == 1 ? tNextY : tNextZ;
+            double cellExit = Math.min(tNext, closest);
+
+            // Intersections within the cell are confirmed - no other cell can have a closer one
+            double cellClosest = cellExit;
+            int c = cellIndex(x, y, z);
+            for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                int index = cellItems[i];
+                cellClosest = Math.min(cellClosest, visitor.visit(index, primitives[index], cellClosest));
+                if (cellClosest < 0) return;
+            }
+            if (cellClosest < cellExit) return;
+
+            // Step into the next cell unless the walk has passed the closest intersection or left the grid
+            if (tNext >= closest) return;
+            if (axis == 0) {
+                x += ix > 0 ? 1 : -1;
+                if (x < 0 || x >= resolution[0]) return;
+                tNextX += tDeltaX;
+            } else if (axis == 1) {
+                y += iy > 0 ? 1 : -1;
+                if (y < 0 || y >= resolution[1]) return;
+                tNextY += tDeltaY;
+            } else {
+                z += iz > 0 ? 1 : -1;
+                if (z < 0 || z >= resolution[2]) return;
+                tNextZ += tDeltaZ;
+            }
+        }
+    }
+
+    /**
+     * Returns the bounding box of the bounded geometries of the grid.
+     *
+     * @return the bounding box, or {@code null} if all the geometries are unbounded
+     */
+    @Override
+    protected AABB computeBoundingBox() {
+        return box;
+    }
+}
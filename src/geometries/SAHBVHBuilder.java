@@ -0,0 +1,465 @@
+package geometries;
+
+import primitives.Point;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+import static geometries.BVHStats.INTERSECTION_COST;
+import static geometries.BVHStats.TRAVERSAL_COST;
+
+/**
+ * Builder of a BVH tree according to the Surface Area Heuristic (SAH).
+ * The bounding boxes and the centroids of the primitives are computed once into
+ * primitive arrays, and every node is split by binning the centroids along each axis
+ * and choosing the split plane with the lowest expected intersection cost.
+ * A node becomes a leaf holding several primitives when splitting it is not cheaper
+ * than intersecting all of its primitives.
+ * The arrays are filled in parallel, and the sub-trees of large ranges are built in parallel
+ * as fork/join tasks - the ranges of the sub-trees are disjoint parts of the order array.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+final class SAHBVHBuilder {
+    /** Amount of centroid bins evaluated along each axis */
+    static final int BINS = 16;
+    /** Default maximum amount of primitives in a single leaf */
+    static final int MAX_LEAF_SIZE = 4;
+    /** Ranges of primitives from this size up are processed in parallel */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    /** The primitives the tree is built from */
+    private final Intersectable[] primitives;
+    /** Bounding boxes of the primitives - 6 numbers (min x,y,z and max x,y,z) per primitive */
+    private final double[] bounds;
+    /** Centroids of the primitive bounding boxes - 3 numbers per primitive */
+    private final double[] centroids;
+    /** Permutation of the primitive indices, partitioned in place while building */
+    private final int[] order;
+    /** Maximum amount of primitives in a single leaf */
+    private final int maxLeafSize;
+
+    /**
+     * Prepares the builder for the given primitives.
+     * The given list is not modified.
+     *
+     * @param geometries  the primitives to build the tree from (must not be empty)
+     * @param maxLeafSize maximum amount of primitives in a single leaf
+     */
+    SAHBVHBuilder(List<Intersectable> geometries, int maxLeafSize) {
+        if (geometries.isEmpty())
+            throw new IllegalArgumentException("Cannot build a BVH without geometries");
+        if (maxLeafSize < 1)
+            throw new IllegalArgumentException("Leaf size must be positive");
+        this.maxLeafSize = maxLeafSize;
+        primitives = geometries.toArray(new Intersectable[0]);
+        int n = primitives.length;
+        bounds = new double[6 * n];
+        centroids = new double[3 * n];
+        order = new int[n];
+        indices(n).forEach(i -> {
+            AABB box = primitives[i].getBoundingBox();
+            Point centroid = primitives[i].getCentroid();
+            int b = 6 * i;
+            bounds[b] = box.min.getX();
+            bounds[b + 1] = box.min.getY();
+            bounds[b + 2] = box.min.getZ();
+            bounds[b + 3] = box.max.getX();
+            bounds[b + 4] = box.max.getY();
+            bounds[b + 5] = box.max.getZ();
+            centroids[3 * i] = centroid.getX();
+            centroids[3 * i + 1] = centroid.getY();
+            centroids[3 * i + 2] = centroid.getZ();
+            order[i] = i;
+        });
+    }
+
+    /**
+     * Creates a stream over the indices of the primitives, parallel if there are enough primitives
+     *
+     * @param n amount of the primitives
+     * @return the stream, parallel from {@link #PARALLEL_THRESHOLD} primitives up
+     */
+    static IntStream indices(int n) {
+        IntStream stream = IntStream.range(0, n);
+        return n >= PARALLEL_THRESHOLD ? stream.parallel() : stream;
+    }
+
+    /**
+     * Builds the tree
+     *
+     * @return the root node of the tree
+     */
+    BVHNode build() {
+        return order.length < PARALLEL_THRESHOLD ? build(0, order.length) : new BuildTask(0, order.length).invoke();
+    }
+
+    /**
+     * Fork/join task building the sub-tree of a large range, forking the building of the left sub-tree
+     *
+     * @param start first index of the range (inclusive)
+     * @param end   last index of the range (exclusive)
+     */
+    @SuppressWarnings("serial")
+    private class BuildTask extends RecursiveTask<BVHNode> {
+        /** First index of the range (inclusive) */
+        private final int start;
+        /** Last index of the range (exclusive) */
+        private final int end;
+
+        /**
+         * Constructs the task of a range
+         *
+         * @param start first index of the range (inclusive)
+         * @param end   last index of the range (exclusive)
+         */
+        BuildTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Builds the sub-tree of the range
+         *
+         * @return the root node of the sub-tree
+         */
+        @Override
+        protected BVHNode compute() {
+            if (end - start < PARALLEL_THRESHOLD) return build(start, end);
+            AABB box = rangeBox(bounds, order, start, end);
+            int mid = partition(bounds, centroids, order, start, end, maxLeafSize);
+            if (mid < 0) return leaf(box, start, end);
+            BuildTask left = new BuildTask(start, mid);
+            left.fork();
+            BVHNode right = new BuildTask(mid, end).compute();
+            return new BVHNode(box, left.join(), right);
+        }
+    }
+
+    /**
+     * Builds the sub-tree of the primitives in the given range of the order array
+     *
+     * @param start first index of the range (inclusive)
+     * @param end   last index of the range (exclusive)
+     * @return the root node of the sub-tree
+     */
+    private BVHNode build(int start, int end) {
+        AABB box = rangeBox(bounds, order, start, end);
+        int mid = partition(bounds, centroids, order, start, end, maxLeafSize);
+        if (mid < 0) return leaf(box, start, end);
+        return new BVHNode(box, build(start, mid), build(mid, end));
+    }
+
+    /**
+     * Creates a leaf of the primitives in the given range of the order array
+     *
+     * @param box   the bounding box of the range
+     * @param start first index of the range (inclusive)
+     * @param end   last index of the range (exclusive)
+     * @return the leaf node
+     */
+    private BVHNode leaf(AABB box, int start, int end) {
+        Intersectable[] leaf = new Intersectable[end - start];
+        for (int i = start; i < end; i++)
+            leaf[i - start] = primitives[order[i]];
+        return new BVHNode(box, leaf);
+    }
+
+    /**
+     * Chooses the split of the primitives in the given range according to the Surface Area Heuristic
+     * and partitions the range of the order array accordingly.
+     * The centroids are binned along each of the axes, and the split between the bins with the
+     * lowest cost is chosen. If no split is cheaper than a leaf (and the range fits into a leaf),
+     * the range is left as is. When the centroids cannot be binned (they coincide or are unbounded)
+     * the range is split at the median.
+     *
+     * @param bounds      bounding boxes of the primitives (6 numbers per primitive)
+     * @param centroids   centroids of the primitives (3 numbers per primitive)
+     * @param order       permutation of the primitive indices
+     * @param start       first index of the range (inclusive)
+     * @param end         last index of the range (exclusive)
+     * @param maxLeafSize maximum amount of primitives in a single leaf
+     * @return the index splitting the range into two non-empty parts, or -1 if the range should be a leaf
+     */
+    static int partition(double[] bounds, double[] centroids, int[] order, int start, int end, int maxLeafSize) {
+        int count = end - start;
+        if (count <= 1) return -1;
+
+        // Bounds of the node and of the centroids in the range
+        double[] nodeBox = emptyBox();
+        double[] centroidBox = emptyBox();
+        for (int i = start; i < end; i++) {
+            int p = order[i];
+            grow(nodeBox, bounds, 6 * p);
+            for (int axis = 0; axis < 3; axis++) {
+                double c = centroids[3 * p + axis];
+                if (c < centroidBox[axis]) centroidBox[axis] = c;
+                if (c > centroidBox[axis + 3]) centroidBox[axis + 3] = c;
+            }
+        }
+        double nodeArea = area(nodeBox, 0);
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestBin = -1;
+
+        int[] binCounts = new int[BINS];
+        double[] binBounds = new double[6 * BINS];
+        double[] rightAreas = new double[BINS];
+        int[] rightCounts = new int[BINS];
+        double[] sweep = new double[6];
+
+        for (int axis = 0; axis < 3; axis++) {
+            double cMin = centroidBox[axis];
+            double extent = centroidBox[axis + 3] - cMin;
+            if (!(extent > 0) || !Double.isFinite(extent)) continue;
+
+            // Fill the bins
+            Arrays.fill(binCounts, 0);
+            for (int b = 0; b < BINS; b++) setEmpty(binBounds, 6 * b);
+            for (int i = start; i < end; i++) {
+                int p = order[i];
+                int b = bin(centroids[3 * p + axis], cMin, extent);
+                binCounts[b]++;
+                growBox(binBounds, 6 * b, bounds, 6 * p);
+            }
+
+            // Sweep from the right to collect the areas of the right sides
+            setEmpty(sweep, 0);
+            int n = 0;
+            for (int b = BINS - 1; b > 0; b--) {
+                n += binCounts[b];
+                growBox(sweep, 0, binBounds, 6 * b);
+                rightCounts[b] = n;
+                rightAreas[b] = area(sweep, 0);
+            }
+
+            // Sweep from the left and evaluate the cost of splitting after every bin
+            setEmpty(sweep, 0);
+            n = 0;
+            for (int b = 0; b < BINS - 1; b++) {
+                n += binCounts[b];
+                growBox(sweep, 0, binBounds, 6 * b);
+                if (n == 0 || rightCounts[b + 1] == 0) continue;
+                double cost = TRAVERSAL_COST
+                        + INTERSECTION_COST * (area(sweep, 0) * n + rightAreas[b + 1] * rightCounts[b + 1]) / nodeArea;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = b;
+                }
+            }
+        }
+
+        // Keep the primitives together if splitting does not pay off
+        if (count <= maxLeafSize && !(bestCost < INTERSECTION_COST * count)) return -1;
+
+        // No usable split plane - split at the median of the largest centroid extent
+        if (bestAxis < 0) return medianSplit(centroids, order, start, end, centroidBox);
+
+        // Partition the range according to the chosen bin
+        double cMin = centroidBox[bestAxis];
+        double extent = centroidBox[bestAxis + 3] - cMin;
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (bin(centroids[3 * order[i] + bestAxis], cMin, extent) <= bestBin) {
+                i++;
+            } else {
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j--] = tmp;
+            }
+        }
+        return i == start || i == end ? medianSplit(centroids, order, start, end, centroidBox) : i;
+    }
+
+    /**
+     * Splits the range at its middle after ordering it by the centroids along the axis with the largest extent
+     *
+     * @param centroids   centroids of the primitives
+     * @param order       permutation of the primitive indices
+     * @param start       first index of the range (inclusive)
+     * @param end         last index of the range (exclusive)
+     * @param centroidBox bounds of the centroids in the range
+     * @return the middle index of the range
+     */
+    private static int medianSplit(double[] centroids, int[] order, int start, int end, double[] centroidBox) {
+        double xExtent = centroidBox[3] - centroidBox[0];
+        double yExtent = centroidBox[4] - centroidBox[1];
+        double zExtent = centroidBox[5] - centroidBox[2];
+        int axis = xExtent >= yExtent && xExtent >= zExtent ? 0 : yExtent >= zExtent ? 1 : 2;
+        sortByKey(order, start, end, centroids, 3, axis);
+        return (start + end) / 2;
+    }
+
+    /**
+     * Sorts a range of primitive indices by a key of the primitives, keeping the order of equal keys (stable).
+     * Keys are compared as by {@link Double#compare(double, double)}.
+     *
+     * @param order  permutation of the primitive indices
+     * @param start  first index of the range (inclusive)
+     * @param end    last index of the range (exclusive)
+     * @param values the array holding the keys
+     * @param stride amount of numbers per primitive in the values array
+     * @param offset offset of the key among the numbers of a primitive
+     */
+    static void sortByKey(int[] order, int start, int end, double[] values, int stride, int offset) {
+        int n = end - start;
+        double[] keys = new double[n];
+        for (int i = 0; i < n; i++) keys[i] = values[stride * order[start + i] + offset];
+        mergeSort(order, keys, start, 0, n, new int[n], new double[n]);
+    }
+
+    /**
+     * Stable merge sort of a range of primitive indices by their keys
+     *
+     * @param order       permutation of the primitive indices
+     * @param keys        the keys of the sorted range of the order array
+     * @param base        index in the order array of the first key
+     * @param from        first key to sort (inclusive)
+     * @param to          last key to sort (exclusive)
+     * @param orderBuffer scratch buffer of the indices, as long as the keys
+     * @param keyBuffer   scratch buffer of the keys
+     */
+    static void mergeSort(int[] order, double[] keys, int base, int from, int to, int[] orderBuffer, double[] keyBuffer) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(order, keys, base, from, mid, orderBuffer, keyBuffer);
+        mergeSort(order, keys, base, mid, to, orderBuffer, keyBuffer);
+        merge(order, keys, base, from, mid, to, orderBuffer, keyBuffer);
+    }
+
+    /**
+     * Merges two sorted adjacent runs of primitive indices, taking from the left run on equal keys
+     *
+     * @param order       permutation of the primitive indices
+     * @param keys        the keys of the sorted range of the order array
+     * @param base        index in the order array of the first key
+     * @param from        first key of the left run (inclusive)
+     * @param mid         first key of the right run
+     * @param to          last key of the right run (exclusive)
+     * @param orderBuffer scratch buffer of the indices, as long as the keys
+     * @param keyBuffer   scratch buffer of the keys
+     */
+    static void merge(int[] order, double[] keys, int base, int from, int mid, int to,
+                      int[] orderBuffer, double[] keyBuffer) {
+        if (Double.compare(keys[mid - 1], keys[mid]) <= 0) return;
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            if (Double.compare(keys[i], keys[j]) <= 0) {
+                keyBuffer[k] = keys[i];
+                orderBuffer[k++] = order[base + i++];
+            } else {
+                keyBuffer[k] = keys[j];
+                orderBuffer[k++] = order[base + j++];
+            }
+        }
+        while (i < mid) {
+            keyBuffer[k] = keys[i];
+            orderBuffer[k++] = order[base + i++];
+        }
+        while (j < to) {
+            keyBuffer[k] = keys[j];
+            orderBuffer[k++] = order[base + j++];
+        }
+        System.arraycopy(keyBuffer, from, keys, from, to - from);
+        System.arraycopy(orderBuffer, from, order, base + from, to - from);
+    }
+
+    /**
+     * Computes the bin of a centroid coordinate
+     *
+     * @param c      the centroid coordinate
+     * @param cMin   minimal centroid coordinate along the axis
+     * @param extent extent of the centroids along the axis
+     * @return the bin index
+     */
+    private static int bin(double c, double cMin, double extent) {
+        int b = (int) (BINS * ((c - cMin) / extent));
+        return b >= BINS ? BINS - 1 : Math.max(b, 0);
+    }
+
+    /**
+     * Computes the bounding box of the primitives in the given range
+     *
+     * @param bounds bounding boxes of the primitives
+     * @param order  permutation of the primitive indices
+     * @param start  first index of the range (inclusive)
+     * @param end    last index of the range (exclusive)
+     * @return the bounding box of the range
+     */
+    static AABB rangeBox(double[] bounds, int[] order, int start, int end) {
+        double[] box = emptyBox();
+        for (int i = start; i < end; i++) grow(box, bounds, 6 * order[i]);
+        return new AABB(new Point(box[0], box[1], box[2]), new Point(box[3], box[4], box[5]));
+    }
+
+    /**
+     * Creates an empty (inverted) box which any box grows into
+     *
+     * @return the empty box
+     */
+    private static double[] emptyBox() {
+        double[] box = new double[6];
+        setEmpty(box, 0);
+        return box;
+    }
+
+    /**
+     * Resets a box stored in an array into an empty (inverted) box
+     *
+     * @param box    the array holding the box
+     * @param offset offset of the box in the array
+     */
+    static void setEmpty(double[] box, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            box[offset + axis] = Double.POSITIVE_INFINITY;
+            box[offset + axis + 3] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Grows a box (at offset 0) so it contains another box
+     *
+     * @param box    the box to grow
+     * @param other  the array holding the other box
+     * @param offset offset of the other box in its array
+     */
+    private static void grow(double[] box, double[] other, int offset) {
+        growBox(box, 0, other, offset);
+    }
+
+    /**
+     * Grows a box so it contains another box
+     *
+     * @param box         the array holding the box to grow
+     * @param offset      offset of the box to grow
+     * @param other       the array holding the other box
+     * @param otherOffset offset of the other box
+     */
+    static void growBox(double[] box, int offset, double[] other, int otherOffset) {
+        for (int axis = 0; axis < 3; axis++) {
+            if (other[otherOffset + axis] < box[offset + axis]) box[offset + axis] = other[otherOffset + axis];
+            if (other[otherOffset + axis + 3] > box[offset + axis + 3])
+                box[offset + axis + 3] = other[otherOffset + axis + 3];
+        }
+    }
+
+    /**
+     * Computes the surface area of a box stored in an array
+     *
+     * @param box    the array holding the box
+     * @param offset offset of the box in the array
+     * @return the surface area, 0 for an empty box
+     */
+    static double area(double[] box, int offset) {
+        double dx = box[offset + 3] - box[offset];
+        double dy = box[offset + 4] - box[offset + 1];
+        double dz = box[offset + 5] - box[offset + 2];
+        if (dx < 0 || dy < 0 || dz < 0) return 0;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+}
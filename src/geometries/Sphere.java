@@ -43,7 +43,12 @@ public class Sphere extends RadialGeometry {
      */
     @Override
     public Vector getNormal(Point point) {
-        return point.subtract(center).normalize();
+        // The vector from the center is normalized on its components, allocating only the result
+        double x = point.getX() - center.getX();
+        double y = point.getY() - center.getY();
+        double z = point.getZ() - center.getZ();
+        double scale = 1.0 / Math.sqrt(x * x + y * y + z * z);
+        return new Vector(x * scale, y * scale, z * scale);
     }
 
     /**
@@ -72,14 +77,16 @@ public class Sphere extends RadialGeometry {
             return List.of(new Intersection(this,ray.getPoint(radius)));
         }
 
-        // Calculate the vector from the ray's origin to the sphere's center
-        Vector u = center.subtract(p0);
+        // Calculate the vector u from the ray's origin to the sphere's center (on the components)
+        double ux = center.getX() - p0.getX();
+        double uy = center.getY() - p0.getY();
+        double uz = center.getZ() - p0.getZ();
 
         // Project the vector onto the ray's direction
-        double tm = alignZero(v.dotProduct(u));
+        double tm = alignZero(v.getX() * ux + v.getY() * uy + v.getZ() * uz);
 
         // Calculate the squared distance from the sphere's center to the ray
-        double d2 = alignZero(u.lengthSquared() - tm * tm);
+        double d2 = alignZero(ux * ux + uy * uy + uz * uz - tm * tm);
 
         // Calculate the squared radius of the sphere
         double r2 = alignZero(radius * radius);
@@ -110,6 +117,41 @@ public class Sphere extends RadialGeometry {
         return null;
     }
 
+    /**
+     * Finds the closest intersection of a ray with the sphere.
+     * Only the nearer valid root of the intersection equation is turned into a point.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Point p0 = ray.getHead();
+
+        // Special case: if the ray starts at the center of the sphere
+        if (p0.equals(center)) {
+            return alignZero(maxDistance - radius) > 0 ? new Intersection(this, ray.getPoint(radius)) : null;
+        }
+
+        // Same equation as in the full intersections calculation
+        Vector v = ray.getDirection();
+        double ux = center.getX() - p0.getX();
+        double uy = center.getY() - p0.getY();
+        double uz = center.getZ() - p0.getZ();
+        double tm = alignZero(v.getX() * ux + v.getY() * uy + v.getZ() * uz);
+        double d2 = alignZero(ux * ux + uy * uy + uz * uz - tm * tm);
+        double r2 = alignZero(radius * radius);
+        if (alignZero(d2 - r2) > 0) return null;
+        double th = alignZero(Math.sqrt(r2 - d2));
+        if (alignZero(th) == 0) return null;
+
+        // The nearer root in front of the ray's origin, unless it is beyond the maximal distance
+        double t1 = alignZero(tm - th);
+        double t = t1 > 0 ? t1 : alignZero(tm + th);
+        return t > 0 && alignZero(maxDistance - t) > 0 ? new Intersection(this, ray.getPoint(t)) : null;
+    }
+
     /**
      * Returns the axis-aligned bounding box (AABB) of the sphere.
      * The bounding box is defined by the minimum and maximum coordinates
@@ -118,7 +160,7 @@ public class Sphere extends RadialGeometry {
      * @return the axis-aligned bounding box (AABB) of the sphere
      */
     @Override
-    public AABB getBoundingBox() {
+    protected AABB computeBoundingBox() {
         // Calculate the axis-aligned bounding box (AABB) of the sphere
         double r = radius;
 
@@ -14,6 +14,26 @@ import static primitives.Util.isZero;
  * @author Tehila Shraga and Tova Tretiak
  */
 public class Triangle extends Polygon {
+    // The components of the first vertex and of the two edges from it, computed once,
+    // so the intersection calculation works on primitive numbers only
+    /** The x coordinate of the first vertex */
+    private final double v0x;
+    /** The y coordinate of the first vertex */
+    private final double v0y;
+    /** The z coordinate of the first vertex */
+    private final double v0z;
+    /** The x component of the edge from the first to the second vertex */
+    private final double e1x;
+    /** The y component of the edge from the first to the second vertex */
+    private final double e1y;
+    /** The z component of the edge from the first to the second vertex */
+    private final double e1z;
+    /** The x component of the edge from the first to the third vertex */
+    private final double e2x;
+    /** The y component of the edge from the first to the third vertex */
+    private final double e2y;
+    /** The z component of the edge from the first to the third vertex */
+    private final double e2z;
 
     /**
      * Constructor to initialize a triangle with three given points.
@@ -24,6 +44,15 @@ public class Triangle extends Polygon {
      */
     public Triangle(Point point1, Point point2, Point point3) {
         super(point1, point2, point3);
+        v0x = point1.getX();
+        v0y = point1.getY();
+        v0z = point1.getZ();
+        e1x = point2.getX() - v0x;
+        e1y = point2.getY() - v0y;
+        e1z = point2.getZ() - v0z;
+        e2x = point3.getX() - v0x;
+        e2y = point3.getY() - v0y;
+        e2z = point3.getZ() - v0z;
     }
 
     /**
@@ -33,22 +62,31 @@ public class Triangle extends Polygon {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Intersection intersection = calculateClosestIntersectionHelper(ray, maxDistance);
+        return intersection == null ? null : List.of(intersection);
+    }
+
+    /**
+     * Finds the intersection of a ray with the triangle - a ray intersects a triangle at most once.
+     * @param ray the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the intersection, or {@code null} if there is no intersection
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
         // Ray's origin point and direction vector
         Point p0 = ray.getHead();
         Vector dir = ray.getDirection();
+        double dx = dir.getX();
+        double dy = dir.getY();
+        double dz = dir.getZ();
 
-        // Vertices of the triangle
-        Point v0 = vertices.get(0);
-        Point v1 = vertices.get(1);
-        Point v2 = vertices.get(2);
-
-        // Calculate the edges of the triangle
-        Vector edge1 = v1.subtract(v0);
-        Vector edge2 = v2.subtract(v0);
-
-        // Calculate the determinant to check if the ray is parallel to the triangle
-        Vector h = dir.crossProduct(edge2); // Cross product of ray direction and edge2
-        double a = alignZero(edge1.dotProduct(h)); // Determinant
+        // Calculate the determinant to check if the ray is parallel to the triangle:
+        // h is the cross product of the ray direction and edge2
+        double hx = dy * e2z - dz * e2y;
+        double hy = dz * e2x - dx * e2z;
+        double hz = dx * e2y - dy * e2x;
+        double a = alignZero(e1x * hx + e1y * hy + e1z * hz); // Determinant
 
         // If determinant is near zero, the ray is parallel to the triangle
         if (isZero(a)) return null;
@@ -56,22 +94,26 @@ public class Triangle extends Polygon {
         // Calculate the inverse of the determinant
         double f = alignZero(1.0 / a);
 
-        // Calculate the vector from the ray's origin to the first vertex of the triangle
-        Vector s = p0.subtract(v0);
+        // Calculate the vector s from the first vertex of the triangle to the ray's origin
+        double sx = p0.getX() - v0x;
+        double sy = p0.getY() - v0y;
+        double sz = p0.getZ() - v0z;
 
         // Calculate the barycentric coordinate u
-        double u = alignZero(f * s.dotProduct(h));
+        double u = alignZero(f * (sx * hx + sy * hy + sz * hz));
         // If u is outside the range [0, 1], the intersection is outside the triangle
         if (u <= 0 || u >= 1) return null;
 
-        // Calculate the barycentric coordinate v
-        Vector q = s.crossProduct(edge1);
-        double v = alignZero(f * dir.dotProduct(q));
+        // Calculate the barycentric coordinate v: q is the cross product of s and edge1
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = alignZero(f * (dx * qx + dy * qy + dz * qz));
         // If v is outside the range [0, 1] or u + v >= 1, the intersection is outside the triangle
         if (v <= 0 || u + v >= 1) return null;
 
         // Calculate the distance t from the ray's origin to the intersection point
-        double t = alignZero(f * edge2.dotProduct(q));
+        double t = alignZero(f * (e2x * qx + e2y * qy + e2z * qz));
 
         // If t is less than or equal to zero, the intersection point is behind the ray's origin
         if (t <= 0) return null;
@@ -81,6 +123,9 @@ public class Triangle extends Polygon {
 
         // Calculate the intersection point
         Point intersectionPoint = ray.getPoint(t);
+        Point v0 = vertices.get(0);
+        Point v1 = vertices.get(1);
+        Point v2 = vertices.get(2);
 
         // Reject the intersection if it lies exactly on a vertex or edge of the triangle
         if (intersectionPoint.equals(p0) ||
@@ -88,8 +133,8 @@ public class Triangle extends Polygon {
             return null;
         }
 
-        // Return the intersection point as a list
-        return List.of(new Intersection(this,intersectionPoint));
+        // Return the intersection
+        return new Intersection(this,intersectionPoint);
     }
 }
 
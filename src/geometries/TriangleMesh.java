@@ -0,0 +1,532 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * This class represents a mesh of triangles sharing the same emission and material.
+ * Unlike a collection of {@link Triangle} objects, the mesh is stored in a few primitive arrays
+ * (structure of arrays): the vertex positions (3 numbers per vertex), the index buffer
+ * (3 vertex indices per triangle) and the first vertex and the two edges of every triangle,
+ * which are computed once for the intersection calculation.
+ * The mesh holds its own BVH in the linear form of {@link FlatBVH}, built by the Surface Area Heuristic,
+ * and the leaves are intersected by a batched Möller–Trumbore loop over the triangle arrays.
+ * Therefore a mesh of millions of triangles is a handful of objects, and the intersection
+ * allocates nothing but the reported intersections.
+ * The intersections report the index of the hit triangle (see {@link Intersection#index}),
+ * which is used for the normal of the intersection.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public class TriangleMesh extends Geometry {
+    /** Maximal distance of a point from a triangle which is still considered on it */
+    private static final double ON_MESH_TOLERANCE = 1e-9;
+    /** Tolerance of the barycentric coordinates of a point which is still considered inside a triangle */
+    private static final double BARYCENTRIC_TOLERANCE = 1e-9;
+
+    /** The vertex positions - 3 numbers (x,y,z) per vertex */
+    final double[] positions;
+    /** The index buffer - 3 vertex indices per triangle */
+    final int[] indices;
+
+    /** The first vertex and the two edges from it - 9 numbers per triangle, in the order of the leaves */
+    final double[] edges;
+    /** The index of every triangle in the index buffer, in the order of the leaves */
+    final int[] triangles;
+    /** Bounds of the BVH nodes - 6 numbers (min x,y,z and max x,y,z) per node */
+    final double[] bounds;
+    /** Index of the right child for inner nodes, offset of the first triangle for leaves */
+    final int[] offsets;
+    /** Amount of triangles of a leaf, 0 for inner nodes */
+    final int[] counts;
+    /** Amount of levels in the deepest branch, which bounds the traversal stack */
+    final int depth;
+    /** The bounding box of the whole mesh */
+    private final AABB box;
+
+    /**
+     * Constructs a mesh from a vertex buffer and an index buffer.
+     * The buffers are not copied - the mesh takes them over (a mesh may hold hundreds of MB),
+     * so the caller must not modify them afterwards.
+     * Degenerate triangles (with collinear vertices) are allowed and are never intersected.
+     *
+     * @param positions the vertex positions - 3 numbers (x,y,z) per vertex
+     * @param indices   the index buffer - 3 vertex indices per triangle
+     * @throws IllegalArgumentException if the buffers are not made of triples, there are no triangles,
+     *                                  or an index refers to a missing vertex
+     */
+    public TriangleMesh(double[] positions, int[] indices) {
+        if (positions.length % 3 != 0)
+            throw new IllegalArgumentException("Vertex positions must be triples of coordinates");
+        if (indices.length == 0 || indices.length % 3 != 0)
+            throw new IllegalArgumentException("A mesh must have at least one triangle of 3 vertex indices");
+        int vertexCount = positions.length / 3;
+        for (int index : indices)
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("Vertex index " + index + " is out of range");
+        this.positions = positions;
+        this.indices = indices;
+
+        Builder builder = new Builder();
+        int n = indices.length / 3;
+        builder.build(0, n, 1);
+        edges = new double[9 * n];
+        triangles = builder.order;
+        SAHBVHBuilder.indices(n).forEach(slot -> {
+            int i = 3 * triangles[slot];
+            int v0 = 3 * indices[i], v1 = 3 * indices[i + 1], v2 = 3 * indices[i + 2];
+            int e = 9 * slot;
+            for (int axis = 0; axis < 3; axis++) {
+                edges[e + axis] = positions[v0 + axis];
+                edges[e + 3 + axis] = positions[v1 + axis] - positions[v0 + axis];
+                edges[e + 6 + axis] = positions[v2 + axis] - positions[v0 + axis];
+            }
+        });
+        bounds = Arrays.copyOf(builder.nodeBounds, 6 * builder.size);
+        offsets = Arrays.copyOf(builder.offsets, builder.size);
+        counts = Arrays.copyOf(builder.counts, builder.size);
+        depth = builder.depth;
+        box = new AABB(new Point(bounds[0], bounds[1], bounds[2]), new Point(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Restores a mesh with its hierarchy from its arrays (e.g. loaded from a scene cache), without any building
+     *
+     * @param positions the vertex positions
+     * @param indices   the index buffer
+     * @param edges     the first vertex and the two edges of every triangle, in the order of the leaves
+     * @param triangles the index of every triangle, in the order of the leaves
+     * @param bounds    bounds of the nodes
+     * @param offsets   indices of the right children or offsets of the triangles
+     * @param counts    amounts of triangles of the leaves
+     * @param depth     amount of levels in the deepest branch
+     */
+    TriangleMesh(double[] positions, int[] indices, double[] edges, int[] triangles,
+                 double[] bounds, int[] offsets, int[] counts, int depth) {
+        this.positions = positions;
+        this.indices = indices;
+        this.edges = edges;
+        this.triangles = triangles;
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.counts = counts;
+        this.depth = depth;
+        box = new AABB(new Point(bounds[0], bounds[1], bounds[2]), new Point(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Helper building the BVH of the triangles directly in the linear form.
+     * The triangles of a node occupy a range of the order array, which the
+     * Surface Area Heuristic partitions in place, so every leaf references a range of triangles.
+     * The sub-trees of large ranges are built in parallel into separate builders sharing the triangle
+     * arrays, whose nodes are appended in depth-first order, so the result is the same as of a serial build.
+     */
+    private class Builder {
+        /** Bounding boxes of the triangles - 6 numbers per triangle */
+        final double[] triangleBounds;
+        /** Centroids of the triangle bounding boxes - 3 numbers per triangle */
+        final double[] centroids;
+        /** Permutation of the triangle indices, partitioned in place while building */
+        final int[] order;
+        /** Bounds of the built nodes */
+        double[] nodeBounds = new double[6 * 64];
+        /** Offsets of the built nodes */
+        int[] offsets = new int[64];
+        /** Triangle counts of the built nodes */
+        int[] counts = new int[64];
+        /** Amount of built nodes */
+        int size = 0;
+        /** Maximal depth reached */
+        int depth = 0;
+
+        /**
+         * Computes the bounds and the centroids of the triangles
+         */
+        Builder() {
+            int n = indices.length / 3;
+            triangleBounds = new double[6 * n];
+            centroids = new double[3 * n];
+            order = new int[n];
+            SAHBVHBuilder.indices(n).forEach(t -> {
+                int b = 6 * t;
+                SAHBVHBuilder.setEmpty(triangleBounds, b);
+                for (int k = 0; k < 3; k++) {
+                    int v = 3 * indices[3 * t + k];
+                    for (int axis = 0; axis < 3; axis++) {
+                        triangleBounds[b + axis] = Math.min(triangleBounds[b + axis], positions[v + axis]);
+                        triangleBounds[b + 3 + axis] = Math.max(triangleBounds[b + 3 + axis], positions[v + axis]);
+                    }
+                }
+                for (int axis = 0; axis < 3; axis++)
+                    centroids[3 * t + axis] = 0.5 * triangleBounds[b + axis] + 0.5 * triangleBounds[b + 3 + axis];
+                order[t] = t;
+            });
+        }
+
+        /**
+         * Constructs a builder of a sub-tree, sharing the triangle arrays of another builder
+         *
+         * @param shared the builder whose triangle arrays are shared
+         */
+        Builder(Builder shared) {
+            triangleBounds = shared.triangleBounds;
+            centroids = shared.centroids;
+            order = shared.order;
+        }
+
+        /**
+         * Builds the sub-tree of the triangles in the given range of the order array
+         *
+         * @param start first index of the range (inclusive)
+         * @param end   last index of the range (exclusive)
+         * @param level the level of the node
+         */
+        void build(int start, int end, int level) {
+            depth = Math.max(depth, level);
+            int node = allocate();
+            for (int i = start; i < end; i++)
+                SAHBVHBuilder.growBox(nodeBounds, 6 * node, triangleBounds, 6 * order[i]);
+            int mid = SAHBVHBuilder.partition(triangleBounds, centroids, order, start, end,
+                    SAHBVHBuilder.MAX_LEAF_SIZE);
+            if (mid < 0) {
+                offsets[node] = start;
+                counts[node] = end - start;
+                return;
+            }
+            if (end - start < SAHBVHBuilder.PARALLEL_THRESHOLD) {
+                build(start, mid, level + 1);
+                offsets[node] = size;
+                build(mid, end, level + 1);
+                return;
+            }
+            BuildTask left = new BuildTask(start, mid, level + 1);
+            left.fork();
+            Builder right = new BuildTask(mid, end, level + 1).compute();
+            append(left.join());
+            offsets[node] = size;
+            append(right);
+        }
+
+        /**
+         * Appends the nodes of a sub-tree built by another builder,
+         * relocating the indices of the right children of its inner nodes
+         *
+         * @param chunk the builder of the sub-tree
+         */
+        private void append(Builder chunk) {
+            int base = size;
+            for (int k = 0; k < chunk.size; k++) {
+                int node = allocate();
+                System.arraycopy(chunk.nodeBounds, 6 * k, nodeBounds, 6 * node, 6);
+                counts[node] = chunk.counts[k];
+                // leaves keep the offsets of their triangles, inner nodes point to their right children
+                offsets[node] = chunk.counts[k] == 0 ? chunk.offsets[k] + base : chunk.offsets[k];
+            }
+            depth = Math.max(depth, chunk.depth);
+        }
+
+        /**
+         * Fork/join task building the sub-tree of a range into a separate builder
+         */
+        @SuppressWarnings("serial")
+        private class BuildTask extends RecursiveTask<Builder> {
+            /** First index of the range (inclusive) */
+            private final int start;
+            /** Last index of the range (exclusive) */
+            private final int end;
+            /** The level of the root of the sub-tree */
+            private final int level;
+
+            /**
+             * Constructs the task of a range
+             *
+             * @param start first index of the range (inclusive)
+             * @param end   last index of the range (exclusive)
+             * @param level the level of the root of the sub-tree
+             */
+            BuildTask(int start, int end, int level) {
+                this.start = start;
+                this.end = end;
+                this.level = level;
+            }
+
+            /**
+             * Builds the sub-tree of the range
+             *
+             * @return the builder holding the nodes of the sub-tree
+             */
+            @Override
+            protected Builder compute() {
+                Builder chunk = new Builder(Builder.this);
+                chunk.build(start, end, level);
+                return chunk;
+            }
+        }
+
+        /**
+         * Allocates the next node with empty bounds
+         *
+         * @return the index of the node
+         */
+        private int allocate() {
+            if (size == counts.length) {
+                nodeBounds = Arrays.copyOf(nodeBounds, 12 * size);
+                offsets = Arrays.copyOf(offsets, 2 * size);
+                counts = Arrays.copyOf(counts, 2 * size);
+            }
+            SAHBVHBuilder.setEmpty(nodeBounds, 6 * size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the amount of triangles in the mesh
+     *
+     * @return the amount of triangles
+     */
+    public int getTriangleCount() {
+        return indices.length / 3;
+    }
+
+    /**
+     * Returns the amount of vertices in the mesh
+     *
+     * @return the amount of vertices
+     */
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    /**
+     * Returns a vertex of the mesh
+     *
+     * @param vertex the index of the vertex
+     * @return the position of the vertex
+     */
+    public Point getVertex(int vertex) {
+        return new Point(positions[3 * vertex], positions[3 * vertex + 1], positions[3 * vertex + 2]);
+    }
+
+    /**
+     * Computes the normal of a triangle of the mesh.
+     * As for a {@link Triangle}, the direction of the normal follows the order of the vertices of the triangle.
+     *
+     * @param triangle the index of the triangle
+     * @return the normal of the triangle
+     * @throws IllegalArgumentException if the triangle is degenerate
+     */
+    public Vector getNormal(int triangle) {
+        int v0 = 3 * indices[3 * triangle], v1 = 3 * indices[3 * triangle + 1], v2 = 3 * indices[3 * triangle + 2];
+        double ax = positions[v1] - positions[v0], ay = positions[v1 + 1] - positions[v0 + 1];
+        double az = positions[v1 + 2] - positions[v0 + 2];
+        double bx = positions[v2] - positions[v0], by = positions[v2 + 1] - positions[v0 + 1];
+        double bz = positions[v2 + 2] - positions[v0 + 2];
+        return new Vector(ay * bz - az * by, az * bx - ax * bz, ax * by - ay * bx).normalize();
+    }
+
+    /**
+     * Computes the normal of the mesh at a point on it - the normal of a triangle containing the point.
+     * The triangle is found through the BVH of the mesh. A point on an edge shared by several triangles
+     * gets the normal of one of them, so {@link #getNormal(Intersection)} is preferred for intersections.
+     *
+     * @param point the point at which the normal is calculated
+     * @return the normal of a triangle containing the point
+     * @throws IllegalArgumentException if the point is not on the mesh
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        BVHTraversal traversal = BVHTraversal.start(bounds, offsets, counts, depth, point, ON_MESH_TOLERANCE);
+        try {
+            for (int leaf; (leaf = traversal.nextLeaf(0)) >= 0; )
+                for (int slot = offsets[leaf]; slot < offsets[leaf] + counts[leaf]; slot++)
+                    if (onTriangle(slot, px, py, pz)) return getNormal(triangles[slot]);
+        } finally {
+            traversal.end();
+        }
+        throw new IllegalArgumentException("The point " + point + " is not on the mesh");
+    }
+
+    /**
+     * Checks whether a point is on a triangle (including its edges and vertices),
+     * up to the tolerance of the points on the mesh
+     *
+     * @param slot the position of the triangle in the order of the leaves
+     * @param px   x coordinate of the point
+     * @param py   y coordinate of the point
+     * @param pz   z coordinate of the point
+     * @return true if the point is on the triangle, false if not or if the triangle is degenerate
+     */
+    private boolean onTriangle(int slot, double px, double py, double pz) {
+        int e = 9 * slot;
+        double e1x = edges[e + 3], e1y = edges[e + 4], e1z = edges[e + 5];
+        double e2x = edges[e + 6], e2y = edges[e + 7], e2z = edges[e + 8];
+        // n is the (not normalized) normal, w is the vector from the first vertex to the point
+        double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        double nn = nx * nx + ny * ny + nz * nz;
+        if (isZero(nn)) return false;
+        double wx = px - edges[e], wy = py - edges[e + 1], wz = pz - edges[e + 2];
+        double distance = (wx * nx + wy * ny + wz * nz) / Math.sqrt(nn);
+        if (Math.abs(distance) > ON_MESH_TOLERANCE) return false;
+
+        // The barycentric coordinates of the projection of the point: w = u * edge1 + v * edge2
+        double u = ((wy * e2z - wz * e2y) * nx + (wz * e2x - wx * e2z) * ny + (wx * e2y - wy * e2x) * nz) / nn;
+        double v = ((e1y * wz - e1z * wy) * nx + (e1z * wx - e1x * wz) * ny + (e1x * wy - e1y * wx) * nz) / nn;
+        return u >= -BARYCENTRIC_TOLERANCE && v >= -BARYCENTRIC_TOLERANCE && u + v <= 1 + BARYCENTRIC_TOLERANCE;
+    }
+
+    /**
+     * Computes the normal of the mesh at an intersection - the normal of the intersected triangle.
+     *
+     * @param intersection the intersection with the mesh
+     * @return the normal of the intersected triangle
+     */
+    @Override
+    public Vector getNormal(Intersection intersection) {
+        return getNormal(intersection.index);
+    }
+
+    /**
+     * Returns the bounding box of the whole mesh.
+     *
+     * @return the bounding box of the mesh
+     */
+    @Override
+    protected AABB computeBoundingBox() {
+        return box;
+    }
+
+    /**
+     * Finds all the intersections of a ray with the triangles of the mesh.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return a list of intersections, or {@code null} if there are no intersections
+     */
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        List<Intersection> intersections = new ArrayList<>();
+        traverse(ray, maxDistance, intersections);
+        return intersections.isEmpty() ? null : intersections;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the triangles of the mesh.
+     * Only the intersection with the closest triangle is created.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray's origin to consider for intersections
+     * @return the closest intersection, or {@code null} if there are no intersections
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        int slot = traverse(ray, maxDistance, null);
+        return slot < 0 ? null : intersection(ray, slot);
+    }
+
+    /**
+     * Creates the intersection of a ray with a triangle the ray is known to hit
+     *
+     * @param ray  the ray
+     * @param slot the position of the triangle in the order of the leaves
+     * @return the intersection
+     */
+    private Intersection intersection(Ray ray, int slot) {
+        Point head = ray.getHead();
+        Vector dir = ray.getDirection();
+        double t = intersect(slot, head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ());
+        return new Intersection(this, ray.getPoint(t), triangles[slot]);
+    }
+
+    /**
+     * Möller–Trumbore intersection of a ray with a triangle, on the primitive arrays.
+     * As in {@link Triangle}, intersections on the edges and the vertices are not considered.
+     *
+     * @param slot the position of the triangle in the order of the leaves
+     * @param ox   x coordinate of the ray origin
+     * @param oy   y coordinate of the ray origin
+     * @param oz   z coordinate of the ray origin
+     * @param dx   x component of the ray direction
+     * @param dy   y component of the ray direction
+     * @param dz   z component of the ray direction
+     * @return the distance of the intersection, or 0 if there is no intersection in front of the origin
+     */
+    private double intersect(int slot, double ox, double oy, double oz, double dx, double dy, double dz) {
+        int e = 9 * slot;
+        double e1x = edges[e + 3], e1y = edges[e + 4], e1z = edges[e + 5];
+        double e2x = edges[e + 6], e2y = edges[e + 7], e2z = edges[e + 8];
+
+        // h is the cross product of the ray direction and edge2, a is the determinant
+        double hx = dy * e2z - dz * e2y;
+        double hy = dz * e2x - dx * e2z;
+        double hz = dx * e2y - dy * e2x;
+        double a = alignZero(e1x * hx + e1y * hy + e1z * hz);
+        // The ray is parallel to the triangle
+        if (isZero(a)) return 0;
+        double f = alignZero(1.0 / a);
+
+        // s is the vector from the first vertex to the ray origin, u is the first barycentric coordinate
+        double sx = ox - edges[e], sy = oy - edges[e + 1], sz = oz - edges[e + 2];
+        double u = alignZero(f * (sx * hx + sy * hy + sz * hz));
+        if (u <= 0 || u >= 1) return 0;
+
+        // q is the cross product of s and edge1, v is the second barycentric coordinate
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = alignZero(f * (dx * qx + dy * qy + dz * qz));
+        if (v <= 0 || u + v >= 1) return 0;
+
+        double t = alignZero(f * (e2x * qx + e2y * qy + e2z * qz));
+        return t > 0 ? t : 0;
+    }
+
+    /**
+     * Traverses the BVH front to back and intersects the triangles of the leaves the ray reaches.
+     * Without a list, the search distance shrinks to the closest intersection found so far
+     * and the closest triangle is returned;
+     * with a list, all the intersections before the maximal distance are added to it.
+     *
+     * @param ray           the ray
+     * @param maxDistance   the maximum distance from the ray's origin to consider for intersections
+     * @param intersections the list collecting all the intersections, or {@code null} for the closest one only
+     * @return the position of the closest intersected triangle in the order of the leaves,
+     * or -1 if there is none (or all the intersections are collected)
+     */
+    private int traverse(Ray ray, double maxDistance, List<Intersection> intersections) {
+        Point head = ray.getHead();
+        Vector dir = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+
+        int closestSlot = -1;
+        double closest = maxDistance;
+        BVHTraversal traversal = BVHTraversal.start(bounds, offsets, counts, depth, ray, maxDistance);
+        try {
+            for (int leaf; (leaf = traversal.nextLeaf(closest)) >= 0; ) {
+                // intersect the triangles of the leaf, shrinking the search distance unless all are collected
+                int offset = offsets[leaf];
+                for (int slot = offset; slot < offset + counts[leaf]; slot++) {
+                    double t = intersect(slot, ox, oy, oz, dx, dy, dz);
+                    if (t == 0 || alignZero(closest - t) <= 0) continue;
+                    if (intersections != null) {
+                        intersections.add(new Intersection(this, ray.getPoint(t), triangles[slot]));
+                    } else {
+                        closest = t;
+                        closestSlot = slot;
+                    }
+                }
+            }
+        } finally {
+            traversal.end();
+        }
+        return closestSlot;
+    }
+}
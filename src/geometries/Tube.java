@@ -182,24 +182,36 @@ public class Tube extends RadialGeometry {
         return result;
     }
 
+    /**
+     * Finds the closest intersection of a ray with the tube.
+     * The intersections list is sorted by the distance, so its first intersection is the closest one.
+     * @param ray The ray to check for intersections.
+     * @param maxDistance The maximum distance from the ray's origin to consider for intersections.
+     * @return The closest intersection, or {@code null} if there are no intersections.
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray, maxDistance);
+        return intersections == null ? null : intersections.getFirst();
+    }
+
     /**
      * Returns the axis-aligned bounding box (AABB) of the tube.
      * The bounding box is defined by the minimum and maximum coordinates
      * of the tube's axis extended by its radius along each axis (X, Y, Z).
+     * The tube is infinite in both directions of its axis, so the box is never bounded
+     * (see {@link AABB#isBounded()}) - it is narrow only across an axis parallel to a coordinate axis.
      *
      * @return the axis-aligned bounding box (AABB) of the tube
      */
     @Override
-    public AABB getBoundingBox() {
+    protected AABB computeBoundingBox() {
         // Calculate the axis-aligned bounding box (AABB) of the tube
         final double EXTENT = Double.MAX_VALUE / 4; // A large value to extend the axis in both directions
         final double r = radius;// Tube's radius
 
-        // Get the axis point and direction
-        Point axisPoint = axis.getHead();
-        Vector dir = axis.getDirection().normalize();
-
-        // Calculate the far point along the axis in both directions
+        // Calculate the far points along the axis in both directions
+        Point axisPoint = axis.getPoint(-EXTENT);
         Point farPoint = axis.getPoint(EXTENT);
 
         // Calculate the minimum and maximum coordinates for the bounding box
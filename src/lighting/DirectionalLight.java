@@ -27,6 +27,14 @@ public class DirectionalLight extends Light implements LightSource{
         this.direction = direction.normalize();
     }
 
+    /**
+     * Gets the direction of the light beam.
+     * @return The normalized direction of the light beam.
+     */
+    public Vector getDirection() {
+        return direction;
+    }
+
     /**
      * Gets the intensity of the light at a specific point in the scene.
      * @param p - The point in the scene where the intensity is being calculated.
@@ -38,6 +38,38 @@ public class PointLight extends Light implements LightSource{
         this.position = position;
     }
 
+    /**
+     * Gets the position of the point light source.
+     * @return The position of the light source.
+     */
+    public Point getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the constant attenuation coefficient of the point light source.
+     * @return The constant attenuation coefficient.
+     */
+    public double getKc() {
+        return kc;
+    }
+
+    /**
+     * Gets the linear attenuation coefficient of the point light source.
+     * @return The linear attenuation coefficient.
+     */
+    public double getKl() {
+        return kl;
+    }
+
+    /**
+     * Gets the quadratic attenuation coefficient of the point light source.
+     * @return The quadratic attenuation coefficient.
+     */
+    public double getKq() {
+        return kq;
+    }
+
     /**
      * Sets the constant attenuation coefficient for the point light source.
      * @param kc The constant attenuation coefficient.
@@ -90,7 +122,12 @@ public class PointLight extends Light implements LightSource{
      */
     @Override
     public Vector getL(Point p) {
-        return p.subtract(position).normalize();
+        // The vector from the light is normalized on its components, allocating only the result
+        double x = p.getX() - position.getX();
+        double y = p.getY() - position.getY();
+        double z = p.getZ() - position.getZ();
+        double scale = 1.0 / Math.sqrt(x * x + y * y + z * z);
+        return new Vector(x * scale, y * scale, z * scale);
     }
 
     /**
@@ -35,6 +35,22 @@ public class SpotLight extends PointLight{
         this.direction = direction.normalize();
     }
 
+    /**
+     * Gets the direction of the light beam.
+     * @return The normalized direction of the light beam.
+     */
+    public Vector getDirection() {
+        return direction;
+    }
+
+    /**
+     * Gets the narrowness of the beam.
+     * @return The narrowness of the beam.
+     */
+    public double getNarrowBeam() {
+        return narrowBeam;
+    }
+
     /**
      * Sets the constant attenuation coefficient for the spotLight source.
      * @param kc The constant attenuation coefficient.
@@ -63,6 +63,34 @@ public class Color {
         return new java.awt.Color(ir > 255 ? 255 : ir, ig > 255 ? 255 : ig, ib > 255 ? 255 : ib);
     }
 
+    /**
+     * Returns the red, green and blue components of the color
+     * @return the components triad
+     */
+    public Double3 getComponents() { return rgb; }
+
+    /**
+     * Returns the color packed into an RGB integer as {@link #getColor()}{@code .getRGB()} does,
+     * without creating the intermediate java.awt.Color object
+     * @return the packed RGB value (with the alpha set to 255)
+     */
+    public int toPackedRGB() {
+        int ir = (int) rgb.d1();
+        int ig = (int) rgb.d2();
+        int ib = (int) rgb.d3();
+        return 0xFF000000 | (ir > 255 ? 255 : ir) << 16 | (ig > 255 ? 255 : ig) << 8 | (ib > 255 ? 255 : ib);
+    }
+
+    /**
+     * Operation of adding this and another color (by component).
+     * Same as {@link #add(Color...)} with one color, without the arguments array.
+     * @param  color the other color to add
+     * @return       new Color object which is a result of the operation
+     */
+    public Color add(Color color) {
+        return new Color(rgb.d1() + color.rgb.d1(), rgb.d2() + color.rgb.d2(), rgb.d3() + color.rgb.d3());
+    }
+
     /**
      * Operation of adding this and one or more other colors (by component)
      * @param  colors one or more other colors to add
@@ -111,6 +139,18 @@ public class Color {
         return new Color(rgb.reduce(k));
     }
 
+    /**
+     * Checks whether this color is close to another color - no component differs by more than a threshold
+     * @param  other     the other color
+     * @param  threshold the maximal allowed difference of a component
+     * @return           true if the colors are close, false otherwise
+     */
+    public boolean isSimilar(Color other, double threshold) {
+        return Math.abs(rgb.d1() - other.rgb.d1()) <= threshold
+                && Math.abs(rgb.d2() - other.rgb.d2()) <= threshold
+                && Math.abs(rgb.d3() - other.rgb.d3()) <= threshold;
+    }
+
     @Override
     public String toString() { return "rgb:" + rgb; }
 }
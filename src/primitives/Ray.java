@@ -22,6 +22,21 @@ public class Ray {
      */
     final private Vector direction;
 
+    /** The inverse of the x component of the direction, for the slab tests of bounding boxes */
+    final private double inverseX;
+    /** The inverse of the y component of the direction */
+    final private double inverseY;
+    /** The inverse of the z component of the direction */
+    final private double inverseZ;
+    /** The signs of the direction components - bit 0, 1, 2 is set if the x, y, z component is negative */
+    final private int signs;
+
+    /**
+     * Direction components of a smaller absolute value are replaced by this value (keeping their sign)
+     * when inverted, so the slab distances of the bounding boxes stay finite
+     */
+    public static final double MIN_DIRECTION = 1e-12;
+
     /**
      * A small constant used to create a delta vector for shadow rays.
      * This is used to avoid self-intersection in shadow calculations.
@@ -34,7 +49,11 @@ public class Ray {
      */
     public Ray(Point head, Vector direction) {
         this.head = head;
-        this.direction = direction.normalize();
+        this.direction = normalized(direction);
+        inverseX = inverse(this.direction.getX());
+        inverseY = inverse(this.direction.getY());
+        inverseZ = inverse(this.direction.getZ());
+        signs = signs(inverseX, inverseY, inverseZ);
     }
 
     /**
@@ -46,11 +65,48 @@ public class Ray {
      */
     public Ray(Point head, Vector direction, Vector normal) {
         // Normalize the direction vector
-        this.direction = direction.normalize();
-        // Calculate the delta vector based on the normal vector and the direction
-        // If the dot product of the normal and direction is positive, use DELTA
-        Vector delta= normal.scale(normal.dotProduct(direction)>0? DELTA : -DELTA);
-        this.head=head.add(delta);
+        this.direction = normalized(direction);
+        inverseX = inverse(this.direction.getX());
+        inverseY = inverse(this.direction.getY());
+        inverseZ = inverse(this.direction.getZ());
+        signs = signs(inverseX, inverseY, inverseZ);
+        // Move the head by DELTA along the normal, to the side of the direction
+        // (the components are computed directly, without an intermediate delta vector)
+        double delta = normal.dotProduct(direction) > 0 ? DELTA : -DELTA;
+        this.head = new Point(head.getX() + normal.getX() * delta,
+                head.getY() + normal.getY() * delta,
+                head.getZ() + normal.getZ() * delta);
+    }
+
+    /**
+     * Normalizes a direction vector, unless it is already normalized (up to the accuracy of the
+     * calculations) - most of the rays are built from directions which were normalized on the components.
+     * @param direction the direction vector
+     * @return the normalized direction vector
+     */
+    private static Vector normalized(Vector direction) {
+        return isZero(direction.lengthSquared() - 1) ? direction : direction.normalize();
+    }
+
+    /**
+     * Computes the inverse of a direction component,
+     * replacing a (nearly) zero component by {@link #MIN_DIRECTION} of the same sign
+     * @param d the direction component
+     * @return the inverse of the component
+     */
+    private static double inverse(double d) {
+        return 1 / (Math.abs(d) < MIN_DIRECTION ? Math.copySign(MIN_DIRECTION, d) : d);
+    }
+
+    /**
+     * Packs the signs of the direction components
+     * @param x the inverse of the x component
+     * @param y the inverse of the y component
+     * @param z the inverse of the z component
+     * @return the sign bits - bit 0, 1, 2 is set if the x, y, z component is negative
+     */
+    private static int signs(double x, double y, double z) {
+        return (x < 0 ? 1 : 0) | (y < 0 ? 2 : 0) | (z < 0 ? 4 : 0);
     }
 
     @Override
@@ -82,6 +138,40 @@ public class Ray {
         return direction;
     }
 
+    /**
+     * Getter for the inverse of the x component of the direction (see {@link #MIN_DIRECTION}).
+     * @return the inverse of the x component
+     */
+    public double getInverseX() {
+        return inverseX;
+    }
+
+    /**
+     * Getter for the inverse of the y component of the direction (see {@link #MIN_DIRECTION}).
+     * @return the inverse of the y component
+     */
+    public double getInverseY() {
+        return inverseY;
+    }
+
+    /**
+     * Getter for the inverse of the z component of the direction (see {@link #MIN_DIRECTION}).
+     * @return the inverse of the z component
+     */
+    public double getInverseZ() {
+        return inverseZ;
+    }
+
+    /**
+     * Getter for the signs of the direction components.
+     * Bit 0, 1, 2 is set if the x, y, z component is negative - the ray enters the slabs of that axis
+     * through their maximum planes.
+     * @return the sign bits
+     */
+    public int getSigns() {
+        return signs;
+    }
+
     /***
      * Returns a point on the ray at a distance t from the head.
      * @param distance The distance from the head to the point on the ray.
@@ -91,7 +181,10 @@ public class Ray {
         if (isZero(distance)) {
             return head;
         }
-        return head.add(direction.scale(distance));
+        // The components are computed directly, without the intermediate scaled vector
+        return new Point(head.getX() + direction.getX() * distance,
+                head.getY() + direction.getY() * distance,
+                head.getZ() + direction.getZ() * distance);
     }
 
     /***
@@ -0,0 +1,163 @@
+package renderer;
+
+import primitives.Color;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * AdaptiveSupersampler is a helper class for adaptive anti-aliasing.
+ * A pixel is sampled at its four corners, and if the colors of the corners differ by more than
+ * a threshold, the pixel is divided into four sub-pixels which are sampled the same way recursively,
+ * up to a maximal depth. So only the pixels on edges and other fine details get more samples.
+ * The corners shared by neighboring pixels are traced once: a row of pixels is rendered from left
+ * to right, reusing the right corners of a pixel as the left corners of the next one, and the bottom
+ * corners of the row are kept in a cache for the top corners of the next row.
+ * The amount of samples traced for every pixel is counted in a histogram for tuning the cost.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class AdaptiveSupersampler {
+    /**
+     * A function tracing a single sample of the image
+     */
+    @FunctionalInterface
+    interface Sampler {
+        /**
+         * Traces a sample at a point of the view plane, in pixel units from the top left corner of the image
+         * @param x the horizontal position (pixel column units)
+         * @param y the vertical position (pixel row units)
+         * @return the color of the sample
+         */
+        Color sample(double x, double y);
+    }
+
+    /** The function tracing the samples */
+    private final Sampler sampler;
+    /** The maximal subdivision depth of a pixel */
+    private final int maxDepth;
+    /** The maximal difference of a color component between corners which are considered the same */
+    private final double threshold;
+    /** Amount of pixels per amount of samples traced for the pixel */
+    private final AtomicLongArray histogram;
+
+    /**
+     * Constructs an adaptive supersampler
+     * @param sampler   the function tracing the samples
+     * @param maxDepth  the maximal subdivision depth of a pixel
+     * @param threshold the maximal difference of a color component between corners considered the same
+     */
+    AdaptiveSupersampler(Sampler sampler, int maxDepth, double threshold) {
+        this.sampler   = sampler;
+        this.maxDepth  = maxDepth;
+        this.threshold = threshold;
+        histogram      = new AtomicLongArray(maxSamples(maxDepth) + 1);
+    }
+
+    /**
+     * Calculates the maximal amount of samples traced for a single pixel:
+     * four corners, and five more samples for each subdivided square
+     * @param depth the maximal subdivision depth
+     * @return the maximal amount of samples
+     */
+    static int maxSamples(int depth) {
+        return 4 + 5 * ((1 << 2 * depth) - 1) / 3;
+    }
+
+    /**
+     * Renders a run of pixels of a row from left to right and writes their colors to the image.
+     *
+     * @param row         the row of the pixels
+     * @param fromCol     the first column of the run
+     * @param toCol       the column after the last column of the run
+     * @param corners     the corners cache of the run ({@code toCol - fromCol + 1} entries): on entry
+     *                    the top corners of the row which are already traced (or {@code null} entries),
+     *                    on return the bottom corners of the row - the top corners of the next row
+     * @param imageWriter the image to write the pixels to
+     */
+    void renderRow(int row, int fromCol, int toCol, Color[] corners, ImageWriter imageWriter) {
+        int[] count = new int[1];
+        Color bottomLeft = null;
+        for (int j = fromCol, k = 0; j < toCol; j++, k++) {
+            count[0] = 0;
+            Color topLeft = corners[k] != null ? corners[k] : sample(j, row, count);
+            if (corners[k + 1] == null) corners[k + 1] = sample(j + 1, row, count);
+            if (bottomLeft == null) bottomLeft = sample(j, row + 1, count);
+            Color bottomRight = sample(j + 1, row + 1, count);
+
+            imageWriter.writePixel(j, row,
+                    subdivide(j, row, 1, topLeft, corners[k + 1], bottomLeft, bottomRight, 0, count));
+            histogram.incrementAndGet(count[0]);
+
+            // the top left corner is not needed anymore - keep the bottom one for the next row
+            corners[k] = bottomLeft;
+            bottomLeft = bottomRight;
+        }
+        corners[toCol - fromCol] = bottomLeft;
+    }
+
+    /**
+     * Traces a sample and counts it
+     * @param x     the horizontal position (pixel column units)
+     * @param y     the vertical position (pixel row units)
+     * @param count the counter of the samples of the current pixel
+     * @return the color of the sample
+     */
+    private Color sample(double x, double y, int[] count) {
+        count[0]++;
+        return sampler.sample(x, y);
+    }
+
+    /**
+     * Calculates the color of a square by its corners, subdividing it while the corners differ
+     * @param x           the horizontal position of the top left corner
+     * @param y           the vertical position of the top left corner
+     * @param size        the size of the side of the square
+     * @param topLeft     the color of the top left corner
+     * @param topRight    the color of the top right corner
+     * @param bottomLeft  the color of the bottom left corner
+     * @param bottomRight the color of the bottom right corner
+     * @param depth       the subdivision depth of the square
+     * @param count       the counter of the samples of the current pixel
+     * @return the color of the square
+     */
+    private Color subdivide(double x, double y, double size,
+                            Color topLeft, Color topRight, Color bottomLeft, Color bottomRight,
+                            int depth, int[] count) {
+        if (depth == maxDepth || similar(topLeft, topRight, bottomLeft, bottomRight))
+            return topLeft.add(topRight, bottomLeft, bottomRight).reduce(4);
+
+        double half   = size / 2;
+        Color  top    = sample(x + half, y, count);
+        Color  left   = sample(x, y + half, count);
+        Color  center = sample(x + half, y + half, count);
+        Color  right  = sample(x + size, y + half, count);
+        Color  bottom = sample(x + half, y + size, count);
+        return subdivide(x, y, half, topLeft, top, left, center, depth + 1, count)
+                .add(subdivide(x + half, y, half, top, topRight, center, right, depth + 1, count),
+                        subdivide(x, y + half, half, left, center, bottomLeft, bottom, depth + 1, count),
+                        subdivide(x + half, y + half, half, center, right, bottom, bottomRight, depth + 1, count))
+                .reduce(4);
+    }
+
+    /**
+     * Checks whether all the colors are close to each other
+     * @param colors the colors
+     * @return true if every two colors are close
+     */
+    private boolean similar(Color... colors) {
+        for (int i = 0; i < colors.length; i++)
+            for (int k = i + 1; k < colors.length; k++)
+                if (!colors[i].isSimilar(colors[k], threshold)) return false;
+        return true;
+    }
+
+    /**
+     * Returns the samples histogram: the element at index n is the amount of pixels for which n samples were traced
+     * @return a copy of the histogram
+     */
+    long[] getHistogram() {
+        long[] copy = new long[histogram.length()];
+        for (int i = 0; i < copy.length; i++) copy[i] = histogram.get(i);
+        return copy;
+    }
+}
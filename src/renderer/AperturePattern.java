@@ -0,0 +1,83 @@
+package renderer;
+
+import java.util.Random;
+
+/**
+ * AperturePattern is a helper class for depth of field sampling.
+ * It holds a fixed sequence of sample points on the unit disk, generated once by Mitchell's
+ * best candidate algorithm: every point is the candidate farthest from the points before it.
+ * Therefore every prefix of the sequence is spread evenly over the disk (a progressive
+ * Poisson-disk pattern), so the sampling may stop after any amount of samples.
+ * The pattern is immutable and shared by all the rendering threads - a thread varies it per pixel
+ * by a random rotation, without allocating anything.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class AperturePattern {
+    /** Amount of random candidates per pattern point */
+    private static final int CANDIDATES = 32;
+    /** Seed of the pattern generation, so the pattern is the same in every render */
+    private static final long SEED = 5785L;
+
+    /** The horizontal coordinates of the points */
+    private final double[] xs;
+    /** The vertical coordinates of the points */
+    private final double[] ys;
+
+    /**
+     * Generates a pattern of points on the unit disk
+     * @param count the amount of points
+     */
+    AperturePattern(int count) {
+        if (count <= 0) throw new IllegalArgumentException("Amount of aperture samples must be positive");
+        xs = new double[count];
+        ys = new double[count];
+        Random random = new Random(SEED);
+        for (int k = 0; k < count; k++) {
+            double bestDistance = -1;
+            // the first point has no neighbors, one candidate is enough
+            int candidates = k == 0 ? 1 : CANDIDATES;
+            for (int c = 0; c < candidates; c++) {
+                // uniform point on the disk: the square root of the radius keeps the density even
+                double r = Math.sqrt(random.nextDouble());
+                double theta = random.nextDouble() * 2 * Math.PI;
+                double x = r * Math.cos(theta);
+                double y = r * Math.sin(theta);
+                double distance = Double.MAX_VALUE;
+                for (int p = 0; p < k; p++)
+                    distance = Math.min(distance, (x - xs[p]) * (x - xs[p]) + (y - ys[p]) * (y - ys[p]));
+                if (distance > bestDistance) {
+                    bestDistance = distance;
+                    xs[k] = x;
+                    ys[k] = y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of points of the pattern
+     * @return the amount of points
+     */
+    int size() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the horizontal coordinate of a point
+     * @param k the index of the point
+     * @return the horizontal coordinate
+     */
+    double x(int k) {
+        return xs[k];
+    }
+
+    /**
+     * Returns the vertical coordinate of a point
+     * @param k the index of the point
+     * @return the vertical coordinate
+     */
+    double y(int k) {
+        return ys[k];
+    }
+}
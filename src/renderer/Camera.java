@@ -1,11 +1,25 @@
 package renderer;
 
+import geometries.BVHBuildType;
 import primitives.*;
 import scene.Scene;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import static primitives.Util.*;
@@ -67,13 +81,66 @@ public class Camera implements Cloneable {
     private double apertureRadius = 0.0;
     /** Distance from camera to the focus plane */
     private double focalDistance = 0.0;
-    /** Number of rays per pixel for depth of field */
+    /** Maximal number of rays per pixel for depth of field */
     private int dofRays = 1;
+    /** Number of rays per pixel traced for depth of field before the sampling may stop */
+    private int dofMinRays = 4;
+    /**
+     * Tolerance of the depth of field sampling: the sampling stops when the standard error of the
+     * pixel color (per component, 0-255) is within it. 0 means that all the rays are always traced
+     */
+    private double dofTolerance = 1;
+    /** The sample points on the aperture for depth of field */
+    private AperturePattern aperturePattern = null;
     /**
      * Whether to use BVH (Bounding Volume Hierarchy) for acceleration.
      * If true, the camera will use BVH for faster ray intersection tests.
      */
     private boolean useBVH=false;
+    /** Size of the side of a rendering tile in pixels (0 disables tile based rendering) */
+    private int tileSize = 0;
+    /** Order of handing out the rendering tiles */
+    private TileOrder tileOrder = TileOrder.SCANLINE;
+    /** Maximal rendering time in seconds of the virtual threads mode (0 - unlimited) */
+    private double renderTimeout = 0;
+    /** The executor of the running virtual threads render, {@code null} when no such render is running */
+    private volatile ExecutorService renderExecutor = null;
+    /** Whether the last render was cancelled or timed out before completion */
+    private volatile boolean renderCancelled = false;
+    /** Whether a render is running, so it may be cancelled */
+    private volatile boolean renderRunning = false;
+    /** Upper limit of the subdivision depth of a pixel for adaptive anti-aliasing */
+    private static final int MAX_ANTI_ALIASING_DEPTH = 8;
+    /** Maximal subdivision depth of a pixel for adaptive anti-aliasing (0 disables anti-aliasing) */
+    private int antiAliasingDepth = 0;
+    /** Maximal difference of a color component between pixel corners which are considered the same */
+    private double antiAliasingThreshold = 0;
+    /** The adaptive supersampler of the last render, {@code null} if anti-aliasing is disabled */
+    private AdaptiveSupersampler supersampler = null;
+    /** Maximal amount of samples per pixel of the progressive mode (0 disables the progressive mode) */
+    private int progressiveSamples = 0;
+    /** Time budget of the progressive mode in seconds (0 for unlimited time) */
+    private double progressiveBudget = 0;
+    /** Interval between the snapshots of the progressive mode in seconds (0 for no snapshots) */
+    private double snapshotInterval = 0;
+    /** Name of the snapshot image file of the progressive mode */
+    private String snapshotName = null;
+    /** The storage of the pixels of the image */
+    private FrameBufferType frameBufferType = FrameBufferType.MEMORY;
+    /** The tone mapping operator of the written images */
+    private ToneMapper toneMapper = ToneMapper.CLAMP;
+    /** The scale factor of the linear colors before the tone mapping */
+    private double exposure = 1;
+    /** The display gamma of the written images */
+    private double gamma = 1;
+    /** Path of the checkpoint journal of the tile based render, {@code null} for no checkpoints */
+    private String checkpointPath = null;
+    /** The checkpoint journal of the running render, {@code null} when no such render is running */
+    private volatile RenderJournal journal = null;
+    /** The amount of the tiles in the journal at the end of the last render with checkpoints */
+    private int lastJournalTiles = 0;
+    /** The progressive renderer of the last render, {@code null} if it was not progressive */
+    private ProgressiveRenderer progressiveRenderer = null;
 
 
     /**
@@ -112,8 +179,6 @@ public class Camera implements Cloneable {
      * @return the constructed ray from the camera to the specified pixel
      */
     public Ray constructRay(int nX, int nY, int j, int i) {
-        // Point pij is the center of the pixel, we start with the center of the view plane
-        Point pij=pc;
         // Calculate the pixel size in the x and y directions
         double rX = width / nX; // Width of a single pixel
         double rY = height / nY; // Height of a single pixel
@@ -128,19 +193,43 @@ public class Camera implements Cloneable {
         // Calculate the y offset based on whether the number of pixels in the y-direction is even or odd
             yi = -(i - (nY - 1) / 2.0) * rY;
 
-        // Adjust the center point of the pixel (pij) by adding the scaled vRight and vUp vectors
+        return constructRay(xj, yi);
+    }
+
+    /**
+     * Constructs a ray from the camera position through a point on the view plane
+     * given by its offsets from the center of the view plane.
+     * The calculation is done on the components, allocating only the direction and the ray.
+     *
+     * @param xj the offset of the point along vRight
+     * @param yi the offset of the point along vUp
+     * @return the constructed ray from the camera through the point
+     */
+    private Ray constructRay(double xj, double yi) {
+        // Point pij is the point on the view plane, we start with the center of the view plane
+        double x = pc.getX();
+        double y = pc.getY();
+        double z = pc.getZ();
+        // Adjust the point by adding the scaled vRight and vUp vectors
         if (!isZero(xj)) {
-            pij = pij.add(vRight.scale(xj));
+            x += vRight.getX() * xj;
+            y += vRight.getY() * xj;
+            z += vRight.getZ() * xj;
         }
         if (!isZero(yi)) {
-            pij = pij.add(vUp.scale(yi));
+            x += vUp.getX() * yi;
+            y += vUp.getY() * yi;
+            z += vUp.getZ() * yi;
         }
 
-        // Calculate the direction vector from the camera position (p0) to the pixel point (pij)
-        Vector vector = pij.subtract(p0).normalize();
-
-        // Create and return a new ray from the camera position to the pixel point
-        return new Ray(p0, vector);
+        // Calculate the direction vector from the camera position (p0) to the point
+        x -= p0.getX();
+        y -= p0.getY();
+        z -= p0.getZ();
+        // Normalize the direction on the components, so the ray does not normalize it again
+        double inverseLength = 1.0 / Math.sqrt(x * x + y * y + z * z);
+        // Create and return a new ray from the camera position to the point
+        return new Ray(p0, new Vector(x * inverseLength, y * inverseLength, z * inverseLength));
     }
 
     /**
@@ -154,36 +243,116 @@ public class Camera implements Cloneable {
      * @return a list of rays originating from the camera's aperture
      */
     public List<Ray> constructDofRays(int nX, int nY, int j, int i) {
+        // Construct the center ray passing through the pixel (j, i)
+        return constructDofRays(constructRay(nX, nY, j, i));
+    }
+
+    /**
+     * Constructs a list of rays for depth of field effect around a center ray
+     * from the camera position through a point on the view plane.
+     * @param centerRay the ray from the camera position through the view plane point
+     * @return a list of rays originating from the camera's aperture
+     */
+    private List<Ray> constructDofRays(Ray centerRay) {
         List<Ray> rays = new LinkedList<>();
 
-        // Construct the center ray passing through the pixel (j, i)
-        Ray centerRay = constructRay(nX, nY, j, i);
         // Calculate the focal point at the focal distance along the center ray
         Point focusPoint = centerRay.getPoint(focalDistance);
+        // Rotate the aperture pattern by a random angle, so neighboring pixels use different samples
+        double theta = ThreadLocalRandom.current().nextDouble(2 * Math.PI);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
 
-        for (int k = 0; k < dofRays; k++) {
-            // Sample a random radius using sqrt for uniform distribution over the circle area
-            double r = Math.sqrt(Math.random()) * apertureRadius;
-            // Sample a random angle between 0 and 2*PI radians
-            double theta = Math.random() * 2 * Math.PI;
+        for (int k = 0; k < dofRays; k++)
+            rays.add(constructApertureRay(focusPoint, k, cos, sin));
 
-            // Convert polar coordinates (r, theta) to Cartesian (x, y) on the aperture plane
-            double x = r * Math.cos(theta);
-            double y = r * Math.sin(theta);
-
-            // Calculate the random point on the circular aperture around the camera position p0
-            Point aperturePoint = p0
-                    .add(vRight.scale(x))  // move right by x units
-                    .add(vUp.scale(y));    // move up by y units
+        return rays;
+    }
 
-            // Calculate the direction from the aperture point to the focal point
-            Vector direction = focusPoint.subtract(aperturePoint).normalize();
+    /**
+     * Constructs a ray from a sample point of the aperture towards the focal point.
+     * @param focusPoint the point on the focal plane all the rays pass through
+     * @param k          the index of the sample point in the aperture pattern
+     * @param cos        cosine of the rotation angle of the pattern
+     * @param sin        sine of the rotation angle of the pattern
+     * @return the ray from the aperture sample point towards the focal point
+     */
+    private Ray constructApertureRay(Point focusPoint, int k, double cos, double sin) {
+        // Rotate the pattern point and scale it from the unit disk to the aperture
+        double x = (aperturePattern.x(k) * cos - aperturePattern.y(k) * sin) * apertureRadius;
+        double y = (aperturePattern.x(k) * sin + aperturePattern.y(k) * cos) * apertureRadius;
+
+        // Calculate the sample point on the circular aperture around the camera position p0
+        Point aperturePoint = p0;
+        if (!isZero(x)) aperturePoint = aperturePoint.add(vRight.scale(x)); // move right by x units
+        if (!isZero(y)) aperturePoint = aperturePoint.add(vUp.scale(y));    // move up by y units
+
+        // Calculate the direction from the aperture point to the focal point
+        return new Ray(aperturePoint, focusPoint.subtract(aperturePoint).normalize());
+    }
 
-            // Create a new ray from the aperture point towards the focal point and add it to the list
-            rays.add(new Ray(aperturePoint, direction));
+    /**
+     * Traces the depth of field rays of a view plane point adaptively.
+     * The rays go through the aperture pattern points: at least {@code dofMinRays} of them, and then
+     * one by one until the standard error of the average color is within the tolerance (as happens
+     * for points in focus, where all the rays meet the same surface) or all the {@code dofRays} are traced.
+     * The statistics are kept in local variables, so no list of rays is built.
+     * @param centerRay the ray from the camera position through the view plane point
+     * @return the average color of the traced rays
+     */
+    private Color traceDofRays(Ray centerRay) {
+        // Calculate the focal point at the focal distance along the center ray
+        Point focusPoint = centerRay.getPoint(focalDistance);
+        // Rotate the aperture pattern by a random angle, so neighboring pixels use different samples
+        double theta = ThreadLocalRandom.current().nextDouble(2 * Math.PI);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+
+        // Sums and sums of squares of the color components
+        double r = 0, g = 0, b = 0, r2 = 0, g2 = 0, b2 = 0;
+        int n = 0;
+        while (n < dofRays) {
+            Double3 rgb = rayTracer.traceRay(constructApertureRay(focusPoint, n, cos, sin)).getComponents();
+            r += rgb.d1();
+            g += rgb.d2();
+            b += rgb.d3();
+            r2 += rgb.d1() * rgb.d1();
+            g2 += rgb.d2() * rgb.d2();
+            b2 += rgb.d3() * rgb.d3();
+            ++n;
+            // The variance can't be estimated from a single ray
+            if (n >= dofMinRays && n > 1 && dofTolerance > 0) {
+                // The squared standard error of the average is the sample variance divided by n
+                double limit = dofTolerance * dofTolerance * n * n * (n - 1);
+                if (n * r2 - r * r <= limit && n * g2 - g * g <= limit && n * b2 - b * b <= limit) break;
+            }
         }
+        return new Color(r / n, g / n, b / n);
+    }
 
-        return rays;
+    /**
+     * Constructs a ray through a point on the view plane given in pixel units
+     * from the top left corner of the image - e.g. (j + 0.5, i + 0.5) is the center of pixel (j, i).
+     *
+     * @param x the horizontal position (pixel column units)
+     * @param y the vertical position (pixel row units)
+     * @return the constructed ray from the camera through the point
+     */
+    private Ray constructSampleRay(double x, double y) {
+        return constructRay((x - nX / 2.0) * (width / nX), -(y - nY / 2.0) * (height / nY));
+    }
+
+    /**
+     * Traces a sample of the image through a point on the view plane given in pixel units,
+     * averaging the depth of field rays if the effect is on.
+     *
+     * @param x the horizontal position (pixel column units)
+     * @param y the vertical position (pixel row units)
+     * @return the color of the sample
+     */
+    private Color traceSample(double x, double y) {
+        Ray ray = constructSampleRay(x, y);
+        return apertureRadius == 0 || dofRays == 1 ? rayTracer.traceRay(ray) : traceDofRays(ray);
     }
 
     /**
@@ -249,6 +418,24 @@ public class Camera implements Cloneable {
         return height;
     }
 
+    /**
+     * Retrieves the horizontal resolution of the view plane.
+     *
+     * @return the number of pixels in the x-direction
+     */
+    public int getNX() {
+        return nX;
+    }
+
+    /**
+     * Retrieves the vertical resolution of the view plane.
+     *
+     * @return the number of pixels in the y-direction
+     */
+    public int getNY() {
+        return nY;
+    }
+
     /**
      * Retrieves the center of the view plane.
      *
@@ -264,12 +451,120 @@ public class Camera implements Cloneable {
      * @return the image writer
      */
     public Camera renderImage(){
-        pixelManager = new PixelManager(nY, nX, printInterval);
-        return switch (threadsCount) {
-            case 0 -> renderImageNoThreads();
-            case -1 -> renderImageStream();
-            default -> renderImageRawThreads();
-        };
+        try {
+            if (progressiveSamples > 0) return renderImageProgressive();
+            if (checkpointPath != null)
+                return renderImageCheckpointed(RenderJournal.create(Path.of(checkpointPath), fingerprint(), nX, nY, tileSize));
+            prepareRender();
+            return switch (threadsCount) {
+                case 0 -> renderImageNoThreads();
+                case -1 -> renderImageStream();
+                case -3 -> renderImageVirtualThreads();
+                default -> tileSize > 0 ? renderImageTiles() : renderImageRawThreads();
+            };
+        } finally {
+            renderRunning = false;
+        }
+    }
+
+    /**
+     * Resumes a tile based render with checkpoints (see {@link Builder#setCheckpoint(String)}) which has
+     * not been completed: the pixels of the tiles completed by the previous render are restored from the
+     * journal, and only the missing tiles are rendered. If there is no journal, the whole image is rendered.
+     *
+     * @return the Camera object for method chaining
+     * @throws IllegalStateException    if no checkpoint journal is set
+     * @throws IllegalArgumentException if the journal was written for a different scene, camera settings,
+     *                                  resolution or tile size
+     */
+    public Camera resumeRender() {
+        if (checkpointPath == null) throw new IllegalStateException("No checkpoint journal is set");
+        Path path = Path.of(checkpointPath);
+        if (!RenderJournal.exists(path)) return renderImage();
+        try {
+            return renderImageCheckpointed(RenderJournal.resume(path, fingerprint(), tileSize, imageWriter));
+        } finally {
+            renderRunning = false;
+        }
+    }
+
+    /**
+     * Returns the amount of the tiles completed by the last render with checkpoints,
+     * including the tiles restored from the journal
+     *
+     * @return the amount of the completed tiles, 0 if the last render had no checkpoints
+     */
+    public int getCheckpointedTiles() {
+        return lastJournalTiles;
+    }
+
+    /**
+     * Cancels the running render of the virtual threads mode, of the tiles mode or of the progressive mode.
+     * The render stops after the pixels which are being rendered at the moment,
+     * {@link #renderImage()} returns normally and the image keeps the pixels rendered so far.
+     * It has no effect if no such render is running.
+     *
+     * @return the Camera object for method chaining
+     */
+    public Camera cancelRender() {
+        if (!renderRunning) return this;
+        renderCancelled = true;
+        ExecutorService executor = renderExecutor;
+        if (executor != null) executor.shutdownNow();
+        return this;
+    }
+
+    /**
+     * Checks whether the last render was cancelled (or timed out) before all the pixels were rendered.
+     *
+     * @return true if the last render was not completed
+     */
+    public boolean isRenderCancelled() {
+        return renderCancelled;
+    }
+
+    /**
+     * Returns the amount of samples per pixel traced for the whole image by the last progressive render.
+     *
+     * @return the amount of samples of every pixel, 0 if the render was stopped before the full
+     * resolution pass was completed or if the last render was not progressive
+     */
+    public int getProgressiveSamples() {
+        return progressiveRenderer == null ? 0 : progressiveRenderer.getSamples();
+    }
+
+    /**
+     * Returns the samples per pixel histogram of the last render with adaptive anti-aliasing:
+     * the element at index n is the amount of pixels for which n samples were traced.
+     *
+     * @return the histogram, or {@code null} if the last render was without anti-aliasing
+     */
+    public long[] getSamplesHistogram() {
+        return supersampler == null ? null : supersampler.getHistogram();
+    }
+
+    /**
+     * Prints the samples per pixel histogram of the last render with adaptive anti-aliasing
+     * and the average amount of samples per pixel.
+     * Nothing is printed if the last render was without anti-aliasing.
+     *
+     * @return the Camera object for method chaining
+     */
+    public Camera printSamplesHistogram() {
+        long[] histogram = getSamplesHistogram();
+        if (histogram == null) return this;
+        long pixels = 0;
+        long samples = 0;
+        for (int n = 0; n < histogram.length; n++) {
+            pixels += histogram[n];
+            samples += n * histogram[n];
+        }
+        System.out.println("samples  pixels");
+        for (int n = 0; n < histogram.length; n++)
+            if (histogram[n] != 0)
+                System.out.printf("%7d  %d (%.1f%%)%n", n, histogram[n], 100.0 * histogram[n] / pixels);
+        System.out.printf("average  %.3f samples per pixel%n", (double) samples / pixels);
+        return this;
     }
 
     /**
@@ -309,6 +604,30 @@ public class Camera implements Cloneable {
         return this;
     }
 
+    /**
+     * Writes the rendered image to a high dynamic range PFM file - the linear colors of the pixels
+     * before the tone mapping, unclamped.
+     *
+     * @param filePath the path where the image will be saved
+     * @return the Camera object for method chaining
+     */
+    public Camera writeToPfm(String filePath){
+        imageWriter.writeToPfm(filePath);
+        return this;
+    }
+
+    /**
+     * Casts a ray through a specific pixel on the view plane, writes the color to the image
+     * and reports the progress of the pixel.
+     *
+     * @param column the column index of the pixel (0-based)
+     * @param row the row index of the pixel (0-based)
+     */
+    private void castRay(int column, int row) {
+        renderPixel(column, row);
+        pixelManager.pixelDone();
+    }
+
     /**
      * Casts a ray through a specific pixel on the view plane and writes the color to the image.
      * This method handles both standard ray tracing and depth of field effects.
@@ -320,7 +639,12 @@ public class Camera implements Cloneable {
      * @param column the column index of the pixel (0-based)
      * @param row the row index of the pixel (0-based)
      */
-    private void castRay( int column, int row){
+    private void renderPixel(int column, int row){
+        if (supersampler != null) {
+            // A single pixel - there are no neighbors to share the corners with
+            supersampler.renderRow(row, column, column + 1, new Color[2], imageWriter);
+            return;
+        }
         Color color;
         if (apertureRadius == 0 || dofRays == 1) {
             // Construct a ray through the pixel (column, row)
@@ -328,19 +652,28 @@ public class Camera implements Cloneable {
             // Cast the ray and get the color at the intersection point
             color = rayTracer.traceRay(ray);
         } else {
-            // Construct multiple rays for depth of field effect
-            List<Ray> rays = constructDofRays(nX, nY, column, row);
-            color = Color.BLACK;
-            // Trace each ray and accumulate the color
-            for (Ray ray : rays) {
-                color = color.add(rayTracer.traceRay(ray));
-            }
-            // Average the color over the number of rays
-            color = color.reduce(rays.size());
+            // Trace the depth of field rays through the pixel adaptively
+            color = traceDofRays(constructRay(nX, nY, column, row));
         }
         // Write the color to the image
         imageWriter.writePixel(column, row, color);
-        pixelManager.pixelDone();
+    }
+
+    /**
+     * Renders a run of pixels of a row. With adaptive anti-aliasing the corners shared by
+     * the pixels of the run are traced once, and the bottom corners are kept in the corners cache.
+     *
+     * @param row     the row index of the pixels (0-based)
+     * @param fromCol the first column of the run
+     * @param toCol   the column after the last column of the run
+     * @param corners the corners cache of the run, see {@link AdaptiveSupersampler#renderRow}
+     */
+    private void renderRow(int row, int fromCol, int toCol, Color[] corners) {
+        if (supersampler != null)
+            supersampler.renderRow(row, fromCol, toCol, corners, imageWriter);
+        else
+            for (int j = fromCol; j < toCol; j++)
+                renderPixel(j, row);
     }
 
     /**
@@ -350,9 +683,9 @@ public class Camera implements Cloneable {
     private Camera renderImageStream() {
         IntStream.range(0, nY).parallel()
                 .forEach(i -> {
-                    for (int j = 0; j < nX; j++) {
-                        castRay(j, i);
-                    }
+                    // The rows are rendered in any order, so only the corners within the row are shared
+                    renderRow(i, 0, nX, new Color[nX + 1]);
+                    pixelManager.pixelsDone(nX);
                 });
         return this;
     }
@@ -362,9 +695,11 @@ public class Camera implements Cloneable {
      * @return the camera object itself
      */
     private Camera renderImageNoThreads() {
-        for (int i = 0; i < nY; ++i)
-            for (int j = 0; j < nX; ++j)
-                castRay(j, i);
+        Color[] corners = new Color[nX + 1];
+        for (int i = 0; i < nY; ++i) {
+            renderRow(i, 0, nX, corners);
+            pixelManager.pixelsDone(nX);
+        }
         return this;
     }
 
@@ -374,7 +709,7 @@ public class Camera implements Cloneable {
      */
     private Camera renderImageRawThreads() {
         var threads = new LinkedList<Thread>();
-        while (threadsCount-- > 0)
+        for (int t = 0; t < threadsCount; t++)
             threads.add(new Thread(() -> {
                 PixelManager.Pixel pixel;
                 while ((pixel = pixelManager.nextPixel()) != null)
@@ -387,6 +722,236 @@ public class Camera implements Cloneable {
         return this;
     }
 
+    /**
+     * Render image using multi-threading over tiles: the threads take the next tile
+     * from a lock free tile manager and report the progress once per tile
+     * @return the camera object itself
+     */
+    private Camera renderImageTiles() {
+        TileManager tileManager = new TileManager(nY, nX, tileSize, tileOrder);
+        int count = Math.min(Math.max(threadsCount, 1), tileManager.tilesCount());
+        var threads = new LinkedList<Thread>();
+        for (int t = 0; t < count; t++)
+            threads.add(new Thread(() -> {
+                TileManager.Tile tile;
+                while ((tile = tileManager.nextTile()) != null)
+                    renderTile(tile);
+            }));
+        for (var thread : threads) thread.start();
+        try {
+            for (var thread : threads) thread.join();
+        } catch (InterruptedException ignored) {}
+        return this;
+    }
+
+    /**
+     * Renders the pixels of a tile and reports the progress once for the whole tile.
+     * The rendering stops between the rows of the tile if the render is cancelled.
+     * With checkpoints, a tile already in the journal is skipped and a completed tile is appended to it.
+     * @param tile the tile to render
+     */
+    private void renderTile(TileManager.Tile tile) {
+        RenderJournal journal = this.journal;
+        if (journal == null || !journal.isDone(tile)) {
+            Color[] corners = new Color[tile.width() + 1];
+            for (int i = tile.row(); i < tile.row() + tile.height(); i++) {
+                if (renderCancelled) return;
+                renderRow(i, tile.col(), tile.col() + tile.width(), corners);
+            }
+            if (journal != null) journal.append(tile, imageWriter);
+        }
+        pixelManager.pixelsDone(tile.size());
+    }
+
+    /**
+     * Render image using virtual threads - one task per tile if tiles are set, otherwise one per row of pixels.
+     * The render may be cancelled by {@link #cancelRender()} or by the render timeout, in which case
+     * the unfinished tasks are interrupted and the pixels rendered so far are kept.
+     * The executor is closed before returning, so no task outlives the render.
+     * @return the camera object itself
+     */
+    private Camera renderImageVirtualThreads() {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            renderExecutor = executor;
+            if (tileSize > 0) {
+                TileManager tileManager = new TileManager(nY, nX, tileSize, tileOrder);
+                TileManager.Tile tile;
+                while ((tile = tileManager.nextTile()) != null) {
+                    TileManager.Tile task = tile;
+                    executor.submit(() -> renderTile(task));
+                }
+            } else {
+                for (int i = 0; i < nY; i++) {
+                    int row = i;
+                    executor.submit(() -> renderTile(new TileManager.Tile(0, row, nX, 1)));
+                }
+            }
+            executor.shutdown();
+            long timeout = renderTimeout == 0 ? Long.MAX_VALUE : (long) (renderTimeout * 1000);
+            if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) cancelRender();
+        } catch (InterruptedException e) {
+            cancelRender();
+            Thread.currentThread().interrupt();
+        } finally {
+            renderExecutor = null;
+        }
+        return this;
+    }
+
+    /**
+     * Prepares the progress reporting and the supersampler of a render,
+     * and starts accepting cancelling of the render (a former cancelling does not affect it)
+     */
+    private void prepareRender() {
+        renderCancelled = false;
+        renderRunning = true;
+        progressiveRenderer = null;
+        pixelManager = new PixelManager(nY, nX, printInterval);
+        supersampler = antiAliasingDepth == 0 ? null
+                : new AdaptiveSupersampler(this::traceSample, antiAliasingDepth, antiAliasingThreshold);
+    }
+
+    /**
+     * Render image by tiles, appending every completed tile to the checkpoint journal.
+     * The tiles already in the journal are skipped. The tiles are rendered by virtual threads in
+     * the virtual threads mode, and by the given amount of threads (at least one) otherwise.
+     * @param journal the checkpoint journal of the render
+     * @return the camera object itself
+     */
+    private Camera renderImageCheckpointed(RenderJournal journal) {
+        prepareRender();
+        this.journal = journal;
+        try (journal) {
+            return threadsCount == -3 ? renderImageVirtualThreads() : renderImageTiles();
+        } finally {
+            this.journal = null;
+            lastJournalTiles = journal.doneCount();
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of the render - a SHA-256 digest of the scene (without the acceleration
+     * structures, see {@link SceneCache}), the view of the camera and the settings affecting the colors
+     * of the pixels. A checkpoint journal is resumed only by a render with the same fingerprint,
+     * and a distributed render accepts only workers with the same fingerprint.
+     * @return the fingerprint
+     */
+    byte[] fingerprint() {
+        Scene scene = rayTracer.getScene();
+        if (scene == null) throw new IllegalStateException("Cannot fingerprint a render without a scene");
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            SceneCache.write(scene, this, out, false);
+            writeSettings(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot calculate the fingerprint of the render", e);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Writes the rendering settings affecting the colors of the pixels: the ray tracer type,
+     * the depth of field and the anti-aliasing (see {@link Builder#readSettings(DataInput, Scene)})
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    void writeSettings(DataOutput out) throws IOException {
+        out.writeByte((rayTracer instanceof RegularGridRayTracer ? RayTracerType.GRID : RayTracerType.SIMPLE).ordinal());
+        out.writeDouble(apertureRadius);
+        out.writeDouble(focalDistance);
+        out.writeInt(dofRays);
+        out.writeInt(dofMinRays);
+        out.writeDouble(dofTolerance);
+        out.writeInt(antiAliasingDepth);
+        out.writeDouble(antiAliasingThreshold);
+    }
+
+    /**
+     * Returns the scene rendered by the camera
+     * @return the scene of the ray tracer
+     */
+    Scene getScene() {
+        return rayTracer.getScene();
+    }
+
+    /**
+     * Returns the storage of the pixels of the image
+     * @return the frame buffer type
+     */
+    FrameBufferType getFrameBufferType() {
+        return frameBufferType;
+    }
+
+    /**
+     * Creates the tile manager handing out the tiles of the image in the set order
+     * @return the tile manager
+     * @throws IllegalArgumentException if tile based rendering is not set
+     */
+    TileManager tileManager() {
+        return new TileManager(nY, nX, tileSize, tileOrder);
+    }
+
+    /**
+     * Renders a single tile of the image (e.g. for a distributed render) and returns the colors of its pixels
+     * @param tile the tile
+     * @return the red, green and blue components of the pixels of the tile, by rows
+     */
+    double[] renderTileColors(TileManager.Tile tile) {
+        if (pixelManager == null) prepareRender();
+        renderRunning = true;
+        try {
+            renderTile(tile);
+        } finally {
+            renderRunning = false;
+        }
+        double[] colors = new double[3 * tile.size()];
+        FrameBuffer frameBuffer = imageWriter.frameBuffer();
+        int k = 0;
+        for (int i = tile.row(); i < tile.row() + tile.height(); i++)
+            for (int j = tile.col(); j < tile.col() + tile.width(); j++) {
+                Double3 rgb = frameBuffer.getColor(j, i).getComponents();
+                colors[k++] = rgb.d1();
+                colors[k++] = rgb.d2();
+                colors[k++] = rgb.d3();
+            }
+        return colors;
+    }
+
+    /**
+     * Writes the colors of the pixels of a tile rendered elsewhere (e.g. by a distributed render) into the image
+     * @param tile   the tile
+     * @param colors the red, green and blue components of the pixels of the tile, by rows
+     */
+    void writeTileColors(TileManager.Tile tile, double[] colors) {
+        int k = 0;
+        for (int i = tile.row(); i < tile.row() + tile.height(); i++)
+            for (int j = tile.col(); j < tile.col() + tile.width(); j++, k += 3)
+                imageWriter.writePixel(j, i, new Color(colors[k], colors[k + 1], colors[k + 2]));
+    }
+
+    /**
+     * Render image progressively (see {@link ProgressiveRenderer}): sparse low resolution passes first,
+     * then the full resolution, then more samples per pixel, until the time budget or the samples budget
+     * is exhausted or the render is cancelled. The rows of every pass are rendered by a parallel stream
+     * if multi-threading is set. Adaptive anti-aliasing is replaced by the additional jittered samples.
+     * @return the camera object itself
+     */
+    private Camera renderImageProgressive() {
+        renderCancelled = false;
+        renderRunning = true;
+        supersampler = null;
+        progressiveRenderer = new ProgressiveRenderer(this::traceSample, imageWriter, threadsCount != 0,
+                progressiveBudget, progressiveSamples, () -> renderCancelled, snapshotInterval, snapshotName);
+        if (!progressiveRenderer.render()) renderCancelled = true;
+        return this;
+    }
+
     /**
      * The Builder class is used to construct Camera objects.
      * It provides methods for setting the camera's properties and ensures
@@ -429,8 +994,24 @@ public class Camera implements Cloneable {
             this.camera.apertureRadius = camera.apertureRadius;
             this.camera.focalDistance = camera.focalDistance;
             this.camera.dofRays = camera.dofRays;
+            this.camera.dofMinRays = camera.dofMinRays;
+            this.camera.dofTolerance = camera.dofTolerance;
             this.camera.useBVH = camera.useBVH;
             this.camera.printInterval = camera.printInterval;
+            this.camera.tileSize = camera.tileSize;
+            this.camera.tileOrder = camera.tileOrder;
+            this.camera.renderTimeout = camera.renderTimeout;
+            this.camera.antiAliasingDepth = camera.antiAliasingDepth;
+            this.camera.antiAliasingThreshold = camera.antiAliasingThreshold;
+            this.camera.progressiveSamples = camera.progressiveSamples;
+            this.camera.progressiveBudget = camera.progressiveBudget;
+            this.camera.snapshotInterval = camera.snapshotInterval;
+            this.camera.snapshotName = camera.snapshotName;
+            this.camera.frameBufferType = camera.frameBufferType;
+            this.camera.checkpointPath = camera.checkpointPath;
+            this.camera.toneMapper = camera.toneMapper;
+            this.camera.exposure = camera.exposure;
+            this.camera.gamma = camera.gamma;
         }
 
         /**
@@ -566,12 +1147,10 @@ public class Camera implements Cloneable {
          * @return the Builder instance
          */
         public Builder setRayTracer(Scene scene, RayTracerType rayTracerType) {
-            if (rayTracerType==RayTracerType.SIMPLE) {
-                this.camera.rayTracer = new SimpleRayTracer(scene);
-            }
-            else {
-                this.camera.rayTracer = null;
-            }
+            this.camera.rayTracer = switch (rayTracerType) {
+                case SIMPLE -> new SimpleRayTracer(scene);
+                case GRID -> new RegularGridRayTracer(scene);
+            };
             return this;
         }
 
@@ -602,8 +1181,9 @@ public class Camera implements Cloneable {
         }
 
         /**
-         * Sets the number of rays per pixel for depth of field effect.
-         * @param numRays the number of rays per pixel
+         * Sets the maximal number of rays per pixel for depth of field effect
+         * (see {@link #setDofAdaptive(int, double)} for stopping earlier).
+         * @param numRays the maximal number of rays per pixel
          * @return the Builder instance
          */
         public Builder setDofRays(int numRays) {
@@ -614,10 +1194,33 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets the adaptive sampling of the depth of field effect: every pixel traces at least
+         * the given number of rays, and then stops as soon as the standard error of its color
+         * is within the tolerance - so pixels in focus cost only a few rays, while blurry pixels
+         * keep tracing up to the number of rays set by {@link #setDofRays(int)}.
+         * @param minRays   the number of rays traced before the sampling may stop
+         * @param tolerance the tolerance of the standard error of a color component (0-255),
+         *                  0 to always trace all the rays
+         * @return the Builder instance
+         */
+        public Builder setDofAdaptive(int minRays, double tolerance) {
+            if (minRays <= 0) {
+                throw new IllegalArgumentException("Minimal number of rays must be positive");
+            }
+            if (alignZero(tolerance) < 0) {
+                throw new IllegalArgumentException("Tolerance must be non-negative");
+            }
+            camera.dofMinRays = minRays;
+            camera.dofTolerance = tolerance;
+            return this;
+        }
+
         /**
          * Set multi-threading <br>
          * Parameter value meaning:
          * <ul>
+         * <li>-3 - virtual threads, one per tile (see {@link #setTiles(int, TileOrder)}) or one per row</li>
          * <li>-2 - number of threads is number of logical processors less 2</li>
          * <li>-1 - stream processing parallelization (implicit multi-threading) is used</li>
          * <li>0 - multi-threading is not activated</li>
@@ -628,7 +1231,7 @@ public class Camera implements Cloneable {
          */
         public Builder setMultithreading(int threads) {
             if (threads < -3)
-                throw new IllegalArgumentException("Multithreading parameter must be -2 or higher");
+                throw new IllegalArgumentException("Multithreading parameter must be -3 or higher");
             if (threads == -2) {
                 int cores = Runtime.getRuntime().availableProcessors() - SPARE_THREADS;
                 camera.threadsCount = cores <= 2 ? 1 : cores;
@@ -637,6 +1240,154 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Set tile based rendering - the image is divided into square tiles which are handed out
+         * to the rendering threads in the given order. It is used together with an explicit
+         * amount of threads (see {@link #setMultithreading(int)}), and replaces the per pixel
+         * scheduling of the raw threads mode.
+         * @param tileSize size of the side of a tile in pixels, 0 to disable tile based rendering
+         * @param order    the order of handing out the tiles
+         * @return builder object itself
+         */
+        public Builder setTiles(int tileSize, TileOrder order) {
+            if (tileSize < 0) throw new IllegalArgumentException("Tile size must be non-negative");
+            if (order == null) throw new IllegalArgumentException("Tile order must not be null");
+            camera.tileSize = tileSize;
+            camera.tileOrder = order;
+            return this;
+        }
+
+        /**
+         * Set the maximal rendering time of the virtual threads mode. When it passes, the render
+         * is cancelled and the pixels rendered so far are kept (see {@link Camera#isRenderCancelled()}).
+         * @param seconds the maximal rendering time in seconds, 0 for unlimited time
+         * @return builder object itself
+         */
+        public Builder setRenderTimeout(double seconds) {
+            if (seconds < 0) throw new IllegalArgumentException("Render timeout must be non-negative");
+            camera.renderTimeout = seconds;
+            return this;
+        }
+
+        /**
+         * Set the progressive mode - the image is rendered in passes: first one pixel per 4x4 block,
+         * then one pixel per 2x2 block, then all the pixels, and then another jittered sample per pixel
+         * in every pass, until the time budget passes or every pixel got the maximal amount of samples.
+         * A render stopped by the time budget keeps the image of the passes rendered so far
+         * (see {@link Camera#isRenderCancelled()} and {@link Camera#getProgressiveSamples()}).
+         * @param seconds    the time budget in seconds, 0 for unlimited time
+         * @param maxSamples the maximal amount of samples per pixel, 0 to disable the progressive mode
+         * @return builder object itself
+         */
+        public Builder setProgressive(double seconds, int maxSamples) {
+            if (seconds < 0) throw new IllegalArgumentException("Time budget must be non-negative");
+            if (maxSamples < 0) throw new IllegalArgumentException("Samples budget must be non-negative");
+            camera.progressiveBudget = seconds;
+            camera.progressiveSamples = maxSamples;
+            return this;
+        }
+
+        /**
+         * Set the snapshots of the progressive mode - the image is written to a file at fixed intervals
+         * while it is rendered (see {@link #setProgressive(double, int)}).
+         * @param interval  the interval between the snapshots in seconds, 0 for no snapshots
+         * @param imageName the name of the snapshot image file (overwritten by every snapshot)
+         * @return builder object itself
+         */
+        public Builder setSnapshots(double interval, String imageName) {
+            if (interval < 0) throw new IllegalArgumentException("Snapshot interval must be non-negative");
+            if (interval > 0 && imageName == null)
+                throw new IllegalArgumentException("Snapshot image name must not be null");
+            camera.snapshotInterval = interval;
+            camera.snapshotName = imageName;
+            return this;
+        }
+
+        /**
+         * Set adaptive anti-aliasing - every pixel is sampled at its corners, and the pixels
+         * (and then the sub-pixels) whose corners differ by more than the threshold are divided
+         * into four and sampled again, up to the given depth.
+         * The amount of samples per pixel may be inspected by {@link Camera#printSamplesHistogram()}.
+         * @param depth     the maximal subdivision depth of a pixel, 0 to disable anti-aliasing
+         * @param threshold the maximal difference of a color component (0-255) between corners
+         *                  which are considered the same
+         * @return builder object itself
+         */
+        public Builder setAntiAliasing(int depth, double threshold) {
+            if (depth < 0 || depth > MAX_ANTI_ALIASING_DEPTH)
+                throw new IllegalArgumentException("Anti-aliasing depth must be between 0 and " + MAX_ANTI_ALIASING_DEPTH);
+            if (threshold < 0) throw new IllegalArgumentException("Anti-aliasing threshold must be non-negative");
+            camera.antiAliasingDepth = depth;
+            camera.antiAliasingThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Reads the rendering settings written by {@link Camera#writeSettings(DataOutput)}
+         * @param in    the stream to read from
+         * @param scene the scene rendered by the ray tracer
+         * @return builder object itself
+         * @throws IOException if reading fails
+         */
+        Builder readSettings(DataInput in, Scene scene) throws IOException {
+            setRayTracer(scene, RayTracerType.values()[in.readByte()]);
+            camera.apertureRadius = in.readDouble();
+            camera.focalDistance = in.readDouble();
+            camera.dofRays = in.readInt();
+            camera.dofMinRays = in.readInt();
+            camera.dofTolerance = in.readDouble();
+            camera.antiAliasingDepth = in.readInt();
+            camera.antiAliasingThreshold = in.readDouble();
+            return this;
+        }
+
+        /**
+         * Set checkpoints of the tile based render (see {@link #setTiles(int, TileOrder)}) - every completed
+         * tile is appended to a journal file with its pixels, so a render which dies may be continued by
+         * {@link Camera#resumeRender()}. The journal is bound to the scene, the view and the settings of the
+         * camera, the resolution and the tile size, and {@link Camera#renderImage()} starts a new journal.
+         * The tiles are rendered by the set amount of threads, or by virtual threads, or by a single thread.
+         * @param journalPath the path of the journal file, {@code null} for no checkpoints
+         * @return builder object itself
+         */
+        public Builder setCheckpoint(String journalPath) {
+            camera.checkpointPath = journalPath;
+            return this;
+        }
+
+        /**
+         * Set the storage of the pixels of the image. The memory mapped storage keeps the image in a
+         * scratch file paged by the operating system instead of the heap, for images too large for the
+         * memory (e.g. posters of tens of thousands of pixels per side), best rendered by tiles
+         * (see {@link #setTiles(int, TileOrder)}) so the pages being worked on stay few.
+         * @param type the storage of the pixels
+         * @return builder object itself
+         */
+        public Builder setFrameBuffer(FrameBufferType type) {
+            if (type == null) throw new IllegalArgumentException("Frame buffer type must not be null");
+            camera.frameBufferType = type;
+            return this;
+        }
+
+        /**
+         * Set the tone mapping stage of the written images - the linear colors of the pixels
+         * are scaled by the exposure, mapped into the displayable range by the tone mapper and
+         * gamma corrected. The default (clamping, exposure 1 and gamma 1) clips the colors as they are.
+         * @param toneMapper the tone mapping operator
+         * @param exposure   the scale factor of the linear colors
+         * @param gamma      the display gamma (e.g. 2.2), 1 for linear output
+         * @return builder object itself
+         */
+        public Builder setToneMapping(ToneMapper toneMapper, double exposure, double gamma) {
+            if (toneMapper == null) throw new IllegalArgumentException("Tone mapper must not be null");
+            if (exposure <= 0) throw new IllegalArgumentException("Exposure must be positive");
+            if (gamma <= 0) throw new IllegalArgumentException("Gamma must be positive");
+            camera.toneMapper = toneMapper;
+            camera.exposure = exposure;
+            camera.gamma = gamma;
+            return this;
+        }
+
         /**
          * Set debug printing interval. If it's zero - there won't be printing at all
          * @param interval printing interval in %
@@ -660,6 +1411,17 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Enables the use of BVH (Bounding Volume Hierarchy) built with the given strategy.
+         *
+         * @param bvhBuildType the strategy for building the BVH tree
+         * @return the Builder instance
+         */
+        public Builder enableBVH(BVHBuildType bvhBuildType) {
+            camera.rayTracer.getScene().geometries.setBVHBuildType(bvhBuildType);
+            return enableBVH();
+        }
+
         /**
          * Moves the camera position by a specified delta vector.
          *
@@ -760,12 +1522,20 @@ public class Camera implements Cloneable {
                 throw new IllegalArgumentException("nY must be positive");
             }
 
+            if (camera.checkpointPath != null && camera.tileSize == 0)
+                throw new IllegalArgumentException("Checkpoints require tile based rendering");
+            if (camera.checkpointPath != null && camera.progressiveSamples > 0)
+                throw new IllegalArgumentException("Checkpoints are not supported by the progressive mode");
+
             // Check if the ray tracer is set, if not, initialize it with a default value
             if (camera.rayTracer == null) {
                 camera.rayTracer = new SimpleRayTracer(null);
             }
+            // Generate the aperture sample points for the depth of field effect
+            camera.aperturePattern = new AperturePattern(camera.dofRays);
             // Initialize the image writer with the specified resolution
-            camera.imageWriter = new ImageWriter( camera.nX, camera.nY);
+            camera.imageWriter = new ImageWriter( camera.nX, camera.nY, camera.frameBufferType)
+                    .setToneMapping(camera.toneMapper, camera.exposure, camera.gamma);
 
             // Calculate the center of the view plane
             camera.pc = camera.p0.add(camera.vTo.scale(camera.distance));
@@ -0,0 +1,174 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * High dynamic range frame buffer - the linear colors of the pixels, unclamped.
+ * Every pixel has the sum of the color components of its samples and the amount of the samples,
+ * so samples may be accumulated without allocating objects and the average is available at any time
+ * (e.g. for progressive rendering). The buffer is converted to displayable 8 bit colors by a separate
+ * tone mapping and gamma stage, or written as is in the PFM (portable float map) format.
+ * The storage of the pixels is up to the subclasses (see {@link FrameBufferType}).
+ * Different pixels may be written by different threads concurrently.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+abstract class FrameBuffer {
+    /** The maximal displayable intensity of a color component */
+    private static final double MAX_INTENSITY = 255;
+
+    /** Horizontal resolution - number of pixels in a row */
+    protected final int nX;
+    /** Vertical resolution - number of pixels in a column */
+    protected final int nY;
+
+    /**
+     * Constructs a frame buffer of the given resolution
+     *
+     * @param nX amount of pixels by width
+     * @param nY amount of pixels by height
+     */
+    protected FrameBuffer(int nX, int nY) {
+        this.nX = nX;
+        this.nY = nY;
+    }
+
+    /**
+     * Creates a black frame buffer (with no samples) of the given storage type
+     *
+     * @param nX   amount of pixels by width
+     * @param nY   amount of pixels by height
+     * @param type the storage of the pixels
+     * @return the frame buffer
+     */
+    static FrameBuffer create(int nX, int nY, FrameBufferType type) {
+        return switch (type) {
+            case MEMORY -> new MemoryFrameBuffer(nX, nY);
+            case MAPPED -> new MappedFrameBuffer(nX, nY);
+        };
+    }
+
+    /**
+     * Horizontal resolution
+     * @return the amount of pixels in a row
+     */
+    int nX() { return nX; }
+
+    /**
+     * Vertical resolution
+     * @return the amount of pixels in a column
+     */
+    int nY() { return nY; }
+
+    /**
+     * Replaces the samples of a pixel by a single sample
+     *
+     * @param x     the column of the pixel
+     * @param y     the row of the pixel
+     * @param color the color of the sample
+     */
+    abstract void set(int x, int y, Color color);
+
+    /**
+     * Adds a sample to a pixel
+     *
+     * @param x     the column of the pixel
+     * @param y     the row of the pixel
+     * @param color the color of the sample
+     */
+    abstract void add(int x, int y, Color color);
+
+    /**
+     * Returns the amount of the samples of a pixel
+     *
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @return the amount of the samples
+     */
+    abstract int getCount(int x, int y);
+
+    /**
+     * Returns the sum of a color component of the samples of a pixel
+     *
+     * @param x         the column of the pixel
+     * @param y         the row of the pixel
+     * @param component the component - 0 for red, 1 for green and 2 for blue
+     * @return the sum of the component
+     */
+    abstract double getSum(int x, int y, int component);
+
+    /**
+     * Returns the average color of the samples of a pixel
+     *
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @return the average color, black if the pixel has no samples
+     */
+    Color getColor(int x, int y) {
+        int n = getCount(x, y);
+        return n == 0 ? Color.BLACK : new Color(getSum(x, y, 0) / n, getSum(x, y, 1) / n, getSum(x, y, 2) / n);
+    }
+
+    /**
+     * Tone maps the average color of a pixel into a packed 8 bit RGB integer.
+     * Every component is scaled by the exposure, mapped by the tone mapper and gamma corrected.
+     * The clamping mapper with no exposure and gamma correction truncates the components
+     * exactly as {@link Color#toPackedRGB()} does.
+     *
+     * @param x        the column of the pixel
+     * @param y        the row of the pixel
+     * @param mapper   the tone mapping operator
+     * @param exposure the scale factor of the linear colors
+     * @param gamma    the display gamma, 1 for linear output
+     * @return the packed RGB value (with the alpha set to 255)
+     */
+    int getRGB(int x, int y, ToneMapper mapper, double exposure, double gamma) {
+        int n = getCount(x, y);
+        if (n == 0) return 0xFF000000;
+        boolean linear = mapper == ToneMapper.CLAMP && exposure == 1 && gamma == 1;
+        double scale = linear ? 1d / n : exposure / (n * MAX_INTENSITY);
+        int rgb = 0xFF000000;
+        for (int c = 0; c < 3; c++) {
+            double v = getSum(x, y, c) * scale;
+            int level;
+            if (linear)
+                level = Math.min((int) v, 255);
+            else {
+                double mapped = mapper.map(Math.max(v, 0));
+                if (gamma != 1) mapped = Math.pow(mapped, 1 / gamma);
+                level = (int) (mapped * MAX_INTENSITY + 0.5);
+            }
+            rgb |= level << 8 * (2 - c);
+        }
+        return rgb;
+    }
+
+    /**
+     * Writes the average colors of the pixels in the PFM format: a header of "PF", the resolution
+     * and a negative scale (for little endian), followed by the rows from the bottom up as triads of
+     * 32 bit floats. The colors are linear and unclamped, normalized so 1 is the maximal
+     * displayable intensity (255).
+     *
+     * @param out the stream to write to (it is not closed)
+     * @throws IOException if the writing fails
+     */
+    void writePfm(OutputStream out) throws IOException {
+        out.write(("PF\n" + nX + " " + nY + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer row = ByteBuffer.allocate(3 * Float.BYTES * nX).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = nY - 1; y >= 0; y--) {
+            row.clear();
+            for (int x = 0; x < nX; x++) {
+                int n = getCount(x, y);
+                double scale = n == 0 ? 0 : 1 / (n * MAX_INTENSITY);
+                for (int c = 0; c < 3; c++) row.putFloat((float) (getSum(x, y, c) * scale));
+            }
+            out.write(row.array());
+        }
+    }
+}
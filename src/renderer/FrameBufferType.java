@@ -0,0 +1,13 @@
+package renderer;
+
+/**
+ * Storages of the pixels of the rendered image
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public enum FrameBufferType {
+    /** Arrays on the heap - the fastest, for images which fit in the memory */
+    MEMORY,
+    /** A memory mapped scratch file - for very large images, paged in and out by the operating system */
+    MAPPED
+}
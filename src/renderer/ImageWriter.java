@@ -1,17 +1,16 @@
 package renderer;
 
-import java.awt.image.BufferedImage;
 import java.io.*;
 
-import javax.imageio.ImageIO;
-
 import primitives.Color;
 
 /**
  * Image writer class combines accumulation of pixel color matrix and finally
  * producing a non-optimized jpeg image from this matrix. The class although is
  * responsible to holding image related parameters of View Plane - pixel matrix
- * size and resolution
+ * size and resolution.
+ * The pixel colors are accumulated in a high dynamic range {@link FrameBuffer}, and are tone mapped
+ * into 8 bit colors only when the image is written.
  * @author Dan
  */
 final class ImageWriter {
@@ -27,7 +26,13 @@ final class ImageWriter {
     private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
 
     /** Image generation buffer (the matrix of the pixels) */
-    private final BufferedImage image;
+    private final FrameBuffer frameBuffer;
+    /** The tone mapping operator of the written images */
+    private ToneMapper toneMapper = ToneMapper.CLAMP;
+    /** The scale factor of the linear colors before the tone mapping */
+    private double exposure = 1;
+    /** The display gamma of the written images, 1 for linear output */
+    private double gamma = 1;
 
     // ***************** Constructors ********************** //
     /**
@@ -36,10 +41,20 @@ final class ImageWriter {
      * @param nY amount of pixels by height
      */
     ImageWriter(int nX, int nY) {
+        this(nX, nY, FrameBufferType.MEMORY);
+    }
+
+    /**
+     * Image Writer constructor accepting View Plane parameters and the storage of the pixels
+     * @param nX   amount of pixels by Width
+     * @param nY   amount of pixels by height
+     * @param type the storage of the pixels (see {@link FrameBufferType})
+     */
+    ImageWriter(int nX, int nY, FrameBufferType type) {
         this.nX = nX;
         this.nY = nY;
 
-        image   = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        frameBuffer = FrameBuffer.create(nX, nY, type);
     }
 
     // ***************** Getters ********************** //
@@ -55,17 +70,60 @@ final class ImageWriter {
      */
     int nX() { return nX; }
 
+    /**
+     * The high dynamic range buffer of the pixel colors
+     * @return the frame buffer
+     */
+    FrameBuffer frameBuffer() { return frameBuffer; }
+
+    /**
+     * Sets the tone mapping stage of the written images
+     * @param toneMapper the tone mapping operator
+     * @param exposure   the scale factor of the linear colors before the tone mapping
+     * @param gamma      the display gamma, 1 for linear output
+     * @return the image writer itself
+     */
+    ImageWriter setToneMapping(ToneMapper toneMapper, double exposure, double gamma) {
+        this.toneMapper = toneMapper;
+        this.exposure   = exposure;
+        this.gamma      = gamma;
+        return this;
+    }
+
     // ***************** Operations ******************** //
 
     /**
      * Function writeToImage produces unoptimized png file of the image according
-     * to pixel color matrix in the directory of the project
+     * to pixel color matrix in the directory of the project.
+     * The image is tone mapped and written row by row (see {@link PngWriter}),
+     * so no 8 bit copy of the whole image is held in memory.
      * @param imageName the name of png file
      */
     void writeToImage(String imageName) {
-        try {
-            File file = new File(FOLDER_PATH + '/' + imageName + ".png");
-            ImageIO.write(image, "png", file);
+        File file = new File(FOLDER_PATH + '/' + imageName + ".png");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            PngWriter png = new PngWriter(out, nX, nY);
+            int[] row = new int[nX];
+            for (int y = 0; y < nY; y++) {
+                for (int x = 0; x < nX; x++)
+                    row[x] = frameBuffer.getRGB(x, y, toneMapper, exposure, gamma);
+                png.writeRow(row);
+            }
+            png.finish();
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+        }
+    }
+
+    /**
+     * Function writeToPfm produces a high dynamic range pfm file of the linear, unclamped
+     * pixel colors (see {@link FrameBuffer#writePfm}) in the directory of the project
+     * @param imageName the name of pfm file
+     */
+    void writeToPfm(String imageName) {
+        File file = new File(FOLDER_PATH + '/' + imageName + ".pfm");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            frameBuffer.writePfm(out);
         } catch (IOException e) {
             throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
         }
@@ -78,6 +136,15 @@ final class ImageWriter {
      * @param yIndex Y.axis index of the pixel
      * @param color  final color of the pixel
      */
-    void writePixel(int xIndex, int yIndex, Color color) { image.setRGB(xIndex, yIndex, color.getColor().getRGB()); }
+    void writePixel(int xIndex, int yIndex, Color color) { frameBuffer.set(xIndex, yIndex, color); }
+
+    /**
+     * The function addSample adds a sample color to a specific pixel, which gets
+     * the average color of its samples
+     * @param xIndex X.axis index of the pixel
+     * @param yIndex Y.axis index of the pixel
+     * @param color  color of the sample
+     */
+    void addSample(int xIndex, int yIndex, Color color) { frameBuffer.add(xIndex, yIndex, color); }
 
 }
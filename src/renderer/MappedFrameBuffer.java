@@ -0,0 +1,132 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Frame buffer kept in a memory mapped scratch file - 16 bytes per pixel, the sums of the color
+ * components as floats and the amount of the samples. The heap holds only the mappings, and the
+ * operating system pages the rendered parts of the image out to the file and in again when they
+ * are written, so the memory used is bounded by the parts being worked on rather than by the
+ * size of the image. A mapping is limited to 2GB, so the file is mapped in bands of whole rows.
+ * The file is deleted when the buffer is no longer used (immediately on systems which allow
+ * deleting a mapped file).
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+final class MappedFrameBuffer extends FrameBuffer {
+    /** Size of a pixel in the file - three float sums and an int amount of samples */
+    private static final int PIXEL_BYTES = 16;
+
+    /** Amount of the rows of the image in every band */
+    private final int bandRows;
+    /** The mappings of the bands of the file */
+    private final MappedByteBuffer[] bands;
+
+    /**
+     * Constructs a black frame buffer (with no samples) in a new scratch file in the temporary directory
+     *
+     * @param nX amount of pixels by width
+     * @param nY amount of pixels by height
+     */
+    MappedFrameBuffer(int nX, int nY) {
+        super(nX, nY);
+        long rowBytes = (long) PIXEL_BYTES * nX;
+        if (rowBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The image is too wide for a mapped frame buffer");
+        bandRows = (int) Math.min(nY, Integer.MAX_VALUE / rowBytes);
+        bands = new MappedByteBuffer[(nY + bandRows - 1) / bandRows];
+        try {
+            Path file = Files.createTempFile("frame", ".raw");
+            // the file is extended by the mappings with zeros - black pixels with no samples
+            try (FileChannel channel = FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE)) {
+                for (int b = 0; b < bands.length; b++) {
+                    int rows = Math.min(bandRows, nY - b * bandRows);
+                    bands[b] = channel.map(FileChannel.MapMode.READ_WRITE, b * bandRows * rowBytes, rows * rowBytes);
+                    bands[b].order(ByteOrder.nativeOrder());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - cannot create the frame buffer scratch file", e);
+        }
+    }
+
+    /**
+     * Calculates the position of a pixel in its band
+     *
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @return the offset of the pixel in the band of its row
+     */
+    private int offset(int x, int y) {
+        return ((y % bandRows) * nX + x) * PIXEL_BYTES;
+    }
+
+    /**
+     * Replaces the samples of a pixel by a single sample
+     *
+     * @param x     the column of the pixel
+     * @param y     the row of the pixel
+     * @param color the color of the sample
+     */
+    @Override
+    void set(int x, int y, Color color) {
+        Double3 rgb = color.getComponents();
+        MappedByteBuffer band = bands[y / bandRows];
+        int offset = offset(x, y);
+        band.putFloat(offset, (float) rgb.d1());
+        band.putFloat(offset + Float.BYTES, (float) rgb.d2());
+        band.putFloat(offset + 2 * Float.BYTES, (float) rgb.d3());
+        band.putInt(offset + 3 * Float.BYTES, 1);
+    }
+
+    /**
+     * Adds a sample to a pixel
+     *
+     * @param x     the column of the pixel
+     * @param y     the row of the pixel
+     * @param color the color of the sample
+     */
+    @Override
+    void add(int x, int y, Color color) {
+        Double3 rgb = color.getComponents();
+        MappedByteBuffer band = bands[y / bandRows];
+        int offset = offset(x, y);
+        band.putFloat(offset, band.getFloat(offset) + (float) rgb.d1());
+        band.putFloat(offset + Float.BYTES, band.getFloat(offset + Float.BYTES) + (float) rgb.d2());
+        band.putFloat(offset + 2 * Float.BYTES, band.getFloat(offset + 2 * Float.BYTES) + (float) rgb.d3());
+        band.putInt(offset + 3 * Float.BYTES, band.getInt(offset + 3 * Float.BYTES) + 1);
+    }
+
+    /**
+     * Returns the amount of the samples of a pixel
+     *
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @return the amount of the samples
+     */
+    @Override
+    int getCount(int x, int y) { return bands[y / bandRows].getInt(offset(x, y) + 3 * Float.BYTES); }
+
+    /**
+     * Returns the sum of a color component of the samples of a pixel
+     *
+     * @param x         the column of the pixel
+     * @param y         the row of the pixel
+     * @param component the component - 0 for red, 1 for green and 2 for blue
+     * @return the sum of the component
+     */
+    @Override
+    double getSum(int x, int y, int component) {
+        return bands[y / bandRows].getFloat(offset(x, y) + component * Float.BYTES);
+    }
+}
@@ -0,0 +1,84 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+/**
+ * Frame buffer kept in primitive arrays on the heap - 28 bytes per pixel,
+ * the sums of the color components as doubles and the amounts of the samples.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+final class MemoryFrameBuffer extends FrameBuffer {
+    /** Sums of the color components of the samples of every pixel - red, green and blue per pixel by rows */
+    private final double[] sums;
+    /** Amount of the samples of every pixel by rows */
+    private final int[] counts;
+
+    /**
+     * Constructs a black frame buffer (with no samples)
+     *
+     * @param nX amount of pixels by width
+     * @param nY amount of pixels by height
+     */
+    MemoryFrameBuffer(int nX, int nY) {
+        super(nX, nY);
+        sums = new double[3 * nX * nY];
+        counts = new int[nX * nY];
+    }
+
+    /**
+     * Replaces the samples of a pixel by a single sample
+     *
+     * @param x     the column of the pixel
+     * @param y     the row of the pixel
+     * @param color the color of the sample
+     */
+    @Override
+    void set(int x, int y, Color color) {
+        Double3 rgb = color.getComponents();
+        int p = y * nX + x;
+        sums[3 * p] = rgb.d1();
+        sums[3 * p + 1] = rgb.d2();
+        sums[3 * p + 2] = rgb.d3();
+        counts[p] = 1;
+    }
+
+    /**
+     * Adds a sample to a pixel
+     *
+     * @param x     the column of the pixel
+     * @param y     the row of the pixel
+     * @param color the color of the sample
+     */
+    @Override
+    void add(int x, int y, Color color) {
+        Double3 rgb = color.getComponents();
+        int p = y * nX + x;
+        sums[3 * p] += rgb.d1();
+        sums[3 * p + 1] += rgb.d2();
+        sums[3 * p + 2] += rgb.d3();
+        ++counts[p];
+    }
+
+    /**
+     * Returns the amount of the samples of a pixel
+     *
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @return the amount of the samples
+     */
+    @Override
+    int getCount(int x, int y) { return counts[y * nX + x]; }
+
+    /**
+     * Returns the sum of a color component of the samples of a pixel
+     *
+     * @param x         the column of the pixel
+     * @param y         the row of the pixel
+     * @param component the component - 0 for red, 1 for green and 2 for blue
+     * @return the sum of the component
+     */
+    @Override
+    double getSum(int x, int y, int component) { return sums[3 * (y * nX + x) + component]; }
+}
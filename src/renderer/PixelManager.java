@@ -93,10 +93,19 @@ class PixelManager {
 
     /** Finish pixel processing by updating and printing of progress percentage */
     void pixelDone() {
+        pixelsDone(1);
+    }
+
+    /**
+     * Finish processing of several pixels (e.g. a whole tile) by updating and printing of
+     * progress percentage - the progress lock is taken once for all the pixels
+     * @param count the amount of the processed pixels
+     */
+    void pixelsDone(int count) {
         boolean flag       = false;
         int     percentage = 0;
         synchronized (mutexPixels) {
-            ++pixels;
+            pixels += count;
             if (print) {
                 percentage = (int) (1000l * pixels / totalPixels);
                 if (percentage - lastPrinted >= printInterval) {
@@ -0,0 +1,198 @@
+package renderer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Streaming writer of 8 bit RGB PNG images. The scanlines are written one by one as they become
+ * available, filtered by the "sub" filter and compressed into a sequence of IDAT chunks of a bounded
+ * size, so only a single scanline and the compression buffers are held in memory regardless of the
+ * size of the image (unlike {@link javax.imageio.ImageIO}, which needs the whole image in memory).
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+final class PngWriter {
+    /** The PNG file signature */
+    private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+    /** Maximal size of the data of an IDAT chunk */
+    private static final int CHUNK_SIZE = 1 << 16;
+    /** The "sub" filter type - every byte is stored as the difference from the same component on the left */
+    private static final byte FILTER_SUB = 1;
+
+    /** The stream of the file */
+    private final OutputStream out;
+    /** Horizontal resolution - number of pixels in a scanline */
+    private final int nX;
+    /** Vertical resolution - number of scanlines */
+    private final int nY;
+    /** The compressor of the scanlines into the IDAT chunks */
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    /** The compressing stream writing into the IDAT chunks */
+    private final DeflaterOutputStream compressed;
+    /** Buffer of the filtered scanline - the filter type byte followed by 3 bytes per pixel */
+    private final byte[] scanline;
+    /** The amount of the scanlines written so far */
+    private int rows = 0;
+
+    /**
+     * Starts writing an image - writes the signature and the header of the image
+     *
+     * @param out the stream of the file (it is not closed)
+     * @param nX  amount of pixels by width
+     * @param nY  amount of pixels by height
+     * @throws IOException if the writing fails
+     */
+    PngWriter(OutputStream out, int nX, int nY) throws IOException {
+        this.out = out;
+        this.nX = nX;
+        this.nY = nY;
+        scanline = new byte[1 + 3 * nX];
+        out.write(SIGNATURE);
+        // width, height, bit depth 8, truecolor, deflate compression, adaptive filtering, no interlace
+        byte[] header = new byte[13];
+        putInt(header, 0, nX);
+        putInt(header, 4, nY);
+        header[8] = 8;
+        header[9] = 2;
+        writeChunk("IHDR", header, header.length);
+        compressed = new DeflaterOutputStream(new ChunkStream(), deflater, CHUNK_SIZE);
+    }
+
+    /**
+     * Writes the next scanline of the image
+     *
+     * @param rgb the packed RGB colors of the pixels of the scanline (at least the width of the image)
+     * @throws IOException if the writing fails
+     */
+    void writeRow(int[] rgb) throws IOException {
+        if (rows == nY) throw new IllegalStateException("All the rows of the image are written");
+        scanline[0] = FILTER_SUB;
+        int left = 0;
+        for (int x = 0, i = 1; x < nX; x++, i += 3) {
+            int color = rgb[x];
+            scanline[i] = (byte) ((color >> 16) - (left >> 16));
+            scanline[i + 1] = (byte) ((color >> 8) - (left >> 8));
+            scanline[i + 2] = (byte) (color - left);
+            left = color;
+        }
+        compressed.write(scanline);
+        ++rows;
+    }
+
+    /**
+     * Completes the image - flushes the compressed data and writes the end of the image
+     *
+     * @throws IOException if the writing fails
+     */
+    void finish() throws IOException {
+        if (rows != nY) throw new IllegalStateException("Only " + rows + " of " + nY + " rows are written");
+        compressed.finish();
+        // writes the last (partial) IDAT chunk
+        compressed.flush();
+        deflater.end();
+        writeChunk("IEND", scanline, 0);
+        out.flush();
+    }
+
+    /**
+     * Writes a chunk - its length, type, data and the CRC of the type and the data
+     *
+     * @param type   the chunk type
+     * @param data   buffer of the chunk data
+     * @param length the length of the data in the buffer
+     * @throws IOException if the writing fails
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] number = new byte[4];
+        putInt(number, 0, length);
+        out.write(number);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        putInt(number, 0, (int) crc.getValue());
+        out.write(number);
+    }
+
+    /**
+     * Stores an integer in big endian order
+     *
+     * @param buffer the buffer to store in
+     * @param offset the position of the integer in the buffer
+     * @param value  the integer
+     */
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Stream of the compressed data, cut into IDAT chunks of a bounded size
+     */
+    private class ChunkStream extends OutputStream {
+        /** The data of the current chunk */
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        /** The length of the data of the current chunk */
+        private int length = 0;
+
+        /**
+         * Writes a byte of compressed data
+         *
+         * @param b the byte
+         * @throws IOException if the writing fails
+         */
+        @Override
+        public void write(int b) throws IOException {
+            if (length == CHUNK_SIZE) flushChunk();
+            buffer[length++] = (byte) b;
+        }
+
+        /**
+         * Writes compressed data
+         *
+         * @param data   the buffer of the data
+         * @param offset the position of the data in the buffer
+         * @param count  the length of the data
+         * @throws IOException if the writing fails
+         */
+        @Override
+        public void write(byte[] data, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (length == CHUNK_SIZE) flushChunk();
+                int n = Math.min(count, CHUNK_SIZE - length);
+                System.arraycopy(data, offset, buffer, length, n);
+                length += n;
+                offset += n;
+                count -= n;
+            }
+        }
+
+        /**
+         * Writes the pending data as a chunk
+         *
+         * @throws IOException if the writing fails
+         */
+        @Override
+        public void flush() throws IOException {
+            if (length > 0) flushChunk();
+        }
+
+        /**
+         * Writes the data of the current chunk and starts a new chunk
+         *
+         * @throws IOException if the writing fails
+         */
+        private void flushChunk() throws IOException {
+            writeChunk("IDAT", buffer, length);
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package renderer;
+
+import primitives.Color;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * ProgressiveRenderer renders an image in passes of increasing quality, so a usable image exists
+ * early and is refined for as long as the budget allows.
+ * The first passes trace a single sample at the center of one pixel per 4x4 block (1/16 of the pixels),
+ * then one per 2x2 block (1/4 of the pixels) and then the rest of the pixels, filling the blocks whose
+ * pixels are not traced yet with the color of the traced pixel. The following passes add a randomly
+ * jittered sample to every pixel, accumulated in the frame buffer of the image which keeps the average
+ * of the samples of every pixel.
+ * The rendering stops when the time budget passes, when it is cancelled, or when all the pixels got
+ * the maximal amount of samples. The budget is checked between rows, so every row of a pass is either
+ * rendered completely or not at all.
+ * The image may be written as a snapshot at fixed intervals while rendering.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class ProgressiveRenderer {
+    /** The strides of the low resolution passes - the side of the blocks filled by a single sample */
+    private static final int[] STRIDES = { 4, 2, 1 };
+
+    /** The function tracing the samples */
+    private final AdaptiveSupersampler.Sampler sampler;
+    /** The image written by the passes */
+    private final ImageWriter imageWriter;
+    /** Horizontal resolution of the image */
+    private final int nX;
+    /** Vertical resolution of the image */
+    private final int nY;
+    /** Whether the rows of every pass are rendered in parallel */
+    private final boolean parallel;
+    /** The maximal amount of samples per pixel */
+    private final int maxSamples;
+    /** The time (as of {@link System#nanoTime()}) when the rendering stops, {@link Long#MAX_VALUE} if unlimited */
+    private final long deadline;
+    /** Whether the rendering has been cancelled from outside */
+    private final BooleanSupplier cancelled;
+    /** The interval between the snapshots in nanoseconds, 0 if no snapshots are written */
+    private final long snapshotInterval;
+    /** The name of the snapshot image file */
+    private final String snapshotName;
+    /** The time (as of {@link System#nanoTime()}) of the next snapshot */
+    private final AtomicLong nextSnapshot;
+    /** Amount of the samples traced for the pixels of every row */
+    private final int[] rowSamples;
+    /** Whether the rendering has been stopped before all the samples were traced */
+    private volatile boolean stopped = false;
+
+    /**
+     * Constructs a progressive renderer
+     *
+     * @param sampler          the function tracing the samples
+     * @param imageWriter      the image to render into
+     * @param parallel         whether to render the rows of every pass in parallel
+     * @param budget           the time budget in seconds, 0 for unlimited time
+     * @param maxSamples       the maximal amount of samples per pixel
+     * @param cancelled        tells whether the rendering has been cancelled
+     * @param snapshotInterval the interval between the snapshots in seconds, 0 for no snapshots
+     * @param snapshotName     the name of the snapshot image file
+     */
+    ProgressiveRenderer(AdaptiveSupersampler.Sampler sampler, ImageWriter imageWriter, boolean parallel,
+                        double budget, int maxSamples, BooleanSupplier cancelled,
+                        double snapshotInterval, String snapshotName) {
+        this.sampler          = sampler;
+        this.imageWriter      = imageWriter;
+        this.parallel         = parallel;
+        this.maxSamples       = maxSamples;
+        this.cancelled        = cancelled;
+        this.snapshotName     = snapshotName;
+        nX                    = imageWriter.nX();
+        nY                    = imageWriter.nY();
+        long start            = System.nanoTime();
+        deadline              = budget == 0 ? Long.MAX_VALUE : start + (long) (budget * 1e9);
+        this.snapshotInterval = (long) (snapshotInterval * 1e9);
+        nextSnapshot          = new AtomicLong(start + this.snapshotInterval);
+        rowSamples            = new int[nY];
+    }
+
+    /**
+     * Renders the image until the budget is exhausted or all the samples are traced
+     *
+     * @return true if all the samples were traced, false if the rendering was stopped before
+     */
+    boolean render() {
+        int previous = 0;
+        for (int stride : STRIDES) {
+            int coarser = previous;
+            if (!forEachRow(stride, i -> renderSparseRow(i, stride, coarser))) return false;
+            previous = stride;
+        }
+        for (int samples = 2; samples <= maxSamples; samples++)
+            if (!forEachRow(1, this::refineRow)) return false;
+        return true;
+    }
+
+    /**
+     * Calculates the amount of samples traced for all the pixels of the image
+     *
+     * @return the minimal amount of samples of a pixel, 0 if the full resolution pass was not completed
+     */
+    int getSamples() {
+        int samples = Integer.MAX_VALUE;
+        for (int n : rowSamples) samples = Math.min(samples, n);
+        return samples;
+    }
+
+    /**
+     * Renders the rows of a pass (sequentially or in parallel) and writes the snapshots in time.
+     * The rows which are not started before the budget is exhausted are skipped.
+     *
+     * @param stride the interval between the rendered rows
+     * @param row    renders a row
+     * @return true if all the rows were rendered
+     */
+    private boolean forEachRow(int stride, IntConsumer row) {
+        IntStream rows = IntStream.iterate(0, i -> i < nY, i -> i + stride);
+        (parallel ? rows.parallel() : rows).forEach(i -> {
+            if (stopped) return;
+            if (cancelled.getAsBoolean() || System.nanoTime() >= deadline) {
+                stopped = true;
+                return;
+            }
+            row.accept(i);
+            snapshot();
+        });
+        return !stopped;
+    }
+
+    /**
+     * Writes the snapshot of the image if its time has come.
+     * Only one of the threads writes a snapshot at a time, while the others keep rendering.
+     */
+    private void snapshot() {
+        if (snapshotInterval == 0) return;
+        long now = System.nanoTime();
+        long next = nextSnapshot.get();
+        if (now >= next && nextSnapshot.compareAndSet(next, now + snapshotInterval))
+            imageWriter.writeToImage(snapshotName);
+    }
+
+    /**
+     * Renders the pixels of a row which are on the grid of the given stride and not on the grid of the
+     * coarser stride rendered before, tracing a sample at the center of each pixel and filling its block
+     *
+     * @param row     the row of the pixels (a multiple of the stride)
+     * @param stride  the stride of the pass
+     * @param coarser the stride of the previous pass, 0 for the first pass
+     */
+    private void renderSparseRow(int row, int stride, int coarser) {
+        boolean coarseRow = coarser != 0 && row % coarser == 0;
+        // on the rows of the coarser grid every other pixel was rendered by the previous pass
+        int step = coarseRow ? 2 * stride : stride;
+        int toRow = Math.min(row + stride, nY);
+        for (int col = coarseRow ? stride : 0; col < nX; col += step) {
+            Color color = sampler.sample(col + 0.5, row + 0.5);
+            int toCol = Math.min(col + stride, nX);
+            for (int i = row; i < toRow; i++)
+                for (int j = col; j < toCol; j++)
+                    imageWriter.writePixel(j, i, color);
+        }
+        if (stride == 1) rowSamples[row] = 1;
+    }
+
+    /**
+     * Adds a randomly jittered sample to every pixel of a row - the image keeps the average of the samples
+     *
+     * @param row the row of the pixels
+     */
+    private void refineRow(int row) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int col = 0; col < nX; col++)
+            imageWriter.addSample(col, row, sampler.sample(col + random.nextDouble(), row + random.nextDouble()));
+        ++rowSamples[row];
+    }
+}
@@ -0,0 +1,44 @@
+package renderer;
+
+import geometries.Intersectable;
+import geometries.RegularGrid;
+import scene.Scene;
+
+/**
+ * Ray tracer which traces the rays against a regular grid built over the scene geometries.
+ * The shading is the same as in {@link SimpleRayTracer}; only the intersection queries
+ * are answered by a {@link RegularGrid}. The grid is built on the first traced ray,
+ * after the scene is completely populated.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public class RegularGridRayTracer extends SimpleRayTracer {
+    /** The grid built over the scene geometries, or {@code null} before the first traced ray */
+    private volatile RegularGrid grid = null;
+
+    /**
+     * Constructor to initialize the ray tracer with a given scene.
+     *
+     * @param scene The scene to be rendered.
+     */
+    public RegularGridRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Returns the grid built over the scene geometries, building it if needed.
+     *
+     * @return the grid
+     */
+    @Override
+    protected Intersectable getGeometries() {
+        RegularGrid result = grid;
+        if (result == null) {
+            synchronized (this) {
+                result = grid;
+                if (result == null) grid = result = new RegularGrid(scene.geometries);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,407 @@
+package renderer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator of a distributed tile based render. The coordinator splits the image of a camera into its
+ * tiles (see {@link Camera.Builder#setTiles(int, TileOrder)}) and hands them out to {@link RenderWorker}s
+ * connected by sockets - processes started on the local machine by {@link #startLocalWorkers(int, String...)}
+ * or on other hosts. Every worker receives the scene in the format of the {@link SceneCache} with the
+ * rendering settings, rebuilds the camera and is accepted only if the fingerprint of its render matches.
+ * The colors of the pixels of the rendered tiles are written into the image of the camera.<br>
+ * A tile of a worker which dies, or does not return the tile within the tile timeout, is handed out to
+ * another worker. When no tiles are left to hand out, the idle workers render copies of the tiles still
+ * in progress, and the first copy returned wins, so a single slow worker does not hold the whole render.<br>
+ * The workers end their work when the image is completed, so every render needs its own workers
+ * (the local worker processes of a render are ended with it).
+ * <pre>
+ * try (RenderCoordinator coordinator = new RenderCoordinator(camera)) {
+ *     coordinator.startLocalWorkers(4, "-Xmx2g");
+ *     coordinator.render().writeToImage("image");
+ * }
+ * </pre>
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public final class RenderCoordinator implements AutoCloseable {
+    /** The bytes opening every connection of a worker */
+    static final int MAGIC = 0x52544457; // "RTDW"
+    /** The version of the protocol */
+    static final int VERSION = 1;
+    /** The column sent instead of a tile to end the work of a worker */
+    static final int END = -1;
+    /** Maximal amount of copies of a tile rendered at the same time by different workers */
+    private static final int MAX_COPIES = 2;
+    /** Interval of checking whether the local workers are alive, in milliseconds */
+    private static final long CHECK_INTERVAL = 1000;
+
+    /** The camera rendering the image */
+    private final Camera camera;
+    /** The socket accepting the workers */
+    private final ServerSocket server;
+    /** The worker processes started on the local machine for the next or the current render */
+    private final List<Process> processes = new ArrayList<>();
+    /** The monitor guarding the state of the tiles and the workers */
+    private final Object lock = new Object();
+    /** The tiles not handed out yet, or handed back by failed workers */
+    private final Deque<TileManager.Tile> pending = new ArrayDeque<>();
+    /** The tiles in progress, with the amount of the workers rendering them */
+    private final Map<TileManager.Tile, Integer> running = new LinkedHashMap<>();
+    /** The completed tiles */
+    private final Set<TileManager.Tile> done = new HashSet<>();
+    /** The amount of the tiles of the image */
+    private int total = 0;
+    /** The amount of the connected workers */
+    private int workers = 0;
+    /** The number of the current render - results of the workers of former renders are ignored */
+    private int generation = 0;
+    /** Time allowed to a worker for rendering a tile, in milliseconds, 0 for no limit */
+    private int tileTimeout = 0;
+    /** The scene of the current render in the format of the {@link SceneCache} */
+    private byte[] scene;
+    /** The frame buffer type, the rendering settings and the fingerprint of the current render */
+    private byte[] settings;
+    /** The thread accepting the workers, started by the first render */
+    private Thread acceptor;
+
+    /**
+     * Constructs a coordinator accepting the workers on an ephemeral port of the loopback address
+     *
+     * @param camera the camera rendering the image, with tile based rendering set
+     * @throws IllegalArgumentException if tile based rendering is not set
+     * @throws IllegalStateException    if the socket cannot be opened
+     */
+    public RenderCoordinator(Camera camera) {
+        this(camera, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    /**
+     * Constructs a coordinator accepting the workers on a given address (e.g. a wildcard address
+     * for workers on other hosts)
+     *
+     * @param camera  the camera rendering the image, with tile based rendering set
+     * @param address the address to accept the workers on, port 0 for an ephemeral port
+     * @throws IllegalArgumentException if tile based rendering is not set
+     * @throws IllegalStateException    if the socket cannot be opened
+     */
+    public RenderCoordinator(Camera camera, InetSocketAddress address) {
+        // splitting the image into tiles fails if tile based rendering is not set
+        camera.tileManager();
+        this.camera = camera;
+        try {
+            server = new ServerSocket();
+            server.bind(address);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot accept workers on " + address, e);
+        }
+    }
+
+    /**
+     * Returns the port the workers connect to
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Sets the time allowed to a worker for rendering a tile - a worker exceeding it is considered dead
+     * and its tile is handed out to another worker
+     *
+     * @param seconds the time in seconds, 0 for no limit
+     * @return the coordinator itself
+     * @throws IllegalArgumentException if the time is negative
+     */
+    public RenderCoordinator setTileTimeout(double seconds) {
+        if (seconds < 0) throw new IllegalArgumentException("Tile timeout must be non-negative");
+        tileTimeout = (int) Math.ceil(seconds * 1000);
+        return this;
+    }
+
+    /**
+     * Starts worker processes on the local machine, running the same java executable with the same
+     * class path as the current process
+     *
+     * @param count      the amount of the workers
+     * @param jvmOptions options of the JVMs of the workers (e.g. the heap size)
+     * @return the coordinator itself
+     * @throws IllegalArgumentException if the amount is not positive
+     * @throws IllegalStateException    if a process cannot be started
+     */
+    public RenderCoordinator startLocalWorkers(int count, String... jvmOptions) {
+        if (count <= 0) throw new IllegalArgumentException("Amount of workers must be positive");
+        InetAddress address = server.getInetAddress();
+        if (address.isAnyLocalAddress()) address = InetAddress.getLoopbackAddress();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(List.of(jvmOptions));
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), RenderWorker.class.getName(),
+                address.getHostAddress(), Integer.toString(getPort())));
+        ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+        try {
+            for (int i = 0; i < count; ++i) {
+                Process process = builder.start();
+                synchronized (lock) {
+                    processes.add(process);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start a worker process", e);
+        }
+        return this;
+    }
+
+    /**
+     * Renders the image of the camera by the workers - waits until all the tiles are completed,
+     * then ends the local worker processes
+     *
+     * @return the camera, holding the rendered image
+     * @throws IllegalStateException if all the local workers died before the image is completed
+     *                               (with no workers started locally, waits for workers to connect)
+     */
+    public Camera render() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            SceneCache.write(camera.getScene(), camera, out, true);
+            out.flush();
+            byte[] scene = bytes.toByteArray();
+            bytes.reset();
+            out.writeByte(camera.getFrameBufferType().ordinal());
+            camera.writeSettings(out);
+            byte[] fingerprint = camera.fingerprint();
+            out.writeInt(fingerprint.length);
+            out.write(fingerprint);
+            out.flush();
+            synchronized (lock) {
+                this.scene = scene;
+                settings = bytes.toByteArray();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize the scene for the workers", e);
+        }
+
+        synchronized (lock) {
+            ++generation;
+            pending.clear();
+            running.clear();
+            done.clear();
+            TileManager tileManager = camera.tileManager();
+            for (TileManager.Tile tile; (tile = tileManager.nextTile()) != null; )
+                pending.add(tile);
+            total = pending.size();
+            lock.notifyAll();
+        }
+        if (acceptor == null)
+            acceptor = Thread.ofPlatform().daemon().name("render-coordinator").start(this::accept);
+        try {
+            synchronized (lock) {
+                while (done.size() < total) {
+                    if (!processes.isEmpty() && workers == 0 && processes.stream().noneMatch(Process::isAlive))
+                        throw new IllegalStateException("All the workers died with " + (total - done.size())
+                                + " of " + total + " tiles missing");
+                    lock.wait(CHECK_INTERVAL);
+                }
+                // the idle workers end their work
+                lock.notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The distributed render is interrupted", e);
+        } finally {
+            endProcesses();
+        }
+        return camera;
+    }
+
+    /**
+     * Waits until the given amount of renders have started - their tiles are ready to be handed out
+     *
+     * @param renders the amount of the renders
+     * @throws InterruptedException if the waiting is interrupted
+     */
+    void awaitRenders(int renders) throws InterruptedException {
+        synchronized (lock) {
+            while (generation < renders) lock.wait();
+        }
+    }
+
+    /**
+     * Accepts the workers and serves each of them by a virtual thread, until the socket is closed
+     */
+    private void accept() {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                return;
+            }
+            synchronized (lock) {
+                ++workers;
+            }
+            Thread.ofVirtual().start(() -> serve(socket));
+        }
+    }
+
+    /**
+     * Serves a worker - sends the scene and the settings and hands out tiles until the image is completed.
+     * The tile of a worker which fails or exceeds the tile timeout is handed back.
+     *
+     * @param socket the connection of the worker
+     */
+    private void serve(Socket socket) {
+        TileManager.Tile tile = null;
+        int session = -1;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            byte[] scene;
+            byte[] settings;
+            synchronized (lock) {
+                scene = this.scene;
+                settings = this.settings;
+                session = generation;
+            }
+            out.writeInt(scene.length);
+            out.write(scene);
+            out.write(settings);
+            out.flush();
+            if (!in.readBoolean()) return;
+
+            socket.setSoTimeout(tileTimeout);
+            while ((tile = nextTile(session)) != null) {
+                out.writeInt(tile.col());
+                out.writeInt(tile.row());
+                out.writeInt(tile.width());
+                out.writeInt(tile.height());
+                out.flush();
+                if (in.readInt() != tile.col() || in.readInt() != tile.row()
+                        || in.readInt() != tile.width() || in.readInt() != tile.height())
+                    throw new IOException("The worker returned a wrong tile");
+                double[] colors = new double[3 * tile.size()];
+                for (int i = 0; i < colors.length; ++i) colors[i] = in.readDouble();
+                complete(session, tile, colors);
+                tile = null;
+            }
+            out.writeInt(END);
+            out.flush();
+        } catch (IOException | InterruptedException ignored) {
+            // a dead or a slow worker - its tile is handed out to another worker
+        } finally {
+            synchronized (lock) {
+                if (tile != null && session == generation) abandon(tile);
+                --workers;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Hands out the next tile to a worker: a pending tile, or a copy of a tile in progress if no tiles
+     * are pending. Waits while all the tiles are in progress by the maximal amount of workers.
+     *
+     * @param session the number of the render the worker works for
+     * @return the tile, or {@code null} if the image is completed or the render is over
+     * @throws InterruptedException if the waiting is interrupted
+     */
+    private TileManager.Tile nextTile(int session) throws InterruptedException {
+        synchronized (lock) {
+            while (session == generation && done.size() < total) {
+                TileManager.Tile tile = pending.poll();
+                if (tile == null)
+                    for (Map.Entry<TileManager.Tile, Integer> entry : running.entrySet())
+                        if (entry.getValue() < MAX_COPIES) {
+                            tile = entry.getKey();
+                            break;
+                        }
+                if (tile != null) {
+                    running.merge(tile, 1, Integer::sum);
+                    return tile;
+                }
+                lock.wait();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Completes a tile returned by a worker - the first returned copy of a tile is written into the image,
+     * and a tile of a former render is ignored
+     *
+     * @param session the number of the render the worker works for
+     * @param tile    the tile
+     * @param colors  the red, green and blue components of the pixels of the tile, by rows
+     */
+    private void complete(int session, TileManager.Tile tile, double[] colors) {
+        synchronized (lock) {
+            if (session != generation) return;
+            release(tile);
+            if (!done.add(tile)) return;
+            camera.writeTileColors(tile, colors);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Hands back the tile of a failed worker - it becomes pending unless it is completed or another
+     * worker renders it. Must be called holding the lock.
+     *
+     * @param tile the tile
+     */
+    private void abandon(TileManager.Tile tile) {
+        release(tile);
+        if (!done.contains(tile) && !running.containsKey(tile)) pending.addFirst(tile);
+    }
+
+    /**
+     * Removes a worker from the workers rendering a tile. Must be called holding the lock.
+     *
+     * @param tile the tile
+     */
+    private void release(TileManager.Tile tile) {
+        running.computeIfPresent(tile, (t, copies) -> copies > 1 ? copies - 1 : null);
+    }
+
+    /**
+     * Stops accepting workers and ends the local worker processes
+     */
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        endProcesses();
+    }
+
+    /**
+     * Waits for the local worker processes to end their work, destroys the processes which do not end,
+     * and forgets them
+     */
+    private void endProcesses() {
+        List<Process> started;
+        synchronized (lock) {
+            started = List.copyOf(processes);
+            processes.clear();
+        }
+        for (Process process : started) {
+            try {
+                if (!process.waitFor(CHECK_INTERVAL, TimeUnit.MILLISECONDS)) process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Checkpoint journal of a tile based render. Every completed tile is appended to the journal file
+ * with the colors of its pixels, so a render which dies may be resumed: the journal is read back,
+ * the pixels of the completed tiles are restored into the image and only the missing tiles are rendered.
+ * The journal starts with a fingerprint of the scene and the camera settings, the resolution and the
+ * tile size, and it is resumed only if all of them match the current render.
+ * Every tile record ends with a CRC, so a record cut off by the death of the render is detected,
+ * dropped and overwritten by the resumed render.
+ * Tiles may be appended by different threads concurrently.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+final class RenderJournal implements AutoCloseable {
+    /** The bytes opening every journal file */
+    private static final int MAGIC = 0x52544A4E; // "RTJN"
+    /** The version of the format of the journal files */
+    private static final int VERSION = 1;
+    /** Size of the header of a tile record - column, row, width and height */
+    private static final int TILE_HEADER_BYTES = 4 * Integer.BYTES;
+
+    /** The path of the journal file */
+    private final Path path;
+    /** The channel appending to the journal file */
+    private final FileChannel channel;
+    /** Horizontal resolution of the image */
+    private final int nX;
+    /** Vertical resolution of the image */
+    private final int nY;
+    /** The keys of the completed tiles (see {@link #key(TileManager.Tile)}) */
+    private final Set<Long> done = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a journal appending to an open file
+     *
+     * @param path    the path of the journal file
+     * @param channel the channel of the file, positioned at the end of its valid content
+     * @param nX      horizontal resolution of the image
+     * @param nY      vertical resolution of the image
+     */
+    private RenderJournal(Path path, FileChannel channel, int nX, int nY) {
+        this.path = path;
+        this.channel = channel;
+        this.nX = nX;
+        this.nY = nY;
+    }
+
+    /**
+     * Creates a new empty journal, replacing an existing journal file
+     *
+     * @param path        the path of the journal file
+     * @param fingerprint the fingerprint of the scene and the camera settings
+     * @param nX          horizontal resolution of the image
+     * @param nY          vertical resolution of the image
+     * @param tileSize    the size of the side of a tile in pixels
+     * @return the journal
+     * @throws IllegalStateException if writing the file fails
+     */
+    static RenderJournal create(Path path, byte[] fingerprint, int nX, int nY, int tileSize) {
+        try {
+            FileChannel channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+            writeFully(channel, header(fingerprint, nX, nY, tileSize));
+            return new RenderJournal(path, channel, nX, nY);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error creating the render journal " + path, e);
+        }
+    }
+
+    /**
+     * Opens an existing journal for resuming the render: verifies that it belongs to the same render,
+     * restores the pixels of the completed tiles into the image and drops a cut off record at the end
+     *
+     * @param path        the path of the journal file
+     * @param fingerprint the fingerprint of the scene and the camera settings
+     * @param tileSize    the size of the side of a tile in pixels
+     * @param imageWriter the image to restore the pixels into
+     * @return the journal, with the completed tiles marked as done
+     * @throws IllegalArgumentException if the file is not a journal of the same render
+     * @throws IllegalStateException    if reading or writing the file fails
+     */
+    static RenderJournal resume(Path path, byte[] fingerprint, int tileSize, ImageWriter imageWriter) {
+        int nX = imageWriter.nX();
+        int nY = imageWriter.nY();
+        ByteBuffer expected = header(fingerprint, nX, nY, tileSize);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, READ, WRITE);
+            ByteBuffer header = ByteBuffer.allocate(expected.remaining());
+            if (!readFully(channel, header, 0) || !header.flip().equals(expected))
+                throw new IllegalArgumentException(
+                        "The render journal " + path + " was written for a different scene, camera or resolution");
+            RenderJournal journal = new RenderJournal(path, channel, nX, nY);
+            long position = expected.remaining();
+            long next;
+            while ((next = journal.restoreTile(position, tileSize, imageWriter)) > position)
+                position = next;
+            // a record cut off by the death of the render is overwritten by the next tiles
+            channel.truncate(position);
+            channel.position(position);
+            return journal;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new IllegalStateException("I/O error resuming the render journal " + path, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the header of a journal
+     *
+     * @param fingerprint the fingerprint of the scene and the camera settings
+     * @param nX          horizontal resolution of the image
+     * @param nY          vertical resolution of the image
+     * @param tileSize    the size of the side of a tile in pixels
+     * @return the header, ready to be written
+     */
+    private static ByteBuffer header(byte[] fingerprint, int nX, int nY, int tileSize) {
+        return ByteBuffer.allocate(headerLength(fingerprint.length))
+                .putInt(MAGIC).putInt(VERSION)
+                .putInt(fingerprint.length).put(fingerprint)
+                .putInt(nX).putInt(nY).putInt(tileSize)
+                .flip();
+    }
+
+    /**
+     * Restores the pixels of a tile record into the image and marks the tile as done
+     *
+     * @param position    the position of the record in the file
+     * @param tileSize    the size of the side of a tile in pixels
+     * @param imageWriter the image to restore the pixels into
+     * @return the position after the record, or the given position if there is no valid record there
+     * @throws IOException if reading the file fails
+     */
+    private long restoreTile(long position, int tileSize, ImageWriter imageWriter) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(TILE_HEADER_BYTES);
+        if (!readFully(channel, header, position)) return position;
+        int col = header.getInt(0);
+        int row = header.getInt(Integer.BYTES);
+        int width = header.getInt(2 * Integer.BYTES);
+        int height = header.getInt(3 * Integer.BYTES);
+        if (col < 0 || row < 0 || col % tileSize != 0 || row % tileSize != 0 || col >= nX || row >= nY
+                || width != Math.min(tileSize, nX - col) || height != Math.min(tileSize, nY - row))
+            return position;
+        int length = recordLength(width * height);
+        ByteBuffer record = ByteBuffer.allocate(length);
+        if (!readFully(channel, record, position)) return position;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length - Integer.BYTES);
+        if (record.getInt(length - Integer.BYTES) != (int) crc.getValue()) return position;
+
+        record.position(TILE_HEADER_BYTES);
+        for (int i = row; i < row + height; i++)
+            for (int j = col; j < col + width; j++)
+                imageWriter.writePixel(j, i, new Color(record.getDouble(), record.getDouble(), record.getDouble()));
+        done.add(key(new TileManager.Tile(col, row, width, height)));
+        return position + length;
+    }
+
+    /**
+     * Checks whether a tile is completed
+     *
+     * @param tile the tile
+     * @return true if the tile is in the journal
+     */
+    boolean isDone(TileManager.Tile tile) {
+        return done.contains(key(tile));
+    }
+
+    /**
+     * Returns the amount of the completed tiles
+     *
+     * @return the amount of the tiles in the journal
+     */
+    int doneCount() {
+        return done.size();
+    }
+
+    /**
+     * Appends a completed tile to the journal with the colors of its pixels
+     *
+     * @param tile        the tile
+     * @param imageWriter the image holding the pixels of the tile
+     * @throws IllegalStateException if writing the file fails
+     */
+    void append(TileManager.Tile tile, ImageWriter imageWriter) {
+        int length = recordLength(tile.size());
+        ByteBuffer record = ByteBuffer.allocate(length)
+                .putInt(tile.col()).putInt(tile.row()).putInt(tile.width()).putInt(tile.height());
+        FrameBuffer frameBuffer = imageWriter.frameBuffer();
+        for (int i = tile.row(); i < tile.row() + tile.height(); i++)
+            for (int j = tile.col(); j < tile.col() + tile.width(); j++) {
+                Double3 rgb = frameBuffer.getColor(j, i).getComponents();
+                record.putDouble(rgb.d1()).putDouble(rgb.d2()).putDouble(rgb.d3());
+            }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length - Integer.BYTES);
+        record.putInt((int) crc.getValue()).flip();
+        try {
+            synchronized (channel) {
+                writeFully(channel, record);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error appending to the render journal " + path, e);
+        }
+        done.add(key(tile));
+    }
+
+    /**
+     * Forces the journal to the storage device and closes it
+     *
+     * @throws IllegalStateException if writing the file fails
+     */
+    @Override
+    public void close() {
+        try (channel) {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error closing the render journal " + path, e);
+        }
+    }
+
+    /**
+     * Checks whether a journal file exists
+     *
+     * @param path the path of the journal file
+     * @return true if the file exists
+     */
+    static boolean exists(Path path) {
+        return Files.isRegularFile(path);
+    }
+
+    /**
+     * Calculates the length of the header of a journal - the magic, the version, the fingerprint
+     * with its length, the resolution and the tile size
+     *
+     * @param fingerprintLength the length of the fingerprint in bytes
+     * @return the length of the header in bytes
+     */
+    static int headerLength(int fingerprintLength) {
+        return 6 * Integer.BYTES + fingerprintLength;
+    }
+
+    /**
+     * Calculates the length of a tile record - the header, the colors of the pixels and the CRC
+     *
+     * @param pixels the amount of the pixels of the tile
+     * @return the length of the record in bytes
+     */
+    static int recordLength(int pixels) {
+        return TILE_HEADER_BYTES + 3 * Double.BYTES * pixels + Integer.BYTES;
+    }
+
+    /**
+     * Identifies a tile by its position
+     *
+     * @param tile the tile
+     * @return the key of the tile
+     */
+    private static long key(TileManager.Tile tile) {
+        return (long) tile.row() << 32 | tile.col();
+    }
+
+    /**
+     * Writes the whole content of a buffer to a channel
+     *
+     * @param channel the channel
+     * @param buffer  the buffer
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * Reads a buffer full of content of a channel from a given position
+     *
+     * @param channel  the channel
+     * @param buffer   the buffer to fill
+     * @param position the position in the channel
+     * @return true if the buffer is filled, false if the channel ends before
+     * @throws IOException if reading fails
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) return false;
+            position += read;
+        }
+        return true;
+    }
+
+    /**
+     * Closes a channel after a failure, ignoring further failures
+     *
+     * @param channel the channel, may be {@code null}
+     */
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package renderer;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Worker of a distributed render (see {@link RenderCoordinator}). The worker connects to the coordinator,
+ * receives the scene (in the format of the {@link SceneCache}) and the rendering settings, rebuilds the
+ * camera, verifies it by the fingerprint of the render, and then renders the tiles handed out by the
+ * coordinator one by one, sending back the colors of their pixels, until the coordinator ends the work.
+ * A worker is usually a separate process, started by the coordinator on the local machine or by hand
+ * on any host which can reach the coordinator:
+ * <pre>
+ * java -cp &lt;classpath&gt; renderer.RenderWorker &lt;coordinator host&gt; &lt;coordinator port&gt;
+ * </pre>
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public final class RenderWorker {
+    /** Private constructor - the class has static methods only */
+    private RenderWorker() {
+    }
+
+    /**
+     * Runs a worker process
+     *
+     * @param args the host and the port of the coordinator
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java renderer.RenderWorker <coordinator host> <coordinator port>");
+            System.exit(2);
+        }
+        run(args[0], Integer.parseInt(args[1]));
+    }
+
+    /**
+     * Connects to a coordinator and renders the tiles it hands out until it ends the work
+     *
+     * @param host the host of the coordinator
+     * @param port the port of the coordinator
+     * @return the amount of the rendered tiles
+     * @throws IllegalStateException if the connection fails or the received scene does not match
+     *                               the fingerprint of the render
+     */
+    public static int run(String host, int port) {
+        String coordinator = "coordinator " + host + ":" + port;
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(RenderCoordinator.MAGIC);
+            out.writeInt(RenderCoordinator.VERSION);
+            out.flush();
+
+            byte[] scene = new byte[in.readInt()];
+            in.readFully(scene);
+            FrameBufferType frameBufferType = FrameBufferType.values()[in.readByte()];
+            SceneCache cache = SceneCache.read(ByteBuffer.wrap(scene), coordinator);
+            Camera camera = cache.getCamera().setFrameBuffer(frameBufferType)
+                    .readSettings(in, cache.getScene()).build();
+            byte[] fingerprint = new byte[in.readInt()];
+            in.readFully(fingerprint);
+            boolean accepted = Arrays.equals(fingerprint, camera.fingerprint());
+            out.writeBoolean(accepted);
+            out.flush();
+            if (!accepted)
+                throw new IllegalStateException("The scene received from the " + coordinator
+                        + " does not match the fingerprint of the render");
+
+            int tiles = 0;
+            for (int col; (col = in.readInt()) != RenderCoordinator.END; tiles++) {
+                TileManager.Tile tile = new TileManager.Tile(col, in.readInt(), in.readInt(), in.readInt());
+                double[] colors = camera.renderTileColors(tile);
+                out.writeInt(tile.col());
+                out.writeInt(tile.row());
+                out.writeInt(tile.width());
+                out.writeInt(tile.height());
+                for (double component : colors) out.writeDouble(component);
+                out.flush();
+            }
+            return tiles;
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error working for the " + coordinator, e);
+        }
+    }
+}
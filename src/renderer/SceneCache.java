@@ -0,0 +1,312 @@
+package renderer;
+
+import geometries.GeometryCodec;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary cache of a whole scene - the geometries with their materials, the lights, the background
+ * and optionally the view of the camera - together with the built acceleration structures
+ * (see {@link GeometryCodec}). Loading the cache maps the file into memory and restores the scene
+ * without building the BVH again, so re-rendering an unchanged scene skips its construction:
+ * <pre>
+ * SceneCache cache = SceneCache.exists(path) ? SceneCache.load(path) : SceneCache.save(buildScene(), camera, path);
+ * </pre>
+ * The cache does not hold the rendering settings of the camera (ray tracer, threads, anti-aliasing...),
+ * which are set on the restored camera builder.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public final class SceneCache {
+    /** The bytes opening every cache file */
+    private static final int MAGIC = 0x52545343; // "RTSC"
+    /** The version of the format of the cache files */
+    private static final int VERSION = 3;
+    /** Type code of a directional light */
+    private static final byte DIRECTIONAL_LIGHT = 1;
+    /** Type code of a point light */
+    private static final byte POINT_LIGHT = 2;
+    /** Type code of a spot light */
+    private static final byte SPOT_LIGHT = 3;
+
+    /** The cached scene */
+    private final Scene scene;
+    /** The cached camera, {@code null} if the cache has no camera */
+    private final Camera camera;
+
+    /**
+     * Constructs a cache of a scene
+     *
+     * @param scene  the scene
+     * @param camera the camera, may be {@code null}
+     */
+    private SceneCache(Scene scene, Camera camera) {
+        this.scene = scene;
+        this.camera = camera;
+    }
+
+    /**
+     * Checks whether a cache file exists
+     *
+     * @param path the path of the cache file
+     * @return true if the file exists
+     */
+    public static boolean exists(String path) {
+        return Files.isRegularFile(Path.of(path));
+    }
+
+    /**
+     * Writes a scene with its built acceleration structures and the view of a camera into a cache file
+     *
+     * @param scene  the scene
+     * @param camera the camera viewing the scene, may be {@code null}
+     * @param path   the path of the cache file
+     * @return the cache of the scene
+     * @throws IllegalArgumentException if the scene contains a geometry or a light which cannot be cached
+     * @throws IllegalStateException    if writing the file fails
+     */
+    public static SceneCache save(Scene scene, Camera camera, String path) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(Path.of(path)), 1 << 16))) {
+            write(scene, camera, out, true);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error writing the scene cache " + path, e);
+        }
+        return new SceneCache(scene, camera);
+    }
+
+    /**
+     * Writes a scene and the view of a camera in the format of the cache files
+     *
+     * @param scene      the scene
+     * @param camera     the camera viewing the scene, may be {@code null}
+     * @param out        the stream to write to
+     * @param structures whether to write the built acceleration structures (see {@link GeometryCodec})
+     * @throws IOException              if writing fails
+     * @throws IllegalArgumentException if the scene contains a geometry or a light which cannot be cached
+     */
+    static void write(Scene scene, Camera camera, DataOutputStream out, boolean structures) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        byte[] name = (scene.name == null ? "" : scene.name).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(name.length);
+        out.write(name);
+        writeColor(scene.backgroundColor, out);
+        writeColor(scene.ambientLight.getIntensity(), out);
+        out.writeInt(scene.lights.size());
+        for (LightSource light : scene.lights) writeLight(light, out);
+        GeometryCodec.write(scene.geometries, out, structures);
+        out.writeBoolean(camera != null);
+        if (camera != null) {
+            writePoint(camera.getP0(), out);
+            writePoint(camera.getVTo(), out);
+            writePoint(camera.getVUp(), out);
+            out.writeDouble(camera.getDistance());
+            out.writeDouble(camera.getWidth());
+            out.writeDouble(camera.getHeight());
+            out.writeInt(camera.getNX());
+            out.writeInt(camera.getNY());
+        }
+    }
+
+    /**
+     * Loads a scene from a cache file, mapping the file into memory
+     *
+     * @param path the path of the cache file
+     * @return the cache of the scene
+     * @throws IllegalArgumentException if the file is not a valid cache file
+     * @throws IllegalStateException    if reading the file fails
+     */
+    public static SceneCache load(String path) {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error reading the scene cache " + path, e);
+        }
+        return read(buffer, path);
+    }
+
+    /**
+     * Reads a scene written in the format of the cache files (e.g. received from elsewhere)
+     *
+     * @param buffer the buffer holding the cache
+     * @param source the name of the source of the cache, for the error messages
+     * @return the cache of the scene
+     * @throws IllegalArgumentException if the buffer does not hold a valid cache
+     */
+    static SceneCache read(ByteBuffer buffer, String source) {
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IllegalArgumentException("Not a scene cache file: " + source);
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported scene cache version " + version + ": " + source);
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            Scene scene = new Scene(new String(name, StandardCharsets.UTF_8))
+                    .setBackground(readColor(buffer))
+                    .setAmbientLight(new AmbientLight(readColor(buffer)));
+            for (int i = buffer.getInt(); i > 0; i--) scene.lights.add(readLight(buffer));
+            scene.setGeometries(GeometryCodec.read(buffer));
+            Camera camera = null;
+            if (buffer.get() != 0)
+                camera = Camera.getBuilder()
+                        .setLocation(readPoint(buffer))
+                        .setDirection(readVector(buffer), readVector(buffer))
+                        .setVpDistance(buffer.getDouble())
+                        .setVpSize(buffer.getDouble(), buffer.getDouble())
+                        .setResolution(buffer.getInt(), buffer.getInt())
+                        .setRayTracer(scene, RayTracerType.SIMPLE)
+                        .build();
+            return new SceneCache(scene, camera);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated scene cache file: " + source, e);
+        }
+    }
+
+    /**
+     * Returns the cached scene
+     *
+     * @return the scene
+     */
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Returns a builder of a camera with the cached view, rendering the cached scene by the simple ray tracer.
+     * The rendering settings are set on the builder.
+     *
+     * @return the camera builder
+     * @throws IllegalStateException if the cache has no camera
+     */
+    public Camera.Builder getCamera() {
+        if (camera == null) throw new IllegalStateException("The scene cache has no camera");
+        return Camera.getBuilder(camera);
+    }
+
+    /**
+     * Writes a light source
+     *
+     * @param light the light source
+     * @param out   the stream to write to
+     * @throws IOException              if writing fails
+     * @throws IllegalArgumentException if the light cannot be written
+     */
+    private static void writeLight(LightSource light, DataOutputStream out) throws IOException {
+        switch (light) {
+            case DirectionalLight directional -> {
+                out.writeByte(DIRECTIONAL_LIGHT);
+                writeColor(directional.getIntensity(), out);
+                writePoint(directional.getDirection(), out);
+            }
+            case PointLight point -> {
+                out.writeByte(point instanceof SpotLight ? SPOT_LIGHT : POINT_LIGHT);
+                writeColor(point.getIntensity(), out);
+                writePoint(point.getPosition(), out);
+                out.writeDouble(point.getKc());
+                out.writeDouble(point.getKl());
+                out.writeDouble(point.getKq());
+                if (point instanceof SpotLight spot) {
+                    writePoint(spot.getDirection(), out);
+                    out.writeDouble(spot.getNarrowBeam());
+                }
+            }
+            default -> throw new IllegalArgumentException("Cannot cache " + light.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Reads a light source
+     *
+     * @param buffer the buffer to read from
+     * @return the light source
+     * @throws IllegalArgumentException if the type of the light is unknown
+     */
+    private static LightSource readLight(ByteBuffer buffer) {
+        byte type = buffer.get();
+        Color intensity = readColor(buffer);
+        return switch (type) {
+            case DIRECTIONAL_LIGHT -> new DirectionalLight(intensity, readVector(buffer));
+            case POINT_LIGHT -> new PointLight(intensity, readPoint(buffer))
+                    .setKc(buffer.getDouble()).setKl(buffer.getDouble()).setKq(buffer.getDouble());
+            case SPOT_LIGHT -> {
+                Point position = readPoint(buffer);
+                double kc = buffer.getDouble(), kl = buffer.getDouble(), kq = buffer.getDouble();
+                yield new SpotLight(intensity, position, readVector(buffer))
+                        .setKc(kc).setKl(kl).setKq(kq).setNarrowBeam(buffer.getDouble());
+            }
+            default -> throw new IllegalArgumentException("Unknown light type " + type);
+        };
+    }
+
+    /**
+     * Writes a color
+     *
+     * @param color the color
+     * @param out   the stream to write to
+     * @throws IOException if writing fails
+     */
+    private static void writeColor(Color color, DataOutputStream out) throws IOException {
+        Double3 rgb = color.getComponents();
+        out.writeDouble(rgb.d1());
+        out.writeDouble(rgb.d2());
+        out.writeDouble(rgb.d3());
+    }
+
+    /**
+     * Reads a color
+     *
+     * @param buffer the buffer to read from
+     * @return the color
+     */
+    private static Color readColor(ByteBuffer buffer) {
+        return new Color(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Writes a point (or a vector)
+     *
+     * @param point the point
+     * @param out   the stream to write to
+     * @throws IOException if writing fails
+     */
+    private static void writePoint(Point point, DataOutputStream out) throws IOException {
+        out.writeDouble(point.getX());
+        out.writeDouble(point.getY());
+        out.writeDouble(point.getZ());
+    }
+
+    /**
+     * Reads a point
+     *
+     * @param buffer the buffer to read from
+     * @return the point
+     */
+    private static Point readPoint(ByteBuffer buffer) {
+        return new Point(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Reads a vector
+     *
+     * @param buffer the buffer to read from
+     * @return the vector
+     */
+    private static Vector readVector(ByteBuffer buffer) {
+        return new Vector(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+}
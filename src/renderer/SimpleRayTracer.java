@@ -1,5 +1,6 @@
 package renderer;
 
+import geometries.Intersectable;
 import geometries.Intersectable.Intersection;
 import lighting.LightSource;
 import primitives.Color;
@@ -7,7 +8,6 @@ import primitives.Double3;
 import primitives.Ray;
 import primitives.Vector;
 import scene.Scene;
-import java.util.List;
 import static primitives.Util.alignZero;
 
 /**
@@ -47,6 +47,17 @@ public class SimpleRayTracer extends RayTracerBase {
         super(scene);
     }
 
+    /**
+     * Returns the intersectable structure that the rays are traced against.
+     * Subclasses may override it to trace the rays against an acceleration structure
+     * built over the scene geometries.
+     *
+     * @return the scene geometries
+     */
+    protected Intersectable getGeometries() {
+        return scene.geometries;
+    }
+
     /**
      * Traces a ray through the scene and returns the color at the intersection point.
      * This method checks if the ray intersects with any geometries in the scene.
@@ -95,10 +106,10 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return true if the dot product is not zero, false otherwise
      */
     private boolean preprocessIntersection(Intersection intersection, Vector vector) {
-        // Initialize the normal vector
-        intersection.v = vector.normalize();
+        // Initialize the view vector (the directions of the rays are normalized already)
+        intersection.v = vector;
         // Calculate the normal vector at the intersection point
-        intersection.normal = intersection.geometry.getNormal(intersection.point);
+        intersection.normal = intersection.geometry.getNormal(intersection);
         // Calculate the dot product of the ray vector and the normal vector
         intersection.vNormal = alignZero(intersection.v.dotProduct(intersection.normal));
         // Check if the dot product is zero, indicating that the ray is parallel to the surface
@@ -151,7 +162,7 @@ public class SimpleRayTracer extends RayTracerBase {
                 // Calculate the diffuse and specular components of the color
                 Color iL = lightSource.getIntensity(intersection.point).scale(ktr);
                 // Add the color contributions from the light source
-                color = color.add(iL.scale(calcDiffuse(intersection))).add(iL.scale(calcSpecular(intersection)));
+                color = color.add(iL.scale(calcDiffuse(intersection).add(calcSpecular(intersection))));
                 }
             }
         }
@@ -170,10 +181,20 @@ public class SimpleRayTracer extends RayTracerBase {
         // Check if the intersection and material are not null
         if (intersection == null || intersection.material == null)
             throw new IllegalArgumentException("intersection or material is null");
-        // Calculate the reflection vector
-        Vector r = intersection.l.add(intersection.normal.scale(-2 * intersection.lNormal)).normalize();
+        // Calculate the reflection vector r = l - 2(l*n)n on the components, without intermediate vectors
+        Vector l = intersection.l;
+        Vector n = intersection.normal;
+        double scale = -2 * intersection.lNormal;
+        double rx = l.getX() + n.getX() * scale;
+        double ry = l.getY() + n.getY() * scale;
+        double rz = l.getZ() + n.getZ() * scale;
+        double inverseLength = 1.0 / Math.sqrt(rx * rx + ry * ry + rz * rz);
+        rx *= inverseLength;
+        ry *= inverseLength;
+        rz *= inverseLength;
         // Calculate the dot product of the reflection vector and the view vector
-        double vr = r.dotProduct(intersection.v) * (-1);
+        Vector v = intersection.v;
+        double vr = (rx * v.getX() + ry * v.getY() + rz * v.getZ()) * (-1);
         // Check if the dot product is less than or equal to zero
         return intersection.material.ks.scale(Math.max(0, Math.pow(vr, intersection.material.nShininess)));
     }
@@ -200,30 +221,13 @@ public class SimpleRayTracer extends RayTracerBase {
     /**
      * Checks if the intersection point is unshaded by any geometries in the scene.
      * This method calculates the ray from the intersection point to the light source
-     * and checks if there are any intersections with other geometries in the scene.
+     * and uses the occlusion query of the geometries, which stops at the first blocking geometry.
      *
      * @param intersection - the intersection object containing the geometry and point of intersection
      * @return true if the intersection point is unshaded, false otherwise
      */
     private boolean unshaded(Intersection intersection) {
-        // Calculate the ray from the intersection point to the light source
-        Vector pointToLight = intersection.l.scale(-1);
-        Ray shadowRay = new Ray(intersection.point, pointToLight, intersection.normal);
-        // Calculate the distance from the intersection point to the light source
-        double distanceLight= intersection.light.getDistance(intersection.point);
-        // Check if the shadow ray intersects with any geometries in the scene
-        List<Intersection> intersections = scene.geometries.calculateIntersections(shadowRay,distanceLight);
-        // If there are no intersections, return true (the point is unshaded)
-        if (intersections == null || intersections.isEmpty()) {
-            return true;
-        }
-        // If there are intersections, check if the kt coefficient of the material is less than the minimum color level
-        for (Intersection i : intersections) {
-            if (i.material.kt.lowerThan(MIN_CALC_COLOR_K)){
-                return false;
-            }
-        }
-        return true;
+        return !transparency(intersection).lowerThan(MIN_CALC_COLOR_K);
     }
 
     /**
@@ -296,50 +300,33 @@ public class SimpleRayTracer extends RayTracerBase {
 
     /**
      * Finds the closest intersection point of a ray with the geometries in the scene.
-     * This method calculates the intersections of the ray with all geometries in the scene
-     * and returns the closest intersection point.
+     * This method uses the closest intersection query of the geometries,
+     * which does not build the list of all the intersections.
      *
      * @param ray - the ray to be traced
      * @return The closest intersection point of the ray with the geometries in the scene.
      */
     private Intersection findClosestIntersection(Ray ray){
-        List<Intersection> intersections = scene.geometries.calculateIntersections(ray);
-        if (intersections == null || intersections.isEmpty()) {
-            return null;
-        }
-        return ray.findClosestIntersection(intersections);
+        return getGeometries().calculateClosestIntersection(ray);
     }
 
     /**
-     * Checks if the intersection point is unshaded by any geometries in the scene.
-     * This method calculates the transparency of the intersection point based on the light source
-     * and checks if there are any intersections with other geometries in the scene.
+     * Calculates the transparency between the intersection point and the light source.
+     * This method uses the occlusion query of the geometries, which multiplies the transparency
+     * coefficients of all the geometries up to the light source, and stops as soon as
+     * an opaque geometry is found or the transparency falls below the minimum color level.
      *
      * @param intersection - the intersection object containing the geometry and point of intersection
      * @return The transparency of the intersection point based on the light source.
      */
     private Double3 transparency(Intersection intersection) {
-        Double3 ktr = Double3.ONE;
         // Calculate the ray from the intersection point to the light source
         Vector pointToLight = intersection.l.scale(-1);
         Ray shadowRay = new Ray(intersection.point, pointToLight, intersection.normal);
         // Calculate the distance from the intersection point to the light source
         double distanceLight = intersection.light.getDistance(intersection.point);
-        // Check if the shadow ray intersects with any geometries in the scene
-        List<Intersection> intersections = scene.geometries.calculateIntersections(shadowRay, distanceLight);
-        // If there are no intersections, return true (the point is unshaded)
-        if (intersections == null || intersections.isEmpty()) {
-            return ktr;
-        }
-        // If there are intersections, check if the kt coefficient of the material is less than the minimum color level
-        for (Intersection i : intersections) {
-
-            ktr = ktr.product(i.material.kt);
-            if (ktr.lowerThan(MIN_CALC_COLOR_K)) {
-                return Double3.ZERO;
-            }
-        }
-        return ktr;
+        // Accumulate the transparency of the geometries between the point and the light source
+        return getGeometries().calculateTransparency(shadowRay, distanceLight, MIN_CALC_COLOR_K);
     }
 
 }
@@ -0,0 +1,115 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TileManager is a helper class for tile based multi-threaded rendering.
+ * The image is divided into square tiles which are computed once, in the requested order,
+ * and the threads take the next tile by incrementing a single atomic counter -
+ * without locks and without allocating anything per pixel.
+ * A thread that finishes its tile early simply takes the next one, so the work is balanced
+ * between the threads even when some tiles are much more expensive than others.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class TileManager {
+    /**
+     * Immutable class for a tile of the image
+     * @param col    column of the top left pixel of the tile
+     * @param row    row of the top left pixel of the tile
+     * @param width  amount of pixel columns of the tile
+     * @param height amount of pixel rows of the tile
+     */
+    record Tile(int col, int row, int width, int height) {
+        /**
+         * Returns the amount of pixels of the tile
+         * @return the amount of pixels
+         */
+        int size() {
+            return width * height;
+        }
+    }
+
+    /** The tiles in the order they are handed out */
+    private final Tile[] tiles;
+    /** Index of the next tile to hand out */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Divides the image into tiles
+     * @param maxRows  the amount of pixel rows
+     * @param maxCols  the amount of pixel columns
+     * @param tileSize the size of the side of a tile in pixels
+     * @param order    the order of handing out the tiles
+     */
+    TileManager(int maxRows, int maxCols, int tileSize, TileOrder order) {
+        if (tileSize <= 0) throw new IllegalArgumentException("Tile size must be positive");
+        int tileRows = (maxRows + tileSize - 1) / tileSize;
+        int tileCols = (maxCols + tileSize - 1) / tileSize;
+
+        Integer[] indices = new Integer[tileRows * tileCols];
+        for (int i = 0; i < indices.length; i++) indices[i] = i;
+        Comparator<Integer> comparator = switch (order) {
+            case SCANLINE -> Comparator.naturalOrder();
+            case MORTON -> Comparator.comparingLong(i -> morton(i % tileCols, i / tileCols));
+            case SPIRAL -> spiral(tileRows, tileCols);
+        };
+        Arrays.sort(indices, comparator);
+
+        tiles = new Tile[indices.length];
+        for (int i = 0; i < tiles.length; i++) {
+            int col = indices[i] % tileCols * tileSize;
+            int row = indices[i] / tileCols * tileSize;
+            tiles[i] = new Tile(col, row, Math.min(tileSize, maxCols - col), Math.min(tileSize, maxRows - row));
+        }
+    }
+
+    /**
+     * Computes the Morton code of a tile by interleaving the bits of its coordinates
+     * @param x the tile column
+     * @param y the tile row
+     * @return the Morton code
+     */
+    private static long morton(int x, int y) {
+        long code = 0;
+        for (int bit = 0; bit < 31; bit++) {
+            code |= (long) (x >> bit & 1) << (2 * bit);
+            code |= (long) (y >> bit & 1) << (2 * bit + 1);
+        }
+        return code;
+    }
+
+    /**
+     * Creates a comparator ordering the tiles from the center of the image outwards:
+     * by the square ring around the center tile, and by the angle within a ring
+     * @param tileRows the amount of tile rows
+     * @param tileCols the amount of tile columns
+     * @return the comparator of the tile indices
+     */
+    private static Comparator<Integer> spiral(int tileRows, int tileCols) {
+        double centerX = (tileCols - 1) / 2.0;
+        double centerY = (tileRows - 1) / 2.0;
+        return Comparator.<Integer>comparingDouble(
+                        i -> Math.max(Math.abs(i % tileCols - centerX), Math.abs(i / tileCols - centerY)))
+                .thenComparingDouble(i -> Math.atan2(i / tileCols - centerY, i % tileCols - centerX));
+    }
+
+    /**
+     * Provides the next tile to render - thread safe without locking
+     * @return the next tile, or {@code null} if all the tiles have been handed out
+     */
+    Tile nextTile() {
+        int index = next.getAndIncrement();
+        return index < tiles.length ? tiles[index] : null;
+    }
+
+    /**
+     * Returns the amount of tiles of the image
+     * @return the amount of tiles
+     */
+    int tilesCount() {
+        return tiles.length;
+    }
+}
@@ -0,0 +1,13 @@
+package renderer;
+
+/**
+ * Orders of handing out the image tiles to the rendering threads
+ */
+public enum TileOrder {
+    /** Row after row, from the top left tile */
+    SCANLINE,
+    /** Along the Morton (Z-order) curve, so consecutive tiles are close to each other */
+    MORTON,
+    /** From the center of the image outwards, ring after ring */
+    SPIRAL
+}
@@ -0,0 +1,32 @@
+package renderer;
+
+/**
+ * Tone mapping operators converting the high dynamic range colors of the frame buffer
+ * into the displayable range. The operators get a color component normalized so 1 is the
+ * maximal displayable intensity (255), scaled by the exposure, and return a value between 0 and 1.
+ */
+public enum ToneMapper {
+    /** Components brighter than the displayable range are clipped - the classic behavior */
+    CLAMP {
+        @Override
+        double map(double v) { return Math.min(v, 1); }
+    },
+    /** The Reinhard operator v/(1+v) - compresses the highlights smoothly and never clips */
+    REINHARD {
+        @Override
+        double map(double v) { return v / (1 + v); }
+    },
+    /** Narkowicz's fit of the ACES filmic curve - a contrasty S curve which saturates slowly */
+    ACES {
+        @Override
+        double map(double v) { return Math.min((v * (2.51 * v + 0.03)) / (v * (2.43 * v + 0.59) + 0.14), 1); }
+    };
+
+    /**
+     * Maps a normalized color component into the displayable range
+     *
+     * @param v the non-negative component, normalized so 1 is the maximal displayable intensity
+     * @return the mapped component between 0 and 1
+     */
+    abstract double map(double v);
+}
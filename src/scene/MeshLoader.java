@@ -0,0 +1,721 @@
+package scene;
+
+import geometries.Geometries;
+import geometries.Triangle;
+import geometries.TriangleMesh;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loader of triangle meshes from Wavefront OBJ files and binary PLY files.
+ * The file is read through NIO - memory-mapped when it is large - and parsed directly
+ * from the bytes into packed buffers: the vertex positions (3 numbers per vertex)
+ * and the index buffer (3 vertex indices per triangle), without creating a String or a
+ * {@link Point} per vertex. Polygonal faces are split into triangle fans.
+ * The OBJ file is scanned twice - first counting the vertices and the triangles, then parsing them -
+ * so the buffers are allocated once at their exact size, and the peak memory is the buffers themselves.
+ * The loaded mesh is turned into a packed {@link TriangleMesh} or into separate {@link Triangle} geometries.
+ *
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public class MeshLoader {
+    /** Files from this size up are memory-mapped, smaller files are read into the heap */
+    private static final long MAP_THRESHOLD = 1L << 20;
+
+    /** The vertex positions - 3 numbers (x,y,z) per vertex */
+    private final double[] positions;
+    /** The index buffer - 3 vertex indices per triangle */
+    private final int[] indices;
+
+    /**
+     * Constructs a loader result from the packed buffers
+     *
+     * @param positions the vertex positions
+     * @param indices   the index buffer
+     */
+    private MeshLoader(double[] positions, int[] indices) {
+        this.positions = positions;
+        this.indices = indices;
+    }
+
+    /**
+     * Loads a mesh file, choosing the format by the file extension (.obj or .ply)
+     *
+     * @param path the path of the file
+     * @return the loaded mesh
+     * @throws IllegalArgumentException if the extension is unknown or the file is malformed
+     * @throws IllegalStateException    in case of an I/O error
+     */
+    public static MeshLoader load(String path) {
+        String name = path.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".obj")) return loadObj(path);
+        if (name.endsWith(".ply")) return loadPly(path);
+        throw new IllegalArgumentException("Unknown mesh file format: " + path);
+    }
+
+    /**
+     * Loads a Wavefront OBJ file.
+     * Only the vertex positions ({@code v}) and the faces ({@code f}) are read;
+     * texture coordinates, normals, groups and materials are ignored.
+     *
+     * @param path the path of the file
+     * @return the loaded mesh
+     * @throws IllegalArgumentException if the file is malformed
+     * @throws IllegalStateException    in case of an I/O error
+     */
+    public static MeshLoader loadObj(String path) {
+        return new ObjParser(read(path), path).parse();
+    }
+
+    /**
+     * Loads a binary (little or big endian) PLY file.
+     * The x, y and z properties of the {@code vertex} element and the vertex index lists
+     * of the {@code face} element are read; all the other properties and elements are skipped.
+     *
+     * @param path the path of the file
+     * @return the loaded mesh
+     * @throws IllegalArgumentException if the file is malformed or is an ASCII PLY file
+     * @throws IllegalStateException    in case of an I/O error
+     */
+    public static MeshLoader loadPly(String path) {
+        return new PlyParser(read(path), path).parse();
+    }
+
+    /**
+     * Reads a file into a byte buffer - a memory-mapped buffer for a large file
+     *
+     * @param path the path of the file
+     * @return the buffer of the file contents
+     */
+    private static ByteBuffer read(String path) {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Mesh file is too large: " + path);
+            if (size >= MAP_THRESHOLD)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining())
+                if (channel.read(buffer) < 0) break;
+            return buffer.flip();
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error reading the mesh file " + path, e);
+        }
+    }
+
+    /**
+     * Returns the vertex positions - 3 numbers (x,y,z) per vertex
+     *
+     * @return the vertex buffer (not a copy)
+     */
+    public double[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Returns the index buffer - 3 vertex indices per triangle
+     *
+     * @return the index buffer (not a copy)
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * Returns the amount of vertices of the mesh
+     *
+     * @return the amount of vertices
+     */
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    /**
+     * Returns the amount of triangles of the mesh
+     *
+     * @return the amount of triangles
+     */
+    public int getTriangleCount() {
+        return indices.length / 3;
+    }
+
+    /**
+     * Creates a packed mesh geometry of the loaded mesh. The mesh takes over the buffers of the loader.
+     *
+     * @return the mesh geometry
+     */
+    public TriangleMesh toMesh() {
+        return new TriangleMesh(positions, indices);
+    }
+
+    /**
+     * Creates a separate triangle geometry for every (non-degenerate) triangle of the loaded mesh.
+     * The vertices shared by several triangles are shared {@link Point} objects.
+     *
+     * @param emission the emission of the triangles
+     * @param material the material of the triangles
+     * @return the collection of the triangles
+     */
+    public Geometries toTriangles(Color emission, Material material) {
+        Point[] points = new Point[getVertexCount()];
+        for (int v = 0; v < points.length; v++)
+            points[v] = new Point(positions[3 * v], positions[3 * v + 1], positions[3 * v + 2]);
+        Geometries triangles = new Geometries();
+        for (int i = 0; i < indices.length; i += 3) {
+            Triangle triangle;
+            try {
+                triangle = new Triangle(points[indices[i]], points[indices[i + 1]], points[indices[i + 2]]);
+            } catch (IllegalArgumentException e) {
+                continue; // a degenerate triangle - collinear vertices
+            }
+            triangles.add(triangle.setEmission(emission).setMaterial(material));
+        }
+        return triangles;
+    }
+
+    /**
+     * Parser of the text of a Wavefront OBJ file, working on the bytes of the file
+     */
+    private static class ObjParser {
+        /** The contents of the file */
+        private final ByteBuffer buffer;
+        /** The path of the file, for the error messages */
+        private final String path;
+        /** The length of the contents */
+        private final int limit;
+        /** The current position in the contents */
+        private int pos = 0;
+        /** The current line number, for the error messages */
+        private int line = 1;
+
+        /**
+         * Prepares the parser of a file
+         *
+         * @param buffer the contents of the file
+         * @param path   the path of the file
+         */
+        ObjParser(ByteBuffer buffer, String path) {
+            this.buffer = buffer;
+            this.path = path;
+            this.limit = buffer.limit();
+        }
+
+        /**
+         * Parses the file
+         *
+         * @return the loaded mesh
+         */
+        MeshLoader parse() {
+            // First pass - count the vertices and the triangles of the faces
+            int vertexCount = 0;
+            int triangleCount = 0;
+            while (pos < limit) {
+                int keyword = keyword();
+                if (keyword == 'v') {
+                    vertexCount++;
+                } else if (keyword == 'f') {
+                    int corners = 0;
+                    while (skipSpaces()) {
+                        corners++;
+                        skipToken();
+                    }
+                    if (corners < 3) throw error("A face must have at least 3 vertices");
+                    triangleCount += corners - 2;
+                }
+                nextLine();
+            }
+
+            // Second pass - parse the vertices and the faces into the buffers
+            double[] positions = new double[3 * vertexCount];
+            int[] indices = new int[3 * triangleCount];
+            int v = 0;
+            int t = 0;
+            pos = 0;
+            line = 1;
+            while (pos < limit) {
+                int keyword = keyword();
+                if (keyword == 'v') {
+                    for (int axis = 0; axis < 3; axis++) {
+                        if (!skipSpaces()) throw error("A vertex must have 3 coordinates");
+                        positions[v++] = parseDouble();
+                    }
+                } else if (keyword == 'f') {
+                    // the face is split into a fan of triangles around its first vertex
+                    int vertices = v / 3;
+                    int first = -1;
+                    int previous = -1;
+                    while (skipSpaces()) {
+                        int index = vertexIndex(vertices);
+                        if (first < 0) {
+                            first = index;
+                            continue;
+                        }
+                        if (previous >= 0) {
+                            indices[t++] = first;
+                            indices[t++] = previous;
+                            indices[t++] = index;
+                        }
+                        previous = index;
+                    }
+                }
+                nextLine();
+            }
+            return new MeshLoader(positions, indices);
+        }
+
+        /**
+         * Reads the keyword at the beginning of a line
+         *
+         * @return 'v' for a vertex line, 'f' for a face line and 0 for any other line
+         * (the position is after the keyword for vertex and face lines)
+         */
+        private int keyword() {
+            skipSpaces();
+            if (pos + 1 >= limit) return 0;
+            byte first = buffer.get(pos);
+            if ((first == 'v' || first == 'f') && isSpace(buffer.get(pos + 1))) {
+                pos++;
+                return first;
+            }
+            return 0;
+        }
+
+        /**
+         * Skips the spaces and tabs
+         *
+         * @return true if a token follows on the same line
+         */
+        private boolean skipSpaces() {
+            while (pos < limit && isSpace(buffer.get(pos))) pos++;
+            if (pos >= limit) return false;
+            byte b = buffer.get(pos);
+            return b != '\n' && b != '\r' && b != '#';
+        }
+
+        /**
+         * Skips a token up to the following space or end of line
+         */
+        private void skipToken() {
+            while (pos < limit && !isSeparator(buffer.get(pos))) pos++;
+        }
+
+        /**
+         * Skips the rest of the line, including the line end
+         */
+        private void nextLine() {
+            while (pos < limit && buffer.get(pos) != '\n') pos++;
+            pos++;
+            line++;
+        }
+
+        /**
+         * Checks whether a byte is a space or a tab
+         *
+         * @param b the byte
+         * @return true for a space or a tab
+         */
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        /**
+         * Checks whether a byte ends a token
+         *
+         * @param b the byte
+         * @return true for a space, a tab or a line end
+         */
+        private static boolean isSeparator(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+        }
+
+        /**
+         * Parses a vertex reference of a face (index, index/texture, index/texture/normal or index//normal)
+         *
+         * @param vertices the amount of vertices read so far, for the relative (negative) indices
+         * @return the zero based vertex index
+         */
+        private int vertexIndex(int vertices) {
+            int start = pos;
+            boolean negative = buffer.get(pos) == '-';
+            if (negative) pos++;
+            long value = 0;
+            int digits = 0;
+            while (pos < limit && isDigit(buffer.get(pos)) && digits < 10) {
+                value = 10 * value + buffer.get(pos++) - '0';
+                digits++;
+            }
+            if (digits == 0 || value > Integer.MAX_VALUE) throw error("Bad vertex index at column " + start);
+            skipToken(); // the texture and normal indices
+            long index = negative ? vertices - value : value - 1;
+            if (index < 0 || index >= vertices) throw error("Vertex index out of range");
+            return (int) index;
+        }
+
+        /**
+         * Checks whether a byte is a decimal digit
+         *
+         * @param b the byte
+         * @return true for a digit
+         */
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        /**
+         * Parses a decimal floating point number.
+         * Numbers of up to 15 significant digits with a small exponent - which is almost every number
+         * in a mesh file - are computed exactly from the digits (the result is correctly rounded,
+         * as the mantissa and the power of 10 are exact doubles); other numbers are parsed by
+         * {@link Double#parseDouble(String)}.
+         *
+         * @return the number
+         */
+        private double parseDouble() {
+            int start = pos;
+            boolean negative = false;
+            byte b = buffer.get(pos);
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                pos++;
+            }
+            long mantissa = 0;
+            int significant = 0;
+            int exponent = 0;
+            boolean anyDigit = false;
+            while (pos < limit && isDigit(b = buffer.get(pos))) {
+                anyDigit = true;
+                if (mantissa != 0 || b != '0') {
+                    if (significant < 18) {
+                        mantissa = 10 * mantissa + b - '0';
+                        significant++;
+                    } else {
+                        exponent++;
+                        significant = 19;
+                    }
+                }
+                pos++;
+            }
+            if (pos < limit && buffer.get(pos) == '.') {
+                pos++;
+                while (pos < limit && isDigit(b = buffer.get(pos))) {
+                    anyDigit = true;
+                    if (mantissa != 0 || b != '0') {
+                        if (significant < 18) {
+                            mantissa = 10 * mantissa + b - '0';
+                            significant++;
+                            exponent--;
+                        } else {
+                            significant = 19;
+                        }
+                    } else {
+                        exponent--;
+                    }
+                    pos++;
+                }
+            }
+            if (!anyDigit) throw error("Bad number");
+            if (pos < limit && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+                    negativeExponent = buffer.get(pos++) == '-';
+                int value = 0;
+                int digits = 0;
+                while (pos < limit && isDigit(b = buffer.get(pos))) {
+                    if (value < 100000) value = 10 * value + b - '0';
+                    digits++;
+                    pos++;
+                }
+                if (digits == 0) throw error("Bad number exponent");
+                exponent += negativeExponent ? -value : value;
+            }
+            if (pos < limit && !isSeparator(buffer.get(pos))) throw error("Bad number");
+
+            if (significant <= 15 && exponent >= -POWERS_OF_10.length + 1 && exponent < POWERS_OF_10.length) {
+                double value = exponent >= 0 ? mantissa * POWERS_OF_10[exponent] : mantissa / POWERS_OF_10[-exponent];
+                return negative ? -value : value;
+            }
+            byte[] text = new byte[pos - start];
+            buffer.get(start, text);
+            return Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Creates the exception of a malformed file
+         *
+         * @param message the description of the problem
+         * @return the exception
+         */
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in line " + line + " of " + path);
+        }
+    }
+
+    /** The powers of 10 which are exact doubles */
+    private static final double[] POWERS_OF_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Parser of a binary PLY file
+     */
+    private static class PlyParser {
+        /** The contents of the file */
+        private final ByteBuffer buffer;
+        /** The path of the file, for the error messages */
+        private final String path;
+        /** The names of the property types, the index of a name is its type code (with the aliases) */
+        private static final List<String> TYPES = List.of("char", "uchar", "short", "ushort", "int", "uint",
+                "float", "double", "int8", "uint8", "int16", "uint16", "int32", "uint32", "float32", "float64");
+
+        /**
+         * A property of an element, as declared by the header
+         *
+         * @param name      the name of the property
+         * @param type      the type of the property, or of the items of a list (one of the TYPES)
+         * @param countType the type of the length of a list, or -1 for a scalar property
+         */
+        private record Property(String name, int type, int countType) {
+        }
+
+        /**
+         * An element of the file, as declared by the header
+         *
+         * @param name       the name of the element
+         * @param count      the amount of the records of the element
+         * @param properties the properties of every record
+         */
+        private record Element(String name, int count, List<Property> properties) {
+        }
+
+        /**
+         * Prepares the parser of a file
+         *
+         * @param buffer the contents of the file
+         * @param path   the path of the file
+         */
+        PlyParser(ByteBuffer buffer, String path) {
+            this.buffer = buffer;
+            this.path = path;
+        }
+
+        /**
+         * Parses the file
+         *
+         * @return the loaded mesh
+         */
+        MeshLoader parse() {
+            List<Element> elements = new ArrayList<>();
+            if (!"ply".equals(headerLine())) throw error("Not a PLY file");
+            for (String line = headerLine(); !"end_header".equals(line); line = headerLine()) {
+                String[] words = line.trim().split("\\s+");
+                switch (words[0]) {
+                    case "format" -> {
+                        if (words.length < 2) throw error("Bad format line");
+                        switch (words[1]) {
+                            case "binary_little_endian" -> buffer.order(ByteOrder.LITTLE_ENDIAN);
+                            case "binary_big_endian" -> buffer.order(ByteOrder.BIG_ENDIAN);
+                            default -> throw error("Unsupported PLY format " + words[1]);
+                        }
+                    }
+                    case "element" -> {
+                        if (words.length != 3) throw error("Bad element line");
+                        elements.add(new Element(words[1], Integer.parseInt(words[2]), new ArrayList<>()));
+                    }
+                    case "property" -> {
+                        if (elements.isEmpty()) throw error("A property before the elements");
+                        List<Property> properties = elements.getLast().properties();
+                        if (words.length == 5 && words[1].equals("list"))
+                            properties.add(new Property(words[4], type(words[3]), type(words[2])));
+                        else if (words.length == 3)
+                            properties.add(new Property(words[2], type(words[1]), -1));
+                        else
+                            throw error("Bad property line");
+                    }
+                    default -> {
+                        // comments and object information
+                    }
+                }
+            }
+
+            double[] positions = new double[0];
+            int[] indices = new int[0];
+            try {
+                for (Element element : elements) {
+                    if (element.name().equals("vertex")) {
+                        positions = readVertices(element);
+                    } else if (element.name().equals("face")) {
+                        indices = readFaces(element, positions.length / 3);
+                    } else {
+                        for (int r = 0; r < element.count(); r++)
+                            for (Property property : element.properties()) skip(property);
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw error("Unexpected end of the file");
+            }
+            if (positions.length == 0 || indices.length == 0) throw error("The file has no vertices or no faces");
+            return new MeshLoader(positions, indices);
+        }
+
+        /**
+         * Reads the positions of the vertices
+         *
+         * @param element the vertex element
+         * @return the vertex positions
+         */
+        private double[] readVertices(Element element) {
+            List<Property> properties = element.properties();
+            int[] axes = new int[properties.size()];
+            for (int p = 0; p < axes.length; p++) {
+                Property property = properties.get(p);
+                axes[p] = property.countType() >= 0 ? -1 : switch (property.name()) {
+                    case "x" -> 0;
+                    case "y" -> 1;
+                    case "z" -> 2;
+                    default -> -1;
+                };
+            }
+            double[] positions = new double[3 * element.count()];
+            for (int v = 0; v < element.count(); v++)
+                for (int p = 0; p < axes.length; p++) {
+                    Property property = properties.get(p);
+                    if (axes[p] < 0) skip(property);
+                    else positions[3 * v + axes[p]] = value(property.type());
+                }
+            return positions;
+        }
+
+        /**
+         * Reads the faces into the index buffer, splitting polygons into triangle fans
+         *
+         * @param element  the face element
+         * @param vertices the amount of vertices
+         * @return the index buffer
+         */
+        private int[] readFaces(Element element, int vertices) {
+            // the buffer is sized for triangular faces, and grows only for polygons
+            int[] indices = new int[3 * element.count()];
+            int t = 0;
+            for (int f = 0; f < element.count(); f++)
+                for (Property property : element.properties()) {
+                    if (property.countType() < 0
+                            || !(property.name().equals("vertex_indices") || property.name().equals("vertex_index"))) {
+                        skip(property);
+                        continue;
+                    }
+                    int corners = (int) value(property.countType());
+                    if (corners < 3) throw error("A face must have at least 3 vertices");
+                    if (t + 3 * (corners - 2) > indices.length)
+                        indices = Arrays.copyOf(indices, Math.max(t + 3 * (corners - 2), indices.length * 3 / 2));
+                    int first = vertexIndex(property.type(), vertices);
+                    int previous = vertexIndex(property.type(), vertices);
+                    for (int c = 2; c < corners; c++) {
+                        int index = vertexIndex(property.type(), vertices);
+                        indices[t++] = first;
+                        indices[t++] = previous;
+                        indices[t++] = index;
+                        previous = index;
+                    }
+                }
+            return t < indices.length ? Arrays.copyOf(indices, t) : indices;
+        }
+
+        /**
+         * Reads a vertex index of a face
+         *
+         * @param type     the type code of the index
+         * @param vertices the amount of vertices
+         * @return the vertex index
+         */
+        private int vertexIndex(int type, int vertices) {
+            double index = value(type);
+            if (index < 0 || index >= vertices) throw error("Vertex index out of range");
+            return (int) index;
+        }
+
+        /**
+         * Finds the code of a property type
+         *
+         * @param name the name of the type
+         * @return the type code
+         */
+        private int type(String name) {
+            int type = TYPES.indexOf(name);
+            if (type < 0) throw error("Unknown property type " + name);
+            return type % 8;
+        }
+
+        /**
+         * Reads a scalar value of the given type
+         *
+         * @param type the type code of the value
+         * @return the value
+         */
+        private double value(int type) {
+            return switch (type) {
+                case 0 -> buffer.get();
+                case 1 -> buffer.get() & 0xFF;
+                case 2 -> buffer.getShort();
+                case 3 -> buffer.getShort() & 0xFFFF;
+                case 4 -> buffer.getInt();
+                case 5 -> buffer.getInt() & 0xFFFFFFFFL;
+                case 6 -> buffer.getFloat();
+                default -> buffer.getDouble();
+            };
+        }
+
+        /**
+         * Skips a property of a record
+         *
+         * @param property the property
+         */
+        private void skip(Property property) {
+            if (property.countType() < 0) {
+                value(property.type());
+                return;
+            }
+            int count = (int) value(property.countType());
+            for (int i = 0; i < count; i++) value(property.type());
+        }
+
+        /**
+         * Reads a line of the ASCII header
+         *
+         * @return the line, without the line end
+         */
+        private String headerLine() {
+            StringBuilder line = new StringBuilder();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') return line.toString();
+                if (b != '\r') line.append((char) b);
+            }
+            throw error("Unexpected end of the header");
+        }
+
+        /**
+         * Creates the exception of a malformed file
+         *
+         * @param message the description of the problem
+         * @return the exception
+         */
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in " + path);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for geometries.AABB class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class AABBTests {
+    /** A box of the points from (0,0,0) to (2,2,2) used in the tests */
+    private final AABB box = new AABB(Point.ZERO, new Point(2, 2, 2));
+
+    /**
+     * Default constructor for the AABBTests class.
+     */
+    public AABBTests() {
+    }
+
+    /**
+     * Test method for {@link geometries.AABB#intersect(primitives.Ray, double)}.
+     */
+    @Test
+    void testIntersect() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The ray enters the box
+        assertEquals(4, box.intersect(new Ray(new Point(-4, 1, 1), Vector.AXIS_X), 100), 1e-10,
+                "Wrong entry distance");
+        //TC02: The ray enters the box from its maximum side
+        assertEquals(Math.sqrt(2), box.intersect(new Ray(new Point(3, 3, 1), new Vector(-1, -1, 0)), 100), 1e-10,
+                "Wrong entry distance of a ray in a negative direction");
+        //TC03: The head of the ray is inside the box
+        assertEquals(0, box.intersect(new Ray(new Point(1, 1, 1), new Vector(1, 2, 3)), 100),
+                "The entry distance of a ray starting inside the box must be 0");
+        //TC04: The ray misses the box
+        assertEquals(Double.POSITIVE_INFINITY, box.intersect(new Ray(new Point(-4, 3, 1), Vector.AXIS_X), 100),
+                "The ray misses the box");
+        //TC05: The box is behind the ray
+        assertEquals(Double.POSITIVE_INFINITY, box.intersect(new Ray(new Point(4, 1, 1), Vector.AXIS_X), 100),
+                "The box is behind the ray");
+        //TC06: The box is beyond the maximal distance
+        assertEquals(Double.POSITIVE_INFINITY, box.intersect(new Ray(new Point(-4, 1, 1), Vector.AXIS_X), 3),
+                "The box is beyond the maximal distance");
+
+        // =============== Boundary Values Tests ==================
+        //TC11: The ray enters the box exactly at the maximal distance
+        assertEquals(4, box.intersect(new Ray(new Point(-4, 1, 1), Vector.AXIS_X), 4), 1e-10,
+                "The box at the maximal distance must be entered");
+        //TC12: The ray runs along a face of the box
+        assertEquals(4, box.intersect(new Ray(new Point(-4, 0, 1), Vector.AXIS_X), 100), 1e-10,
+                "The ray along a face enters the box");
+        //TC13: An unbounded box
+        AABB unbounded = new Plane(new Point(0, 0, 5), new Vector(1, 1, 1)).getBoundingBox();
+        assertEquals(0, unbounded.intersect(new Ray(new Point(1, 1, 1), Vector.AXIS_X), 100),
+                "The ray must be inside an unbounded box");
+        assertTrue(unbounded.intersects(new Ray(new Point(1, 1, 1), Vector.AXIS_X)), "The ray misses an unbounded box");
+    }
+}
@@ -0,0 +1,145 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for geometries.BVHNode class and the BVH builders
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class BVHNodeTests {
+    /** A ray going along the row of spheres, used in some tests */
+    private final Ray rowRay = new Ray(new Point(-10, 0, 0), Vector.AXIS_X);
+
+    /**
+     * Default constructor for the BVHNodeTests class.
+     */
+    public BVHNodeTests() {
+    }
+
+    /**
+     * Creates a row of unit spheres along the X axis, 3 units apart, with a triangle behind them
+     * @param amount the amount of spheres
+     * @return the collection of the geometries
+     */
+    private Geometries createRow(int amount) {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < amount; i++)
+            geometries.add(new Sphere(1, new Point(3 * i, 0, 0)));
+        geometries.add(new Triangle(new Point(3 * amount, -5, -5), new Point(3 * amount, 5, -5),
+                new Point(3 * amount, 0, 5)));
+        return geometries;
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#buildBVH(BVHBuildType)}.
+     * Test method for building the BVH with the SAH strategy.
+     */
+    @Test
+    void testBuildSAH() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The SAH tree finds the same closest intersection as the plain collection
+        Geometries plain = createRow(20);
+        Geometries sah = createRow(20).setBVHBuildType(BVHBuildType.SAH).setUseBVH(true);
+        Point expected = rowRay.findClosestIntersection(plain.calculateIntersections(rowRay)).point;
+        List<Intersectable.Intersection> intersections = sah.calculateIntersections(rowRay);
+        assertNotNull(intersections, "The SAH tree missed the intersections");
+        assertEquals(expected, rowRay.findClosestIntersection(intersections).point,
+                "The SAH tree found a wrong closest intersection");
+
+        //TC02: A ray missing all the geometries
+        Ray missRay = new Ray(new Point(-10, 10, 0), Vector.AXIS_X);
+        assertNull(sah.calculateIntersections(missRay), "The SAH tree found intersections for a missing ray");
+
+        // =============== Boundary Values Tests ==================
+        //TC03: Nested collections are flattened into the tree
+        Geometries nested = new Geometries(createRow(5), new Sphere(1, new Point(-5, 0, 0)));
+        nested.setBVHBuildType(BVHBuildType.SAH).setUseBVH(true);
+        assertEquals(7, nested.getBVHStats().primitiveCount(), "The nested collection was not flattened");
+        assertEquals(new Point(-6, 0, 0), rowRay.findClosestIntersection(nested.calculateIntersections(rowRay)).point,
+                "Wrong closest intersection in a nested collection");
+
+        //TC04: Building a tree over an empty collection
+        Geometries empty = new Geometries().setBVHBuildType(BVHBuildType.SAH).setUseBVH(true);
+        assertNull(empty.calculateIntersections(rowRay), "An empty collection has intersections");
+        assertNull(empty.getBVHStats(), "An empty collection has a tree");
+    }
+
+    /**
+     * Test method for {@link geometries.BVHNode#getStats()}.
+     * Test method for the statistics of the tree.
+     */
+    @Test
+    void testGetStats() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Both builders reference all the primitives
+        BVHStats median = createRow(30).setUseBVH(true).getBVHStats();
+        BVHStats sah = createRow(30).setBVHBuildType(BVHBuildType.SAH).setUseBVH(true).getBVHStats();
+        assertEquals(31, median.primitiveCount(), "The median tree lost primitives");
+        assertEquals(31, sah.primitiveCount(), "The SAH tree lost primitives");
+        assertTrue(sah.leafCount() <= sah.primitiveCount(), "Too many leaves in the SAH tree");
+        assertEquals(2 * sah.leafCount() - 1, sah.nodeCount(), "The SAH tree is not a binary tree");
+
+        //TC02: The SAH tree is not more expensive than the median tree
+        assertTrue(sah.sahCost() <= median.sahCost(), "The SAH tree is more expensive than the median tree");
+
+        // =============== Boundary Values Tests ==================
+        //TC03: A tree of a single geometry
+        BVHStats single = new Geometries(true, new Sphere(1, Point.ZERO)).getBVHStats();
+        assertEquals(1, single.nodeCount(), "A single geometry tree must have one node");
+        assertEquals(1, single.maxDepth(), "A single geometry tree must have one level");
+    }
+
+    /**
+     * Checks that two BVH trees have the same structure - the same bounding boxes and the same geometries
+     * at the same places
+     * @param expected the expected tree
+     * @param actual   the checked tree
+     */
+    private void assertSameTree(Intersectable expected, Intersectable actual) {
+        if (!(expected instanceof BVHNode expectedNode)) {
+            assertSame(expected, actual, "Different geometry at the same place of the tree");
+            return;
+        }
+        assertInstanceOf(BVHNode.class, actual, "A geometry instead of an inner node of the tree");
+        BVHNode actualNode = (BVHNode) actual;
+        assertEquals(expectedNode.getBoundingBox().min, actualNode.getBoundingBox().min, "Different box of a node");
+        assertEquals(expectedNode.getBoundingBox().max, actualNode.getBoundingBox().max, "Different box of a node");
+        assertSameTree(expectedNode.getLeft(), actualNode.getLeft());
+        assertSameTree(expectedNode.getRight(), actualNode.getRight());
+    }
+
+    /**
+     * Test method for {@link geometries.MedianBVHBuilder#build()}.
+     * Test method for building the median tree in parallel.
+     */
+    @Test
+    void testBuildParallel() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A large collection (built in parallel) gets the same tree as the recursive construction
+        Random random = new Random(17);
+        List<Intersectable> spheres = new ArrayList<>();
+        // coordinates on a coarse grid, so many geometries have equal keys of the sort
+        for (int i = 0; i < 3 * SAHBVHBuilder.PARALLEL_THRESHOLD; i++)
+            spheres.add(new Sphere(1 + random.nextInt(3),
+                    new Point(random.nextInt(100), random.nextInt(60), random.nextInt(30))));
+        assertSameTree(new BVHNode(new ArrayList<>(spheres)), new MedianBVHBuilder(spheres).build());
+        Geometries geometries = new Geometries(true, spheres.toArray(new Intersectable[0]));
+        geometries.buildBVH();
+        assertTrue(geometries.getBVHBuildTime() > 0, "The build time was not reported");
+
+        // =============== Boundary Values Tests ==================
+        //TC11: A small collection, built serially
+        List<Intersectable> few = spheres.subList(0, 7);
+        assertSameTree(new BVHNode(new ArrayList<>(few)), new MedianBVHBuilder(few).build());
+        //TC12: A single geometry
+        assertSameTree(new BVHNode(new ArrayList<>(spheres.subList(0, 1))),
+                new MedianBVHBuilder(spheres.subList(0, 1)).build());
+    }
+}
@@ -71,4 +71,29 @@ class CylinderTests {
         //TC07: Test that the normal of the cylinder is correct when the point is the center of the bottom base of the cylinder
         assertEquals(new Vector(0, 0, -1), cylinder.getNormal(Point.ZERO), "The normal vector is incorrect");
     }
-}
\ No newline at end of file
+
+    /***
+     * Test method for {@link geometries.Cylinder#computeBoundingBox()} through
+     * {@link geometries.Intersectable#getBoundingBox()}.
+     */
+    @Test
+    void testGetBoundingBox() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A slanted cylinder is bounded by its caps
+        Cylinder slanted = new Cylinder(1, new Ray(new Point(1, 2, 3), new Vector(3, 0, 4)), 10);
+        AABB box = slanted.getBoundingBox();
+        assertTrue(box.isBounded(), "The box of a cylinder must be bounded");
+        assertEquals(new Point(1 - 0.8, 2 - 1, 3 - 0.6), box.min, "Wrong minimum of the slanted cylinder");
+        assertEquals(new Point(7 + 0.8, 2 + 1, 11 + 0.6), box.max, "Wrong maximum of the slanted cylinder");
+        // =============== Boundary Values Tests ==================
+        //TC11: A cylinder along a coordinate axis
+        AABB straight = new Cylinder(2, new Ray(Point.ZERO, new Vector(0, 0, -1)), 5).getBoundingBox();
+        assertEquals(new Point(-2, -2, -5), straight.min, "Wrong minimum of the straight cylinder");
+        assertEquals(new Point(2, 2, 0), straight.max, "Wrong maximum of the straight cylinder");
+        //TC12: The tube of the same axis is not bounded, in both directions of the axis
+        AABB tube = new Tube(2, new Ray(Point.ZERO, new Vector(0, 0, -1))).getBoundingBox();
+        assertFalse(tube.isBounded(), "The box of a tube must not be bounded");
+        assertTrue(tube.min.getZ() < -AABB.UNBOUNDED_LIMIT && tube.max.getZ() > AABB.UNBOUNDED_LIMIT,
+                "The box of a tube must extend in both directions of its axis");
+    }
+}
@@ -0,0 +1,150 @@
+package geometries;
+
+import geometries.Intersectable.Intersection;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Unit tests for geometries.DynamicBVH class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class DynamicBVHTests {
+    /** Random numbers of the scenes and the rays */
+    private final Random random = new Random(16);
+
+    /***
+     * Default constructor for the DynamicBVHTests class.
+     */
+    public DynamicBVHTests() {
+    }
+
+    /**
+     * Creates a sphere at a random place in a cube of side 100
+     * @return the sphere
+     */
+    private Sphere randomSphere() {
+        return new Sphere(0.5 + random.nextDouble() * 2,
+                new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100));
+    }
+
+    /**
+     * Checks that the closest intersections of random rays with a collection
+     * are the same as with a collection of the same geometries without BVH
+     * @param geometries the collection with the dynamic BVH
+     * @param message    the message of the failures
+     */
+    private void assertSameIntersections(Geometries geometries, String message) {
+        Geometries plain = new Geometries(geometries.getGeometries().toArray(new Intersectable[0]));
+        for (int r = 0; r < 200; r++) {
+            Ray ray = new Ray(new Point(random.nextDouble() * 100, random.nextDouble() * 100, -10),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, 1));
+            Intersection expected = plain.calculateClosestIntersection(ray);
+            Intersection actual = geometries.calculateClosestIntersection(ray);
+            if (expected == null) assertNull(actual, message + ": intersection where there is none");
+            else {
+                assertNotNull(actual, message + ": missed intersection");
+                assertSame(expected.geometry, actual.geometry, message + ": wrong intersected geometry");
+            }
+        }
+    }
+
+    /***
+     * Test method for {@link geometries.DynamicBVH#replace(geometries.Intersectable, geometries.Intersectable)}
+     * through {@link geometries.Geometries#replace(geometries.Intersectable, geometries.Intersectable)}.
+     */
+    @Test
+    void testAnimation() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A few spheres move in every frame of an animation
+        Geometries geometries = new Geometries(true).setDynamicBVH(true);
+        for (int i = 0; i < 300; i++) geometries.add(randomSphere());
+        assertSameIntersections(geometries, "Built tree");
+        BVHStats built = geometries.getBVHStats();
+        assertEquals(300, built.primitiveCount(), "Wrong amount of geometries in the tree");
+        for (int frame = 0; frame < 40; frame++) {
+            for (int k = 0; k < 5; k++) {
+                Intersectable moving = geometries.getGeometries().get(random.nextInt(300));
+                geometries.replace(moving, randomSphere());
+            }
+            if (frame % 10 == 9) assertSameIntersections(geometries, "Frame " + frame);
+        }
+        BVHStats updated = geometries.getBVHStats();
+        assertEquals(2 * 300 - 1, updated.nodeCount(), "The updated tree is not a binary tree of the geometries");
+        //TC02: The refitted and rotated tree stays close to a tree built from scratch
+        BVHStats fresh = new Geometries(true, geometries.getGeometries().toArray(new Intersectable[0]))
+                .setDynamicBVH(true).getBVHStats();
+        assertTrue(updated.sahCost() < 2 * fresh.sahCost(), "The quality of the updated tree dropped: "
+                + updated.sahCost() + " against " + fresh.sahCost());
+        //TC03: All the spheres drift a little in every frame, so the tree is refitted in place
+        for (int frame = 0; frame < 20; frame++) {
+            for (int i = 0; i < 300; i++) {
+                Sphere sphere = (Sphere) geometries.getGeometries().get(i);
+                geometries.replace(sphere, new Sphere(sphere.getRadius(), sphere.getCenter().add(
+                        new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() + 0.1))));
+            }
+        }
+        assertSameIntersections(geometries, "Drifted spheres");
+        updated = geometries.getBVHStats();
+        fresh = new Geometries(true, geometries.getGeometries().toArray(new Intersectable[0]))
+                .setDynamicBVH(true).getBVHStats();
+        assertTrue(updated.sahCost() < 2 * fresh.sahCost(), "The quality of the refitted tree dropped: "
+                + updated.sahCost() + " against " + fresh.sahCost());
+    }
+
+    /***
+     * Test method for {@link geometries.DynamicBVH#insert(geometries.Intersectable)}
+     * through {@link geometries.Geometries#add(geometries.Intersectable...)}.
+     */
+    @Test
+    void testInsert() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Geometries added after the tree was built are inserted into it
+        Geometries geometries = new Geometries(true).setDynamicBVH(true);
+        geometries.add(randomSphere(), randomSphere());
+        assertEquals(2, geometries.getBVHStats().primitiveCount(), "Wrong initial tree");
+        for (int i = 0; i < 200; i++) geometries.add(randomSphere());
+        assertEquals(202, geometries.getBVHStats().primitiveCount(), "The geometries were not inserted");
+        assertSameIntersections(geometries, "Inserted geometries");
+        // =============== Boundary Values Tests ==================
+        //TC11: Inserting into an empty tree
+        DynamicBVH tree = new DynamicBVH(java.util.List.of());
+        assertNull(tree.getStats(), "Statistics of an empty tree");
+        Sphere sphere = new Sphere(1, Point.ZERO);
+        tree.insert(sphere);
+        assertSame(sphere, tree.calculateClosestIntersection(new Ray(new Point(0, 0, -5), Vector.AXIS_Z)).geometry,
+                "The geometry inserted into an empty tree is not found");
+    }
+
+    /***
+     * Test method for {@link geometries.DynamicBVH#update(java.util.List)}
+     * through {@link geometries.Geometries#markDirty(geometries.Intersectable...)}.
+     */
+    @Test
+    void testMarkDirty() {
+        Ray ray = new Ray(new Point(50, 50, -10), Vector.AXIS_Z);
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A nested collection which grew is refitted
+        Geometries group = new Geometries(new Sphere(1, new Point(10, 10, 10)));
+        Geometries geometries = new Geometries(true, group, new Sphere(1, new Point(90, 90, 90))).setDynamicBVH(true);
+        assertNull(geometries.calculateClosestIntersection(ray), "Intersection before the group grew");
+        Sphere added = new Sphere(1, new Point(50, 50, 50));
+        group.add(added);
+        geometries.markDirty(group);
+        assertSame(added, geometries.calculateClosestIntersection(ray).geometry, "The grown group was not refitted");
+        // =============== Boundary Values Tests ==================
+        //TC11: A geometry which is not in the tree
+        assertThrows(IllegalArgumentException.class, () -> geometries.markDirty(added),
+                "Marked a geometry which is not in the tree");
+        //TC12: A static tree is rebuilt after marking
+        Geometries staticGroup = new Geometries(new Sphere(1, new Point(10, 10, 10)));
+        Geometries staticTree = new Geometries(true, staticGroup, new Sphere(1, new Point(90, 90, 90)));
+        assertNull(staticTree.calculateClosestIntersection(ray), "Intersection before the static group grew");
+        staticGroup.add(added);
+        staticTree.markDirty(staticGroup);
+        assertSame(added, staticTree.calculateClosestIntersection(ray).geometry, "The static tree was not rebuilt");
+    }
+}
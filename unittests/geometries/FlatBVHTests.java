@@ -0,0 +1,88 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for geometries.FlatBVH class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class FlatBVHTests {
+
+    /**
+     * Default constructor for the FlatBVHTests class.
+     */
+    public FlatBVHTests() {
+    }
+
+    /**
+     * Creates a grid of small spheres in the plane z=0 with a large triangle behind them
+     * @param flat whether to compile the tree into the linear form
+     * @return the collection of the geometries
+     */
+    private Geometries createGrid(boolean flat) {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 10; i++)
+            for (int j = 0; j < 10; j++)
+                geometries.add(new Sphere(0.5, new Point(2 * i, 2 * j, 0)));
+        geometries.add(new Triangle(new Point(-10, -10, -5), new Point(40, -10, -5), new Point(-10, 40, -5)));
+        return geometries.setBVHBuildType(BVHBuildType.SAH).setFlatBVH(flat).setUseBVH(true);
+    }
+
+    /**
+     * Test method for {@link geometries.FlatBVH#calculateIntersectionsHelper(Ray, double)}.
+     * Test method for calculateIntersectionsHelper.
+     */
+    @Test
+    void testCalculateIntersectionsHelper() {
+        Geometries tree = createGrid(false);
+        Geometries flat = createGrid(true);
+
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The ray hits a sphere - the same closest intersection as in the pointer tree
+        Ray ray1 = new Ray(new Point(4, 6, 10), new Vector(0, 0, -1));
+        assertEquals(new Point(4, 6, 0.5), ray1.findClosestIntersection(flat.calculateIntersections(ray1)).point,
+                "Wrong closest intersection with a sphere");
+        assertEquals(ray1.findClosestIntersection(tree.calculateIntersections(ray1)).point,
+                ray1.findClosestIntersection(flat.calculateIntersections(ray1)).point,
+                "The linear form differs from the pointer tree");
+
+        //TC02: The ray passes between the spheres and hits the triangle
+        Ray ray2 = new Ray(new Point(5, 5, 10), new Vector(0, 0, -1));
+        assertEquals(new Point(5, 5, -5), ray2.findClosestIntersection(flat.calculateIntersections(ray2)).point,
+                "Wrong closest intersection with the triangle");
+
+        //TC03: The ray misses everything
+        Ray ray3 = new Ray(new Point(5, 5, 10), Vector.AXIS_Z);
+        assertNull(flat.calculateIntersections(ray3), "Intersections found for a missing ray");
+
+        //TC04: An oblique ray gives the same closest intersection as the pointer tree
+        Ray ray4 = new Ray(new Point(-3, -2, 6), new Vector(1, 1.2, -0.4));
+        assertEquals(ray4.findClosestIntersection(tree.calculateIntersections(ray4)).point,
+                ray4.findClosestIntersection(flat.calculateIntersections(ray4)).point,
+                "The linear form differs from the pointer tree for an oblique ray");
+
+        // =============== Boundary Values Tests ==================
+        //TC05: The ray is parallel to an axis and starts inside the hierarchy
+        Ray ray5 = new Ray(new Point(-1, 2, 0), Vector.AXIS_X);
+        assertEquals(new Point(-0.5, 2, 0), ray5.findClosestIntersection(flat.calculateIntersections(ray5)).point,
+                "Wrong closest intersection for an axis parallel ray");
+
+        //TC06: The closest intersection is beyond the maximal distance
+        assertNull(flat.calculateIntersections(ray2, 10), "Intersection found beyond the maximal distance");
+    }
+
+    /**
+     * Test method for {@link geometries.FlatBVH#getStats()}.
+     * Test method for getStats.
+     */
+    @Test
+    void testGetStats() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The linear form keeps the structure of the tree
+        assertEquals(createGrid(false).getBVHStats(), createGrid(true).getBVHStats(),
+                "The linear form changed the structure of the tree");
+    }
+}
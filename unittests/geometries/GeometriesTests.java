@@ -95,4 +95,251 @@ class GeometriesTests {
         List<Intersectable.Intersection> intersections1 = geometries.calculateIntersectionsHelper(ray1, 9);
         assertEquals(2, intersections1.size(), "The number of intersection points is incorrect");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link geometries.Geometries#calculateClosestIntersectionHelper(primitives.Ray, double)}.
+     * Test method for the closest intersection query.
+     */
+    @Test
+    void testCalculateClosestIntersection() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The closest intersection among several geometries, with and without the BVH
+        Ray ray1 = new Ray(new Point(0.25, 0.25, 8), new Vector(0, 0, -1));
+        Point expected = new Point(0.25, 0.25, Math.sqrt(12.875));
+        Geometries plain = new Geometries(sphere, plane, triangle);
+        Geometries bvh = new Geometries(true, sphere, plane, triangle);
+        Geometries sah = new Geometries(sphere, plane, triangle).setBVHBuildType(BVHBuildType.SAH).setUseBVH(true);
+        assertEquals(expected, plain.calculateClosestIntersection(ray1).point, "Wrong closest intersection");
+        assertEquals(expected, bvh.calculateClosestIntersection(ray1).point, "Wrong closest intersection with the BVH");
+        assertEquals(expected, sah.calculateClosestIntersection(ray1).point,
+                "Wrong closest intersection with the SAH BVH");
+        assertSame(sphere, plain.calculateClosestIntersection(ray1).geometry, "Wrong closest geometry");
+
+        // =============== Boundary Values Tests ==================
+        //TC02: The ray misses all the geometries
+        Ray ray2 = new Ray(new Point(0, 0, 8), Vector.AXIS_Z);
+        assertNull(plain.calculateClosestIntersection(ray2), "The ray does not intersect the geometries");
+
+        //TC03: The closest intersection is beyond the maximal distance
+        assertNull(plain.calculateClosestIntersection(ray1, 4), "The intersections are beyond the maximal distance");
+
+        //TC04: An empty collection
+        assertNull(new Geometries().calculateClosestIntersection(ray1), "An empty collection has no intersections");
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#calculateTransparencyHelper(primitives.Ray, double, primitives.Double3, double)}.
+     * Test method for the occlusion query of shadow rays.
+     */
+    @Test
+    void testCalculateTransparency() {
+        // Two transparent spheres and an opaque triangle behind them along the X axis
+        Geometry first = new Sphere(1, Point.ZERO).setMaterial(new Material().setKt(0.5));
+        Geometry second = new Sphere(1, new Point(5, 0, 0)).setMaterial(new Material().setKt(0.5));
+        Geometry wall = new Triangle(new Point(10, -5, -5), new Point(10, 5, -5), new Point(10, 0, 5));
+        Ray ray = new Ray(new Point(-10, 0, 0), Vector.AXIS_X);
+        Geometries[] collections = {
+                new Geometries(first, second, wall),
+                new Geometries(true, first, second, wall),
+                new Geometries(first, second, wall).setBVHBuildType(BVHBuildType.SAH).setUseBVH(true),
+                new Geometries(new Geometries(first, wall), second)};
+
+        for (Geometries geometries : collections) {
+            // ============ Equivalence Partitions Tests ==============
+            //TC01: Every intersection with the transparent spheres is counted
+            assertEquals(new Double3(0.0625), geometries.calculateTransparency(ray, 18, 0.001),
+                    "Wrong transparency through two transparent spheres");
+            //TC02: An opaque geometry blocks the ray
+            assertEquals(Double3.ZERO, geometries.calculateTransparency(ray, 30, 0.001),
+                    "An opaque geometry must block the ray");
+
+            // =============== Boundary Values Tests ==================
+            //TC03: All the geometries are beyond the maximal distance
+            assertEquals(Double3.ONE, geometries.calculateTransparency(ray, 5, 0.001),
+                    "The geometries beyond the maximal distance must not block the ray");
+            //TC04: The transparency falls below the minimal coefficient
+            assertEquals(Double3.ZERO, geometries.calculateTransparency(ray, 18, 0.1),
+                    "A too low transparency must be considered blocked");
+        }
+    }
+
+    /**
+     * Creates a row of spheres along the X axis
+     * @param amount the amount of the spheres
+     * @return the spheres
+     */
+    private Sphere[] row(int amount) {
+        Sphere[] spheres = new Sphere[amount];
+        for (int i = 0; i < amount; i++) spheres[i] = new Sphere(1, new Point(3 * i, 0, 0));
+        return spheres;
+    }
+
+    /**
+     * Test method for the lazy build of the BVH after {@link geometries.Geometries#add(geometries.Intersectable...)}.
+     */
+    @Test
+    void testLazyBuild() throws InterruptedException {
+        Ray rowRay = new Ray(new Point(-10, 0, 0), Vector.AXIS_X);
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Geometries added one at a time are all in the tree built on the first query
+        Geometries geometries = new Geometries(true);
+        for (Sphere sphere : row(50)) geometries.add(sphere);
+        assertEquals(50, geometries.getBVHStats().primitiveCount(), "The tree lost added geometries");
+        //TC02: Geometries added after a query are found by the next query
+        geometries.add(new Sphere(1, new Point(-5, 0, 0)));
+        assertEquals(new Point(-6, 0, 0), geometries.calculateClosestIntersection(rowRay).point,
+                "The tree missed a geometry added after the build");
+        //TC03: Concurrent first queries after a change find the same intersection
+        for (BVHBuildType type : BVHBuildType.values()) {
+            Geometries shared = new Geometries(true, row(200)).setBVHBuildType(type).setFlatBVH(true);
+            Point[] found = new Point[8];
+            Thread[] threads = new Thread[found.length];
+            for (int t = 0; t < threads.length; t++) {
+                int index = t;
+                threads[t] = new Thread(() -> found[index] = shared.calculateClosestIntersection(rowRay).point);
+                threads[t].start();
+            }
+            for (Thread thread : threads) thread.join();
+            for (Point point : found) assertEquals(new Point(-1, 0, 0), point, "Wrong concurrent intersection");
+            assertEquals(200, shared.getBVHStats().primitiveCount(), "The concurrent build lost geometries");
+        }
+        // =============== Boundary Values Tests ==================
+        //TC11: Disabling the BVH after additions
+        geometries.setUseBVH(false);
+        assertNull(geometries.getBVHStats(), "A tree of a collection without BVH");
+        assertEquals(new Point(-6, 0, 0), geometries.calculateClosestIntersection(rowRay).point,
+                "Wrong intersection without BVH");
+        //TC12: Geometries added to a nested collection flattened by the SAH tree are found
+        Geometries inner = new Geometries(row(5));
+        Geometries outer = new Geometries(true, new Geometries(inner), new Sphere(1, new Point(100, 0, 0)))
+                .setBVHBuildType(BVHBuildType.SAH);
+        assertEquals(6, outer.getBVHStats().primitiveCount(), "Wrong flattened tree");
+        inner.add(new Sphere(1, new Point(-5, 0, 0)));
+        assertEquals(new Point(-6, 0, 0), outer.calculateClosestIntersection(rowRay).point,
+                "The tree missed a geometry added to a nested collection");
+        assertEquals(7, outer.getBVHStats().primitiveCount(), "The flattened tree was not rebuilt");
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#replace(geometries.Intersectable, geometries.Intersectable)}.
+     */
+    @Test
+    void testReplace() {
+        Ray rowRay = new Ray(new Point(-10, 0, 0), Vector.AXIS_X);
+        Ray sideRay = new Ray(new Point(30, 10, 0), new Vector(0, -1, 0));
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A moved geometry is found in its new place by every form of the tree
+        for (BVHBuildType type : BVHBuildType.values())
+            for (boolean flat : new boolean[]{false, true}) {
+                Sphere[] spheres = row(40);
+                Geometries geometries = new Geometries(true, spheres).setBVHBuildType(type).setFlatBVH(flat);
+                BVHStats before = geometries.getBVHStats();
+                Sphere moved = new Sphere(1, new Point(-5, 0, 0));
+                geometries.replace(spheres[20], moved);
+                assertEquals(before.nodeCount(), geometries.getBVHStats().nodeCount(),
+                        "The tree was rebuilt instead of refitted");
+                assertSame(moved, geometries.calculateClosestIntersection(rowRay).geometry,
+                        "The moved geometry is not found in its new place");
+                // the ray along the Y axis crosses the old place of the moved sphere only
+                assertNull(geometries.calculateClosestIntersection(new Ray(new Point(60, 10, 0),
+                        new Vector(0, -1, 0))), "The moved geometry is found in its old place");
+                assertEquals(new Point(30, 1, 0), geometries.calculateClosestIntersection(sideRay).point,
+                        "Wrong intersection with a geometry which did not move");
+                assertSame(moved, geometries.getGeometries().get(20), "The collection was not updated");
+            }
+        //TC02: A geometry which is not in the collection
+        Geometries geometries = new Geometries(true, row(5));
+        assertThrows(IllegalArgumentException.class, () -> geometries.replace(sphere, triangle),
+                "Replaced a geometry which is not in the collection");
+        // =============== Boundary Values Tests ==================
+        //TC11: A nested collection flattened by the SAH tree is rebuilt
+        Geometries inner = new Geometries(row(5));
+        Geometries outer = new Geometries(true, inner, new Sphere(1, new Point(100, 0, 0)))
+                .setBVHBuildType(BVHBuildType.SAH);
+        assertEquals(6, outer.getBVHStats().primitiveCount(), "Wrong flattened tree");
+        outer.replace(inner, new Geometries(row(2)));
+        assertEquals(3, outer.getBVHStats().primitiveCount(), "The flattened tree was not rebuilt");
+        //TC12: A geometry replaced in a nested collection flattened by the SAH tree is found in its new place
+        Sphere[] nestedSpheres = row(5);
+        Geometries nested = new Geometries(true, nestedSpheres);
+        Geometries parent = new Geometries(true, nested, new Sphere(1, new Point(100, 0, 0)))
+                .setBVHBuildType(BVHBuildType.SAH).setFlatBVH(true);
+        assertEquals(new Point(-1, 0, 0), parent.calculateClosestIntersection(rowRay).point,
+                "Wrong intersection with the flattened tree");
+        nested.replace(nestedSpheres[0], new Sphere(1, new Point(-5, 0, 0)));
+        assertEquals(new Point(-6, 0, 0), parent.calculateClosestIntersection(rowRay).point,
+                "The flattened tree missed a geometry replaced in a nested collection");
+    }
+
+    /***
+     * Test method for {@link geometries.Intersectable#getBoundingBox()} and {@link geometries.Intersectable#getCentroid()}
+     * of a collection, cached until the collection changes.
+     */
+    @Test
+    void testGetBoundingBox() {
+        Sphere far = new Sphere(1, new Point(20, 0, 0));
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The bounds of a geometry are computed once
+        assertSame(sphere.getBoundingBox(), sphere.getBoundingBox(), "The bounding box was computed again");
+        assertSame(sphere.getCentroid(), sphere.getCentroid(), "The centroid was computed again");
+        //TC02: The bounds of a collection follow the added and replaced geometries
+        Geometries geometries = new Geometries(new Sphere(1, Point.ZERO));
+        AABB box = geometries.getBoundingBox();
+        assertSame(box, geometries.getBoundingBox(), "The bounding box of the collection was computed again");
+        geometries.add(far);
+        assertEquals(new Point(21, 1, 1), geometries.getBoundingBox().max, "The added geometry is not bounded");
+        geometries.replace(far, new Sphere(1, new Point(-20, 0, 0)));
+        assertEquals(new Point(-21, -1, -1), geometries.getBoundingBox().min, "The replacement is not bounded");
+        assertEquals(new Point(-10, 0, 0), geometries.getCentroid(), "Wrong centroid of the collection");
+        // =============== Boundary Values Tests ==================
+        //TC11: A collection nested twice, marked as changed at the top
+        Geometries inner = new Geometries(new Sphere(1, Point.ZERO));
+        Geometries middle = new Geometries(inner);
+        Geometries outer = new Geometries(middle);
+        assertEquals(new Point(1, 1, 1), outer.getBoundingBox().max, "Wrong bounds of the nested collections");
+        inner.add(far);
+        outer.markDirty(middle);
+        assertEquals(new Point(21, 1, 1), outer.getBoundingBox().max, "The nested collections were not refitted");
+        //TC12: An empty collection has no bounds
+        assertNull(new Geometries().getBoundingBox(), "An empty collection has a bounding box");
+        assertNull(new Geometries().getCentroid(), "An empty collection has a centroid");
+    }
+
+    /***
+     * Test method for the unbounded geometries kept out of the BVH by {@link geometries.Geometries#buildBVH()}.
+     */
+    @Test
+    void testUnbounded() {
+        Plane floor = new Plane(new Point(0, -2, 0), new Vector(0, 1, 1));
+        Ray down = new Ray(new Point(30, 10, 0), new Vector(0, -1, 0));
+        Ray rowRay = new Ray(new Point(-10, 0, 0), Vector.AXIS_X);
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A slanted plane stays out of the tree, but is still intersected
+        for (BVHBuildType type : BVHBuildType.values())
+            for (boolean dynamic : new boolean[]{false, true}) {
+                Geometries geometries = new Geometries(true, row(10)).setBVHBuildType(type).setDynamicBVH(dynamic);
+                geometries.add(floor);
+                assertEquals(10, geometries.getBVHStats().primitiveCount(), "The plane is in the tree");
+                assertFalse(geometries.getBoundingBox().isBounded(), "The collection must be unbounded");
+                Geometries plain = new Geometries(row(10));
+                plain.add(floor);
+                assertEquals(plain.calculateClosestIntersection(down).point,
+                        geometries.calculateClosestIntersection(down).point, "Wrong closest intersection");
+                assertEquals(plain.calculateIntersections(rowRay).size(),
+                        geometries.calculateIntersections(rowRay).size(), "Wrong intersections");
+                assertEquals(Double3.ZERO, geometries.calculateTransparency(down, 100, 0.001),
+                        "The plane does not block the ray");
+                //TC02: The plane replaced by a sphere goes into the tree
+                geometries.replace(floor, new Sphere(1, new Point(30, 3, 0)));
+                assertEquals(11, geometries.getBVHStats().primitiveCount(), "The sphere is not in the tree");
+                assertEquals(new Point(30, 4, 0), geometries.calculateClosestIntersection(down).point,
+                        "The replacing sphere is not intersected");
+            }
+        // =============== Boundary Values Tests ==================
+        //TC11: A collection of unbounded geometries only
+        Geometries planes = new Geometries(true, floor, new Plane(new Point(0, 0, 5), new Vector(1, 1, 1)));
+        assertNull(planes.getBVHStats(), "A tree of unbounded geometries");
+        assertEquals(new Point(30, -2, 0), planes.calculateClosestIntersection(down).point,
+                "Wrong intersection of unbounded geometries");
+    }
+}
@@ -0,0 +1,151 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for geometries.RegularGrid class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class RegularGridTests {
+
+    /**
+     * Default constructor for the RegularGridTests class.
+     */
+    public RegularGridTests() {
+    }
+
+    /**
+     * Creates a cube of small spheres with a plane below them
+     * @return the collection of the geometries
+     */
+    private Geometries createScene() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 5; i++)
+            for (int j = 0; j < 5; j++)
+                for (int k = 0; k < 5; k++)
+                    geometries.add(new Sphere(0.5, new Point(3 * i, 3 * j, 3 * k)));
+        geometries.add(new Plane(new Point(0, 0, -10), Vector.AXIS_Z));
+        return geometries;
+    }
+
+    /**
+     * Test method for {@link geometries.RegularGrid#RegularGrid(Geometries)}.
+     * Test method for the constructor.
+     */
+    @Test
+    void testConstructor() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The resolution is chosen according to the amount of the primitives
+        int[] resolution = new RegularGrid(createScene()).getResolution();
+        int cells = resolution[0] * resolution[1] * resolution[2];
+        assertTrue(cells >= 125 && cells <= 8 * 125 * 4, "Wrong amount of cells");
+
+        // =============== Boundary Values Tests ==================
+        //TC02: A grid of only unbounded geometries
+        RegularGrid planes = new RegularGrid(new Geometries(new Plane(Point.ZERO, Vector.AXIS_Z)));
+        assertNull(planes.getBoundingBox(), "A grid of unbounded geometries must not have a box");
+        assertEquals(1, planes.calculateIntersections(new Ray(new Point(0, 0, 1), new Vector(0, 0, -1))).size(),
+                "The unbounded geometry was not intersected");
+    }
+
+    /**
+     * Test method for {@link geometries.RegularGrid#calculateIntersectionsHelper(Ray, double)}.
+     * Test method for calculateIntersectionsHelper.
+     */
+    @Test
+    void testCalculateIntersectionsHelper() {
+        Geometries scene = createScene();
+        RegularGrid grid = new RegularGrid(scene);
+
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A ray along a row of spheres hits the first one
+        Ray ray1 = new Ray(new Point(-5, 3, 6), Vector.AXIS_X);
+        assertEquals(new Point(-0.5, 3, 6), ray1.findClosestIntersection(grid.calculateIntersections(ray1)).point,
+                "Wrong closest intersection along a row");
+
+        //TC02: A ray between the spheres hits the plane
+        Ray ray2 = new Ray(new Point(1.5, 1.5, 20), new Vector(0, 0, -1));
+        assertEquals(new Point(1.5, 1.5, -10), ray2.findClosestIntersection(grid.calculateIntersections(ray2)).point,
+                "Wrong intersection with the plane");
+
+        //TC03: An oblique ray gives the same closest intersection as the plain collection
+        Ray ray3 = new Ray(new Point(-4, -3, 15), new Vector(1, 1.1, -1.3));
+        assertEquals(ray3.findClosestIntersection(scene.calculateIntersections(ray3)).point,
+                ray3.findClosestIntersection(grid.calculateIntersections(ray3)).point,
+                "Wrong closest intersection for an oblique ray");
+
+        //TC04: A ray missing the grid and the plane
+        Ray ray4 = new Ray(new Point(-5, -5, 0), new Vector(-1, 0, 1));
+        assertNull(grid.calculateIntersections(ray4), "Intersections found for a missing ray");
+
+        // =============== Boundary Values Tests ==================
+        //TC05: A ray starting inside the grid, inside a sphere
+        Ray ray5 = new Ray(new Point(6, 6, 6), Vector.AXIS_Y);
+        assertEquals(new Point(6, 6.5, 6), ray5.findClosestIntersection(grid.calculateIntersections(ray5)).point,
+                "Wrong intersection from inside a sphere");
+
+        //TC06: The closest intersection is beyond the maximal distance
+        assertNull(grid.calculateIntersections(ray1, 4), "Intersection found beyond the maximal distance");
+    }
+
+    /**
+     * Test method for {@link geometries.RegularGrid#calculateTransparencyHelper(Ray, double, Double3, double)}.
+     * Test method for the occlusion query of shadow rays.
+     */
+    @Test
+    void testCalculateTransparency() {
+        // A big transparent sphere spanning many cells among small opaque spheres, with a transparent plane
+        Geometries scene = createScene();
+        scene.add(new Sphere(5, new Point(6, 6, 30)).setMaterial(new Material().setKt(0.5)));
+        Geometries transparentPlane = new Geometries(
+                new Plane(new Point(0, 0, 50), Vector.AXIS_Z).setMaterial(new Material().setKt(0.5)));
+        RegularGrid grid = new RegularGrid(new Geometries(scene, transparentPlane));
+
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Both intersections with the big sphere are counted exactly once
+        Ray ray1 = new Ray(new Point(-10, 6, 30), Vector.AXIS_X);
+        assertEquals(new Double3(0.25), grid.calculateTransparency(ray1, 30, 0.001),
+                "Wrong transparency through a sphere spanning several cells");
+
+        //TC02: An opaque sphere blocks the ray
+        Ray ray2 = new Ray(new Point(-5, 3, 6), Vector.AXIS_X);
+        assertEquals(Double3.ZERO, grid.calculateTransparency(ray2, 30, 0.001), "An opaque sphere must block the ray");
+
+        //TC03: The unbounded transparent plane and the big sphere are both counted
+        Ray ray3 = new Ray(new Point(6, 6, 60), new Vector(0, 0, -1));
+        assertEquals(new Double3(0.125), grid.calculateTransparency(ray3, 40, 0.001),
+                "Wrong transparency through the plane and the sphere");
+
+        // =============== Boundary Values Tests ==================
+        //TC04: The ray is blocked by the opaque plane below the grid
+        Ray ray4 = new Ray(new Point(1.5, 1.5, 20), new Vector(0, 0, -1));
+        assertEquals(Double3.ZERO, grid.calculateTransparency(ray4, 100, 0.001), "The plane must block the ray");
+        assertEquals(Double3.ONE, grid.calculateTransparency(ray4, 25, 0.001),
+                "The plane beyond the maximal distance must not block the ray");
+
+        //TC05: A transparent square lying on a face between cells is counted exactly once
+        Material glass = new Material().setKt(0.5);
+        Geometries probe = createScene();
+        probe.add(new Polygon(new Point(-1, -1, 5), new Point(13, -1, 5), new Point(13, 13, 5),
+                new Point(-1, 13, 5)).setMaterial(glass));
+        RegularGrid probeGrid = new RegularGrid(probe);
+        AABB box = probeGrid.getBoundingBox();
+        double face = box.min.getZ() + (box.max.getZ() - box.min.getZ()) / probeGrid.getResolution()[2] * 3;
+        Geometries onFace = createScene();
+        onFace.add(new Polygon(new Point(-1, -1, face), new Point(13, -1, face), new Point(13, 13, face),
+                new Point(-1, 13, face)).setMaterial(glass));
+        RegularGrid faceGrid = new RegularGrid(onFace);
+        java.util.Random random = new java.util.Random(1);
+        for (int i = 0; i < 500; i++) {
+            Point from = new Point(1.5 + 9 * random.nextDouble(), 1.5 + 9 * random.nextDouble(),
+                    face + (random.nextBoolean() ? 4 : -4));
+            Point to = new Point(1.5 + 9 * random.nextDouble(), 1.5 + 9 * random.nextDouble(), face);
+            Ray ray = new Ray(from, to.subtract(from).normalize());
+            assertEquals(onFace.calculateTransparency(ray, 100, 1e-9), faceGrid.calculateTransparency(ray, 100, 1e-9),
+                    "Wrong transparency through a square on a face between cells");
+        }
+    }
+}
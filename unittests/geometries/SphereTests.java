@@ -175,4 +175,40 @@ class SphereTests {
         Ray ray6 = new Ray(new Point(4,-2.5,0), v100);
         assertEquals(null, sphere.calculateIntersectionsHelper(ray6, 3.5), "The ray intersects the sphere");
     }
-}
\ No newline at end of file
+
+    /***
+     * Test method for {@link geometries.Sphere#calculateClosestIntersectionHelper(primitives.Ray, double)}.
+     * Test method for the closest intersection query.
+     */
+    @Test
+    void testCalculateClosestIntersection() {
+        //The sphere used in the tests
+        Sphere sphere = new Sphere(3, p000);
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The ray starts before the sphere - the nearer of the two intersections
+        Ray ray1 = new Ray(new Point(-6, 0, 0), v100);
+        assertEquals(new Point(-3, 0, 0), sphere.calculateClosestIntersection(ray1).point,
+                "Wrong closest intersection of a ray crossing the sphere");
+        //TC02: The ray starts inside the sphere - the only intersection in front of it
+        Ray ray2 = new Ray(new Point(1, 0, 0), v100);
+        assertEquals(new Point(3, 0, 0), sphere.calculateClosestIntersection(ray2).point,
+                "Wrong closest intersection of a ray starting inside the sphere");
+        //TC03: The ray misses the sphere
+        Ray ray3 = new Ray(new Point(-6, 4, 0), v100);
+        assertNull(sphere.calculateClosestIntersection(ray3), "The ray does not intersect the sphere");
+        //TC04: The ray starts after the sphere
+        Ray ray4 = new Ray(new Point(6, 0, 0), v100);
+        assertNull(sphere.calculateClosestIntersection(ray4), "The sphere is behind the ray");
+
+        // =============== Boundary Values Tests ==================
+        //TC05: The nearer intersection is beyond the maximal distance
+        assertNull(sphere.calculateClosestIntersection(ray1, 2), "The intersection is beyond the maximal distance");
+        //TC06: The ray starts at the center of the sphere
+        Ray ray6 = new Ray(p000, v100);
+        assertEquals(new Point(3, 0, 0), sphere.calculateClosestIntersection(ray6).point,
+                "Wrong closest intersection of a ray starting at the center");
+        //TC07: The ray is tangent to the sphere
+        Ray ray7 = new Ray(new Point(-6, 3, 0), v100);
+        assertNull(sphere.calculateClosestIntersection(ray7), "A tangent ray does not intersect the sphere");
+    }
+}
@@ -0,0 +1,183 @@
+package geometries;
+
+import geometries.Intersectable.Intersection;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Unit tests for geometries.TriangleMesh class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class TriangleMeshTests {
+    /** Vertices of two unit squares, one in the plane z=0 and one in the plane z=-1 */
+    private final double[] positions = {
+            0, 0, 0, 4, 0, 0, 4, 4, 0, 0, 4, 0,
+            0, 0, -1, 4, 0, -1, 4, 4, -1, 0, 4, -1};
+    /** Two triangles per square */
+    private final int[] indices = {0, 1, 2, 0, 2, 3, 4, 5, 6, 4, 6, 7};
+    /** The mesh of the two squares */
+    private final TriangleMesh mesh = new TriangleMesh(positions, indices);
+    /** Direction (0,0,-1) of the rays */
+    private final Vector down = new Vector(0, 0, -1);
+
+    /***
+     * Default constructor for the TriangleMeshTests class.
+     */
+    public TriangleMeshTests() {
+    }
+
+    /***
+     * Test method for {@link geometries.TriangleMesh#TriangleMesh(double[], int[])}.
+     */
+    @Test
+    void testConstructor() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Correct mesh
+        assertEquals(4, mesh.getTriangleCount(), "Wrong amount of triangles");
+        assertEquals(8, mesh.getVertexCount(), "Wrong amount of vertices");
+        assertEquals(new Point(4, 4, -1), mesh.getVertex(6), "Wrong vertex");
+        //TC02: Index of a missing vertex
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[]{0, 1, 8}),
+                "Constructed a mesh with a missing vertex");
+        // =============== Boundary Values Tests ==================
+        //TC11: No triangles
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[0]),
+                "Constructed a mesh without triangles");
+        //TC12: Incomplete triangle
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[]{0, 1}),
+                "Constructed a mesh with an incomplete triangle");
+        //TC13: Incomplete vertex
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(new double[]{0, 0}, new int[]{0, 0, 0}),
+                "Constructed a mesh with an incomplete vertex");
+    }
+
+    /***
+     * Test method for {@link geometries.TriangleMesh#getNormal(geometries.Intersectable.Intersection)}
+     * and {@link geometries.TriangleMesh#getNormal(primitives.Point)}.
+     */
+    @Test
+    void testGetNormal() {
+        TriangleMesh tilted = new TriangleMesh(new double[]{0, 0, 0, 1, 0, 1, 0, 1, 0}, new int[]{0, 1, 2});
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The normal of the intersected triangle, oriented by the order of its vertices
+        Intersection intersection = mesh.calculateClosestIntersection(new Ray(new Point(3, 1, 5), down));
+        assertEquals(new Vector(0, 0, 1), mesh.getNormal(intersection), "Wrong normal of the intersected triangle");
+        //TC02: The normal at a point inside a triangle of the lower square
+        assertEquals(new Vector(0, 0, 1), mesh.getNormal(new Point(3, 1, -1)), "Wrong normal at a point");
+        //TC03: The normal at a point of a tilted triangle
+        assertEquals(new Vector(-1, 0, 1).normalize(), tilted.getNormal(new Point(0.5, 0.25, 0.5)),
+                "Wrong normal of a tilted triangle");
+        //TC04: A point off the mesh
+        assertThrows(IllegalArgumentException.class, () -> mesh.getNormal(new Point(3, 1, 0.5)),
+                "Normal at a point off the mesh");
+        assertThrows(IllegalArgumentException.class, () -> mesh.getNormal(new Point(5, 1, 0)),
+                "Normal at a point beside the mesh");
+        // =============== Boundary Values Tests ==================
+        //TC11: A point on the edge shared by two triangles
+        assertEquals(new Vector(0, 0, 1), mesh.getNormal(new Point(2, 2, 0)), "Wrong normal on a shared edge");
+        //TC12: A vertex of the mesh
+        assertEquals(new Vector(0, 0, 1), mesh.getNormal(new Point(4, 4, -1)), "Wrong normal at a vertex");
+    }
+
+    /***
+     * Test method for {@link geometries.TriangleMesh#calculateIntersectionsHelper(primitives.Ray, double)}
+     * and {@link geometries.TriangleMesh#calculateClosestIntersectionHelper(primitives.Ray, double)}.
+     */
+    @Test
+    void testCalculateIntersections() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The ray crosses both squares, in the first triangle of each
+        Ray ray = new Ray(new Point(3, 1, 5), down);
+        List<Intersection> intersections = mesh.calculateIntersections(ray);
+        assertNotNull(intersections, "No intersections with the mesh");
+        assertEquals(2, intersections.size(), "Wrong amount of intersections");
+        Intersection closest = mesh.calculateClosestIntersection(ray);
+        assertEquals(new Point(3, 1, 0), closest.point, "Wrong closest intersection point");
+        assertEquals(0, closest.index, "Wrong closest intersected triangle");
+        assertSame(mesh, closest.geometry, "Wrong intersected geometry");
+        //TC02: The ray crosses the second triangle of each square
+        assertEquals(1, mesh.calculateClosestIntersection(new Ray(new Point(1, 3, 5), down)).index,
+                "Wrong intersected triangle");
+        //TC03: The ray starts between the squares
+        closest = mesh.calculateClosestIntersection(new Ray(new Point(3, 1, -0.5), down));
+        assertEquals(new Point(3, 1, -1), closest.point, "Wrong intersection from between the squares");
+        assertEquals(2, closest.index, "Wrong intersected triangle from between the squares");
+        //TC04: The ray misses the mesh
+        assertNull(mesh.calculateIntersections(new Ray(new Point(5, 1, 5), down)), "Intersections outside the mesh");
+        assertNull(mesh.calculateClosestIntersection(new Ray(new Point(5, 1, 5), down)), "Intersection outside the mesh");
+        //TC05: The maximal distance is between the squares
+        assertEquals(1, mesh.calculateIntersections(ray, 5.5).size(), "Wrong amount of intersections before the distance");
+        // =============== Boundary Values Tests ==================
+        //TC11: The ray crosses the diagonal shared by two triangles
+        assertNull(mesh.calculateIntersections(new Ray(new Point(2, 2, 5), down)), "Intersection on an edge");
+        //TC12: The ray crosses a vertex
+        assertNull(mesh.calculateIntersections(new Ray(new Point(4, 4, 5), down)), "Intersection on a vertex");
+        //TC13: The ray is parallel to the squares
+        assertNull(mesh.calculateIntersections(new Ray(new Point(-1, 1, 0.5), new Vector(1, 0, 0))),
+                "Intersection of a parallel ray");
+        //TC14: The maximal distance is at the first square
+        assertNull(mesh.calculateClosestIntersection(ray, 5), "Intersection at the maximal distance");
+    }
+
+    /***
+     * Test that a large mesh is intersected exactly as the same triangles as separate geometries
+     */
+    @Test
+    void testLargeMesh() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A random height field of 2*40*40 triangles against rays in all directions
+        int side = 40;
+        Random random = new Random(6041);
+        double[] grid = new double[3 * (side + 1) * (side + 1)];
+        for (int i = 0; i <= side; i++)
+            for (int j = 0; j <= side; j++) {
+                int v = 3 * (i * (side + 1) + j);
+                grid[v] = j;
+                grid[v + 1] = i;
+                grid[v + 2] = random.nextDouble() * 3;
+            }
+        int[] cells = new int[6 * side * side];
+        Geometries triangles = new Geometries();
+        for (int i = 0, c = 0; i < side; i++)
+            for (int j = 0; j < side; j++) {
+                int a = i * (side + 1) + j, b = a + 1, d = a + side + 1, e = d + 1;
+                int[] cell = {a, b, e, a, e, d};
+                for (int k : cell) cells[c++] = k;
+            }
+        TriangleMesh heightField = new TriangleMesh(grid, cells);
+        List<Triangle> separate = new ArrayList<>();
+        List<Point> corners = new ArrayList<>();
+        for (int t = 0; t < cells.length / 3; t++) {
+            corners.clear();
+            for (int k = 0; k < 3; k++) corners.add(heightField.getVertex(cells[3 * t + k]));
+            Triangle triangle = new Triangle(corners.get(0), corners.get(1), corners.get(2));
+            separate.add(triangle);
+            triangles.add(triangle);
+        }
+        for (int r = 0; r < 500; r++) {
+            Ray ray = new Ray(new Point(random.nextDouble() * side, random.nextDouble() * side, 10),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+            Intersection expected = triangles.calculateClosestIntersection(ray);
+            Intersection actual = heightField.calculateClosestIntersection(ray);
+            if (expected == null) {
+                assertNull(actual, "Intersection with the mesh where there is no triangle");
+                continue;
+            }
+            assertNotNull(actual, "No intersection with the mesh");
+            assertEquals(expected.point, actual.point, "Wrong closest intersection with the mesh");
+            assertEquals(((Triangle) expected.geometry).getNormal(expected.point), heightField.getNormal(actual),
+                    "Wrong triangle of the closest intersection with the mesh");
+            int count = 0;
+            for (Triangle triangle : separate)
+                if (triangle.calculateIntersections(ray) != null) count++;
+            assertEquals(count, heightField.calculateIntersections(ray).size(),
+                    "Wrong amount of intersections with the mesh");
+        }
+    }
+}
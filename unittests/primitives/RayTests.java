@@ -77,4 +77,29 @@ class RayTests {
         );
         assertEquals(new Point(1, 2, 4), ray.findClosestPoint(list4), "Ray findClosestPoint() wrong result when the closest point is the last point in the list");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link primitives.Ray#getInverseX()}, {@link primitives.Ray#getInverseY()},
+     * {@link primitives.Ray#getInverseZ()} and {@link primitives.Ray#getSigns()}.
+     */
+    @Test
+    void testGetInverse() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A ray with no zero direction components
+        Ray slanted = new Ray(Point.ZERO, new Vector(2, -1, 2));
+        assertEquals(1.5, slanted.getInverseX(), 1e-12, "Wrong inverse of the x component");
+        assertEquals(-3, slanted.getInverseY(), 1e-12, "Wrong inverse of the y component");
+        assertEquals(1.5, slanted.getInverseZ(), 1e-12, "Wrong inverse of the z component");
+        assertEquals(2, slanted.getSigns(), "Wrong signs of the direction components");
+
+        // ============ Boundary Values Tests ==================
+        //TC11: Zero direction components are inverted into huge finite values
+        assertEquals(1 / Ray.MIN_DIRECTION, ray.getInverseX(), "Wrong inverse of a zero component");
+        assertEquals(1, ray.getInverseZ(), "Wrong inverse of a unit component");
+        assertEquals(0, ray.getSigns(), "Wrong signs of a positive direction");
+        //TC12: A shadow ray moved along the normal
+        Ray shadow = new Ray(Point.ZERO, new Vector(0, 0, -1), Vector.AXIS_Z);
+        assertEquals(-1, shadow.getInverseZ(), "Wrong inverse of a moved ray");
+        assertEquals(4, shadow.getSigns(), "Wrong signs of a moved ray");
+    }
+}
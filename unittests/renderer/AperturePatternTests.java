@@ -0,0 +1,65 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for renderer.AperturePattern class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class AperturePatternTests {
+
+    /**
+     * Default constructor for the AperturePatternTests class.
+     */
+    public AperturePatternTests() {
+    }
+
+    /**
+     * Calculates the minimal distance between the first points of a pattern
+     * @param pattern the pattern
+     * @param count   the amount of the first points
+     * @return the minimal distance between two of the points
+     */
+    private double minDistance(AperturePattern pattern, int count) {
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++)
+            for (int k = i + 1; k < count; k++)
+                min = Math.min(min, Math.hypot(pattern.x(i) - pattern.x(k), pattern.y(i) - pattern.y(k)));
+        return min;
+    }
+
+    /**
+     * Test method for {@link renderer.AperturePattern#AperturePattern(int)}.
+     * Test method for generating the aperture sample points.
+     */
+    @Test
+    void testAperturePattern() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: All the points are on the unit disk
+        AperturePattern pattern = new AperturePattern(64);
+        assertEquals(64, pattern.size(), "Wrong amount of points");
+        for (int k = 0; k < pattern.size(); k++)
+            assertTrue(Math.hypot(pattern.x(k), pattern.y(k)) <= 1, "A point is outside the unit disk");
+
+        //TC02: A short prefix of the pattern is already spread over the disk
+        assertTrue(minDistance(pattern, 4) > 0.5, "The first points are too close to each other");
+        assertTrue(minDistance(pattern, 16) > 0.15, "The first points are too close to each other");
+
+        //TC03: The pattern is the same in every render
+        AperturePattern other = new AperturePattern(64);
+        for (int k = 0; k < pattern.size(); k++) {
+            assertEquals(pattern.x(k), other.x(k), "The pattern must be reproducible");
+            assertEquals(pattern.y(k), other.y(k), "The pattern must be reproducible");
+        }
+
+        // =============== Boundary Values Tests ==================
+        //TC04: A single point
+        assertEquals(1, new AperturePattern(1).size(), "Wrong amount of points");
+
+        //TC05: A non-positive amount of points
+        assertThrows(IllegalArgumentException.class, () -> new AperturePattern(0),
+                "A zero amount of points must be rejected");
+    }
+}
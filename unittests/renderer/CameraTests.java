@@ -1,7 +1,16 @@
 package renderer;
 
+import geometries.Sphere;
 import org.junit.jupiter.api.Test;
 import primitives.*;
+import scene.Scene;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -97,4 +106,285 @@ class CameraTests {
         // BV01: set to a target on Y-axis without up
         assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setDirection(new Point(0, 10, 0)).build());
     }
+
+    /**
+     * Test method for
+     * {@link renderer.Camera#renderImage()} with virtual threads, {@link renderer.Camera#cancelRender()}
+     * and the render timeout.
+     */
+    @Test
+    void testRenderImageVirtualThreads() {
+        Scene scene = new Scene("Virtual threads test scene");
+        scene.geometries.add(new Sphere(5, new Point(0, 0, -50)));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+                .setVpSize(20, 20)
+                .setVpDistance(10)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setMultithreading(-3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: a render with a task per row completes
+        Camera camera1 = builder.setResolution(40, 40).build().renderImage();
+        assertFalse(camera1.isRenderCancelled(), "The render must complete");
+
+        // EP02: a render with a task per tile completes
+        Camera camera2 = builder.setTiles(8, TileOrder.MORTON).build().renderImage();
+        assertFalse(camera2.isRenderCancelled(), "The tiled render must complete");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: a long render is stopped by the timeout and keeps the partial image
+        Camera slow = builder.setResolution(400, 400).setAperture(1).setFocalDistance(50).setDofRays(500)
+                .setRenderTimeout(0.05).build();
+        long start = System.nanoTime();
+        slow.renderImage();
+        assertTrue(slow.isRenderCancelled(), "The render must be cancelled by the timeout");
+        assertTrue(System.nanoTime() - start < 20_000_000_000L, "The cancelled render must stop quickly");
+
+        // BV02: a negative timeout
+        assertThrows(IllegalArgumentException.class, () -> builder.setRenderTimeout(-1),
+                "A negative timeout must be rejected");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#cancelRender()} when no render is running.
+     * @throws IOException if reading the images fails
+     */
+    @Test
+    void testCancelRender() throws IOException {
+        Scene scene = new Scene("Cancel test scene");
+        scene.geometries.add(new Sphere(5, new Point(0, 0, -50)).setEmission(new Color(100, 50, 20)));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+                .setVpSize(20, 20)
+                .setVpDistance(10)
+                .setResolution(40, 40)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setMultithreading(2)
+                .setTiles(8, TileOrder.SCANLINE);
+        builder.build().renderImage().writeToPfm("cancelReference");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: cancelling before a tiled render does not affect it
+        Camera camera = builder.build().cancelRender();
+        assertFalse(camera.renderImage().isRenderCancelled(), "The render must complete");
+        camera.writeToPfm("cancelBefore");
+        Path images = Path.of(System.getProperty("user.dir"), "images");
+        assertArrayEquals(Files.readAllBytes(images.resolve("cancelReference.pfm")),
+                Files.readAllBytes(images.resolve("cancelBefore.pfm")),
+                "The render must render all the pixels");
+
+        // BV02: cancelling after a render does not change its state
+        assertFalse(camera.cancelRender().isRenderCancelled(), "A completed render must stay completed");
+    }
+
+    /**
+     * Test method for adaptive anti-aliasing
+     * ({@link renderer.Camera.Builder#setAntiAliasing(int, double)} and {@link Camera#getSamplesHistogram()}).
+     */
+    @Test
+    void testAntiAliasing() {
+        Scene scene = new Scene("Anti-aliasing test scene").setBackground(new Color(255, 255, 255));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+                .setVpSize(20, 20)
+                .setVpDistance(10)
+                .setResolution(20, 20)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setAntiAliasing(3, 10);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a uniform image - no pixel is subdivided and every corner is traced once
+        long[] uniform = builder.build().renderImage().getSamplesHistogram();
+        long pixels = 0;
+        long samples = 0;
+        for (int n = 0; n < uniform.length; n++) {
+            pixels += uniform[n];
+            samples += n * uniform[n];
+            if (n > 4) assertEquals(0, uniform[n], "A uniform pixel must not be subdivided");
+        }
+        assertEquals(400, pixels, "Wrong amount of pixels in the histogram");
+        assertEquals(21 * 21, samples, "Every corner must be traced exactly once");
+
+        // TC02: the edge pixels of a sphere are subdivided, in the tiles mode as well
+        scene.geometries.add(new Sphere(5, new Point(0, 0, -50)));
+        for (Camera camera : new Camera[]{builder.build(),
+                builder.setMultithreading(2).setTiles(8, TileOrder.MORTON).build()}) {
+            long[] edges = camera.renderImage().getSamplesHistogram();
+            long subdivided = 0;
+            pixels = 0;
+            for (int n = 0; n < edges.length; n++) {
+                pixels += edges[n];
+                if (n > 4) subdivided += edges[n];
+            }
+            assertEquals(400, pixels, "Wrong amount of pixels in the histogram");
+            assertTrue(subdivided > 0, "The edge pixels must be subdivided");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC03: anti-aliasing is disabled
+        assertNull(builder.setAntiAliasing(0, 10).build().renderImage().getSamplesHistogram(),
+                "There is no histogram without anti-aliasing");
+        // TC04: a negative depth, a too deep subdivision and a negative threshold
+        assertThrows(IllegalArgumentException.class, () -> builder.setAntiAliasing(-1, 10),
+                "A negative depth must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> builder.setAntiAliasing(9, 10),
+                "A too deep subdivision must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> builder.setAntiAliasing(2, -1),
+                "A negative threshold must be rejected");
+    }
+
+    /**
+     * Test method for the progressive mode
+     * ({@link renderer.Camera.Builder#setProgressive(double, int)},
+     * {@link renderer.Camera.Builder#setSnapshots(double, String)} and {@link Camera#getProgressiveSamples()}).
+     */
+    @Test
+    void testRenderImageProgressive() {
+        Scene scene = new Scene("Progressive test scene");
+        scene.geometries.add(new Sphere(5, new Point(0, 0, -50)));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+                .setVpSize(20, 20)
+                .setVpDistance(10)
+                .setResolution(30, 30)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setProgressive(0, 3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a render without time limit traces all the samples, sequentially and in parallel
+        for (Camera camera : new Camera[]{builder.build(), builder.setMultithreading(-1).build()}) {
+            camera.renderImage();
+            assertFalse(camera.isRenderCancelled(), "The render must complete");
+            assertEquals(3, camera.getProgressiveSamples(), "Every pixel must get all the samples");
+        }
+
+        // TC02: the snapshots are written while rendering
+        File snapshot = new File(System.getProperty("user.dir") + "/images/progressiveSnapshotTest.png");
+        snapshot.delete();
+        builder.setMultithreading(0).setSnapshots(1e-9, "progressiveSnapshotTest").build().renderImage();
+        assertTrue(snapshot.exists(), "A snapshot must be written");
+        builder.setSnapshots(0, null);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a long render is stopped by the time budget and keeps the passes rendered so far
+        Camera slow = builder.setResolution(400, 400).setAperture(1).setFocalDistance(50).setDofRays(500)
+                .setProgressive(0.05, 100).build();
+        long start = System.nanoTime();
+        slow.renderImage();
+        assertTrue(slow.isRenderCancelled(), "The render must be stopped by the time budget");
+        assertTrue(System.nanoTime() - start < 20_000_000_000L, "The stopped render must stop quickly");
+        assertEquals(0, slow.getProgressiveSamples(), "The full resolution pass must not be completed");
+
+        // TC12: a single sample per pixel
+        Camera single = builder.setResolution(30, 30).setAperture(0).setProgressive(0, 1).build().renderImage();
+        assertEquals(1, single.getProgressiveSamples(), "Every pixel must get a single sample");
+
+        // TC13: a negative time budget, a negative samples budget and a negative snapshot interval
+        assertThrows(IllegalArgumentException.class, () -> builder.setProgressive(-1, 1),
+                "A negative time budget must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> builder.setProgressive(1, -1),
+                "A negative samples budget must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> builder.setSnapshots(-1, "snapshot"),
+                "A negative snapshot interval must be rejected");
+    }
+
+    /**
+     * Test method for the checkpoints of the tile based render
+     * ({@link renderer.Camera.Builder#setCheckpoint(String)} and {@link Camera#resumeRender()}).
+     * @throws IOException if the temporary files fail
+     */
+    @Test
+    void testCheckpoint() throws IOException {
+        Scene scene = new Scene("Checkpoint test scene");
+        scene.geometries.add(new Sphere(5, new Point(0, 0, -50)).setEmission(new Color(100, 50, 20)),
+                new Sphere(3, new Point(6, 4, -40)).setEmission(new Color(20, 50, 100)));
+        Path journal = Files.createTempFile("render", ".journal");
+        journal.toFile().deleteOnExit();
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+                .setVpSize(20, 20)
+                .setVpDistance(10)
+                .setResolution(40, 40)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setMultithreading(2)
+                .setTiles(8, TileOrder.SPIRAL)
+                .setCheckpoint(journal.toString());
+        Path images = Path.of(System.getProperty("user.dir"), "images");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a render journals all its tiles
+        builder.build().renderImage().writeToPfm("checkpointFull");
+        long size = Files.size(journal);
+        assertEquals(25, builder.build().renderImage().getCheckpointedTiles(), "All the tiles must be journaled");
+        assertEquals(size, Files.size(journal), "A new render must start a new journal");
+
+        // TC02: a render which died after 10 tiles, in the middle of the 11th, is resumed to the same image
+        int header = RenderJournal.headerLength(32);
+        int record = RenderJournal.recordLength(8 * 8);
+        try (var channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(header + 10L * record + record / 2);
+        }
+        Camera resumed = builder.build().resumeRender().writeToPfm("checkpointResumed");
+        assertEquals(25, resumed.getCheckpointedTiles(), "All the tiles must be completed");
+        assertEquals(size, Files.size(journal), "The cut off record must be replaced");
+        assertArrayEquals(Files.readAllBytes(images.resolve("checkpointFull.pfm")),
+                Files.readAllBytes(images.resolve("checkpointResumed.pfm")),
+                "The resumed image must be the same as the full render");
+
+        // TC03: resuming without a journal renders the whole image
+        Files.delete(journal);
+        assertEquals(25, builder.build().resumeRender().getCheckpointedTiles(), "All the tiles must be rendered");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a journal of a changed scene or of another tile size is not resumed
+        scene.geometries.add(new Sphere(1, new Point(-6, -4, -40)));
+        assertThrows(IllegalArgumentException.class, () -> builder.build().resumeRender(),
+                "A journal of another scene must be rejected");
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.setTiles(10, TileOrder.SPIRAL).build().resumeRender(),
+                "A journal of another tile size must be rejected");
+
+        // TC12: checkpoints without tiles, and resuming without checkpoints
+        assertThrows(IllegalArgumentException.class, () -> builder.setTiles(0, TileOrder.SCANLINE).build(),
+                "Checkpoints without tiles must be rejected");
+        assertThrows(IllegalStateException.class, () -> builder.setCheckpoint(null).build().resumeRender(),
+                "Resuming without checkpoints must be rejected");
+    }
+
+    /**
+     * Test method for the depth of field rays
+     * ({@link renderer.Camera#constructDofRays(int, int, int, int)} and
+     * {@link renderer.Camera.Builder#setDofAdaptive(int, double)}).
+     */
+    @Test
+    void testDepthOfField() {
+        Camera.Builder builder = cameraBuilder.setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+                .setVpSize(6, 4).setResolution(3, 3)
+                .setAperture(2).setFocalDistance(20).setDofRays(16);
+        Camera camera = builder.build();
+        Point focusPoint = camera.constructRay(3, 3, 1, 1).getPoint(20);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: all the rays start on the aperture and pass through the focal point
+        var rays = camera.constructDofRays(3, 3, 1, 1);
+        assertEquals(16, rays.size(), "Wrong amount of depth of field rays");
+        for (Ray ray : rays) {
+            assertTrue(ray.getHead().distance(Point.ZERO) <= 2 + 1e-10, "A ray starts outside the aperture");
+            assertTrue(ray.getPoint(ray.getHead().distance(focusPoint)).equals(focusPoint),
+                    "A ray does not pass through the focal point");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC02: a non-positive minimal number of rays and a negative tolerance
+        assertThrows(IllegalArgumentException.class, () -> builder.setDofAdaptive(0, 1),
+                "A zero minimal number of rays must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> builder.setDofAdaptive(4, -1),
+                "A negative tolerance must be rejected");
+    }
 }
@@ -0,0 +1,130 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.FrameBuffer} class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class FrameBufferTests {
+    /**
+     * Default constructor for the FrameBufferTests class.
+     */
+    FrameBufferTests() {
+    }
+
+    /**
+     * Test method for {@link renderer.FrameBuffer#add(int, int, Color)} and
+     * {@link renderer.FrameBuffer#set(int, int, Color)}.
+     */
+    @Test
+    void testAdd() {
+        for (FrameBufferType type : FrameBufferType.values())
+            testAdd(FrameBuffer.create(2, 2, type));
+    }
+
+    /**
+     * Tests the accumulation of the samples of a frame buffer
+     * @param buffer a new 2x2 frame buffer
+     */
+    private void testAdd(FrameBuffer buffer) {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the pixel gets the average of its samples
+        buffer.add(1, 0, new Color(100, 200, 300));
+        buffer.add(1, 0, new Color(200, 0, 500));
+        assertEquals(2, buffer.getCount(1, 0), "Wrong amount of samples");
+        assertEquals(new Color(150, 100, 400).getComponents(), buffer.getColor(1, 0).getComponents(), "Wrong average");
+
+        // TC02: setting a pixel replaces its samples
+        buffer.set(1, 0, new Color(10, 20, 30));
+        assertEquals(1, buffer.getCount(1, 0), "Setting must leave a single sample");
+        assertEquals(new Color(10, 20, 30).getComponents(), buffer.getColor(1, 0).getComponents(), "Wrong color");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a pixel without samples is black
+        assertEquals(0, buffer.getCount(0, 1), "A new pixel must have no samples");
+        assertEquals(Color.BLACK.getComponents(), buffer.getColor(0, 1).getComponents(), "A new pixel must be black");
+    }
+
+    /**
+     * Test method for {@link renderer.FrameBuffer#getRGB(int, int, ToneMapper, double, double)}.
+     */
+    @Test
+    void testGetRGB() {
+        for (FrameBufferType type : FrameBufferType.values())
+            testGetRGB(type);
+    }
+
+    /**
+     * Tests the tone mapping of a frame buffer
+     * @param type the storage of the frame buffer
+     */
+    private void testGetRGB(FrameBufferType type) {
+        FrameBuffer buffer = FrameBuffer.create(1, 1, type);
+        buffer.add(0, 0, new Color(100.7, 510, 0));
+        buffer.add(0, 0, new Color(100.7, 510, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: clamping with no exposure and gamma correction is the same as the color itself
+        assertEquals(new Color(100.7, 510, 0).toPackedRGB(), buffer.getRGB(0, 0, ToneMapper.CLAMP, 1, 1),
+                "Wrong linear clamped color");
+        // TC02: the Reinhard operator compresses the components: 510 is twice the maximal intensity -> 2/3
+        assertEquals(0xFF000000 | 170 << 8, buffer.getRGB(0, 0, ToneMapper.REINHARD, 1, 1) & 0xFF00FF00,
+                "Wrong Reinhard mapped color");
+        // TC03: the gamma correction of a quarter intensity component
+        FrameBuffer quarter = FrameBuffer.create(1, 1, type);
+        quarter.set(0, 0, new Color(63.75, 0, 0));
+        assertEquals(0xFF000000 | 128 << 16, quarter.getRGB(0, 0, ToneMapper.CLAMP, 1, 2),
+                "Wrong gamma corrected color");
+        // TC04: the exposure scales the colors before the mapping
+        assertEquals(0xFF000000 | 128 << 16, quarter.getRGB(0, 0, ToneMapper.CLAMP, 2.008, 1),
+                "Wrong exposed color");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a pixel without samples is black
+        assertEquals(0xFF000000, FrameBuffer.create(1, 1, type).getRGB(0, 0, ToneMapper.ACES, 1, 2.2),
+                "A pixel without samples must be black");
+    }
+
+    /**
+     * Test method for {@link renderer.FrameBuffer#writePfm(java.io.OutputStream)}.
+     * @throws IOException never - the stream is in memory
+     */
+    @Test
+    void testWritePfm() throws IOException {
+        for (FrameBufferType type : FrameBufferType.values())
+            testWritePfm(FrameBuffer.create(2, 1, type));
+    }
+
+    /**
+     * Tests the PFM output of a frame buffer
+     * @param buffer a new 2x1 frame buffer
+     * @throws IOException never - the stream is in memory
+     */
+    private void testWritePfm(FrameBuffer buffer) throws IOException {
+        buffer.set(0, 0, new Color(255, 510, 0));
+        buffer.add(1, 0, new Color(0, 0, 51));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writePfm(out);
+        byte[] bytes = out.toByteArray();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the header and the linear unclamped colors normalized by the maximal intensity
+        String header = "PF\n2 1\n-1.0\n";
+        assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII), "Wrong header");
+        assertEquals(header.length() + 6 * Float.BYTES, bytes.length, "Wrong size");
+        ByteBuffer data = ByteBuffer.wrap(bytes, header.length(), 6 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        float[] expected = { 1, 2, 0, 0, 0, 0.2f };
+        for (float value : expected)
+            assertEquals(value, data.getFloat(), 1e-6, "Wrong pixel value");
+    }
+}
@@ -3,6 +3,8 @@ package renderer;
 import org.junit.jupiter.api.Test;
 import primitives.Color;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 /**
  * This class contains unit tests for the ImageWriter class.
  * It tests the functionality of writing an image to a file.
@@ -61,4 +63,31 @@ public class ImageWriterTests {
         // Save the image to a file
         writer.writeToImage("test_grid_image2");
     }
+
+    /**
+     * Test method for {@link renderer.ImageWriter#writeToImage(String)} with both frame buffer types.
+     * The written png file is read back and compared to the written pixels.
+     * @throws java.io.IOException if the image can't be read back
+     */
+    @Test
+    void writeImageReadBackTest() throws java.io.IOException {
+        final int width = 300;
+        final int height = 200;
+        for (FrameBufferType type : FrameBufferType.values()) {
+            final ImageWriter writer = new ImageWriter(width, height, type);
+            for (int y = 0; y < height; y++)
+                for (int x = 0; x < width; x++)
+                    writer.writePixel(x, y, new Color(x % 256, y, (x * y) % 300));
+            writer.writeToImage("test_read_back_" + type);
+
+            java.awt.image.BufferedImage image = javax.imageio.ImageIO.read(
+                    new java.io.File(System.getProperty("user.dir") + "/images/test_read_back_" + type + ".png"));
+            assertEquals(width, image.getWidth(), "Wrong image width");
+            assertEquals(height, image.getHeight(), "Wrong image height");
+            for (int y = 0; y < height; y++)
+                for (int x = 0; x < width; x++)
+                    assertEquals(new Color(x % 256, y, (x * y) % 300).toPackedRGB(), image.getRGB(x, y),
+                            "Wrong pixel color");
+        }
+    }
 }
@@ -8,6 +8,7 @@ import lighting.DirectionalLight;
 import lighting.LightSource;
 import lighting.PointLight;
 import lighting.SpotLight;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import primitives.Color;
 import primitives.Material;
@@ -666,4 +667,27 @@ class Mp2Tests {
                 .build();
         cam1.renderImage().writeToImage("FinalPicture6");
     }
+
+    /**
+     * Compares the throughput and the tail latency of the rendering modes (see {@link RenderModeComparison})
+     * on small previews of the flower scene with a light depth of field.
+     * @throws InterruptedException if interrupted while waiting for the renders
+     */
+    @Test
+    @Disabled
+    void testRenderModes() throws InterruptedException {
+        Camera preview = Camera.getBuilder()
+                .setLocation(new Point(-1, 0.5, 5))
+                .setDirection(new Point(0, 0, -1))
+                .setVpSize(20, 20)
+                .setVpDistance(10)
+                .setResolution(200, 200)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setDofRays(4)
+                .setAperture(0.5)
+                .setFocalDistance(23)
+                .enableBVH()
+                .build();
+        RenderModeComparison.run(preview);
+    }
 }
@@ -0,0 +1,168 @@
+package renderer;
+
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.RenderCoordinator} and {@link renderer.RenderWorker} classes
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class RenderCoordinatorTests {
+    /**
+     * Default constructor for the RenderCoordinatorTests class.
+     */
+    RenderCoordinatorTests() {
+    }
+
+    /** The directory of the images */
+    private final Path images = Path.of(System.getProperty("user.dir"), "images");
+
+    /**
+     * Creates the camera builder of the test scene
+     * @return the camera builder, with tile based rendering
+     */
+    private Camera.Builder builder() {
+        Scene scene = new Scene("Distributed test scene");
+        scene.geometries.add(new Sphere(5, new Point(0, 0, -50)).setEmission(new Color(100, 50, 20)),
+                new Sphere(3, new Point(6, 4, -40)).setEmission(new Color(20, 50, 100)));
+        return Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+                .setVpSize(20, 15)
+                .setVpDistance(10)
+                .setResolution(40, 30)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .setAntiAliasing(2, 10)
+                .setTiles(8, TileOrder.SPIRAL);
+    }
+
+    /**
+     * Starts a worker in a thread of the test process
+     * @param port the port of the coordinator
+     * @return the thread of the worker
+     */
+    private static Thread startWorker(int port) {
+        return Thread.ofPlatform().daemon().start(() -> RenderWorker.run("127.0.0.1", port));
+    }
+
+    /**
+     * Calculates the length of the rendering settings sent to the workers
+     * @return the length of the settings in bytes
+     * @throws IOException if writing the settings fails
+     */
+    private int settingsLength() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        builder().build().writeSettings(out);
+        out.flush();
+        return bytes.size();
+    }
+
+    /**
+     * Starts a faulty worker, which takes a tile and then dies or stops responding
+     * @param port     the port of the coordinator
+     * @param settings the length of the rendering settings
+     * @param stall    true for a worker which stops responding, false for a worker which dies
+     * @param taken    counted down when the worker takes its tile
+     * @return the thread of the worker
+     */
+    private static Thread startFaultyWorker(int port, int settings, boolean stall, CountDownLatch taken) {
+        return Thread.ofPlatform().daemon().start(() -> {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(RenderCoordinator.MAGIC);
+                out.writeInt(RenderCoordinator.VERSION);
+                in.skipNBytes(in.readInt());
+                // the frame buffer type, the settings and the fingerprint
+                in.skipNBytes(1 + settings);
+                in.skipNBytes(in.readInt());
+                out.writeBoolean(true);
+                in.readInt();
+                taken.countDown();
+                if (stall) in.readInt();
+            } catch (IOException ignored) {
+                // the coordinator dropped the worker
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link renderer.RenderCoordinator#render()}.
+     * @throws IOException if reading the images fails
+     * @throws InterruptedException if waiting for the workers is interrupted
+     */
+    @Test
+    void testRender() throws IOException, InterruptedException {
+        builder().build().renderImage().writeToPfm("distributedLocal");
+        byte[] expected = Files.readAllBytes(images.resolve("distributedLocal.pfm"));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the tiles rendered by two workers make the same image as a local render
+        try (RenderCoordinator coordinator = new RenderCoordinator(builder().build())) {
+            Thread first = startWorker(coordinator.getPort());
+            Thread second = startWorker(coordinator.getPort());
+            coordinator.render().writeToPfm("distributedWorkers");
+            first.join();
+            second.join();
+        }
+        assertArrayEquals(expected, Files.readAllBytes(images.resolve("distributedWorkers.pfm")),
+                "The distributed image must be the same as the local render");
+
+        // TC02: the tiles of a dead worker and of a stalled worker are handed out to another worker
+        try (RenderCoordinator coordinator = new RenderCoordinator(builder().build()).setTileTimeout(0.5)) {
+            CountDownLatch taken = new CountDownLatch(2);
+            int settings = settingsLength();
+            startFaultyWorker(coordinator.getPort(), settings, false, taken);
+            Thread stalled = startFaultyWorker(coordinator.getPort(), settings, true, taken);
+            CompletableFuture<Camera> render = CompletableFuture.supplyAsync(coordinator::render);
+            taken.await();
+            startWorker(coordinator.getPort());
+            render.join().writeToPfm("distributedFaulty");
+            stalled.join();
+        }
+        assertArrayEquals(expected, Files.readAllBytes(images.resolve("distributedFaulty.pfm")),
+                "The image must be completed despite the faulty workers");
+
+        // TC03: the tiles rendered by a worker process make the same image as a local render,
+        // and the coordinator renders again with new workers after the process has ended
+        try (RenderCoordinator coordinator = new RenderCoordinator(builder().build())) {
+            coordinator.startLocalWorkers(1).render().writeToPfm("distributedProcess");
+            assertArrayEquals(expected, Files.readAllBytes(images.resolve("distributedProcess.pfm")),
+                    "The image of the worker process must be the same as the local render");
+            CompletableFuture<Camera> render = CompletableFuture.supplyAsync(coordinator::render);
+            // a worker which connects after the second render has started waiting
+            coordinator.awaitRenders(2);
+            Thread worker = startWorker(coordinator.getPort());
+            render.join().writeToPfm("distributedAgain");
+            worker.join();
+        }
+        assertArrayEquals(expected, Files.readAllBytes(images.resolve("distributedAgain.pfm")),
+                "The image of the second render must be the same as the local render");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a distributed render without tiles
+        assertThrows(IllegalArgumentException.class,
+                () -> new RenderCoordinator(builder().setTiles(0, TileOrder.SCANLINE).build()),
+                "A distributed render without tiles must be rejected");
+
+        // TC12: all the worker processes die
+        try (RenderCoordinator coordinator = new RenderCoordinator(builder().build())) {
+            coordinator.startLocalWorkers(1, "-Xmx1m");
+            assertThrows(IllegalStateException.class, coordinator::render,
+                    "A render without live workers must fail");
+        }
+    }
+}
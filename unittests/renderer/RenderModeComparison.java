@@ -0,0 +1,61 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Comparison of the throughput and the tail latency of the rendering modes, shared by the tests
+ * of different scenes. Several small previews are rendered at the same time with every mode,
+ * and the renders per second and the latency percentiles are printed.
+ * @author Tehila Shraga and Tova Tretiak
+ */
+public final class RenderModeComparison {
+    /** Amount of the previews rendered at the same time */
+    private static final int CONCURRENT = 4;
+    /** Amount of the rounds of concurrent previews of every mode */
+    private static final int ROUNDS = 5;
+
+    /** Private constructor - the class has static methods only */
+    private RenderModeComparison() {
+    }
+
+    /**
+     * Renders the previews with every rendering mode and prints the measurements
+     * @param preview the camera of the preview, whose settings other than the rendering mode are kept
+     * @throws InterruptedException if interrupted while waiting for the renders
+     */
+    public static void run(Camera preview) throws InterruptedException {
+        Map<String, UnaryOperator<Camera.Builder>> modes = new LinkedHashMap<>();
+        modes.put("no threads", b -> b.setMultithreading(0));
+        modes.put("stream", b -> b.setMultithreading(-1));
+        modes.put("raw threads", b -> b.setMultithreading(-2));
+        modes.put("tiles", b -> b.setMultithreading(-2).setTiles(16, TileOrder.MORTON));
+        modes.put("virtual rows", b -> b.setMultithreading(-3));
+        modes.put("virtual tiles", b -> b.setMultithreading(-3).setTiles(16, TileOrder.MORTON));
+
+        for (var mode : modes.entrySet()) {
+            long[] latencies = new long[CONCURRENT * ROUNDS];
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; ++round) {
+                Thread[] renders = new Thread[CONCURRENT];
+                for (int r = 0; r < CONCURRENT; ++r) {
+                    int index = round * CONCURRENT + r;
+                    renders[r] = new Thread(() -> {
+                        long begin = System.nanoTime();
+                        mode.getValue().apply(Camera.getBuilder(preview)).build().renderImage();
+                        latencies[index] = (System.nanoTime() - begin) / 1_000_000;
+                    });
+                    renders[r].start();
+                }
+                for (Thread render : renders) render.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+            System.out.printf("%-14s %6.2f renders/s  p50 %5d ms  p95 %5d ms  max %5d ms%n", mode.getKey(),
+                    latencies.length / seconds, latencies[latencies.length / 2],
+                    latencies[(int) Math.ceil(latencies.length * 0.95) - 1], latencies[latencies.length - 1]);
+        }
+    }
+}
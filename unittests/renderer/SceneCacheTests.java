@@ -0,0 +1,179 @@
+package renderer;
+
+import geometries.*;
+import geometries.Intersectable.Intersection;
+import lighting.*;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Unit tests for renderer.SceneCache class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class SceneCacheTests {
+
+    /***
+     * Default constructor for the SceneCacheTests class.
+     */
+    public SceneCacheTests() {
+    }
+
+    /**
+     * Creates a temporary file for a cache
+     * @return the path of the file
+     */
+    private String file() {
+        try {
+            Path path = Files.createTempFile("scene", ".cache");
+            path.toFile().deleteOnExit();
+            return path.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a scene of all the kinds of geometries and lights, with a nested collection,
+     * a shared material and BVH in both forms
+     * @return the scene
+     */
+    private Scene scene() {
+        Material shiny = new Material().setKd(0.4).setKs(0.3).setShininess(50).setKr(new Double3(0.1, 0.2, 0.3));
+        Material glass = new Material().setKt(0.6).setKd(0.2);
+        Random random = new Random(14);
+        Geometries spheres = new Geometries();
+        for (int i = 0; i < 40; i++)
+            spheres.add(new Sphere(2 + random.nextDouble() * 3,
+                    new Point(random.nextDouble() * 80 - 40, random.nextDouble() * 80 - 40, random.nextDouble() * -40))
+                    .setEmission(new Color(i, 40 - i, 20)).setMaterial(i % 2 == 0 ? shiny : glass));
+        spheres.setFlatBVH(false).setUseBVH(true);
+        Scene scene = new Scene("cached").setBackground(new Color(10, 20, 30))
+                .setAmbientLight(new AmbientLight(new Color(15, 15, 15)));
+        scene.geometries.add(spheres,
+                new Plane(new Point(0, 0, -60), new Vector(0, 0.2, 1)).setMaterial(shiny),
+                new Triangle(new Point(-50, -50, -10), new Point(-30, -50, -10), new Point(-40, -30, -5))
+                        .setEmission(new Color(100, 0, 0)).setMaterial(glass),
+                new Polygon(new Point(30, 30, -5), new Point(50, 30, -5), new Point(50, 50, -5), new Point(30, 50, -5))
+                        .setEmission(new Color(0, 100, 0)),
+                new Tube(3, new Ray(new Point(-45, 0, -20), new Vector(0, 1, 0.5))).setMaterial(shiny),
+                new Cylinder(4, new Ray(new Point(45, -10, -20), new Vector(0, 1, 0)), 20)
+                        .setEmission(new Color(0, 0, 100)),
+                new TriangleMesh(new double[]{-20, 40, -8, 20, 40, -8, 0, 50, -12, 0, 45, -2},
+                        new int[]{0, 1, 2, 0, 1, 3, 1, 2, 3}).setEmission(new Color(50, 50, 0)).setMaterial(shiny));
+        scene.geometries.setFlatBVH(true).setBVHBuildType(BVHBuildType.SAH);
+        scene.setUseBVH(true);
+        scene.lights.add(new DirectionalLight(new Color(100, 100, 100), new Vector(1, -1, -2)));
+        scene.lights.add(new PointLight(new Color(200, 100, 50), new Point(0, 0, 50)).setKl(0.001).setKq(0.0002));
+        scene.lights.add(new SpotLight(new Color(300, 300, 300), new Point(-20, 20, 40), new Vector(1, -1, -3))
+                .setKq(0.0001).setNarrowBeam(5));
+        return scene;
+    }
+
+    /***
+     * Test method for {@link renderer.SceneCache#save(scene.Scene, renderer.Camera, String)}
+     * and {@link renderer.SceneCache#load(String)}.
+     */
+    @Test
+    void testSaveLoad() {
+        Scene scene = scene();
+        Camera camera = Camera.getBuilder()
+                .setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                .setVpDistance(150).setVpSize(120, 90).setResolution(40, 30)
+                .setRayTracer(scene, RayTracerType.SIMPLE).build();
+        String path = file();
+        SceneCache.save(scene, camera, path);
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: The restored scene is rendered exactly as the original one
+        SceneCache cache = SceneCache.load(path);
+        Scene restored = cache.getScene();
+        assertEquals("cached", restored.name, "Wrong scene name");
+        assertEquals(3, restored.lights.size(), "Wrong amount of lights");
+        assertInstanceOf(SpotLight.class, restored.lights.get(2), "Wrong type of light");
+        Camera restoredCamera = cache.getCamera().build();
+        assertEquals(camera.getP0(), restoredCamera.getP0(), "Wrong camera location");
+        assertEquals(40, restoredCamera.getNX(), "Wrong camera resolution");
+        RayTracerBase original = new SimpleRayTracer(scene);
+        RayTracerBase copy = new SimpleRayTracer(restored);
+        for (int i = 0; i < 30; i++)
+            for (int j = 0; j < 40; j++) {
+                Ray ray = camera.constructRay(40, 30, j, i);
+                assertEquals(ray, restoredCamera.constructRay(40, 30, j, i), "Wrong ray of the restored camera");
+                assertEquals(original.traceRay(ray).getComponents(), copy.traceRay(ray).getComponents(),
+                        "Wrong color of pixel " + j + "," + i);
+            }
+        //TC02: The BVH is restored in the linear form without building
+        Geometries geometries = restored.geometries;
+        assertEquals(scene.geometries.getBVHStats(), geometries.getBVHStats(), "Wrong restored BVH");
+        Geometries spheres = (Geometries) geometries.getGeometries().getFirst();
+        BVHStats expected = scene.geometries.getGeometries().getFirst() instanceof Geometries nested
+                ? nested.getBVHStats() : null;
+        assertNotNull(expected, "The original scene has no nested collection");
+        assertEquals(expected.nodeCount(), spheres.getBVHStats().nodeCount(), "Wrong restored nested BVH");
+        //TC03: Geometries sharing a material share it after restoring
+        Geometry first = (Geometry) spheres.getGeometries().get(0);
+        assertSame(first.getMaterial(), ((Geometry) spheres.getGeometries().get(2)).getMaterial(),
+                "The shared material is not shared");
+        assertNotSame(first.getMaterial(), ((Geometry) spheres.getGeometries().get(1)).getMaterial(),
+                "Different materials are shared");
+        // =============== Boundary Values Tests ==================
+        //TC11: A scene without a camera and without geometries
+        String empty = file();
+        SceneCache.save(new Scene("empty"), null, empty);
+        cache = SceneCache.load(empty);
+        assertTrue(cache.getScene().geometries.getGeometries().isEmpty(), "Geometries in an empty scene");
+        assertThrows(IllegalStateException.class, cache::getCamera, "Camera of a cache without camera");
+        //TC12: Not a cache file
+        try {
+            Files.write(Path.of(empty), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        assertThrows(IllegalArgumentException.class, () -> SceneCache.load(empty), "Loaded a bad file");
+        //TC13: Truncated cache file
+        try {
+            byte[] bytes = Files.readAllBytes(Path.of(path));
+            Files.write(Path.of(empty), java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        assertThrows(IllegalArgumentException.class, () -> SceneCache.load(empty), "Loaded a truncated file");
+    }
+
+    /***
+     * Test that intersections with the restored geometries are the same as with the original ones
+     */
+    @Test
+    void testIntersections() {
+        Scene scene = scene();
+        String path = file();
+        SceneCache.save(scene, null, path);
+        Geometries restored = SceneCache.load(path).getScene().geometries;
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Random rays through the scene
+        Random random = new Random(41);
+        for (int r = 0; r < 500; r++) {
+            Ray ray = new Ray(new Point(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50, 100),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+            Intersection expected = scene.geometries.calculateClosestIntersection(ray);
+            Intersection actual = restored.calculateClosestIntersection(ray);
+            if (expected == null) {
+                assertNull(actual, "Intersection with the restored geometries where there is none");
+                continue;
+            }
+            assertNotNull(actual, "No intersection with the restored geometries");
+            assertEquals(expected.point, actual.point, "Wrong closest intersection");
+            assertEquals(expected.geometry.getClass(), actual.geometry.getClass(), "Wrong intersected geometry");
+            assertEquals(expected.geometry.getEmission().getComponents(), actual.geometry.getEmission().getComponents(),
+                    "Wrong emission of the intersected geometry");
+            assertEquals(expected.index, actual.index, "Wrong intersected triangle");
+        }
+    }
+}
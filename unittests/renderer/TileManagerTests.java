@@ -0,0 +1,74 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for renderer.TileManager class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class TileManagerTests {
+
+    /**
+     * Default constructor for the TileManagerTests class.
+     */
+    public TileManagerTests() {
+    }
+
+    /**
+     * Takes all the tiles of a manager and counts how many times every pixel is covered
+     * @param manager the tile manager
+     * @param rows    the amount of pixel rows
+     * @param cols    the amount of pixel columns
+     * @return the coverage counters of the pixels
+     */
+    private int[][] coverage(TileManager manager, int rows, int cols) {
+        int[][] covered = new int[rows][cols];
+        TileManager.Tile tile;
+        while ((tile = manager.nextTile()) != null)
+            for (int i = tile.row(); i < tile.row() + tile.height(); i++)
+                for (int j = tile.col(); j < tile.col() + tile.width(); j++)
+                    covered[i][j]++;
+        return covered;
+    }
+
+    /**
+     * Test method for {@link renderer.TileManager#nextTile()}.
+     * Test method for handing out the tiles.
+     */
+    @Test
+    void testNextTile() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Every order covers every pixel exactly once, including the partial edge tiles
+        for (TileOrder order : TileOrder.values()) {
+            TileManager manager = new TileManager(50, 70, 16, order);
+            assertEquals(20, manager.tilesCount(), "Wrong amount of tiles for " + order);
+            for (int[] row : coverage(manager, 50, 70))
+                for (int covered : row)
+                    assertEquals(1, covered, "A pixel is not covered exactly once for " + order);
+            assertNull(manager.nextTile(), "A tile was handed out twice for " + order);
+        }
+
+        //TC02: The Morton order visits the first 2x2 block of tiles first
+        TileManager morton = new TileManager(64, 64, 16, TileOrder.MORTON);
+        assertEquals(new TileManager.Tile(0, 0, 16, 16), morton.nextTile(), "Wrong first Morton tile");
+        assertEquals(new TileManager.Tile(16, 0, 16, 16), morton.nextTile(), "Wrong second Morton tile");
+        assertEquals(new TileManager.Tile(0, 16, 16, 16), morton.nextTile(), "Wrong third Morton tile");
+        assertEquals(new TileManager.Tile(16, 16, 16, 16), morton.nextTile(), "Wrong fourth Morton tile");
+
+        //TC03: The spiral order starts at the center of the image
+        TileManager spiral = new TileManager(48, 48, 16, TileOrder.SPIRAL);
+        assertEquals(new TileManager.Tile(16, 16, 16, 16), spiral.nextTile(), "The spiral must start at the center");
+
+        // =============== Boundary Values Tests ==================
+        //TC04: A tile larger than the image
+        TileManager single = new TileManager(10, 5, 64, TileOrder.SCANLINE);
+        assertEquals(new TileManager.Tile(0, 0, 5, 10), single.nextTile(), "Wrong single tile");
+        assertNull(single.nextTile(), "There must be a single tile");
+
+        //TC05: A non-positive tile size
+        assertThrows(IllegalArgumentException.class, () -> new TileManager(10, 10, 0, TileOrder.SCANLINE),
+                "A zero tile size must be rejected");
+    }
+}
@@ -0,0 +1,164 @@
+package scene;
+
+import geometries.Geometries;
+import geometries.TriangleMesh;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Unit tests for scene.MeshLoader class
+ * @author Tehila Shraga and Tova Tretiak
+ */
+class MeshLoaderTests {
+    /** The vertices of the unit square and of a point above it, as loaded from the test files */
+    private final double[] squarePositions = {0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0, 0.5, 0.5, 2.5e-1};
+
+    /***
+     * Default constructor for the MeshLoaderTests class.
+     */
+    public MeshLoaderTests() {
+    }
+
+    /**
+     * Writes the contents of a temporary test file
+     * @param suffix the extension of the file
+     * @param bytes  the contents of the file
+     * @return the path of the file
+     */
+    private String file(String suffix, byte[] bytes) {
+        try {
+            Path path = Files.createTempFile("mesh", suffix);
+            path.toFile().deleteOnExit();
+            Files.write(path, bytes);
+            return path.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /***
+     * Test method for {@link scene.MeshLoader#loadObj(String)}.
+     */
+    @Test
+    void testLoadObj() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: A quad and a triangle with texture and normal references, comments and relative indices
+        String obj = """
+                # a square and a triangle
+                o square
+                v 0 0 0
+                v 1.0 0 0
+                v 1 1.0e0 0
+                vt 0 0
+                vn 0 0 1
+                v  0 1 0.0
+                f 1/1/1 2/1/1 3/1/1 4/1/1
+                g top
+                usemtl red
+                v\t.5 0.5 2.5e-1   # the apex
+                f 1//1 2//1 -1
+                """;
+        MeshLoader mesh = MeshLoader.load(file(".obj", obj.getBytes(StandardCharsets.US_ASCII)));
+        assertArrayEquals(squarePositions, mesh.getPositions(), "Wrong vertices of the OBJ file");
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3, 0, 1, 4}, mesh.getIndices(), "Wrong faces of the OBJ file");
+        //TC02: Numbers which are not parsed exactly from their digits
+        obj = "v 0.1234567890123456789 -1e-300 123456789012345678901\nv 1 0 0\nv 0 1 0\nf 1 2 3\n";
+        mesh = MeshLoader.loadObj(file(".obj", obj.getBytes(StandardCharsets.US_ASCII)));
+        assertArrayEquals(new double[]{0.1234567890123456789, -1e-300, 123456789012345678901.0},
+                java.util.Arrays.copyOf(mesh.getPositions(), 3), "Wrong long numbers of the OBJ file");
+        //TC03: Index of a missing vertex
+        String missing = file(".obj", "v 0 0 0\nv 1 0 0\nf 1 2 3\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadObj(missing),
+                "Loaded a face of a missing vertex");
+        //TC04: Bad number
+        String bad = file(".obj", "v 0 0 x\nv 1 0 0\nv 0 1 0\nf 1 2 3\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadObj(bad), "Loaded a bad number");
+        // =============== Boundary Values Tests ==================
+        //TC11: A face of two vertices
+        String line = file(".obj", "v 0 0 0\nv 1 0 0\nf 1 2\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadObj(line), "Loaded a face of 2 vertices");
+        //TC12: Windows line ends and no line end at the end of the file
+        mesh = MeshLoader.loadObj(file(".obj",
+                "v 0 0 0\r\nv 1 0 0\r\nv 0 1 0\r\nf 1 2 3".getBytes(StandardCharsets.US_ASCII)));
+        assertArrayEquals(new int[]{0, 1, 2}, mesh.getIndices(), "Wrong face with Windows line ends");
+    }
+
+    /**
+     * Creates the contents of a binary PLY file of the test square and apex.
+     * The vertices have an extra property and the faces have an extra list.
+     * @param order the byte order of the file
+     * @return the contents of the file
+     */
+    private byte[] ply(ByteOrder order) {
+        String header = "ply\nformat binary_" + (order == ByteOrder.LITTLE_ENDIAN ? "little" : "big") + "_endian 1.0\n"
+                + "comment the unit square and an apex\n"
+                + "element vertex 5\nproperty float x\nproperty float y\nproperty double z\nproperty uchar red\n"
+                + "element face 2\nproperty list uchar int vertex_indices\nproperty list uchar float texcoord\n"
+                + "end_header\n";
+        ByteBuffer buffer = ByteBuffer.allocate(1000).order(order);
+        buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+        for (int v = 0; v < 5; v++)
+            buffer.putFloat((float) squarePositions[3 * v]).putFloat((float) squarePositions[3 * v + 1])
+                    .putDouble(squarePositions[3 * v + 2]).put((byte) 200);
+        buffer.put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3).put((byte) 2).putFloat(0).putFloat(1);
+        buffer.put((byte) 3).putInt(0).putInt(1).putInt(4).put((byte) 0);
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip().get(bytes);
+        return bytes;
+    }
+
+    /***
+     * Test method for {@link scene.MeshLoader#loadPly(String)}.
+     */
+    @Test
+    void testLoadPly() {
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Little endian file
+        MeshLoader mesh = MeshLoader.load(file(".ply", ply(ByteOrder.LITTLE_ENDIAN)));
+        assertArrayEquals(squarePositions, mesh.getPositions(), "Wrong vertices of the little endian PLY file");
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3, 0, 1, 4}, mesh.getIndices(), "Wrong faces of the PLY file");
+        //TC02: Big endian file
+        mesh = MeshLoader.loadPly(file(".ply", ply(ByteOrder.BIG_ENDIAN)));
+        assertArrayEquals(squarePositions, mesh.getPositions(), "Wrong vertices of the big endian PLY file");
+        //TC03: ASCII file
+        String ascii = file(".ply", "ply\nformat ascii 1.0\nelement vertex 0\nend_header\n"
+                .getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadPly(ascii), "Loaded an ASCII PLY file");
+        // =============== Boundary Values Tests ==================
+        //TC11: Truncated file
+        byte[] bytes = ply(ByteOrder.LITTLE_ENDIAN);
+        String truncated = file(".ply", java.util.Arrays.copyOf(bytes, bytes.length - 5));
+        assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadPly(truncated), "Loaded a truncated file");
+        //TC12: Unknown extension
+        assertThrows(IllegalArgumentException.class, () -> MeshLoader.load("teapot.stl"), "Loaded an unknown format");
+    }
+
+    /***
+     * Test method for {@link scene.MeshLoader#toMesh()}
+     * and {@link scene.MeshLoader#toTriangles(primitives.Color, primitives.Material)}.
+     */
+    @Test
+    void testToGeometries() {
+        MeshLoader loader = MeshLoader.load(file(".ply", ply(ByteOrder.LITTLE_ENDIAN)));
+        Ray ray = new Ray(new Point(0.9, 0.6, 5), new Vector(0, 0, -1));
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: Separate triangles
+        Geometries triangles = loader.toTriangles(new Color(10, 20, 30), new Material().setKd(0.5));
+        assertEquals(3, triangles.getGeometries().size(), "Wrong amount of triangles");
+        assertEquals(new Point(0.9, 0.6, 0), triangles.calculateClosestIntersection(ray).point,
+                "Wrong intersection of the triangles");
+        //TC02: Packed mesh
+        TriangleMesh mesh = loader.toMesh();
+        assertEquals(3, mesh.getTriangleCount(), "Wrong amount of triangles in the mesh");
+        assertEquals(0, mesh.calculateClosestIntersection(ray).index, "Wrong intersected triangle of the mesh");
+    }
+}
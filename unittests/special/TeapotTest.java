@@ -6,6 +6,7 @@ import static primitives.Util.random;
 import org.junit.jupiter.api.*;
 
 import static java.lang.Math.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 import geometries.*;
 import lighting.PointLight;
@@ -13,6 +14,9 @@ import primitives.*;
 import renderer.*;
 import scene.Scene;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Test rendering an image
  * @author Dan Zilberstein
@@ -57,10 +61,67 @@ class TeapotTest {
 
 
     /**
-     * Prepare data for test that generates a teapot picture
-     * @return camera builder with all the data for the test
+     * Compare the BVH builders on the teapot scene with the bubbles: every builder covers all the
+     * geometries it is built over, and the SAH tree is not more expensive than the median split tree
+     * over the same primitives
      */
-    Camera.Builder prepareTeapot() {
+    @Test
+    void testBVHStats() {
+        Scene scene = prepareTeapotScene();
+        scene.geometries.setUseBVH(true);
+        BVHStats[] stats = new BVHStats[BVHBuildType.values().length];
+        for (BVHBuildType type : BVHBuildType.values()) {
+            scene.geometries.buildBVH(type);
+            stats[type.ordinal()] = scene.geometries.getBVHStats();
+        }
+        BVHStats median = stats[BVHBuildType.MEDIAN.ordinal()];
+        BVHStats sah = stats[BVHBuildType.SAH.ordinal()];
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the median split tree has a leaf for every direct child of the scene (the bubbles are one child)
+        int children = scene.geometries.getGeometries().size();
+        assertEquals(children, median.primitiveCount(), "The median split tree must cover all the children");
+        assertEquals(children, median.leafCount(), "The median split tree must have a leaf per child");
+        // TC02: the SAH tree covers all the primitives of the nested collections
+        List<Intersectable> primitives = new ArrayList<>();
+        collectPrimitives(scene.geometries, primitives);
+        assertEquals(primitives.size(), sah.primitiveCount(), "The SAH tree must cover all the primitives");
+        // TC03: the SAH tree is not more expensive than the median split tree over the same primitives
+        Geometries flat = new Geometries(true, primitives.toArray(new Intersectable[0]));
+        flat.buildBVH(BVHBuildType.MEDIAN);
+        BVHStats flatMedian = flat.getBVHStats();
+        assertEquals(sah.primitiveCount(), flatMedian.primitiveCount(), "The trees must cover the same primitives");
+        assertTrue(sah.sahCost() <= flatMedian.sahCost(), "The SAH tree must not cost more than the median split");
+    }
+
+    /**
+     * Collect the primitives of a collection, including the primitives of the nested collections
+     * @param geometries the collection
+     * @param target     the list to add the primitives to
+     */
+    private static void collectPrimitives(Geometries geometries, List<Intersectable> target) {
+        for (Intersectable geometry : geometries.getGeometries())
+            if (geometry instanceof Geometries nested) collectPrimitives(nested, target);
+            else target.add(geometry);
+    }
+
+    /**
+     * Compare the throughput and the tail latency of the rendering modes on small preview renders
+     * of the teapot (see {@link RenderModeComparison})
+     * @throws InterruptedException if interrupted while waiting for the renders
+     */
+    @Test
+    @Disabled
+    void testRenderModes() throws InterruptedException {
+        Camera preview = prepareTeapot().enableBVH(BVHBuildType.SAH).setResolution(200, 200).build();
+        RenderModeComparison.run(preview);
+    }
+
+    /**
+     * Prepare the scene with the teapot and the bubbles
+     * @return the scene
+     */
+    Scene prepareTeapotScene() {
         Scene scene = new Scene("Test scene");
         addTeapotToScene(scene);
 
@@ -71,16 +132,47 @@ class TeapotTest {
             prepareBubbles(400);
         }
         scene.geometries.add(bubbles);
+        return scene;
+    }
+
+    /**
+     * Teapot with the regular grid ray tracer
+     */
+    @Test
+    @Disabled
+    void testTeapotGrid() {
+        prepareTeapot(RayTracerType.GRID) //
+                .build() //
+                .renderImage() //
+                .printGrid(50, new Color(YELLOW)) //
+                .writeToImage("teapotGrid");
+    }
+
+    /**
+     * Prepare data for test that generates a teapot picture
+     * @return camera builder with all the data for the test
+     */
+    Camera.Builder prepareTeapot() {
+        return prepareTeapot(RayTracerType.SIMPLE);
+    }
+
+    /**
+     * Prepare data for test that generates a teapot picture
+     * @param  rayTracerType the type of the ray tracer
+     * @return               camera builder with all the data for the test
+     */
+    Camera.Builder prepareTeapot(RayTracerType rayTracerType) {
+        Scene scene = prepareTeapotScene();
 
         scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(100, 0, -100)).setKq(0.000001));
 
         return Camera.getBuilder() //
                 .setResolution(1000, 1000) //
                 // .setResolution(1, 1) //
-                .setRayTracer(scene, RayTracerType.SIMPLE) //
+                .setRayTracer(scene, rayTracerType) //
                 .setLocation(new Point(0, 0, -1000)).setDirection(Point.ZERO, Vector.AXIS_Y) //
                 .setVpDistance(1000).setVpSize(200, 200) //
-                // .setMultithreading(-3) // fail - paging file size
+                // .setMultithreading(-3) // virtual threads
                  .setMultithreading(-2) // 9.3
                 // .setMultithreading(-1) // 9.6
                 //.setMultithreading(0) // 25
@@ -636,7 +728,7 @@ class TeapotTest {
      * Produce a scene with a 3D model of the teapot
      * @param scene the scene data container
      */
-    private void addTeapotToScene(Scene scene) {
+    void addTeapotToScene(Scene scene) {
         scene.geometries.add( //
                 new Triangle(points[7], points[6], points[1]).setEmission(color).setMaterial(material), //
                 new Triangle(points[1], points[2], points[7]).setEmission(color).setMaterial(material), //